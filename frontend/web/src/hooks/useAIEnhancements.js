@@ -1,4 +1,4 @@
-import { useState, useCallback, useRef } from 'react';
+import { useState, useCallback, useRef, useEffect } from 'react';
 import apiClient from '../services/apiClient';
 
 /**
@@ -84,6 +84,22 @@ export function useDoubtSolver() {
 /**
  * Hook for voice transcription
  */
+// Transcription jobs are polled until they settle, an upper bound on how long
+// the server lets a job run, or the component unmounts
+const TRANSCRIPTION_POLL_MS = 1500;
+const TRANSCRIPTION_DEADLINE_MS = 25 * 60 * 1000;
+const TRANSCRIPTION_MAX_POLLS = Math.ceil(TRANSCRIPTION_DEADLINE_MS / TRANSCRIPTION_POLL_MS);
+
+function sleep(ms, signal) {
+    return new Promise((resolve, reject) => {
+        const timer = setTimeout(resolve, ms);
+        signal.addEventListener('abort', () => {
+            clearTimeout(timer);
+            reject(new DOMException('Aborted', 'AbortError'));
+        }, { once: true });
+    });
+}
+
 export function useVoiceTranscription() {
     const [recording, setRecording] = useState(false);
     const [transcribing, setTranscribing] = useState(false);
@@ -92,6 +108,9 @@ export function useVoiceTranscription() {
 
     const mediaRecorderRef = useRef(null);
     const audioChunksRef = useRef([]);
+    const pollAbortRef = useRef(null);
+
+    useEffect(() => () => pollAbortRef.current?.abort(), []);
 
     const startRecording = useCallback(async () => {
         try {
@@ -138,6 +157,11 @@ export function useVoiceTranscription() {
             return null;
         }
 
+        pollAbortRef.current?.abort();
+        const controller = new AbortController();
+        pollAbortRef.current = controller;
+        const { signal } = controller;
+
         try {
             setTranscribing(true);
             setError(null);
@@ -147,18 +171,41 @@ export function useVoiceTranscription() {
             formData.append('language', language);
 
             const response = await apiClient.post('/api/voice/transcribe', formData, {
-                headers: { 'Content-Type': 'multipart/form-data' }
+                headers: { 'Content-Type': 'multipart/form-data' },
+                signal
             });
 
-            const data = response.data;
-            setTranscription(data.transcription);
-            return data;
+            // Transcription runs as a background job; poll until it settles
+            const { jobId } = response.data;
+            const deadline = Date.now() + TRANSCRIPTION_DEADLINE_MS;
+            for (let attempt = 0; attempt < TRANSCRIPTION_MAX_POLLS && Date.now() < deadline; attempt++) {
+                await sleep(TRANSCRIPTION_POLL_MS, signal);
+                const { data: job } = await apiClient.get(`/api/voice/transcribe/${jobId}`, { signal });
+                if (job.status === 'COMPLETED') {
+                    setTranscription(job.result.transcription);
+                    return job.result;
+                }
+                if (job.status === 'FAILED') {
+                    setError(job.result?.error || 'Transcription failed');
+                    return null;
+                }
+            }
+            setError('Transcription is taking too long. Please try again.');
+            return null;
         } catch (err) {
+            if (signal.aborted) {
+                return null;
+            }
             console.error('Transcription error:', err);
             setError(err.response?.data?.error || 'Transcription failed');
             return null;
         } finally {
-            setTranscribing(false);
+            if (!signal.aborted) {
+                setTranscribing(false);
+            }
+            if (pollAbortRef.current === controller) {
+                pollAbortRef.current = null;
+            }
         }
     }, []);
 
@@ -2,6 +2,13 @@ import React, { useEffect, useRef, useState } from "react";
 import RichNoteEditor from "../components/RichNoteEditor";
 import apiClient from "../services/apiClient";
 
+// Notes per list request; later pages are fetched with the returned cursor
+const NOTES_PAGE_SIZE = 50;
+
+// List rows carry an excerpt; rows replaced by a save response carry the content
+const previewOf = (note) =>
+  note.excerpt || (typeof note.content === "string" ? note.content : "") || "No content";
+
 const SpeechRecognition =
   typeof window !== "undefined"
     ? window.SpeechRecognition || window.webkitSpeechRecognition || null
@@ -9,7 +16,10 @@ const SpeechRecognition =
 
 export const NewNotesPage = () => {
   const [notes, setNotes] = useState([]);
+  const [nextCursor, setNextCursor] = useState(null);
+  const [loadingMore, setLoadingMore] = useState(false);
   const [selectedNoteId, setSelectedNoteId] = useState(null);
+  const openingNoteRef = useRef(null);
 
   const [titleInput, setTitleInput] = useState("");
   const [contentInput, setContentInput] = useState("");
@@ -30,14 +40,14 @@ export const NewNotesPage = () => {
     loadNotes();
   }, []);
 
+  // Lean list (title and excerpt); content is loaded for the opened note only
   const loadNotes = async () => {
     setLoading(true);
     setError("");
     try {
-      const resp = await apiClient.get("/notes");
-      const data = resp.data;
-      const items = Array.isArray(data) ? data : data?.items || [];
-      setNotes(items);
+      const resp = await apiClient.get("/notes", { params: { limit: NOTES_PAGE_SIZE } });
+      setNotes(resp.data?.items || []);
+      setNextCursor(resp.data?.nextCursor || null);
     } catch (err) {
       console.error("Failed to load notes", err);
       setError("Failed to load notes");
@@ -46,14 +56,51 @@ export const NewNotesPage = () => {
     }
   };
 
-  const handleSelectNote = (note) => {
+  const loadMoreNotes = async () => {
+    if (!nextCursor || loadingMore) return;
+    setLoadingMore(true);
+    try {
+      const resp = await apiClient.get("/notes", {
+        params: { limit: NOTES_PAGE_SIZE, cursor: nextCursor },
+      });
+      setNotes((prev) => [...prev, ...(resp.data?.items || [])]);
+      setNextCursor(resp.data?.nextCursor || null);
+    } catch (err) {
+      console.error("Failed to load more notes", err);
+      setError("Failed to load more notes");
+    } finally {
+      setLoadingMore(false);
+    }
+  };
+
+  const handleSelectNote = async (note) => {
+    openingNoteRef.current = note.id;
     setSelectedNoteId(note.id);
     setTitleInput(note.title || "");
-    setContentInput(note.content || "");
+    setContentInput("");
     initialLoadRef.current = true;
+    setStatus("loading");
+    try {
+      const resp = await apiClient.get(`/notes/${note.id}`);
+      // A later click wins over a slower response
+      if (openingNoteRef.current !== note.id) return;
+      const content = resp.data?.content || "";
+      if (content) {
+        // Loading the content is not an edit
+        initialLoadRef.current = true;
+        setContentInput(content);
+      }
+      setStatus("idle");
+    } catch (err) {
+      if (openingNoteRef.current !== note.id) return;
+      console.error("Failed to load note", err);
+      setError("Failed to load note");
+      setStatus("error");
+    }
   };
 
   const handleNewNote = () => {
+    openingNoteRef.current = null;
     setSelectedNoteId(null);
     setTitleInput("");
     setContentInput("");
@@ -272,10 +319,20 @@ export const NewNotesPage = () => {
                     {n.title || "Untitled"}
                   </div>
                   <div className="text-[11px] text-slate-500 dark:text-slate-400 truncate">
-                    {n.content || "No content"}
+                    {previewOf(n)}
                   </div>
                 </button>
               ))}
+
+              {nextCursor && (
+                <button
+                  onClick={loadMoreNotes}
+                  disabled={loadingMore}
+                  className="w-full px-2.5 py-1.5 text-xs text-slate-500 dark:text-slate-400 hover:text-slate-700 dark:hover:text-slate-200 disabled:opacity-40"
+                >
+                  {loadingMore ? "Loading…" : "Load more"}
+                </button>
+              )}
             </div>
           </aside>
 
@@ -5,6 +5,13 @@ import apiClient from "../services/apiClient";
 import { useSidebarSync } from "../hooks/useSidebarSync";
 import { motion, AnimatePresence } from "framer-motion";
 
+// Notes per list request; later pages are fetched with the returned cursor
+const NOTES_PAGE_SIZE = 50;
+
+// List rows carry an excerpt; rows replaced by a save response carry the content
+const previewOf = (note) =>
+  note.excerpt || (typeof note.content === "string" ? note.content.substring(0, 100) : "") || "No content";
+
 const SpeechRecognition =
   typeof window !== "undefined"
     ? window.SpeechRecognition || window.webkitSpeechRecognition || null
@@ -16,7 +23,10 @@ export const NotesPage = () => {
   const [sections, setSections] = useState([]);
   const [selectedSectionId, setSelectedSectionId] = useState(null);
   const [notes, setNotes] = useState([]);
+  const [nextCursor, setNextCursor] = useState(null);
+  const [loadingMore, setLoadingMore] = useState(false);
   const [selectedNoteId, setSelectedNoteId] = useState(null);
+  const openingNoteRef = useRef(null);
 
   const [titleInput, setTitleInput] = useState("");
   const [contentInput, setContentInput] = useState("");
@@ -74,23 +84,45 @@ export const NotesPage = () => {
     }
   };
 
+  // Lean list (title and excerpt); content is loaded for the opened note only
   const loadNotes = async (sectionId) => {
     try {
-      const resp = await apiClient.get(`/sections/${sectionId}/notes`);
-      const data = resp.data;
-      const items = Array.isArray(data) ? data : data?.items || [];
-      setNotes(items);
+      const resp = await apiClient.get(`/sections/${sectionId}/notes`, {
+        params: { limit: NOTES_PAGE_SIZE },
+      });
+      setNotes(resp.data?.items || []);
+      setNextCursor(resp.data?.nextCursor || null);
     } catch (err) {
       console.error("Failed to load notes", err);
       setError("Failed to load notes");
     }
   };
 
+  const loadMoreNotes = async () => {
+    if (!selectedSectionId || !nextCursor || loadingMore) return;
+    const sectionId = selectedSectionId;
+    setLoadingMore(true);
+    try {
+      const resp = await apiClient.get(`/sections/${sectionId}/notes`, {
+        params: { limit: NOTES_PAGE_SIZE, cursor: nextCursor },
+      });
+      setNotes((prev) => [...prev, ...(resp.data?.items || [])]);
+      setNextCursor(resp.data?.nextCursor || null);
+    } catch (err) {
+      console.error("Failed to load more notes", err);
+      setError("Failed to load more notes");
+    } finally {
+      setLoadingMore(false);
+    }
+  };
+
   const handleSelectNotebook = async (notebookId) => {
     setSelectedNotebookId(notebookId);
     setSelectedSectionId(null);
     setSections([]);
     setNotes([]);
+    setNextCursor(null);
+    openingNoteRef.current = null;
     setSelectedNoteId(null);
     setTitleInput("");
     setContentInput("");
@@ -100,17 +132,38 @@ export const NotesPage = () => {
   const handleSelectSection = async (sectionId) => {
     setSelectedSectionId(sectionId);
     setNotes([]);
+    setNextCursor(null);
+    openingNoteRef.current = null;
     setSelectedNoteId(null);
     setTitleInput("");
     setContentInput("");
     await loadNotes(sectionId);
   };
 
-  const handleSelectNote = (note) => {
+  const handleSelectNote = async (note) => {
+    openingNoteRef.current = note.id;
     setSelectedNoteId(note.id);
     setTitleInput(note.title || "");
-    setContentInput(note.content || "");
+    setContentInput("");
     initialLoadRef.current = true; // avoid autosave immediately on load
+    setStatus("loading");
+    try {
+      const resp = await apiClient.get(`/notes/${note.id}`);
+      // A later click wins over a slower response
+      if (openingNoteRef.current !== note.id) return;
+      const content = resp.data?.content || "";
+      if (content) {
+        // Loading the content is not an edit
+        initialLoadRef.current = true;
+        setContentInput(content);
+      }
+      setStatus("idle");
+    } catch (err) {
+      if (openingNoteRef.current !== note.id) return;
+      console.error("Failed to load note", err);
+      setError("Failed to load note");
+      setStatus("error");
+    }
   };
 
   const handleCreateNotebook = async () => {
@@ -148,6 +201,7 @@ export const NotesPage = () => {
   };
 
   const handleNewNote = () => {
+    openingNoteRef.current = null;
     setSelectedNoteId(null);
     setTitleInput("");
     setContentInput("");
@@ -370,8 +424,9 @@ export const NotesPage = () => {
 
       setNotes(items);
 
-      const noteIds = items.map((item) => item.id);
-      apiClient.post('/notes/reorder', { noteIds });
+      // Only a page of the section is loaded, so move the one note instead of sending a full order
+      const afterId = result.destination.index > 0 ? items[result.destination.index - 1].id : null;
+      apiClient.post(`/notes/${reorderedItem.id}/move`, { afterId });
     } else if (result.source.droppableId === 'sections') {
       const items = Array.from(sections);
       const [reorderedItem] = items.splice(result.source.index, 1);
@@ -621,13 +676,23 @@ export const NotesPage = () => {
                               )}
                             </div>
                             <div className="text-[11px] text-slate-500 dark:text-slate-400 truncate">
-                              {n.content?.substring(0, 100) || "No content"}
+                              {previewOf(n)}
                             </div>
                           </button>
                         )}
                       </Draggable>
                     ))}
                     {provided.placeholder}
+
+                    {nextCursor && (
+                      <button
+                        onClick={loadMoreNotes}
+                        disabled={loadingMore}
+                        className="w-full px-2.5 py-1.5 text-xs text-slate-500 dark:text-slate-400 hover:text-slate-700 dark:hover:text-slate-200 disabled:opacity-40"
+                      >
+                        {loadingMore ? "Loading…" : "Load more"}
+                      </button>
+                    )}
                   </div>
                 )}
               </Droppable>
@@ -4,11 +4,13 @@ import com.muse.ai.service.VoiceTranscriptionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 /**
  * Voice Controller - Audio transcription and voice notes
@@ -22,30 +24,52 @@ public class VoiceController {
     private final VoiceTranscriptionService voiceTranscriptionService;
 
     /**
-     * Transcribe audio file to text
+     * Get current user ID from authentication
+     */
+    private Long getUserId(Authentication auth) {
+        return (Long) auth.getDetails();
+    }
+
+    /**
+     * Start transcribing an audio file. Returns 202 with a jobId right away;
+     * the text is fetched from GET /transcribe/{jobId}.
      */
     @PostMapping("/transcribe")
     public ResponseEntity<Map<String, Object>> transcribeAudio(
             @RequestParam("audio") MultipartFile audioFile,
             @RequestParam(value = "language", required = false) String language,
-            @RequestHeader(value = "X-User-Id", required = false) Long userId) {
+            Authentication auth) {
 
-        Map<String, Object> result = voiceTranscriptionService.transcribeAudio(audioFile, language, userId);
+        Map<String, Object> result = voiceTranscriptionService.startTranscription(audioFile, language, getUserId(auth));
 
         if (Boolean.TRUE.equals(result.get("success"))) {
-            return ResponseEntity.ok(result);
+            return ResponseEntity.accepted().body(result);
         } else {
             return ResponseEntity.badRequest().body(result);
         }
     }
 
+    /**
+     * Status and, once completed, result of a transcription job
+     */
+    @GetMapping("/transcribe/{jobId}")
+    public ResponseEntity<Map<String, Object>> getTranscription(
+            @PathVariable UUID jobId,
+            Authentication auth) {
+
+        return voiceTranscriptionService.getTranscriptionJob(jobId, getUserId(auth))
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     /**
      * Extract key points from transcription
      */
     @PostMapping("/extract-key-points")
     public ResponseEntity<Map<String, Object>> extractKeyPoints(
             @RequestBody Map<String, String> request,
-            @RequestHeader(value = "X-User-Id", required = false) Long userId) {
+            Authentication auth) {
+        Long userId = getUserId(auth);
 
         String transcription = request.get("transcription");
         Map<String, Object> result = voiceTranscriptionService.extractKeyPoints(transcription, userId);
@@ -63,7 +87,8 @@ public class VoiceController {
     @PostMapping("/to-notes")
     public ResponseEntity<Map<String, Object>> transcriptionToNotes(
             @RequestBody Map<String, String> request,
-            @RequestHeader(value = "X-User-Id", required = false) Long userId) {
+            Authentication auth) {
+        Long userId = getUserId(auth);
 
         String transcription = request.get("transcription");
         String title = request.get("title");
@@ -21,6 +21,8 @@ public interface JobRepository extends JpaRepository<Job, UUID> {
 
     List<Job> findByUserIdAndJobType(Long userId, String jobType);
 
+    List<Job> findByJobTypeAndStatusAndStartedAtBefore(String jobType, String status, Instant startedBefore);
+
     @Query("SELECT j FROM Job j WHERE j.status = 'RUNNING' AND j.startedAt < :timeout")
     List<Job> findStaleJobs(Instant timeout);
 }
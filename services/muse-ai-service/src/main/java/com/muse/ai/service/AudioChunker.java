@@ -0,0 +1,172 @@
+package com.muse.ai.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits long recordings into overlapping time windows for parallel
+ * transcription. Windows are cut with ffmpeg and re-encoded as 16 kHz mono
+ * FLAC piped straight into memory, so only one window per worker is ever held
+ * on the heap. Without ffmpeg on the PATH the file is transcribed as a single
+ * chunk.
+ */
+public final class AudioChunker {
+
+    private static final Logger log = LoggerFactory.getLogger(AudioChunker.class);
+
+    private static final String CHUNK_MIME_TYPE = "audio/flac";
+    private static final long PROCESS_TIMEOUT_SECONDS = 120;
+    private static final Pattern DECODED_TIME = Pattern.compile("time=(\\d+):(\\d{2}):(\\d{2}(?:\\.\\d+)?)");
+
+    private static volatile Boolean ffmpegAvailable;
+
+    private AudioChunker() {
+    }
+
+    /**
+     * One window of the source recording. {@code durationSeconds} is null for
+     * the whole-file fallback.
+     */
+    public record Chunk(int index, Path source, double startSeconds, Double durationSeconds, String mimeType) {
+
+        public boolean wholeFile() {
+            return durationSeconds == null;
+        }
+    }
+
+    public record Plan(List<Chunk> chunks, Double durationSeconds) {
+    }
+
+    /**
+     * Plans windows of {@code chunkSeconds}, each extended by
+     * {@code overlapSeconds} into the next so words cut at a boundary are heard
+     * whole by one of the two chunks.
+     */
+    public static Plan plan(Path source, String mimeType, int chunkSeconds, int overlapSeconds) {
+        Double duration = probeDurationSeconds(source);
+        if (duration == null || duration <= chunkSeconds + overlapSeconds) {
+            return new Plan(List.of(new Chunk(0, source, 0, null, mimeType)), duration);
+        }
+        List<Chunk> chunks = new ArrayList<>();
+        for (double start = 0; start < duration; start += chunkSeconds) {
+            double length = Math.min(chunkSeconds + overlapSeconds, duration - start);
+            chunks.add(new Chunk(chunks.size(), source, start, length, CHUNK_MIME_TYPE));
+            if (start + length >= duration)
+                break;
+        }
+        return new Plan(chunks, duration);
+    }
+
+    /**
+     * Reads the audio for one chunk. Blocking; call it off the event loop.
+     */
+    public static byte[] read(Chunk chunk) throws IOException, InterruptedException {
+        if (chunk.wholeFile()) {
+            return Files.readAllBytes(chunk.source());
+        }
+        Process process = new ProcessBuilder("ffmpeg", "-nostdin", "-v", "error",
+                "-ss", String.format(Locale.ROOT, "%.3f", chunk.startSeconds()),
+                "-t", String.format(Locale.ROOT, "%.3f", chunk.durationSeconds()),
+                "-i", chunk.source().toAbsolutePath().toString(),
+                "-vn", "-ac", "1", "-ar", "16000", "-f", "flac", "pipe:1")
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        byte[] audio;
+        try (InputStream out = process.getInputStream()) {
+            audio = out.readAllBytes();
+        }
+        if (!process.waitFor(PROCESS_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            throw new IOException("ffmpeg timed out on chunk " + chunk.index());
+        }
+        if (process.exitValue() != 0 || audio.length == 0) {
+            throw new IOException("ffmpeg failed on chunk " + chunk.index() + " (exit " + process.exitValue() + ")");
+        }
+        return audio;
+    }
+
+    private static Double probeDurationSeconds(Path source) {
+        if (!ffmpegAvailable())
+            return null;
+        try {
+            String header = run(List.of("ffprobe", "-v", "error",
+                    "-show_entries", "format=duration", "-of", "default=noprint_wrappers=1:nokey=1",
+                    source.toAbsolutePath().toString()), false);
+            if (header != null && !header.isEmpty() && !header.equals("N/A")) {
+                return Double.parseDouble(header);
+            }
+            // Browser-recorded WebM has no duration header; decode once (fast for speech codecs)
+            String progress = run(List.of("ffmpeg", "-nostdin", "-i", source.toAbsolutePath().toString(),
+                    "-vn", "-f", "null", "-"), true);
+            if (progress == null)
+                return null;
+            Matcher m = DECODED_TIME.matcher(progress);
+            Double last = null;
+            while (m.find()) {
+                last = Integer.parseInt(m.group(1)) * 3600 + Integer.parseInt(m.group(2)) * 60
+                        + Double.parseDouble(m.group(3));
+            }
+            return last;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (IOException | NumberFormatException e) {
+            log.debug("Could not probe duration of {}: {}", source, e.getMessage());
+            return null;
+        }
+    }
+
+    // Returns the trimmed output, or null on a non-zero exit or timeout
+    private static String run(List<String> command, boolean stderr) throws IOException, InterruptedException {
+        ProcessBuilder builder = new ProcessBuilder(command);
+        if (stderr) {
+            builder.redirectErrorStream(true);
+        } else {
+            builder.redirectError(ProcessBuilder.Redirect.DISCARD);
+        }
+        Process process = builder.start();
+        String output;
+        try (InputStream out = process.getInputStream()) {
+            output = new String(out.readAllBytes()).trim();
+        }
+        if (!process.waitFor(PROCESS_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            return null;
+        }
+        return process.exitValue() == 0 ? output : null;
+    }
+
+    private static boolean ffmpegAvailable() {
+        Boolean available = ffmpegAvailable;
+        if (available == null) {
+            try {
+                Process process = new ProcessBuilder("ffmpeg", "-version")
+                        .redirectErrorStream(true)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+                available = process.waitFor(10, TimeUnit.SECONDS) && process.exitValue() == 0;
+            } catch (IOException e) {
+                available = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            if (!available) {
+                log.warn("ffmpeg not found; audio will be transcribed without chunking");
+            }
+            ffmpegAvailable = available;
+        }
+        return available;
+    }
+}
@@ -0,0 +1,82 @@
+package com.muse.ai.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Joins transcripts of overlapping audio chunks. The words both chunks heard
+ * are found by aligning the tail of the text so far with the head of the next
+ * chunk, and kept only once. The first few words on either side of a cut are
+ * often garbled, so the alignment may skip a couple of them.
+ */
+public final class TranscriptStitcher {
+
+    private static final int MIN_MATCH_WORDS = 3;
+    private static final int MAX_EDGE_SKIP = 2;
+
+    private TranscriptStitcher() {
+    }
+
+    /**
+     * @param maxOverlapWords upper bound on the words two neighbouring chunks
+     *                        can share (overlap seconds times speaking rate)
+     */
+    public static String stitch(List<String> parts, int maxOverlapWords) {
+        List<String> words = new ArrayList<>();
+        for (String part : parts) {
+            if (part == null || part.isBlank())
+                continue;
+            List<String> next = Arrays.asList(part.trim().split("\\s+"));
+            if (words.isEmpty()) {
+                words.addAll(next);
+                continue;
+            }
+            int[] match = align(words, next, maxOverlapWords);
+            if (match == null) {
+                words.addAll(next);
+            } else {
+                // Drop the garbled tail of the text so far, keep the aligned words once
+                words.subList(words.size() - match[0], words.size()).clear();
+                words.addAll(next.subList(match[1], next.size()));
+            }
+        }
+        return String.join(" ", words);
+    }
+
+    /**
+     * Longest run of words ending at most MAX_EDGE_SKIP words before the end of
+     * {@code prev} that equals a run starting at most MAX_EDGE_SKIP words into
+     * {@code next}. Returns {prev words to drop, index of the first new word in
+     * next}, or null when nothing lines up.
+     */
+    private static int[] align(List<String> prev, List<String> next, int maxOverlapWords) {
+        int longest = Math.min(maxOverlapWords, Math.min(prev.size(), next.size()));
+        for (int k = longest; k >= MIN_MATCH_WORDS; k--) {
+            for (int tail = 0; tail <= MAX_EDGE_SKIP; tail++) {
+                int prevStart = prev.size() - tail - k;
+                if (prevStart < 0)
+                    break;
+                for (int head = 0; head <= MAX_EDGE_SKIP && head + k <= next.size(); head++) {
+                    if (sameWords(prev, prevStart, next, head, k)) {
+                        return new int[] { tail, head + k };
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean sameWords(List<String> a, int aStart, List<String> b, int bStart, int length) {
+        for (int i = 0; i < length; i++) {
+            if (!normalize(a.get(aStart + i)).equals(normalize(b.get(bStart + i))))
+                return false;
+        }
+        return true;
+    }
+
+    private static String normalize(String word) {
+        return word.replaceAll("[^\\p{L}\\p{N}]", "").toLowerCase(Locale.ROOT);
+    }
+}
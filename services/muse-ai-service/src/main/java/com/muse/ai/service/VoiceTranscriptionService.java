@@ -2,21 +2,34 @@ package com.muse.ai.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.muse.ai.entity.Job;
+import com.muse.ai.repository.JobRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Voice Transcription Service - Convert voice notes to text
  * 
  * Features:
- * - Audio file transcription using Gemini/Whisper
+ * - Audio file transcription using Gemini/Whisper, run as a background job
+ *   over overlapping chunks transcribed in parallel
  * - Support for multiple languages (Hindi, Telugu, Tamil, English)
  * - Speaker diarization for lectures
  * - Key points extraction from transcribed text
@@ -26,8 +39,29 @@ import java.util.*;
 @RequiredArgsConstructor
 public class VoiceTranscriptionService {
 
+    private static final String TRANSCRIPTION_JOB = "VOICE_TRANSCRIPTION";
+
+    // Generous speaking rate used to bound the overlap search when stitching
+    private static final int WORDS_PER_SECOND = 4;
+
+    private static final Duration REAPER_GRACE = Duration.ofMinutes(5);
+
     private final WebClient webClient;
     private final ObjectMapper objectMapper;
+    private final JobRepository jobRepository;
+
+    @Value("${voice.transcription.chunk-seconds:120}")
+    private int chunkSeconds;
+
+    @Value("${voice.transcription.overlap-seconds:5}")
+    private int overlapSeconds;
+
+    @Value("${voice.transcription.concurrency:4}")
+    private int concurrency;
+
+    // A run still RUNNING after this plus REAPER_GRACE lost its instance
+    @Value("${voice.transcription.timeout-minutes:20}")
+    private int timeoutMinutes;
 
     @Value("${gemini.api.key:}")
     private String geminiApiKey;
@@ -42,12 +76,17 @@ public class VoiceTranscriptionService {
             "audio/wav", "audio/mp3", "audio/mpeg", "audio/ogg", "audio/webm", "audio/m4a");
 
     /**
-     * Transcribe audio file to text
+     * Starts a background transcription and returns its job id at once. The
+     * upload is spooled to disk, cut into overlapping chunks, transcribed in
+     * parallel and stitched; poll {@link #getTranscriptionJob} for the result.
      */
-    public Map<String, Object> transcribeAudio(MultipartFile audioFile, String language, Long userId) {
+    public Map<String, Object> startTranscription(MultipartFile audioFile, String language, Long userId) {
         log.info("Transcribing audio for user {}, language: {}, size: {} bytes",
                 userId, language, audioFile != null ? audioFile.getSize() : 0);
 
+        if (userId == null) {
+            return Map.of("success", false, "error", "Missing user id");
+        }
         if (audioFile == null || audioFile.isEmpty()) {
             return Map.of("success", false, "error", "No audio file provided");
         }
@@ -57,33 +96,142 @@ public class VoiceTranscriptionService {
             return Map.of("success", false, "error", "Unsupported audio format. Supported: WAV, MP3, OGG, WebM, M4A");
         }
 
+        Path spooled;
         try {
-            byte[] audioBytes = audioFile.getBytes();
-            String base64Audio = Base64.getEncoder().encodeToString(audioBytes);
-
-            String transcription = callGeminiAudioTranscription(base64Audio, contentType, language);
-
-            Map<String, Object> result = new HashMap<>();
-            result.put("success", true);
-            result.put("transcription", transcription);
-            result.put("language", language != null ? language : "auto");
-            result.put("duration", estimateDuration(audioFile.getSize()));
-            result.put("wordCount", countWords(transcription));
-
-            return result;
+            spooled = Files.createTempFile("voice-", ".audio");
+            audioFile.transferTo(spooled);
         } catch (IOException e) {
             log.error("Failed to read audio file: {}", e.getMessage());
             return Map.of("success", false, "error", "Failed to process audio file");
-        } catch (Exception e) {
-            log.error("Transcription failed: {}", e.getMessage(), e);
-            return Map.of("success", false, "error", "Transcription failed. Please try again.");
         }
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("language", language != null ? language : "auto");
+        payload.put("size", audioFile.getSize());
+        Job job = jobRepository.save(Job.builder()
+                .id(UUID.randomUUID())
+                .userId(userId)
+                .jobType(TRANSCRIPTION_JOB)
+                // The chunks are processed by this instance, not by the job runner;
+                // reapStaleTranscriptions fails the job if the instance goes away
+                .status("RUNNING")
+                .payload(payload)
+                .scheduledAt(Instant.now())
+                .startedAt(Instant.now())
+                .build());
+
+        runTranscription(job, spooled, contentType, language, audioFile.getSize());
+        return Map.of("success", true, "jobId", job.getId(), "status", job.getStatus());
+    }
+
+    private void runTranscription(Job job, Path spooled, String contentType, String language, long size) {
+        AtomicInteger completed = new AtomicInteger();
+        Mono.fromCallable(() -> AudioChunker.plan(spooled, contentType, chunkSeconds, overlapSeconds))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(plan -> {
+                    int total = plan.chunks().size();
+                    recordProgress(job, 0, total);
+                    return Flux.fromIterable(plan.chunks())
+                            .flatMapSequential(chunk -> Mono.fromCallable(() -> AudioChunker.read(chunk))
+                                    .subscribeOn(Schedulers.boundedElastic())
+                                    .flatMap(bytes -> callGeminiAudioTranscription(bytes, chunk.mimeType(), language))
+                                    .retryWhen(Retry.backoff(2, Duration.ofSeconds(2)))
+                                    .publishOn(Schedulers.boundedElastic())
+                                    .doOnNext(text -> recordProgress(job, completed.incrementAndGet(), total)),
+                                    Math.max(1, concurrency))
+                            .collectList()
+                            .map(parts -> {
+                                String transcription = TranscriptStitcher.stitch(parts,
+                                        overlapSeconds * WORDS_PER_SECOND);
+                                Map<String, Object> result = new HashMap<>();
+                                result.put("success", true);
+                                result.put("transcription", transcription);
+                                result.put("language", language != null ? language : "auto");
+                                result.put("duration", plan.durationSeconds() != null
+                                        ? (int) Math.ceil(plan.durationSeconds() / 60)
+                                        : estimateDuration(size));
+                                result.put("wordCount", countWords(transcription));
+                                result.put("chunks", total);
+                                return result;
+                            });
+                })
+                .timeout(Duration.ofMinutes(Math.max(1, timeoutMinutes)))
+                .publishOn(Schedulers.boundedElastic())
+                .doFinally(signal -> {
+                    try {
+                        Files.deleteIfExists(spooled);
+                    } catch (IOException e) {
+                        log.debug("Could not delete spooled audio {}", spooled);
+                    }
+                })
+                .subscribe(result -> finishJob(job, "COMPLETED", result, null),
+                        error -> {
+                            log.error("Transcription job {} failed: {}", job.getId(), error.getMessage(), error);
+                            finishJob(job, "FAILED", Map.of("success", false,
+                                    "error", "Transcription failed. Please try again."), error.getMessage());
+                        });
     }
 
-    private String callGeminiAudioTranscription(String base64Audio, String mimeType, String language) {
+    // Chunks complete on several threads; serialize writes to the job row
+    private void recordProgress(Job job, int completed, int total) {
+        synchronized (job) {
+            job.setResult(Map.of("completedChunks", completed, "totalChunks", total));
+            jobRepository.save(job);
+        }
+    }
+
+    private void finishJob(Job job, String status, Map<String, Object> result, String error) {
+        synchronized (job) {
+            job.setStatus(status);
+            job.setResult(result);
+            job.setErrorMessage(error);
+            job.setCompletedAt(Instant.now());
+            jobRepository.save(job);
+        }
+    }
+
+    /**
+     * Fails transcription jobs left RUNNING by an instance that stopped or
+     * crashed; their progress only lived in that instance's pipeline.
+     */
+    @Scheduled(fixedDelayString = "${voice.transcription.reaper-ms:300000}")
+    public void reapStaleTranscriptions() {
+        Instant cutoff = Instant.now().minus(Duration.ofMinutes(Math.max(1, timeoutMinutes))).minus(REAPER_GRACE);
+        List<Job> stale = jobRepository.findByJobTypeAndStatusAndStartedAtBefore(TRANSCRIPTION_JOB, "RUNNING", cutoff);
+        for (Job job : stale) {
+            finishJob(job, "FAILED", Map.of("success", false,
+                    "error", "Transcription failed. Please try again."), "Transcription abandoned");
+        }
+        if (!stale.isEmpty()) {
+            log.warn("Failed {} abandoned transcription jobs", stale.size());
+        }
+    }
+
+    /**
+     * Status of a transcription job; the transcription is in "result" once
+     * status is COMPLETED.
+     */
+    public Optional<Map<String, Object>> getTranscriptionJob(UUID jobId, Long userId) {
+        if (userId == null) {
+            return Optional.empty();
+        }
+        return jobRepository.findById(jobId)
+                .filter(job -> TRANSCRIPTION_JOB.equals(job.getJobType()))
+                .filter(job -> job.getUserId().equals(userId))
+                .map(job -> {
+                    Map<String, Object> status = new HashMap<>();
+                    status.put("jobId", job.getId());
+                    status.put("status", job.getStatus());
+                    status.put("result", job.getResult());
+                    return status;
+                });
+    }
+
+    private Mono<String> callGeminiAudioTranscription(byte[] audio, String mimeType, String language) {
         String url = String.format(GEMINI_URL, geminiModel, geminiApiKey);
 
-        String languageHint = language != null ? "The audio is in " + language + " language. "
+        String languageHint = language != null && !language.equals("auto")
+                ? "The audio is in " + language + " language. "
                 : "Detect the language automatically. ";
 
         Map<String, Object> requestBody = Map.of(
@@ -98,25 +246,26 @@ public class VoiceTranscriptionService {
                                 Map.of(
                                         "inline_data", Map.of(
                                                 "mime_type", mimeType,
-                                                "data", base64Audio))))),
+                                                "data", Base64.getEncoder().encodeToString(audio)))))),
                 "generationConfig", Map.of(
                         "temperature", 0.1,
                         "maxOutputTokens", 8192));
 
-        String response = webClient.post()
+        return webClient.post()
                 .uri(url)
                 .bodyValue(requestBody)
                 .retrieve()
                 .bodyToMono(String.class)
-                .block();
-
-        try {
-            JsonNode root = objectMapper.readTree(response);
-            return root.path("candidates").get(0).path("content").path("parts").get(0).path("text").asText();
-        } catch (Exception e) {
-            log.error("Failed to parse transcription response", e);
-            throw new RuntimeException("Failed to parse transcription");
-        }
+                .map(response -> {
+                    try {
+                        JsonNode root = objectMapper.readTree(response);
+                        return root.path("candidates").get(0).path("content").path("parts").get(0).path("text")
+                                .asText();
+                    } catch (Exception e) {
+                        log.error("Failed to parse transcription response", e);
+                        throw new RuntimeException("Failed to parse transcription");
+                    }
+                });
     }
 
     /**
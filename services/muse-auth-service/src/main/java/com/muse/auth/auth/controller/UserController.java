@@ -19,6 +19,8 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class UserController {
 
+    private static final int MAX_BATCH_IDS = 200;
+
     private final UserRepository userRepository;
 
     @org.springframework.web.bind.annotation.PutMapping("/profile")
@@ -96,6 +98,22 @@ public class UserController {
         }
     }
 
+    /**
+     * Bulk lookup for service-to-service hydration: GET /api/users/batch?ids=1,2,3.
+     * Unknown ids are left out of the response.
+     */
+    @GetMapping("/batch")
+    public ResponseEntity<?> getUsersByIds(
+            @org.springframework.web.bind.annotation.RequestParam java.util.List<Long> ids) {
+        if (ids.size() > MAX_BATCH_IDS) {
+            return ResponseEntity.badRequest().body(Map.of("message", "At most " + MAX_BATCH_IDS + " ids per request"));
+        }
+        java.util.List<UserDto> dtos = userRepository.findAllWithInstitutionByIdIn(new java.util.HashSet<>(ids)).stream()
+                .map(this::toUserDto)
+                .collect(java.util.stream.Collectors.toList());
+        return ResponseEntity.ok(dtos);
+    }
+
     @GetMapping("/username/{username}")
     public ResponseEntity<?> getUserByUsername(@PathVariable String username) {
         Optional<User> userOptional = userRepository.findByUsername(username);
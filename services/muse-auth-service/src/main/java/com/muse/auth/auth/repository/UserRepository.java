@@ -2,6 +2,8 @@ package com.muse.auth.auth.repository;
 
 import com.muse.auth.auth.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -18,4 +20,7 @@ public interface UserRepository extends JpaRepository<User, Long> {
     java.util.List<User> findByUsernameContainingIgnoreCaseOrEmailContainingIgnoreCase(String username, String email);
 
     boolean existsByEmail(String email);
+
+    @Query("SELECT u FROM User u LEFT JOIN FETCH u.institution WHERE u.id IN :ids")
+    java.util.List<User> findAllWithInstitutionByIdIn(@Param("ids") java.util.Collection<Long> ids);
 }
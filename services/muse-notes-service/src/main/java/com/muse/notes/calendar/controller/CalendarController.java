@@ -1,5 +1,6 @@
 package com.muse.notes.calendar.controller;
 
+import com.muse.notes.calendar.dto.CalendarEventDTO;
 import com.muse.notes.calendar.entity.CalendarEvent;
 import com.muse.notes.calendar.service.CalendarService;
 import lombok.RequiredArgsConstructor;
@@ -8,7 +9,10 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.DateTimeException;
 import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.List;
 import java.util.Map;
 
@@ -24,6 +28,7 @@ public class CalendarController extends BaseController {
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant start,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant end,
             @RequestParam(required = false, defaultValue = "false") boolean unscheduled,
+            @RequestParam(required = false) String zone,
             Authentication auth) {
         String userId = currentUsername(auth);
         if (userId == null) {
@@ -36,18 +41,46 @@ public class CalendarController extends BaseController {
             return ResponseEntity.badRequest()
                     .body(Map.of("message", "Start and end time required for scheduled events"));
         }
-        List<CalendarEvent> events = service.getEvents(userId, start, end);
+        if (!start.isBefore(end)) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Start must be before end"));
+        }
+        // Recurring events keep their wall-clock time in this zone (default UTC)
+        ZoneId zoneId;
+        try {
+            zoneId = zone == null || zone.isBlank() ? ZoneOffset.UTC : ZoneId.of(zone);
+        } catch (DateTimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Unknown time zone: " + zone));
+        }
+        List<CalendarEventDTO> events = service.getEvents(userId, start, end, zoneId);
         return ResponseEntity.ok(events);
     }
 
+    /**
+     * Changes since the last sync: pass back the syncToken of the previous
+     * response (omit it, or 0, for a full fetch).
+     */
+    @GetMapping("/events/sync")
+    public ResponseEntity<?> syncEvents(@RequestParam(required = false, defaultValue = "0") long syncToken,
+            Authentication auth) {
+        String userId = currentUsername(auth);
+        if (userId == null) {
+            return ResponseEntity.status(401).body(Map.of("message", "Not authenticated"));
+        }
+        return ResponseEntity.ok(service.changesSince(userId, syncToken));
+    }
+
     @PostMapping("/events")
     public ResponseEntity<?> createEvent(@RequestBody CalendarEvent event, Authentication auth) {
         String userId = currentUsername(auth);
         if (userId == null) {
             return ResponseEntity.status(401).body(Map.of("message", "Not authenticated"));
         }
-        CalendarEvent created = service.createEvent(userId, event);
-        return ResponseEntity.ok(created);
+        try {
+            CalendarEvent created = service.createEvent(userId, event);
+            return ResponseEntity.ok(created);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
     }
 
     @PutMapping("/events/{id}")
@@ -59,6 +92,8 @@ public class CalendarController extends BaseController {
         try {
             CalendarEvent updated = service.updateEvent(userId, id, event);
             return ResponseEntity.ok(updated);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
         } catch (RuntimeException e) {
             return ResponseEntity.status(404).body(Map.of("message", e.getMessage()));
         }
@@ -0,0 +1,67 @@
+package com.muse.notes.calendar.dto;
+
+import com.muse.notes.calendar.entity.CalendarEvent;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * CalendarEventDTO - an event as the calendar renders it. Occurrences of a
+ * recurring series share the series id, carry their own start and end, and
+ * set seriesStart to the series' first start; one-off events leave it null.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class CalendarEventDTO {
+
+    private Long id;
+    private String title;
+    private String description;
+    private Instant startTime;
+    private Instant endTime;
+    private boolean allDay;
+    private String location;
+    private String type;
+    private String userId;
+    private String recurrenceRule;
+    private Instant seriesStart;
+    private String status;
+    private String groupId;
+    private Long sourceId;
+    private String sourceType;
+    private Integer streakCount;
+    private Instant createdAt;
+    private Instant updatedAt;
+
+    public static CalendarEventDTO of(CalendarEvent event) {
+        return occurrence(event, event.getStartTime(), event.getEndTime(), null);
+    }
+
+    public static CalendarEventDTO occurrence(CalendarEvent event, Instant start, Instant end, Instant seriesStart) {
+        return CalendarEventDTO.builder()
+                .id(event.getId())
+                .title(event.getTitle())
+                .description(event.getDescription())
+                .startTime(start)
+                .endTime(end)
+                .allDay(event.isAllDay())
+                .location(event.getLocation())
+                .type(event.getType())
+                .userId(event.getUserId())
+                .recurrenceRule(event.getRecurrenceRule())
+                .seriesStart(seriesStart)
+                .status(event.getStatus())
+                .groupId(event.getGroupId())
+                .sourceId(event.getSourceId())
+                .sourceType(event.getSourceType())
+                .streakCount(event.getStreakCount())
+                .createdAt(event.getCreatedAt())
+                .updatedAt(event.getUpdatedAt())
+                .build();
+    }
+}
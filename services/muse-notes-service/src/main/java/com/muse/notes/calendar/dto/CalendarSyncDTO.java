@@ -0,0 +1,25 @@
+package com.muse.notes.calendar.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * CalendarSyncDTO - changes since a sync token. Events are stored rows
+ * (series unexpanded). When reset is true the client drops its copy and
+ * takes events as the full set. Pass syncToken back on the next call.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CalendarSyncDTO {
+
+    private long syncToken;
+    private boolean reset;
+    private List<CalendarEventDTO> events;
+    private List<Long> deleted;
+}
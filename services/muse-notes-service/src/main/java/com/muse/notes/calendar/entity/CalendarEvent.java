@@ -1,5 +1,6 @@
 package com.muse.notes.calendar.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -46,6 +47,10 @@ public class CalendarEvent {
 
     private String recurrenceRule; // RRULE string for recurring events
 
+    // End of the series' last occurrence; null for open-ended series
+    @JsonIgnore
+    private Instant recurrenceUntil;
+
     // New fields for integration
     private String status; // PENDING, COMPLETED, IN_PROGRESS
     private String groupId; // For team/group calendars
@@ -58,4 +63,12 @@ public class CalendarEvent {
 
     @UpdateTimestamp
     private Instant updatedAt;
+
+    // The owner's sync version at the last write
+    @JsonIgnore
+    private long changeSeq;
+
+    // Tombstone kept for sync clients until purged
+    @JsonIgnore
+    private Instant deletedAt;
 }
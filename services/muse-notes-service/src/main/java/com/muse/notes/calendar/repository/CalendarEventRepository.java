@@ -2,6 +2,8 @@ package com.muse.notes.calendar.repository;
 
 import com.muse.notes.calendar.entity.CalendarEvent;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
@@ -11,7 +13,23 @@ import java.util.List;
 public interface CalendarEventRepository extends JpaRepository<CalendarEvent, Long> {
     List<CalendarEvent> findByUserId(String userId);
 
-    List<CalendarEvent> findByUserIdAndStartTimeBetween(String userId, Instant start, Instant end);
+    List<CalendarEvent> findByUserIdAndDeletedAtIsNull(String userId);
 
-    List<CalendarEvent> findByUserIdAndStartTimeIsNull(String userId);
+    List<CalendarEvent> findByUserIdAndStartTimeIsNullAndDeletedAtIsNull(String userId);
+
+    List<CalendarEvent> findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(String userId, long changeSeq);
+
+    /**
+     * One-off events overlapping [start, end) through the GiST range index,
+     * plus the recurring series that may have an occurrence in it.
+     */
+    @Query(value = "SELECT * FROM calendar_events WHERE user_id = :userId AND deleted_at IS NULL "
+            + "AND recurrence_rule IS NULL "
+            + "AND time_range && tstzrange(CAST(:start AS timestamptz), CAST(:end AS timestamptz), '[)') "
+            + "UNION ALL "
+            + "SELECT * FROM calendar_events WHERE user_id = :userId AND deleted_at IS NULL "
+            + "AND recurrence_rule IS NOT NULL AND start_time < :end "
+            + "AND (recurrence_until IS NULL OR recurrence_until > :start)", nativeQuery = true)
+    List<CalendarEvent> findInWindow(@Param("userId") String userId, @Param("start") Instant start,
+            @Param("end") Instant end);
 }
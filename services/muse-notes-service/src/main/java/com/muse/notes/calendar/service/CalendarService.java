@@ -1,35 +1,187 @@
 package com.muse.notes.calendar.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.muse.notes.calendar.dto.CalendarEventDTO;
+import com.muse.notes.calendar.dto.CalendarSyncDTO;
 import com.muse.notes.calendar.entity.CalendarEvent;
 import com.muse.notes.calendar.repository.CalendarEventRepository;
-import lombok.RequiredArgsConstructor;
+import com.muse.notes.calendar.util.RecurrenceRule;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Calendar reads are served per visible window: one-off events come from the
+ * range index, recurring series are expanded here, and the expanded window is
+ * cached under the user's sync version. Every write bumps that version in
+ * the same transaction, so a cached window is reused until something in the
+ * user's calendar changes, and the sync endpoint returns the rows stamped
+ * after a client's token.
+ */
 @Service
-@RequiredArgsConstructor
+@Slf4j
 public class CalendarService {
 
+    // Occurrences per series in one window; a daily series over a year view stays well below it
+    private static final int MAX_OCCURRENCES = 1000;
+
+    // Series bounds are computed in UTC; expansion in another zone can shift an occurrence by a day
+    private static final Duration SERIES_SLACK = Duration.ofDays(1);
+
+    private static final String BUMP_SQL = "INSERT INTO calendar_sync_versions (user_id, version, updated_at) "
+            + "VALUES (?, 1, now()) ON CONFLICT (user_id) DO UPDATE "
+            + "SET version = calendar_sync_versions.version + 1, updated_at = now() RETURNING version";
+
+    private static final String PURGE_SQL = "WITH purged AS (DELETE FROM calendar_events "
+            + "WHERE deleted_at < now() - make_interval(days => ?) RETURNING user_id, change_seq) "
+            + "UPDATE calendar_sync_versions v SET min_token = GREATEST(v.min_token, p.max_seq) "
+            + "FROM (SELECT user_id, MAX(change_seq) AS max_seq FROM purged GROUP BY user_id) p "
+            + "WHERE v.user_id = p.user_id";
+
+    private record Window(String userId, Instant start, Instant end, ZoneId zone) {
+    }
+
+    private record ExpandedWindow(long version, List<CalendarEventDTO> events) {
+    }
+
+    private record SyncState(long version, long minToken) {
+    }
+
     private final CalendarEventRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+    private final int tombstoneDays;
+    private final Cache<Window, ExpandedWindow> windows;
 
-    public List<CalendarEvent> getEvents(String userId, Instant start, Instant end) {
-        return repository.findByUserIdAndStartTimeBetween(userId, start, end);
+    public CalendarService(CalendarEventRepository repository,
+            JdbcTemplate jdbcTemplate,
+            @Value("${calendar.window-cache.max-entries:20000}") long maxWindows,
+            @Value("${calendar.window-cache.ttl-seconds:600}") long ttlSeconds,
+            @Value("${calendar.sync.tombstone-days:30}") int tombstoneDays) {
+        this.repository = repository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.tombstoneDays = Math.max(1, tombstoneDays);
+        this.windows = Caffeine.newBuilder()
+                .maximumSize(maxWindows)
+                .expireAfterAccess(ttlSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Events and occurrences overlapping [start, end), recurring series
+     * expanded in {@code zone}, ordered by start.
+     */
+    @Transactional(readOnly = true)
+    public List<CalendarEventDTO> getEvents(String userId, Instant start, Instant end, ZoneId zone) {
+        Window key = new Window(userId, start, end, zone);
+        long version = syncState(userId).version();
+        ExpandedWindow cached = windows.getIfPresent(key);
+        if (cached != null && cached.version() == version) {
+            return copies(cached.events());
+        }
+
+        List<CalendarEventDTO> events = new ArrayList<>();
+        for (CalendarEvent event : repository.findInWindow(userId, start, end)) {
+            if (event.getRecurrenceRule() == null || event.getRecurrenceRule().isBlank()) {
+                events.add(CalendarEventDTO.of(event));
+            } else {
+                expand(event, start, end, zone, events);
+            }
+        }
+        events.sort(Comparator.comparing(CalendarEventDTO::getStartTime));
+        List<CalendarEventDTO> result = List.copyOf(events);
+        windows.put(key, new ExpandedWindow(version, result));
+        return copies(result);
+    }
+
+    // DTOs are mutable, so callers get their own and the cached window stays as built
+    private static List<CalendarEventDTO> copies(List<CalendarEventDTO> events) {
+        return events.stream().map(event -> event.toBuilder().build()).toList();
+    }
+
+    private void expand(CalendarEvent series, Instant start, Instant end, ZoneId zone, List<CalendarEventDTO> out) {
+        Duration length = length(series);
+        try {
+            RecurrenceRule rule = RecurrenceRule.parse(series.getRecurrenceRule());
+            for (Instant occurrence : rule.occurrences(series.getStartTime(), length, zone, start, end,
+                    MAX_OCCURRENCES)) {
+                out.add(CalendarEventDTO.occurrence(series, occurrence, occurrence.plus(length),
+                        series.getStartTime()));
+            }
+        } catch (IllegalArgumentException e) {
+            // Rules saved before validation existed: show the first occurrence only
+            log.warn("Calendar event {} has an unsupported recurrence rule: {}", series.getId(), e.getMessage());
+            Instant seriesEnd = series.getStartTime().plus(length);
+            if (series.getStartTime().isBefore(end) && !seriesEnd.isBefore(start)) {
+                out.add(CalendarEventDTO.of(series));
+            }
+        }
     }
 
-    public List<CalendarEvent> getUnscheduledEvents(String userId) {
-        return repository.findByUserIdAndStartTimeIsNull(userId);
+    @Transactional(readOnly = true)
+    public List<CalendarEventDTO> getUnscheduledEvents(String userId) {
+        return repository.findByUserIdAndStartTimeIsNullAndDeletedAtIsNull(userId).stream()
+                .map(CalendarEventDTO::of)
+                .toList();
     }
 
+    /**
+     * Rows changed since {@code token}, with ids deleted since then. A token
+     * of 0, one from before purged tombstones, or one this server never
+     * issued returns every live event with reset set.
+     */
+    @Transactional(readOnly = true)
+    public CalendarSyncDTO changesSince(String userId, long token) {
+        SyncState state = syncState(userId);
+        long version = state.version();
+        if (token <= 0 || token < state.minToken() || token > version) {
+            List<CalendarEventDTO> all = repository.findByUserIdAndDeletedAtIsNull(userId).stream()
+                    .map(CalendarEventDTO::of)
+                    .toList();
+            return CalendarSyncDTO.builder().syncToken(version).reset(true).events(all).deleted(List.of()).build();
+        }
+
+        List<CalendarEventDTO> changed = new ArrayList<>();
+        List<Long> deleted = new ArrayList<>();
+        long latest = version;
+        for (CalendarEvent event : repository.findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(userId, token)) {
+            if (event.getDeletedAt() != null) {
+                deleted.add(event.getId());
+            } else {
+                changed.add(CalendarEventDTO.of(event));
+            }
+            // Writes of one user commit in version order, so every version up to this row is visible
+            latest = Math.max(latest, event.getChangeSeq());
+        }
+        return CalendarSyncDTO.builder().syncToken(latest).reset(false).events(changed).deleted(deleted).build();
+    }
+
+    @Transactional
     public CalendarEvent createEvent(String userId, CalendarEvent event) {
+        event.setId(null);
         event.setUserId(userId);
+        event.setDeletedAt(null);
+        event.setRecurrenceUntil(seriesUntil(event));
+        event.setChangeSeq(bump(userId));
         return repository.save(event);
     }
 
+    @Transactional
     public CalendarEvent updateEvent(String userId, Long eventId, CalendarEvent updatedEvent) {
         CalendarEvent event = repository.findById(eventId)
+                .filter(e -> e.getDeletedAt() == null)
                 .orElseThrow(() -> new RuntimeException("Event not found"));
 
         if (!event.getUserId().equals(userId)) {
@@ -47,18 +199,69 @@ public class CalendarService {
         event.setStatus(updatedEvent.getStatus());
         event.setGroupId(updatedEvent.getGroupId());
         event.setStreakCount(updatedEvent.getStreakCount());
+        event.setRecurrenceUntil(seriesUntil(event));
+        event.setChangeSeq(bump(userId));
 
         return repository.save(event);
     }
 
+    @Transactional
     public void deleteEvent(String userId, Long eventId) {
         CalendarEvent event = repository.findById(eventId)
+                .filter(e -> e.getDeletedAt() == null)
                 .orElseThrow(() -> new RuntimeException("Event not found"));
 
         if (!event.getUserId().equals(userId)) {
             throw new RuntimeException("Unauthorized");
         }
 
-        repository.delete(event);
+        // Kept as a tombstone so sync clients learn about the delete
+        event.setDeletedAt(Instant.now());
+        event.setChangeSeq(bump(userId));
+        repository.save(event);
+    }
+
+    /** Drops tombstones past retention; older sync tokens then get a full reset. */
+    @Scheduled(fixedDelayString = "${calendar.sync.purge-interval-ms:3600000}")
+    public void purgeTombstones() {
+        try {
+            jdbcTemplate.update(PURGE_SQL, tombstoneDays);
+        } catch (Exception e) {
+            log.warn("Purging calendar tombstones failed: {}", e.getMessage());
+        }
+    }
+
+    // Validates the rule and returns the end of the last occurrence (null: open-ended or one-off)
+    private static Instant seriesUntil(CalendarEvent event) {
+        String rrule = event.getRecurrenceRule();
+        if (rrule == null || rrule.isBlank()) {
+            event.setRecurrenceRule(null);
+            return null;
+        }
+        if (event.getStartTime() == null) {
+            throw new IllegalArgumentException("Recurring events need a start time");
+        }
+        Instant lastStart = RecurrenceRule.parse(rrule).lastStart(event.getStartTime(), ZoneOffset.UTC);
+        return lastStart == null ? null : lastStart.plus(length(event)).plus(SERIES_SLACK);
+    }
+
+    private static Duration length(CalendarEvent event) {
+        if (event.getStartTime() == null || event.getEndTime() == null
+                || event.getEndTime().isBefore(event.getStartTime())) {
+            return Duration.ZERO;
+        }
+        return Duration.between(event.getStartTime(), event.getEndTime());
+    }
+
+    // Next sync version for the user; the row lock orders concurrent writers until commit
+    private long bump(String userId) {
+        return jdbcTemplate.queryForObject(BUMP_SQL, Long.class, userId);
+    }
+
+    private SyncState syncState(String userId) {
+        List<SyncState> rows = jdbcTemplate.query(
+                "SELECT version, min_token FROM calendar_sync_versions WHERE user_id = ?",
+                (rs, i) -> new SyncState(rs.getLong("version"), rs.getLong("min_token")), userId);
+        return rows.isEmpty() ? new SyncState(0, 0) : rows.get(0);
     }
 }
@@ -0,0 +1,300 @@
+package com.muse.notes.calendar.util;
+
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+
+/**
+ * The subset of RFC 5545 RRULE the calendar supports: FREQ (DAILY, WEEKLY,
+ * MONTHLY, YEARLY), INTERVAL, COUNT, UNTIL, BYDAY for weekly rules and
+ * BYMONTHDAY for monthly rules. Occurrences keep the series' wall-clock time
+ * in the zone they are expanded in; dates a month or year does not have
+ * (the 31st, 29 February) are skipped, as the RFC specifies. The series
+ * start is always the first occurrence, even when BYDAY or BYMONTHDAY would
+ * not produce it.
+ */
+public final class RecurrenceRule {
+
+    // Guards against rules that would never reach the window (e.g. BYMONTHDAY=31 every 12 months from April)
+    private static final int MAX_PERIODS = 50_000;
+
+    private static final DateTimeFormatter UNTIL_UTC = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final DateTimeFormatter UNTIL_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private record Expansion(List<Instant> starts, boolean exhausted) {
+    }
+
+    private enum Freq {
+        DAILY(ChronoUnit.DAYS), WEEKLY(ChronoUnit.WEEKS), MONTHLY(ChronoUnit.MONTHS), YEARLY(ChronoUnit.YEARS);
+
+        private final ChronoUnit unit;
+
+        Freq(ChronoUnit unit) {
+            this.unit = unit;
+        }
+    }
+
+    private final Freq freq;
+    private final int interval;
+    private final Integer count;
+    private final Instant until;
+    private final TreeSet<DayOfWeek> byDay = new TreeSet<>();
+    private final TreeSet<Integer> byMonthDay = new TreeSet<>();
+
+    private RecurrenceRule(String rule) {
+        Freq parsedFreq = null;
+        int parsedInterval = 1;
+        Integer parsedCount = null;
+        Instant parsedUntil = null;
+        String body = rule.trim();
+        if (body.regionMatches(true, 0, "RRULE:", 0, 6))
+            body = body.substring(6);
+        for (String part : body.split(";")) {
+            if (part.isBlank())
+                continue;
+            int eq = part.indexOf('=');
+            if (eq <= 0)
+                throw new IllegalArgumentException("Malformed recurrence rule part: " + part);
+            String key = part.substring(0, eq).trim().toUpperCase(Locale.ROOT);
+            String value = part.substring(eq + 1).trim().toUpperCase(Locale.ROOT);
+            try {
+                switch (key) {
+                    case "FREQ" -> parsedFreq = Freq.valueOf(value);
+                    case "INTERVAL" -> parsedInterval = Integer.parseInt(value);
+                    case "COUNT" -> parsedCount = Integer.parseInt(value);
+                    case "UNTIL" -> parsedUntil = parseUntil(value);
+                    case "BYDAY" -> {
+                        for (String day : value.split(","))
+                            byDay.add(parseDay(day));
+                    }
+                    case "BYMONTHDAY" -> {
+                        for (String day : value.split(","))
+                            byMonthDay.add(Integer.parseInt(day));
+                    }
+                    case "WKST" -> {
+                        if (!"MO".equals(value))
+                            throw new IllegalArgumentException("Only WKST=MO is supported");
+                    }
+                    default -> throw new IllegalArgumentException("Unsupported recurrence rule part: " + key);
+                }
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Malformed recurrence rule part: " + part);
+            }
+        }
+        if (parsedFreq == null)
+            throw new IllegalArgumentException("Recurrence rule needs FREQ");
+        if (parsedInterval < 1 || (parsedCount != null && parsedCount < 1))
+            throw new IllegalArgumentException("INTERVAL and COUNT must be positive");
+        if (parsedCount != null && parsedUntil != null)
+            throw new IllegalArgumentException("COUNT and UNTIL cannot both be set");
+        if (!byDay.isEmpty() && parsedFreq != Freq.WEEKLY)
+            throw new IllegalArgumentException("BYDAY is supported for weekly rules only");
+        if (!byMonthDay.isEmpty() && parsedFreq != Freq.MONTHLY)
+            throw new IllegalArgumentException("BYMONTHDAY is supported for monthly rules only");
+        for (int day : byMonthDay) {
+            if (day == 0 || day < -31 || day > 31)
+                throw new IllegalArgumentException("BYMONTHDAY out of range: " + day);
+        }
+        this.freq = parsedFreq;
+        this.interval = parsedInterval;
+        this.count = parsedCount;
+        this.until = parsedUntil;
+    }
+
+    /** Parses a rule, with or without the "RRULE:" prefix. */
+    public static RecurrenceRule parse(String rule) {
+        if (rule == null || rule.isBlank())
+            throw new IllegalArgumentException("Empty recurrence rule");
+        return new RecurrenceRule(rule);
+    }
+
+    /**
+     * Start of the series' last occurrence, or null when the series does not
+     * end or its end is too far out to find; an open end is safe, a cut-short
+     * one would hide occurrences.
+     */
+    public Instant lastStart(Instant seriesStart, ZoneId zone) {
+        if (count == null && until == null)
+            return null;
+        try {
+            if (byDay.isEmpty() && byMonthDay.isEmpty() && regular(seriesStart.atZone(zone).toLocalDate()))
+                return lastRegularStart(seriesStart, zone);
+            Expansion all = expand(seriesStart, zone, null, null);
+            if (all.exhausted())
+                return null;
+            return all.starts().isEmpty() ? seriesStart : all.starts().get(all.starts().size() - 1);
+        } catch (DateTimeException | ArithmeticException e) {
+            return null;
+        }
+    }
+
+    // Without BY* parts every period holds one occurrence, unless its day is one a month or year can lack
+    private boolean regular(LocalDate firstDate) {
+        return switch (freq) {
+            case DAILY, WEEKLY -> true;
+            case MONTHLY -> firstDate.getDayOfMonth() <= 28;
+            case YEARLY -> firstDate.getMonthValue() != 2 || firstDate.getDayOfMonth() != 29;
+        };
+    }
+
+    // The k-th occurrence is the start moved k intervals, so the last one is computed instead of walked to
+    private Instant lastRegularStart(Instant seriesStart, ZoneId zone) {
+        LocalDateTime first = seriesStart.atZone(zone).toLocalDateTime();
+        if (count != null)
+            return nth(first, count - 1L, zone);
+        if (seriesStart.isAfter(until))
+            return seriesStart;
+        long k = freq.unit.between(first.toLocalDate(), until.atZone(zone).toLocalDate()) / interval;
+        while (k > 0 && nth(first, k, zone).isAfter(until))
+            k--;
+        while (!nth(first, k + 1, zone).isAfter(until))
+            k++;
+        return nth(first, k, zone);
+    }
+
+    private Instant nth(LocalDateTime first, long k, ZoneId zone) {
+        return first.plus(Math.multiplyExact(k, interval), freq.unit).atZone(zone).toInstant();
+    }
+
+    /**
+     * Starts of the occurrences that overlap [from, to), given each lasts
+     * {@code length}, at most {@code max} of them.
+     */
+    public List<Instant> occurrences(Instant seriesStart, Duration length, ZoneId zone, Instant from, Instant to,
+            int max) {
+        List<Instant> starts = new ArrayList<>();
+        for (Instant start : expand(seriesStart, zone, from.minus(length), to).starts()) {
+            Instant end = start.plus(length);
+            if (start.isBefore(to) && (end.isAfter(from) || !start.isBefore(from))) {
+                starts.add(start);
+                if (starts.size() >= max)
+                    break;
+            }
+        }
+        return starts;
+    }
+
+    // Occurrence starts from the series start, stopping at COUNT, UNTIL or
+    // past notAfter; with neither COUNT nor a lower bound the walk skips the
+    // periods that end before notBefore. Exhausted when MAX_PERIODS ran out first.
+    private Expansion expand(Instant seriesStart, ZoneId zone, Instant notBefore, Instant notAfter) {
+        ZonedDateTime first = seriesStart.atZone(zone);
+        LocalDate firstDate = first.toLocalDate();
+        LocalTime time = first.toLocalTime();
+        // Periods start on a Monday, the 1st of a month, or the series' first day
+        LocalDate anchor = switch (freq) {
+            case WEEKLY -> firstDate.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTHLY -> firstDate.withDayOfMonth(1);
+            default -> firstDate;
+        };
+
+        long period = 0;
+        if (count == null && notBefore != null) {
+            LocalDate target = notBefore.atZone(zone).toLocalDate();
+            long units = freq.unit.between(anchor, target);
+            period = Math.max(0, units / interval - 1);
+        }
+
+        List<Instant> starts = new ArrayList<>();
+        Expansion done = new Expansion(starts, false);
+        // The series start comes first and counts toward COUNT whether or not the rule matches it
+        if ((until != null && seriesStart.isAfter(until)) || (notAfter != null && !seriesStart.isBefore(notAfter)))
+            return done;
+        if (notBefore == null || !seriesStart.isBefore(notBefore))
+            starts.add(seriesStart);
+        int emitted = 1;
+        if (count != null && emitted >= count)
+            return done;
+        for (int guard = 0; guard < MAX_PERIODS; guard++, period++) {
+            LocalDate base = anchor.plus(period * interval, freq.unit);
+            if (notAfter != null && base.atStartOfDay(zone).toInstant().isAfter(notAfter))
+                return done;
+            for (LocalDate date : datesIn(base, firstDate)) {
+                if (!date.isAfter(firstDate))
+                    continue;
+                Instant start = LocalDateTime.of(date, time).atZone(zone).toInstant();
+                if (until != null && start.isAfter(until))
+                    return done;
+                if (notAfter != null && !start.isBefore(notAfter))
+                    return done;
+                if (notBefore == null || !start.isBefore(notBefore))
+                    starts.add(start);
+                emitted++;
+                if (count != null && emitted >= count)
+                    return done;
+            }
+        }
+        return new Expansion(starts, true);
+    }
+
+    // Candidate dates of one period, in order
+    private List<LocalDate> datesIn(LocalDate base, LocalDate firstDate) {
+        List<LocalDate> dates = new ArrayList<>();
+        switch (freq) {
+            case DAILY -> dates.add(base);
+            case WEEKLY -> {
+                if (byDay.isEmpty()) {
+                    dates.add(base.with(TemporalAdjusters.nextOrSame(firstDate.getDayOfWeek())));
+                } else {
+                    for (DayOfWeek day : byDay)
+                        dates.add(base.with(TemporalAdjusters.nextOrSame(day)));
+                }
+            }
+            case MONTHLY -> {
+                int length = base.lengthOfMonth();
+                TreeSet<Integer> days = new TreeSet<>();
+                if (byMonthDay.isEmpty()) {
+                    days.add(firstDate.getDayOfMonth());
+                } else {
+                    for (int day : byMonthDay)
+                        days.add(day > 0 ? day : length + day + 1);
+                }
+                for (int day : days) {
+                    if (day >= 1 && day <= length)
+                        dates.add(base.withDayOfMonth(day));
+                }
+            }
+            case YEARLY -> {
+                if (firstDate.getMonthValue() != 2 || firstDate.getDayOfMonth() != 29 || base.isLeapYear())
+                    dates.add(LocalDate.of(base.getYear(), firstDate.getMonth(), firstDate.getDayOfMonth()));
+            }
+        }
+        return dates;
+    }
+
+    private static Instant parseUntil(String value) {
+        if (value.endsWith("Z"))
+            return LocalDateTime.parse(value, UNTIL_UTC).toInstant(ZoneOffset.UTC);
+        if (value.length() == 8)
+            return LocalDate.parse(value, UNTIL_DATE).atTime(LocalTime.MAX).toInstant(ZoneOffset.UTC);
+        return LocalDateTime.parse(value + "Z", UNTIL_UTC).toInstant(ZoneOffset.UTC);
+    }
+
+    private static DayOfWeek parseDay(String day) {
+        return switch (day.trim()) {
+            case "MO" -> DayOfWeek.MONDAY;
+            case "TU" -> DayOfWeek.TUESDAY;
+            case "WE" -> DayOfWeek.WEDNESDAY;
+            case "TH" -> DayOfWeek.THURSDAY;
+            case "FR" -> DayOfWeek.FRIDAY;
+            case "SA" -> DayOfWeek.SATURDAY;
+            case "SU" -> DayOfWeek.SUNDAY;
+            default -> throw new IllegalArgumentException("Unsupported BYDAY value: " + day);
+        };
+    }
+}
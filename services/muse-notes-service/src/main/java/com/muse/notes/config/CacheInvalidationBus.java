@@ -0,0 +1,71 @@
+package com.muse.notes.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Redis pub/sub channel used to tell every replica to drop in-process cache
+ * entries. Messages are "origin|cacheName|key"; a key of "*" clears the whole
+ * cache. Messages published by this instance are ignored on receipt.
+ */
+@Component
+@Slf4j
+public class CacheInvalidationBus implements MessageListener {
+
+    public static final String CHANNEL = "notes.cache.invalidation";
+    public static final String ALL_KEYS = "*";
+
+    private final StringRedisTemplate redisTemplate;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Map<String, List<Consumer<String>>> handlers = new ConcurrentHashMap<>();
+
+    public CacheInvalidationBus(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    public void subscribe(String cacheName, Consumer<String> handler) {
+        handlers.computeIfAbsent(cacheName, name -> new CopyOnWriteArrayList<>()).add(handler);
+    }
+
+    public void publish(String cacheName, Object key) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, instanceId + "|" + cacheName + "|" + key);
+        } catch (Exception e) {
+            log.warn("Failed to publish cache invalidation for {}::{}: {}", cacheName, key, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        // Strip surrounding quotes in case a JSON serializer was used by the sender
+        if (body.length() > 1 && body.startsWith("\"") && body.endsWith("\"")) {
+            body = body.substring(1, body.length() - 1);
+        }
+        String[] parts = body.split("\\|", 3);
+        if (parts.length != 3 || instanceId.equals(parts[0]))
+            return;
+
+        List<Consumer<String>> cacheHandlers = handlers.get(parts[1]);
+        if (cacheHandlers == null)
+            return;
+        for (Consumer<String> handler : cacheHandlers) {
+            try {
+                handler.accept(parts[2]);
+            } catch (Exception e) {
+                log.warn("Cache invalidation handler failed for {}::{}", parts[1], parts[2], e);
+            }
+        }
+    }
+}
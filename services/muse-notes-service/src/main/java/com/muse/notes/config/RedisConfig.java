@@ -1,5 +1,16 @@
 package com.muse.notes.config;
 
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.muse.notes.dto.NoteLinkDto;
+import com.muse.notes.entity.Note;
+import com.muse.notes.entity.NoteLink;
+import com.muse.notes.journal.entity.JournalEntry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
@@ -8,11 +19,17 @@ import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 
 @Configuration
 @EnableCaching
@@ -29,24 +46,85 @@ public class RedisConfig {
         return template;
     }
 
+    /**
+     * Two-tier cache: Caffeine near cache per replica in front of Redis, with
+     * cross-replica invalidation over {@link CacheInvalidationBus}. Redis values
+     * are stored as Smile (binary JSON) to keep payloads and parse time down.
+     * Each known cache has a serializer for its exact value type, so no type
+     * ids are written or trusted; other caches fall back to type ids limited
+     * to this service's own classes.
+     */
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory connectionFactory) {
+    public CacheManager cacheManager(RedisConnectionFactory connectionFactory,
+            CacheInvalidationBus cacheInvalidationBus,
+            @Value("${notes.cache.local.max-weight-bytes:67108864}") long localMaxWeight,
+            @Value("${notes.cache.local.ttl-seconds:60}") long localTtlSeconds) {
+        ObjectMapper smileMapper = smileMapper();
+        TypeFactory types = smileMapper.getTypeFactory();
         RedisCacheConfiguration defaultConfig = RedisCacheConfiguration.defaultCacheConfig()
                 .entryTtl(Duration.ofMinutes(5))
                 .serializeKeysWith(
                         RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
                 .serializeValuesWith(RedisSerializationContext.SerializationPair
-                        .fromSerializer(new GenericJackson2JsonRedisSerializer()))
+                        .fromSerializer(fallbackCacheSerializer()))
                 .disableCachingNullValues();
 
-        return RedisCacheManager.builder(connectionFactory)
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
                 .cacheDefaults(defaultConfig)
-                .withCacheConfiguration("notes",
-                        RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofMinutes(5)))
-                .withCacheConfiguration("notebooks",
-                        RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofMinutes(10)))
-                .withCacheConfiguration("sections",
-                        RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofMinutes(10)))
+                .withCacheConfiguration("notes", typed(defaultConfig, smileMapper,
+                        types.constructType(Note.class)).entryTtl(Duration.ofMinutes(5)))
+                .withCacheConfiguration("note_backlinks", typed(defaultConfig, smileMapper,
+                        types.constructCollectionType(List.class, NoteLink.class)).entryTtl(Duration.ofMinutes(5)))
+                .withCacheConfiguration("note_links_all", typed(defaultConfig, smileMapper,
+                        types.constructMapType(Map.class, types.constructType(String.class),
+                                types.constructCollectionType(List.class, NoteLinkDto.class)))
+                        .entryTtl(Duration.ofMinutes(5)))
+                .withCacheConfiguration("journal_entries", typed(defaultConfig, smileMapper,
+                        types.constructType(JournalEntry.class)))
+                .withCacheConfiguration("journal_months", typed(defaultConfig, smileMapper,
+                        types.constructCollectionType(List.class, JournalEntry.class)))
+                .withCacheConfiguration("notebooks", defaultConfig.entryTtl(Duration.ofMinutes(10)))
+                .withCacheConfiguration("sections", defaultConfig.entryTtl(Duration.ofMinutes(10)))
                 .build();
+        redisCacheManager.afterPropertiesSet();
+
+        return new TwoTierCacheManager(redisCacheManager, cacheInvalidationBus, localMaxWeight,
+                Duration.ofSeconds(localTtlSeconds));
+    }
+
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory connectionFactory,
+            CacheInvalidationBus cacheInvalidationBus) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(cacheInvalidationBus, new ChannelTopic(CacheInvalidationBus.CHANNEL));
+        return container;
+    }
+
+    private static ObjectMapper smileMapper() {
+        ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+        smileMapper.findAndRegisterModules();
+        return smileMapper;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RedisCacheConfiguration typed(RedisCacheConfiguration config, ObjectMapper mapper, JavaType type) {
+        RedisSerializer<Object> serializer = (RedisSerializer<Object>) (RedisSerializer<?>)
+                new Jackson2JsonRedisSerializer<>(mapper, type);
+        return config.serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(serializer));
+    }
+
+    private static RedisSerializer<Object> fallbackCacheSerializer() {
+        ObjectMapper smileMapper = smileMapper();
+        GenericJackson2JsonRedisSerializer.registerNullValueSerializer(smileMapper, null);
+        BasicPolymorphicTypeValidator validator = BasicPolymorphicTypeValidator.builder()
+                .allowIfSubType("com.muse.notes.dto.")
+                .allowIfSubType("com.muse.notes.entity.")
+                .allowIfSubType("com.muse.notes.journal.entity.")
+                .allowIfSubType("java.util.")
+                .allowIfSubType("java.time.")
+                .build();
+        smileMapper.activateDefaultTyping(validator, ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+        return new GenericJackson2JsonRedisSerializer(smileMapper);
     }
 }
@@ -0,0 +1,170 @@
+package com.muse.notes.config;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Near cache: an in-process Caffeine tier in front of a Redis cache.
+ *
+ * Reads hit the local tier first and fill it from Redis on a miss. Evictions
+ * and clears go to both tiers and are broadcast on the
+ * {@link CacheInvalidationBus} so other replicas drop their local copies.
+ *
+ * The local tier holds the same serialized bytes as Redis and every hit is
+ * deserialized into a fresh instance, so callers never share mutable state
+ * or a managed entity. A fill only lands if no invalidation of its key stripe
+ * happened since the remote read started; otherwise a stale value read just
+ * before an eviction could be put back until the local TTL.
+ */
+public class TwoTierCache implements Cache {
+
+    private static final int STRIPES = 64;
+
+    private final String name;
+    private final Cache remote;
+    private final com.github.benmanes.caffeine.cache.Cache<String, byte[]> local;
+    private final RedisSerializationContext.SerializationPair<Object> values;
+    private final CacheInvalidationBus bus;
+    // Bumped before every local invalidation; a fill compares it with the value seen before its remote read
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+
+    public TwoTierCache(String name, Cache remote, com.github.benmanes.caffeine.cache.Cache<String, byte[]> local,
+            RedisSerializationContext.SerializationPair<Object> values, CacheInvalidationBus bus) {
+        this.name = name;
+        this.remote = remote;
+        this.local = local;
+        this.values = values;
+        this.bus = bus;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String localKey = String.valueOf(key);
+        byte[] bytes = local.getIfPresent(localKey);
+        if (bytes != null) {
+            return new SimpleValueWrapper(values.read(ByteBuffer.wrap(bytes)));
+        }
+        long generation = generation(localKey);
+        ValueWrapper wrapper = remote.get(key);
+        if (wrapper != null && wrapper.get() != null) {
+            fill(localKey, generation, wrapper.get());
+        }
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException(
+                    "Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        String localKey = String.valueOf(key);
+        long generation = generation(localKey);
+        T value = remote.get(key, valueLoader);
+        if (value != null) {
+            fill(localKey, generation, value);
+        }
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null) {
+            // Null values are not cached (e.g. an empty Optional); just drop stale entries
+            evict(key);
+            return;
+        }
+        remote.put(key, value);
+        String localKey = String.valueOf(key);
+        invalidateLocal(localKey);
+        local.put(localKey, serialize(value));
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        invalidateLocal(String.valueOf(key));
+        bus.publish(name, key);
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        invalidateAllLocal();
+        bus.publish(name, CacheInvalidationBus.ALL_KEYS);
+    }
+
+    /**
+     * Drops a key from the local tier only (invalidation received from another
+     * replica).
+     */
+    void evictLocal(String key) {
+        if (CacheInvalidationBus.ALL_KEYS.equals(key)) {
+            invalidateAllLocal();
+        } else {
+            invalidateLocal(key);
+        }
+    }
+
+    // The check runs under the entry lock, which an invalidation of the same key waits for
+    private void fill(String localKey, long generation, Object value) {
+        byte[] bytes = serialize(value);
+        local.asMap().compute(localKey,
+                (k, current) -> generation(localKey) == generation ? bytes : current);
+    }
+
+    private void invalidateLocal(String localKey) {
+        generations.incrementAndGet(stripe(localKey));
+        local.invalidate(localKey);
+    }
+
+    private void invalidateAllLocal() {
+        for (int i = 0; i < STRIPES; i++) {
+            generations.incrementAndGet(i);
+        }
+        local.invalidateAll();
+    }
+
+    private long generation(String localKey) {
+        return generations.get(stripe(localKey));
+    }
+
+    private static int stripe(String localKey) {
+        return (localKey.hashCode() & 0x7fffffff) % STRIPES;
+    }
+
+    private byte[] serialize(Object value) {
+        ByteBuffer buffer = values.write(value);
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
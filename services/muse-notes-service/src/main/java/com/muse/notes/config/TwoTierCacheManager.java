@@ -0,0 +1,70 @@
+package com.muse.notes.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Weigher;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wraps the Redis cache manager so every cache gets a Caffeine near-cache
+ * tier. The local tiers share one weight budget per cache and a short TTL, so
+ * a lost invalidation message can only leave an entry stale for that long.
+ */
+public class TwoTierCacheManager implements CacheManager {
+
+    private final CacheManager remoteManager;
+    private final CacheInvalidationBus bus;
+    private final long maxWeightPerCache;
+    private final Duration localTtl;
+    private final Map<String, TwoTierCache> caches = new ConcurrentHashMap<>();
+
+    public TwoTierCacheManager(CacheManager remoteManager, CacheInvalidationBus bus, long maxWeightPerCache,
+            Duration localTtl) {
+        this.remoteManager = remoteManager;
+        this.bus = bus;
+        this.maxWeightPerCache = maxWeightPerCache;
+        this.localTtl = localTtl;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        TwoTierCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache remote = remoteManager.getCache(name);
+        if (!(remote instanceof RedisCache redisCache)) {
+            return remote;
+        }
+        return caches.computeIfAbsent(name, cacheName -> {
+            @SuppressWarnings("unchecked")
+            RedisSerializationContext.SerializationPair<Object> values =
+                    (RedisSerializationContext.SerializationPair<Object>) redisCache.getCacheConfiguration()
+                            .getValueSerializationPair();
+            TwoTierCache created = new TwoTierCache(cacheName, remote,
+                    Caffeine.newBuilder()
+                            .maximumWeight(maxWeightPerCache)
+                            .weigher(ENTRY_WEIGHER)
+                            .expireAfterWrite(localTtl)
+                            .build(),
+                    values, bus);
+            bus.subscribe(cacheName, created::evictLocal);
+            return created;
+        });
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return remoteManager.getCacheNames();
+    }
+
+    /** Local entries are the serialized Redis values, so their size is exact. */
+    static final Weigher<String, byte[]> ENTRY_WEIGHER = (key, value) -> 64 + key.length() + value.length;
+}
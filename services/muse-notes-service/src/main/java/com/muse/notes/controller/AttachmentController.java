@@ -3,20 +3,45 @@ package com.muse.notes.controller;
 import com.muse.notes.entity.Attachment;
 import com.muse.notes.repository.AttachmentRepository;
 import com.muse.notes.service.StorageService;
-import org.springframework.core.io.Resource;
+import com.muse.notes.service.StoredBlob;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/notes/attachments")
 public class AttachmentController extends BaseController {
 
+    // Tomcat serves the file itself (sendfile) when these request attributes are set
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // Attachment content never changes for a given id
+    private static final CacheControl CACHE_CONTROL = CacheControl.maxAge(Duration.ofDays(365)).cachePrivate();
+
     private final StorageService storageService;
     private final AttachmentRepository attachmentRepository;
 
@@ -25,7 +50,7 @@ public class AttachmentController extends BaseController {
         this.attachmentRepository = attachmentRepository;
     }
 
-    @PostMapping("/upload")
+    @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<?> uploadFile(@RequestParam("file") MultipartFile file, Authentication auth) {
         String username = currentUsername(auth);
         Long userId = currentUserId(auth);
@@ -33,40 +58,163 @@ public class AttachmentController extends BaseController {
             return ResponseEntity.status(401).body(Map.of("message", "Not authenticated"));
         }
 
-        String storageFilename = storageService.store(file);
+        StoredBlob blob = storageService.store(file);
+        Attachment attachment = saveAttachment(userId, username, file.getOriginalFilename(), file.getContentType(),
+                blob);
+
+        return ResponseEntity.ok(Map.of("id", attachment.getId(), "filename", attachment.getOriginalFilename()));
+    }
 
+    // Raw-body upload for large files: the body is hashed and written to storage as it arrives
+    @PostMapping(value = "/upload", consumes = "!" + MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> uploadStream(@RequestParam("filename") String filename,
+            @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+            InputStream body,
+            Authentication auth) {
+        String username = currentUsername(auth);
+        Long userId = currentUserId(auth);
+        if (userId == null) {
+            return ResponseEntity.status(401).body(Map.of("message", "Not authenticated"));
+        }
+        if (filename.isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "filename is required"));
+        }
+
+        StoredBlob blob = storageService.store(body, filename);
+        if (blob.size() == 0) {
+            storageService.release(blob.key());
+            return ResponseEntity.badRequest().body(Map.of("message", "Failed to store empty file."));
+        }
+        Attachment attachment = saveAttachment(userId, username, filename, contentType, blob);
+
+        return ResponseEntity.ok(Map.of("id", attachment.getId(), "filename", attachment.getOriginalFilename()));
+    }
+
+    private Attachment saveAttachment(Long userId, String username, String filename, String contentType,
+            StoredBlob blob) {
         Attachment attachment = Attachment.builder()
                 .userId(userId)
                 .ownerUsername(username)
-                .originalFilename(file.getOriginalFilename())
-                .storageFilename(storageFilename)
-                .contentType(file.getContentType())
-                .size(file.getSize())
+                .originalFilename(filename)
+                .storageFilename(blob.key())
+                .contentType(contentType != null ? contentType : MediaType.APPLICATION_OCTET_STREAM_VALUE)
+                .size(blob.size())
                 .build();
+        try {
+            return attachmentRepository.save(attachment);
+        } catch (RuntimeException e) {
+            storageService.release(blob.key());
+            throw e;
+        }
+    }
 
-        attachmentRepository.save(attachment);
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> deleteFile(@PathVariable UUID id, Authentication auth) {
+        Long userId = currentUserId(auth);
+        if (userId == null) {
+            return ResponseEntity.status(401).body(Map.of("message", "Not authenticated"));
+        }
 
-        return ResponseEntity.ok(Map.of("id", attachment.getId(), "filename", attachment.getOriginalFilename()));
+        Optional<Attachment> found = attachmentRepository.findById(id);
+        if (found.isEmpty()) {
+            return ResponseEntity.status(404).body(Map.of("message", "Attachment not found"));
+        }
+        Attachment attachment = found.get();
+        if (!userId.equals(attachment.getUserId())) {
+            return ResponseEntity.status(403).body(Map.of("message", "Access denied"));
+        }
+        attachmentRepository.delete(attachment);
+        storageService.release(attachment.getStorageFilename());
+        return ResponseEntity.noContent().build();
     }
 
+    /**
+     * Serves an attachment with a strong ETag, conditional GET and single byte
+     * ranges (video seeking, resumed downloads). Local blobs go out through
+     * sendfile when the connector supports it, otherwise via FileChannel.transferTo.
+     */
     @GetMapping("/{id}")
-    @ResponseBody
-    public ResponseEntity<Resource> serveFile(@PathVariable UUID id, Authentication auth) {
-        String username = currentUsername(auth);
+    public void serveFile(@PathVariable UUID id, Authentication auth,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
         Long userId = currentUserId(auth);
         if (userId == null) {
-            return ResponseEntity.status(401).build();
-        }
-
-        return attachmentRepository.findById(id)
-                .map(attachment -> {
-                    if (attachment.getUserId() != null && !attachment.getUserId().equals(userId)) {
-                        return ResponseEntity.status(403).<Resource>build();
-                    }
-                    Resource file = storageService.loadAsResource(attachment.getStorageFilename());
-                    return ResponseEntity.ok().header(HttpHeaders.CONTENT_DISPOSITION,
-                            "attachment; filename=\"" + attachment.getOriginalFilename() + "\"").body(file);
-                })
-                .orElse(ResponseEntity.notFound().build());
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+            return;
+        }
+
+        Optional<Attachment> found = attachmentRepository.findById(id);
+        if (found.isEmpty()) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        Attachment attachment = found.get();
+        if (attachment.getUserId() != null && !attachment.getUserId().equals(userId)) {
+            response.setStatus(HttpStatus.FORBIDDEN.value());
+            return;
+        }
+
+        String key = attachment.getStorageFilename();
+        String etag = "\"" + key + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL.getHeaderValue());
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return;
+        }
+
+        long size = attachment.getSize();
+        long start = 0;
+        long end = size - 1;
+        boolean partial = false;
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (rangeHeader != null && (ifRange == null || ifRange.equals(etag))) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+            // Multiple ranges are answered with the whole file, which the spec allows
+            if (ranges.size() == 1) {
+                try {
+                    start = ranges.get(0).getRangeStart(size);
+                    end = ranges.get(0).getRangeEnd(size);
+                } catch (IllegalArgumentException e) {
+                    start = size;
+                }
+                if (start >= size || start > end) {
+                    response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                    return;
+                }
+                partial = true;
+            }
+        }
+
+        long length = size == 0 ? 0 : end - start + 1;
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(attachment.getContentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(attachment.getOriginalFilename(), StandardCharsets.UTF_8)
+                .build()
+                .toString());
+        response.setContentLengthLong(length);
+        if (partial) {
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+        }
+
+        if ("HEAD".equals(request.getMethod()) || length == 0) {
+            return;
+        }
+
+        Optional<Path> localFile = storageService.localFile(key);
+        if (localFile.isPresent() && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, localFile.get().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + length);
+            return;
+        }
+        storageService.transferTo(key, start, length, Channels.newChannel(response.getOutputStream()));
     }
 }
@@ -1,25 +1,16 @@
 package com.muse.notes.controller;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.muse.notes.dto.LabPersistentSaveRequest;
-import com.muse.notes.entity.Note;
-import com.muse.notes.entity.Notebook;
-import com.muse.notes.entity.Section;
-import com.muse.notes.service.NoteService;
-import com.muse.notes.service.NotebookService;
-import com.muse.notes.service.SectionService;
+import com.muse.notes.service.LabSessionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Optional;
-import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Controller for Lab Persistent Save feature.
@@ -31,18 +22,17 @@ import java.util.Map;
 @Slf4j
 public class LabPersistentSaveController extends BaseController {
 
-        private final NotebookService notebookService;
-        private final SectionService sectionService;
-        private final NoteService noteService;
-        private final ObjectMapper objectMapper;
+        private final LabSessionService labSessionService;
 
         /**
          * Persistent save endpoint for Lab research sessions.
-         * 
+         *
          * Auto-pathing logic:
          * 1. Find or create Notebook (e.g., "Maths Lab")
          * 2. Find or create Section (e.g., "21-12-2024")
          * 3. Create Note with equation, solution, variables, and research
+         *
+         * With a sessionId in the body, repeating the save returns the same note.
          */
         @PostMapping("/persistent-save")
         public ResponseEntity<Map<String, Object>> persistentSave(
@@ -54,194 +44,84 @@ public class LabPersistentSaveController extends BaseController {
                 if (userId == null) {
                         return ResponseEntity.status(401).body(Map.of("message", "Not authenticated"));
                 }
-                LabPersistentSaveRequest.AutoPath autoPath = request.getAutoPath();
 
-                if (autoPath == null) {
+                if (request.getAutoPath() == null) {
                         return ResponseEntity.badRequest().body(Map.of(
                                         "success", false,
                                         "error", "autoPath is required"));
                 }
 
                 try {
-                        // Step 1: Find or create Notebook
-                        String notebookName = autoPath.getNotebook() != null ? autoPath.getNotebook()
-                                        : (request.getSubject() != null ? request.getSubject() + " Lab"
-                                                        : "Research Lab");
-
-                        Notebook notebook = notebookService.findOrCreateByName(userId, username, notebookName);
-
-                        // Step 2: Find or create Section (date-based)
-                        String sectionName = autoPath.getSection() != null ? autoPath.getSection()
-                                        : java.time.LocalDate.now().format(
-                                                        java.time.format.DateTimeFormatter.ofPattern("dd-MM-yyyy"));
-
-                        Section section = sectionService.findOrCreateByName(notebook.getId(), userId, username,
-                                        sectionName);
-
-                        if (section == null) {
-                                return ResponseEntity.internalServerError().body(Map.of(
-                                                "success", false,
-                                                "error", "Failed to create section"));
-                        }
-
-                        // Step 3: Build note content
-                        String noteTitle = autoPath.getTitle() != null ? autoPath.getTitle() : "Research Session";
-
-                        ObjectNode noteContent = buildNoteContent(request);
-
-                        // Step 4: Build summary with variable snapshot (since Note doesn't have
-                        // metadata field)
-                        StringBuilder summaryBuilder = new StringBuilder();
-                        summaryBuilder.append("Lab Research Session\n");
-                        if (request.getEquation() != null) {
-                                summaryBuilder.append("Equation: ").append(request.getEquation()).append("\n");
-                        }
-                        if (request.getSolution() != null) {
-                                summaryBuilder.append("Solution: ").append(request.getSolution()).append("\n");
-                        }
-                        if (request.getVariables() != null && !request.getVariables().isEmpty()) {
-                                summaryBuilder.append("Variables: ");
-                                for (Map.Entry<String, Object> entry : request.getVariables().entrySet()) {
-                                        summaryBuilder.append(entry.getKey()).append("=").append(entry.getValue())
-                                                        .append(", ");
-                                }
-                                summaryBuilder.append("\n");
-                        }
-                        summaryBuilder.append("Source: ResearchLab");
-
-                        // Step 5: Create the note using NoteService.createInSection
-                        Optional<Note> savedNoteOpt = noteService.createInSection(
-                                        section.getId(),
-                                        userId,
-                                        username,
-                                        noteTitle,
-                                        noteContent);
-
-                        if (savedNoteOpt.isEmpty()) {
-                                return ResponseEntity.internalServerError().body(Map.of(
-                                                "success", false,
-                                                "error", "Failed to create note"));
-                        }
-
-                        Note savedNote = savedNoteOpt.get();
-
-                        // Update tags and summary separately
-                        savedNote.setTags(
-                                        new String[] { "lab-research", notebookName.toLowerCase().replace(" ", "-") });
-                        savedNote.setSummary(summaryBuilder.toString());
-
-                        // Return success response
-                        Map<String, Object> response = new HashMap<>();
-                        response.put("success", true);
-                        response.put("noteId", savedNote.getId());
-                        response.put("notebookId", notebook.getId());
-                        response.put("notebookName", notebook.getTitle());
-                        response.put("sectionId", section.getId());
-                        response.put("sectionName", section.getTitle());
-                        response.put("path", notebookName + " / " + sectionName + " / " + noteTitle);
-                        response.put("variablesCaptured",
-                                        request.getVariables() != null ? request.getVariables().size() : 0);
-
-                        return ResponseEntity.ok(response);
-
+                        return ResponseEntity.ok(labSessionService.saveAndFinish(userId, username, request));
+                } catch (IllegalArgumentException e) {
+                        return ResponseEntity.badRequest().body(Map.of(
+                                        "success", false,
+                                        "error", e.getMessage()));
                 } catch (Exception e) {
+                        log.warn("Lab persistent save failed for user {}: {}", userId, e.getMessage());
                         return ResponseEntity.internalServerError().body(Map.of(
                                         "success", false,
-                                        "error", e.getMessage()));
+                                        "error", String.valueOf(e.getMessage())));
                 }
         }
 
         /**
-         * Build TipTap-compatible note content from lab data.
+         * Appends a snapshot to a running lab session. Pass ?seq= to make
+         * retries safe; without it each call appends a new snapshot.
          */
-        private ObjectNode buildNoteContent(LabPersistentSaveRequest request) {
-                ObjectNode doc = objectMapper.createObjectNode();
-                doc.put("type", "doc");
-
-                var content = doc.putArray("content");
-
-                // Heading
-                var heading = content.addObject();
-                heading.put("type", "heading");
-                heading.putObject("attrs").put("level", 1);
-                var headingContent = heading.putArray("content");
-                headingContent.addObject()
-                                .put("type", "text")
-                                .put("text", request.getAutoPath().getTitle() != null ? request.getAutoPath().getTitle()
-                                                : "Research Session");
-
-                // Equation section
-                if (request.getEquation() != null && !request.getEquation().isBlank()) {
-                        var eqHeading = content.addObject();
-                        eqHeading.put("type", "heading");
-                        eqHeading.putObject("attrs").put("level", 2);
-                        eqHeading.putArray("content").addObject()
-                                        .put("type", "text")
-                                        .put("text", "Equation");
-
-                        var eqBlock = content.addObject();
-                        eqBlock.put("type", "paragraph");
-                        eqBlock.putArray("content").addObject()
-                                        .put("type", "text")
-                                        .put("text", "$$" + request.getEquation() + "$$");
+        @PostMapping("/sessions/{sessionId}/snapshots")
+        public ResponseEntity<Map<String, Object>> snapshot(@PathVariable String sessionId,
+                        @RequestParam(required = false) Integer seq,
+                        @RequestBody LabPersistentSaveRequest request,
+                        Authentication auth) {
+                Long userId = currentUserId(auth);
+                if (userId == null) {
+                        return ResponseEntity.status(401).body(Map.of("message", "Not authenticated"));
                 }
 
-                // Solution section
-                if (request.getSolution() != null && !request.getSolution().isBlank()) {
-                        var solHeading = content.addObject();
-                        solHeading.put("type", "heading");
-                        solHeading.putObject("attrs").put("level", 2);
-                        solHeading.putArray("content").addObject()
-                                        .put("type", "text")
-                                        .put("text", "Solution");
-
-                        var solBlock = content.addObject();
-                        solBlock.put("type", "paragraph");
-                        solBlock.putArray("content").addObject()
-                                        .put("type", "text")
-                                        .put("text", request.getSolution());
+                try {
+                        LabSessionService.SnapshotResult result = labSessionService.appendSnapshot(userId, sessionId,
+                                        seq, request);
+                        Map<String, Object> response = new HashMap<>();
+                        response.put("sessionId", result.sessionId());
+                        response.put("seq", result.seq());
+                        response.put("stored", result.stored());
+                        response.put("finished", result.finished());
+                        response.put("noteId", result.noteId());
+                        return result.finished()
+                                        ? ResponseEntity.status(409).body(response)
+                                        : ResponseEntity.ok(response);
+                } catch (IllegalArgumentException e) {
+                        return ResponseEntity.badRequest().body(Map.of(
+                                        "success", false,
+                                        "error", e.getMessage()));
                 }
+        }
 
-                // Variables section
-                if (request.getVariables() != null && !request.getVariables().isEmpty()) {
-                        var varHeading = content.addObject();
-                        varHeading.put("type", "heading");
-                        varHeading.putObject("attrs").put("level", 2);
-                        varHeading.putArray("content").addObject()
-                                        .put("type", "text")
-                                        .put("text", "Variables");
-
-                        var varList = content.addObject();
-                        varList.put("type", "bulletList");
-                        var listContent = varList.putArray("content");
-
-                        for (Map.Entry<String, Object> entry : request.getVariables().entrySet()) {
-                                var listItem = listContent.addObject();
-                                listItem.put("type", "listItem");
-                                var itemPara = listItem.putArray("content").addObject();
-                                itemPara.put("type", "paragraph");
-                                itemPara.putArray("content").addObject()
-                                                .put("type", "text")
-                                                .put("text", entry.getKey() + " = " + entry.getValue());
-                        }
+        /**
+         * Finishes a lab session: its latest snapshot becomes a note. Finishing
+         * again returns the same note.
+         */
+        @PostMapping("/sessions/{sessionId}/finish")
+        public ResponseEntity<Map<String, Object>> finish(@PathVariable String sessionId, Authentication auth) {
+                String username = currentUsername(auth);
+                Long userId = currentUserId(auth);
+                if (userId == null) {
+                        return ResponseEntity.status(401).body(Map.of("message", "Not authenticated"));
                 }
 
-                // Research results section
-                if (request.getResearchResults() != null && !request.getResearchResults().isBlank()) {
-                        var resHeading = content.addObject();
-                        resHeading.put("type", "heading");
-                        resHeading.putObject("attrs").put("level", 2);
-                        resHeading.putArray("content").addObject()
-                                        .put("type", "text")
-                                        .put("text", "Research Results");
-
-                        var resBlock = content.addObject();
-                        resBlock.put("type", "paragraph");
-                        resBlock.putArray("content").addObject()
-                                        .put("type", "text")
-                                        .put("text", request.getResearchResults());
+                try {
+                        Optional<Map<String, Object>> finished = labSessionService.finish(userId, username, sessionId);
+                        if (finished.isEmpty()) {
+                                return ResponseEntity.status(404).body(Map.of(
+                                                "success", false,
+                                                "error", "Lab session not found"));
+                        }
+                        return ResponseEntity.ok(finished.get());
+                } catch (IllegalArgumentException e) {
+                        return ResponseEntity.badRequest().body(Map.of(
+                                        "success", false,
+                                        "error", e.getMessage()));
                 }
-
-                return doc;
         }
 }
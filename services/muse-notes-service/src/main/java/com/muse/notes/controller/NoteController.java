@@ -5,15 +5,23 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.muse.notes.entity.Note;
 import com.muse.notes.entity.NoteLink;
 import com.muse.notes.dto.NoteLinkDto;
+import com.muse.notes.dto.NoteListPageDTO;
 import com.muse.notes.entity.NotePermission;
 import com.muse.notes.entity.NoteVersion;
 import com.muse.notes.entity.NoteCalendarLink;
 import com.muse.notes.entity.NoteSuggestion;
+import com.muse.notes.service.NoteAskService;
+import com.muse.notes.service.NoteGraphService;
+import com.muse.notes.service.NoteGraphSnapshot;
 import com.muse.notes.service.NoteService;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.HashMap;
@@ -27,56 +35,71 @@ import java.util.stream.Collectors;
 public class NoteController extends BaseController {
 
     private final NoteService service;
+    private final NoteGraphService graphService;
+    private final NoteAskService askService;
     private final ObjectMapper objectMapper;
     private static final int PREVIEW_LENGTH = 300;
+    private static final int MAX_GRAPH_DEPTH = 4;
+    private static final int MAX_PAGE_SIZE = 200;
 
-    public NoteController(NoteService service, ObjectMapper objectMapper) {
+    public NoteController(NoteService service, NoteGraphService graphService, NoteAskService askService,
+            ObjectMapper objectMapper) {
         this.service = service;
+        this.graphService = graphService;
+        this.askService = askService;
         this.objectMapper = objectMapper;
     }
 
+    /**
+     * Lean note list (id, title, excerpt, updatedAt, tags, isPinned).
+     * Pass ?fields=content to include content, and ?limit (+ ?cursor) for keyset
+     * pages of the form { items, nextCursor }; without a limit the full list is
+     * returned as an array.
+     */
     @GetMapping("/notes")
-    public ResponseEntity<?> list(Authentication auth) {
+    public ResponseEntity<?> list(@RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields,
+            Authentication auth) {
         String username = currentUsername(auth);
         Long userId = currentUserId(auth);
         if (userId == null) {
             return ResponseEntity.status(401).body(Map.of("message", "Not authenticated"));
         }
 
-        List<Note> notes = service.listNotes(userId);
-
-        List<Map<String, Object>> dto = notes.stream().map(n -> {
-            Map<String, Object> m = new HashMap<>();
-            m.put("id", n.getId());
-            m.put("title", n.getTitle());
-            m.put("content", n.getContent());
-            m.put("updatedAt", n.getUpdatedAt());
-            return m;
-        }).collect(Collectors.toList());
-
-        return ResponseEntity.ok(dto);
+        NoteListPageDTO page = service.listNotes(userId, cursor, clampLimit(limit), includesContent(fields));
+        return ResponseEntity.ok(limit == null ? page.getItems() : page);
     }
 
     @GetMapping("/sections/{sectionId}/notes")
-    public ResponseEntity<?> listInSection(@PathVariable Long sectionId, Authentication auth) {
+    public ResponseEntity<?> listInSection(@PathVariable Long sectionId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields,
+            Authentication auth) {
         String username = currentUsername(auth);
         Long userId = currentUserId(auth);
         if (userId == null) {
             return ResponseEntity.status(401).body(Map.of("message", "Not authenticated"));
         }
 
-        List<Note> notes = service.listNotesInSection(sectionId, userId);
+        NoteListPageDTO page = service.listNotesInSection(sectionId, userId, cursor, clampLimit(limit),
+                includesContent(fields));
+        return ResponseEntity.ok(limit == null ? page.getItems() : page);
+    }
 
-        List<Map<String, Object>> dto = notes.stream().map(n -> {
-            Map<String, Object> m = new HashMap<>();
-            m.put("id", n.getId());
-            m.put("title", n.getTitle());
-            m.put("content", n.getContent());
-            m.put("updatedAt", n.getUpdatedAt());
-            return m;
-        }).collect(Collectors.toList());
+    private static Integer clampLimit(Integer limit) {
+        return limit == null ? null : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
 
-        return ResponseEntity.ok(dto);
+    private static boolean includesContent(String fields) {
+        if (fields == null)
+            return false;
+        for (String field : fields.split(",")) {
+            if (field.trim().equalsIgnoreCase("content"))
+                return true;
+        }
+        return false;
     }
 
     @PostMapping("/notes")
@@ -327,30 +350,45 @@ public class NoteController extends BaseController {
             return Mono.just(ResponseEntity.status(401).body(Map.of("message", "Not authenticated")));
         }
 
-        return service.askNotes(userId, request.getQuestion())
+        if (request.getQuestion() == null || request.getQuestion().isBlank()) {
+            return Mono.just(ResponseEntity.badRequest().body(Map.of("message", "question required")));
+        }
+
+        return askService.ask(userId, request.getQuestion())
                 .map(ResponseEntity::ok);
     }
 
+    /**
+     * Streamed variant of /notes/ask: a "sources" event listing the numbered
+     * passages the answer cites, then "token" events, then "done".
+     */
+    @PostMapping(value = "/notes/ask/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<Map<String, Object>>>> streamAskNotes(
+            @RequestBody com.muse.notes.dto.AskQuestionRequest request, Authentication auth) {
+        Long userId = currentUserId(auth);
+        if (userId == null) {
+            return ResponseEntity.status(401).build();
+        }
+        if (request.getQuestion() == null || request.getQuestion().isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        return ResponseEntity.ok(askService.streamAnswer(userId, request.getQuestion())
+                .map(event -> ServerSentEvent.<Map<String, Object>>builder()
+                        .event((String) event.get("type"))
+                        .data(event)
+                        .build()));
+    }
+
     @GetMapping("/notes/pinned")
-    public ResponseEntity<?> getPinnedNotes(Authentication auth) {
+    public ResponseEntity<?> getPinnedNotes(@RequestParam(required = false) String fields, Authentication auth) {
         String username = currentUsername(auth);
         Long userId = currentUserId(auth);
         if (userId == null) {
             return ResponseEntity.status(401).body(Map.of("message", "Not authenticated"));
         }
 
-        List<Note> notes = service.getPinnedNotes(userId);
-
-        List<Map<String, Object>> dto = notes.stream().map(n -> {
-            Map<String, Object> m = new HashMap<>();
-            m.put("id", n.getId());
-            m.put("title", n.getTitle());
-            m.put("content", n.getContent());
-            m.put("updatedAt", n.getUpdatedAt());
-            return m;
-        }).collect(Collectors.toList());
-
-        return ResponseEntity.ok(dto);
+        return ResponseEntity.ok(service.getPinnedNotes(userId, includesContent(fields)));
     }
 
     @PostMapping("/notes/{id}/toggle-pin")
@@ -488,6 +526,27 @@ public class NoteController extends BaseController {
         return ResponseEntity.ok(Map.of("message", "Notes reordered successfully."));
     }
 
+    /**
+     * Moves one note: { "afterId": id or null for first, "sectionId": optional
+     * target section }.
+     */
+    @PostMapping("/notes/{id}/move")
+    public ResponseEntity<?> moveNote(@PathVariable Long id, @RequestBody Map<String, Long> payload,
+            Authentication auth) {
+        Long userId = currentUserId(auth);
+        if (userId == null) {
+            return ResponseEntity.status(401).body(Map.of("message", "Not authenticated"));
+        }
+        try {
+            if (!service.moveNote(id, userId, payload.get("sectionId"), payload.get("afterId"))) {
+                return ResponseEntity.status(404).body(Map.of("message", "Note not found"));
+            }
+            return ResponseEntity.ok(Map.of("message", "Note moved successfully"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
     @GetMapping("/notes/count")
     public ResponseEntity<?> countNotes(Authentication auth) {
         String username = currentUsername(auth);
@@ -533,13 +592,54 @@ public class NoteController extends BaseController {
     }
 
     @GetMapping("/notes/graph")
-    public ResponseEntity<?> getUserGraph(Authentication auth) {
+    public ResponseEntity<?> getUserGraph(@RequestParam(defaultValue = "json") String format,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch,
+            Authentication auth) {
+        String username = currentUsername(auth);
+        Long userId = currentUserId(auth);
+        if (userId == null) {
+            return ResponseEntity.status(401).body(Map.of("message", "Not authenticated"));
+        }
+
+        NoteGraphSnapshot graph = graphService.getSnapshot(userId);
+        if (graph.getEtag().equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(graph.getEtag()).build();
+        }
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok()
+                .eTag(graph.getEtag())
+                .cacheControl(CacheControl.noCache().cachePrivate());
+        if ("binary".equalsIgnoreCase(format)) {
+            return ok.contentType(MediaType.APPLICATION_OCTET_STREAM).body(graph.toBinary());
+        }
+        return ok.body(graph.toJson());
+    }
+
+    @GetMapping("/notes/graph/neighborhood")
+    public ResponseEntity<?> getGraphNeighborhood(@RequestParam Long noteId,
+            @RequestParam(defaultValue = "2") int depth,
+            @RequestParam(defaultValue = "300") int limit,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch,
+            Authentication auth) {
         String username = currentUsername(auth);
         Long userId = currentUserId(auth);
         if (userId == null) {
             return ResponseEntity.status(401).body(Map.of("message", "Not authenticated"));
         }
-        return ResponseEntity.ok(service.getUserGraph(userId));
+
+        NoteGraphSnapshot graph = graphService.getSnapshot(userId);
+        NoteGraphSnapshot.Neighborhood neighborhood = graph.neighborhood(noteId,
+                Math.max(0, Math.min(depth, MAX_GRAPH_DEPTH)), Math.max(1, Math.min(limit, 2000)));
+        if (neighborhood == null) {
+            return ResponseEntity.status(404).body(Map.of("message", "Note not found"));
+        }
+        String etag = neighborhood.getEtag();
+        if (etag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(neighborhood.toJson());
     }
 
     @GetMapping("/notes/broken-links")
@@ -735,13 +835,18 @@ public class NoteController extends BaseController {
     }
 
     @GetMapping("/notes/by-tag/{tag}")
-    public ResponseEntity<?> getNotesByTag(@PathVariable String tag, Authentication auth) {
+    public ResponseEntity<?> getNotesByTag(@PathVariable String tag,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields,
+            Authentication auth) {
         String username = currentUsername(auth);
         Long userId = currentUserId(auth);
         if (userId == null) {
             return ResponseEntity.status(401).body(Map.of("message", "Not authenticated"));
         }
-        return ResponseEntity.ok(service.getNotesByTag(userId, tag));
+        NoteListPageDTO page = service.getNotesByTag(userId, tag, cursor, clampLimit(limit), includesContent(fields));
+        return ResponseEntity.ok(limit == null ? page.getItems() : page);
     }
 
     // ==================== Duplicate ====================
@@ -1,18 +1,32 @@
 package com.muse.notes.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.muse.notes.dto.NotebookImportResultDTO;
 import com.muse.notes.entity.Notebook;
 import com.muse.notes.entity.Section;
 import com.muse.notes.service.NotebookService;
+import com.muse.notes.service.NotebookTransferService;
+import com.muse.notes.service.NotebookTreeService;
 import com.muse.notes.service.SectionService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.zip.ZipException;
 
 @RestController
 @RequestMapping("/api/notebooks")
@@ -20,10 +34,15 @@ public class NotebookController extends BaseController {
 
     private final NotebookService notebookService;
     private final SectionService sectionService;
+    private final NotebookTransferService transferService;
+    private final NotebookTreeService treeService;
 
-    public NotebookController(NotebookService notebookService, SectionService sectionService) {
+    public NotebookController(NotebookService notebookService, SectionService sectionService,
+            NotebookTransferService transferService, NotebookTreeService treeService) {
         this.notebookService = notebookService;
         this.sectionService = sectionService;
+        this.transferService = transferService;
+        this.treeService = treeService;
     }
 
     @GetMapping
@@ -48,6 +67,30 @@ public class NotebookController extends BaseController {
         return ResponseEntity.ok(dto);
     }
 
+    /**
+     * The whole sidebar (notebooks, nested sections, note titles) in one
+     * response. The ETag is the user's tree version, so an unchanged tree
+     * costs one indexed lookup and a 304.
+     */
+    @GetMapping("/tree")
+    public ResponseEntity<?> tree(@RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch,
+            Authentication auth) {
+        Long userId = currentUserId(auth);
+        if (userId == null) {
+            return ResponseEntity.status(401).body(Map.of("message", "Not authenticated"));
+        }
+
+        long version = treeService.version(userId);
+        String etag = NotebookTreeService.etag(version);
+        if (etag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(treeService.getTree(userId, version));
+    }
+
     @PostMapping
     public ResponseEntity<?> create(@RequestBody Map<String, String> payload, Authentication auth) {
         String username = currentUsername(auth);
@@ -110,6 +153,54 @@ public class NotebookController extends BaseController {
         return ResponseEntity.status(404).body(Map.of("message", "Notebook not found"));
     }
 
+    // Streams the notebook as a zip (notebook.json + attachments + Markdown copies)
+    @GetMapping("/{id}/export")
+    public ResponseEntity<?> export(@PathVariable Long id,
+            @RequestParam(defaultValue = "true") boolean markdown,
+            Authentication auth) {
+        Long userId = currentUserId(auth);
+        if (userId == null) {
+            return ResponseEntity.status(401).body(Map.of("message", "Not authenticated"));
+        }
+
+        Optional<Notebook> notebook = transferService.findNotebook(id, userId);
+        if (notebook.isEmpty()) {
+            return ResponseEntity.status(404).body(Map.of("message", "Notebook not found"));
+        }
+
+        StreamingResponseBody body = out -> transferService.exportNotebook(id, userId, markdown, out);
+        ContentDisposition disposition = ContentDisposition.attachment()
+                .filename(notebook.get().getTitle() + ".zip", StandardCharsets.UTF_8)
+                .build();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .body(body);
+    }
+
+    // Imports a notebook from an export zip, a zip of Markdown files, or a bare
+    // notebook.json body. The request body is read as a stream.
+    @PostMapping(value = "/import", consumes = { MediaType.APPLICATION_JSON_VALUE, "application/zip",
+            MediaType.APPLICATION_OCTET_STREAM_VALUE })
+    public ResponseEntity<?> importNotebook(@RequestParam(required = false) String title,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream body,
+            Authentication auth) throws IOException {
+        String username = currentUsername(auth);
+        Long userId = currentUserId(auth);
+        if (userId == null) {
+            return ResponseEntity.status(401).body(Map.of("message", "Not authenticated"));
+        }
+
+        boolean zipped = !MediaType.APPLICATION_JSON.isCompatibleWith(MediaType.parseMediaType(contentType));
+        try {
+            NotebookImportResultDTO result = transferService.importNotebook(userId, username, title, zipped, body);
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException | JsonProcessingException | ZipException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Invalid import file: " + e.getMessage()));
+        }
+    }
+
     @GetMapping("/{notebookId}/sections")
     public ResponseEntity<?> listSections(@PathVariable Long notebookId,
             @RequestParam(required = false) Boolean hierarchical,
@@ -247,7 +338,10 @@ public class NotebookController extends BaseController {
 
         Long newParentId = payload.get("parentId"); // null = move to root
         try {
-            Optional<Section> moved = sectionService.moveSection(sectionId, newParentId, userId);
+            // With "afterId" (null = first) the section is placed; without it, appended
+            Optional<Section> moved = payload.containsKey("afterId")
+                    ? sectionService.moveSection(sectionId, newParentId, payload.get("afterId"), userId)
+                    : sectionService.moveSection(sectionId, newParentId, userId);
             if (moved.isEmpty()) {
                 return ResponseEntity.status(404).body(Map.of("message", "Section not found"));
             }
@@ -283,6 +377,24 @@ public class NotebookController extends BaseController {
         return ResponseEntity.ok(Map.of("message", "Notebooks reordered successfully."));
     }
 
+    // Move one notebook: { "afterId": id or null for first }
+    @PostMapping("/{id}/move")
+    public ResponseEntity<?> moveNotebook(@PathVariable Long id, @RequestBody Map<String, Long> payload,
+            Authentication auth) {
+        Long userId = currentUserId(auth);
+        if (userId == null) {
+            return ResponseEntity.status(401).body(Map.of("message", "Not authenticated"));
+        }
+        try {
+            if (notebookService.moveNotebook(id, userId, payload.get("afterId")).isEmpty()) {
+                return ResponseEntity.status(404).body(Map.of("message", "Notebook not found"));
+            }
+            return ResponseEntity.ok(Map.of("message", "Notebook moved successfully"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
     @PostMapping("/{notebookId}/sections/reorder")
     public ResponseEntity<?> reorderSections(@PathVariable Long notebookId, @RequestBody List<Long> sectionIds,
             Authentication auth) {
@@ -11,11 +11,19 @@ public class AskQuestionResponse {
     private String answer;
     private List<SourceNote> sources;
 
+    /**
+     * One passage given to the model. The answer cites it as [citation];
+     * offsets locate the passage in the note's plain text.
+     */
     @Data
     @Builder
     public static class SourceNote {
+        private Integer citation;
         private Long id;
         private String title;
         private String excerpt;
+        private Integer chunkIndex;
+        private Integer startOffset;
+        private Integer endOffset;
     }
 }
@@ -16,6 +16,7 @@ public class LabPersistentSaveRequest {
     private String researchResults;
     private List<Source> sources;
     private String subject;
+    private String sessionId; // client session id; repeated saves with it return the same note
 
     // Getters and Setters
     public AutoPath getAutoPath() {
@@ -74,6 +75,14 @@ public class LabPersistentSaveRequest {
         this.subject = subject;
     }
 
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
     /**
      * Auto-path configuration for directory structure.
      */
@@ -0,0 +1,31 @@
+package com.muse.notes.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * NoteListItemDTO - lean row for note list endpoints.
+ * Content is only included when explicitly requested via ?fields=content.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class NoteListItemDTO {
+
+    private Long id;
+    private String title;
+    private String excerpt;
+    private Instant updatedAt;
+    private String[] tags;
+    private Boolean isPinned;
+    private Instant deletedAt;
+    private JsonNode content;
+}
@@ -0,0 +1,22 @@
+package com.muse.notes.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * NoteListPageDTO - one keyset page of a note list.
+ * nextCursor is null on the last page.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NoteListPageDTO {
+
+    private List<NoteListItemDTO> items;
+    private String nextCursor;
+}
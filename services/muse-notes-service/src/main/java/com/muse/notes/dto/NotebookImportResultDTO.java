@@ -0,0 +1,24 @@
+package com.muse.notes.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * NotebookImportResultDTO - outcome of a bulk notebook import.
+ * Link and embedding indexing continues in the background after this returns.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotebookImportResultDTO {
+
+    private Long notebookId;
+    private String title;
+    private int sections;
+    private int notes;
+    private int attachments;
+    private long durationMs;
+}
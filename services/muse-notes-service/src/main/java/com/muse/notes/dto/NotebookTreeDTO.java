@@ -0,0 +1,46 @@
+package com.muse.notes.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The whole notebook/section/note-title tree of a user, as served to
+ * the sidebar. Only ids and titles; empty lists are left out of the JSON.
+ */
+@Data
+@AllArgsConstructor
+public class NotebookTreeDTO {
+
+    private long version;
+    private List<NotebookNode> notebooks;
+
+    @Data
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    public static class NotebookNode {
+        private final Long id;
+        private final String title;
+        private final String color;
+        private final List<SectionNode> sections = new ArrayList<>();
+    }
+
+    @Data
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    public static class SectionNode {
+        private final Long id;
+        private final String title;
+        private final List<SectionNode> sections = new ArrayList<>();
+        private final List<NoteNode> notes = new ArrayList<>();
+    }
+
+    @Data
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    public static class NoteNode {
+        private final Long id;
+        private final String title;
+        private final boolean pinned;
+    }
+}
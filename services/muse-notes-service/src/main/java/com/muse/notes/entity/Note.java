@@ -56,13 +56,15 @@ public class Note implements Serializable {
     @Column(name = "updated_at", nullable = false)
     private Instant updatedAt;
 
-    @Column(name = "order_index")
-    private Integer orderIndex;
+    @Column(name = "order_index", nullable = false)
+    private Integer orderIndex = 0;
 
     @Column(name = "is_pinned")
     private boolean isPinned;
 
-    @Column(name = "embedding")
+    // Written only by NoteAnalysisService, so a save of a stale entity
+    // cannot put back an older embedding
+    @Column(name = "embedding", insertable = false, updatable = false)
     @JdbcTypeCode(SqlTypes.VECTOR)
     private float[] embedding;
 
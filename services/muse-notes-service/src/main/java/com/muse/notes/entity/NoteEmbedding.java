@@ -0,0 +1,61 @@
+package com.muse.notes.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.Instant;
+
+/**
+ * One chunk of a note's text with its embedding. Chunks overlap their
+ * neighbours; offsets are character positions in the note's extracted text.
+ * Rows are rewritten by {@link com.muse.notes.service.NoteChunkIndexService}
+ * whenever the note changes.
+ */
+@Entity
+@Table(name = "note_chunks")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NoteEmbedding {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "note_id", nullable = false)
+    private Long noteId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "chunk_index", nullable = false)
+    private Integer chunkIndex;
+
+    @Column(name = "start_offset", nullable = false)
+    private Integer startOffset;
+
+    @Column(name = "end_offset", nullable = false)
+    private Integer endOffset;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String content;
+
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(name = "token_count", nullable = false)
+    private Integer tokenCount;
+
+    @Column(name = "embedding")
+    @JdbcTypeCode(SqlTypes.VECTOR)
+    private float[] embedding;
+
+    @Column(name = "created_at", insertable = false, updatable = false)
+    private Instant createdAt;
+}
@@ -0,0 +1,46 @@
+package com.muse.notes.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * One outgoing [[wiki link]] of a note, keyed by the lower-cased link text.
+ * The target is resolved against live note titles at read time, so a link to a
+ * note that does not exist yet is simply an unresolved row.
+ */
+@Entity
+@Table(name = "note_wiki_links")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@IdClass(NoteWikiLink.NoteWikiLinkId.class)
+public class NoteWikiLink {
+
+    @Id
+    @Column(name = "source_note_id")
+    private Long sourceNoteId;
+
+    @Id
+    @Column(name = "target_key", length = 512)
+    private String targetKey;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "target_title", nullable = false, length = 512)
+    private String targetTitle;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class NoteWikiLinkId implements Serializable {
+        private Long sourceNoteId;
+        private String targetKey;
+    }
+}
@@ -1,61 +1,69 @@
 package com.muse.notes.journal.controller;
 
+import com.muse.notes.controller.BaseController;
 import com.muse.notes.journal.entity.JournalAudio;
 import com.muse.notes.journal.repository.JournalAudioRepository;
-import org.springframework.beans.factory.annotation.Value;
+import com.muse.notes.journal.service.JournalMediaService;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.util.StringUtils;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
-import java.time.Instant;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/journals")
-public class JournalAudioController {
+public class JournalAudioController extends BaseController {
 
     private final JournalAudioRepository repo;
+    private final JournalMediaService mediaService;
 
-    // where to store audio files
-    private final String uploadDir;
-    private final String publicBase; // base URL to serve uploaded files, e.g. https://example.com/uploads/audio
-
-    public JournalAudioController(JournalAudioRepository repo,
-            @Value("${journal.audio.upload-dir:/tmp/journal-audio}") String uploadDir,
-            @Value("${journal.audio.public-base:/uploads/audio}") String publicBase) {
+    public JournalAudioController(JournalAudioRepository repo, JournalMediaService mediaService) {
         this.repo = repo;
-        this.uploadDir = uploadDir;
-        this.publicBase = publicBase;
-        File d = new File(uploadDir);
-        if (!d.exists())
-            d.mkdirs();
+        this.mediaService = mediaService;
     }
 
+    /**
+     * Returns 202 once the file is stored; transcription runs in the
+     * background and reports on /user/topic/transcription under the jobId.
+     */
     @PostMapping(path = "/{id}/audio", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<?> uploadAudio(@PathVariable Long id, @RequestPart("file") MultipartFile file)
-            throws IOException {
+    public ResponseEntity<?> uploadAudio(@PathVariable Long id, @RequestPart("file") MultipartFile file,
+            Authentication auth) throws IOException {
         if (file == null || file.isEmpty())
             return ResponseEntity.badRequest().body(Map.of("message", "file required"));
-        String ext = StringUtils.getFilenameExtension(file.getOriginalFilename());
-        String fname = "audio-" + id + "-" + UUID.randomUUID().toString().substring(0, 8)
-                + (ext != null ? ("." + ext) : ".webm");
-        File dest = new File(uploadDir, fname);
-        file.transferTo(dest);
-        // Build public URL (you must configure static resource handler to serve
-        // uploadDir mapped to publicBase)
-        String audioUrl = publicBase.replaceAll("/$", "") + "/" + fname;
-        JournalAudio ja = new JournalAudio();
-        ja.setJournalId(id);
-        ja.setAudioUrl(audioUrl);
-        ja.setCreatedAt(Instant.now());
-        repo.save(ja);
-        return ResponseEntity.ok(Map.of("id", ja.getId(), "audioUrl", audioUrl));
+        String token = auth != null && auth.getPrincipal() instanceof Jwt jwt ? jwt.getTokenValue() : null;
+        JournalAudio ja = mediaService.saveAudioFile(id, currentUsername(auth), token, file);
+        return ResponseEntity.accepted().body(Map.of(
+                "id", ja.getId(),
+                "audioUrl", ja.getAudioUrl(),
+                "jobId", ja.getTranscriptionJobId(),
+                "status", ja.getTranscriptionStatus()));
+    }
+
+    @GetMapping("/audio/transcriptions/{jobId}")
+    public ResponseEntity<?> transcriptionStatus(@PathVariable UUID jobId, Authentication auth) {
+        Optional<JournalAudio> opt = repo.findByTranscriptionJobId(jobId);
+        if (opt.isEmpty())
+            return ResponseEntity.notFound().build();
+        JournalAudio ja = opt.get();
+        if (ja.getUsername() != null && !ja.getUsername().equals(currentUsername(auth)))
+            return ResponseEntity.status(403).body(Map.of("message", "Access denied"));
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("jobId", jobId);
+        body.put("audioId", ja.getId());
+        body.put("status", ja.getTranscriptionStatus());
+        body.put("chunksTotal", ja.getChunksTotal());
+        body.put("chunksCompleted", ja.getChunksCompleted());
+        body.put("transcription", ja.getTranscription());
+        return ResponseEntity.ok(body);
     }
 
     @GetMapping("/{id}/audio/meta")
@@ -4,9 +4,13 @@ import com.muse.notes.journal.service.JournalInsightService;
 import com.muse.notes.journal.service.JournalService;
 import com.muse.notes.journal.util.AuthUtils;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.time.LocalDate;
 import java.util.Map;
@@ -82,11 +86,28 @@ public class JournalController {
     }
 
     @GetMapping("/insights")
-    public ResponseEntity<?> getInsights(@RequestParam String startDate, @RequestParam String endDate,
+    public Mono<ResponseEntity<?>> getInsights(@RequestParam String startDate, @RequestParam String endDate,
             Authentication auth) {
         Long userId = AuthUtils.getUserIdFromAuthentication(auth);
         LocalDate start = LocalDate.parse(startDate);
         LocalDate end = LocalDate.parse(endDate);
-        return ResponseEntity.ok(journalInsightService.getInsights(userId, start, end));
+        return journalInsightService.getInsights(userId, start, end).map(ResponseEntity::ok);
+    }
+
+    /**
+     * Same insight as /insights, streamed: one "week" event per weekly
+     * summary, then the "insight" event for the range.
+     */
+    @GetMapping(value = "/insights/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Map<String, Object>>> streamInsights(@RequestParam String startDate,
+            @RequestParam String endDate, Authentication auth) {
+        Long userId = AuthUtils.getUserIdFromAuthentication(auth);
+        LocalDate start = LocalDate.parse(startDate);
+        LocalDate end = LocalDate.parse(endDate);
+        return journalInsightService.streamInsights(userId, start, end)
+                .map(event -> ServerSentEvent.<Map<String, Object>>builder()
+                        .event((String) event.get("type"))
+                        .data(event)
+                        .build());
     }
 }
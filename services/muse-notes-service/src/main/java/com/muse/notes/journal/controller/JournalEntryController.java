@@ -1,5 +1,6 @@
 package com.muse.notes.journal.controller;
 
+import com.muse.notes.journal.service.JournalEmbeddingService;
 import com.muse.notes.journal.service.JournalService;
 import com.muse.notes.journal.entity.JournalEntry;
 import com.muse.notes.journal.entity.ReviewStatus;
@@ -23,6 +24,7 @@ import java.util.Map;
 public class JournalEntryController {
 
     private final JournalService journalService;
+    private final JournalEmbeddingService journalEmbeddingService;
     private final JournalEntryRepository journalEntryRepository;
     private final SubmissionRepository submissionRepository;
 
@@ -58,7 +60,9 @@ public class JournalEntryController {
         entry.setChallenges("");
         entry.setIntentions("");
 
-        return ResponseEntity.ok(journalEntryRepository.save(entry));
+        JournalEntry saved = journalEntryRepository.save(entry);
+        journalEmbeddingService.enqueue(saved.getId());
+        return ResponseEntity.ok(saved);
     }
 
     @PutMapping("/{id}")
@@ -72,7 +76,10 @@ public class JournalEntryController {
                     entry.setTitle((String) payload.getOrDefault("title", entry.getTitle()));
                     entry.setContentJson((String) payload.get("contentJson"));
                     entry.setCourseCode((String) payload.get("courseCode"));
-                    return ResponseEntity.ok(journalEntryRepository.save(entry));
+                    entry.setEmbedding(null); // re-embedded after save
+                    JournalEntry saved = journalEntryRepository.save(entry);
+                    journalEmbeddingService.enqueue(saved.getId());
+                    return ResponseEntity.ok(saved);
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
@@ -175,9 +182,19 @@ public class JournalEntryController {
             return ResponseEntity.badRequest().body(Map.of("message", "Query is required"));
         }
 
+        LocalDate from;
+        LocalDate to;
+        try {
+            from = body.get("from") != null ? LocalDate.parse((String) body.get("from")) : null;
+            to = body.get("to") != null ? LocalDate.parse((String) body.get("to")) : null;
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", "from/to must be ISO dates (yyyy-MM-dd)"));
+        }
+
         try {
             // Use JournalService for semantic search
-            List<JournalEntry> results = journalService.semanticSearch(userId, query, limit);
+            List<JournalEntry> results = journalService.semanticSearch(userId, query, Math.max(1, Math.min(limit, 50)),
+                    from, to);
             return ResponseEntity.ok(Map.of("results", results, "count", results.size()));
         } catch (Exception e) {
             // Fallback to text search if semantic fails
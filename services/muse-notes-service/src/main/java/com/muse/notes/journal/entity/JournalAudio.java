@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.Data;
 
 import java.time.Instant;
+import java.util.UUID;
 
 @Entity
 @Table(name = "journal_audio")
@@ -25,6 +26,18 @@ public class JournalAudio {
     @Column(columnDefinition = "TEXT")
     private String transcription;
 
+    private String contentType;
+
+    // Background transcription: PENDING, RUNNING, COMPLETED, FAILED
+    @Column(name = "transcription_job_id", unique = true)
+    private UUID transcriptionJobId;
+
+    @Column(name = "transcription_status", length = 20)
+    private String transcriptionStatus;
+
+    private Integer chunksTotal;
+    private Integer chunksCompleted;
+
     private Instant createdAt = Instant.now();
 
     // Explicit setters added to resolve "cannot find symbol" errors
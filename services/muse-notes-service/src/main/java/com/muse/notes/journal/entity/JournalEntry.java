@@ -1,5 +1,6 @@
 package com.muse.notes.journal.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -56,6 +57,7 @@ public class JournalEntry {
     private String[] tags;
 
     // Embedding for semantic search (maps to V28 migration)
+    @JsonIgnore
     @Column(columnDefinition = "vector(768)")
     private float[] embedding;
 
@@ -0,0 +1,47 @@
+package com.muse.notes.journal.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Cached insight summary for one week (WEEK) or a whole requested range
+ * (RANGE). Valid while {@code fingerprint} matches the covered entries.
+ */
+@Entity
+@Table(name = "journal_summaries")
+@Data
+public class JournalSummary {
+    public static final String KIND_WEEK = "WEEK";
+    public static final String KIND_RANGE = "RANGE";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(nullable = false, length = 10)
+    private String kind;
+
+    @Column(name = "period_start", nullable = false)
+    private LocalDate periodStart;
+
+    @Column(name = "period_end", nullable = false)
+    private LocalDate periodEnd;
+
+    @Column(nullable = false, length = 128)
+    private String fingerprint;
+
+    private int entryCount;
+    private int wordCount;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String summary;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt = Instant.now();
+}
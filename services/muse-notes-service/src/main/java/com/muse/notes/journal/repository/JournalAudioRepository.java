@@ -2,9 +2,14 @@ package com.muse.notes.journal.repository;
 
 import com.muse.notes.journal.entity.JournalAudio;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional; // Added import for Optional
+import java.util.UUID;
 
 public interface JournalAudioRepository extends JpaRepository<JournalAudio, Long> {
     List<JournalAudio> findByJournalIdOrderByCreatedAtDesc(Long journalId);
@@ -13,5 +18,28 @@ public interface JournalAudioRepository extends JpaRepository<JournalAudio, Long
 
     List<JournalAudio> findByUsernameOrderByCreatedAtDesc(String username);
 
+    Optional<JournalAudio> findByTranscriptionJobId(UUID transcriptionJobId);
+
     void deleteByJournalId(Long journalId);
+
+    // Transcription state is written column by column, so a job never overwrites other edits to the row
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE journal_audio SET transcription_status = :status WHERE id = :id", nativeQuery = true)
+    int updateTranscriptionStatus(@Param("id") Long id, @Param("status") String status);
+
+    // Progress polls can overlap; never move progress backwards
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE journal_audio SET chunks_total = :total, "
+            + "chunks_completed = GREATEST(COALESCE(chunks_completed, 0), :completed) WHERE id = :id",
+            nativeQuery = true)
+    int updateChunkProgress(@Param("id") Long id, @Param("completed") int completed, @Param("total") int total);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE journal_audio SET transcription = :transcription, transcription_status = :status, "
+            + "chunks_completed = chunks_total WHERE id = :id", nativeQuery = true)
+    int completeTranscription(@Param("id") Long id, @Param("transcription") String transcription,
+            @Param("status") String status);
 }
@@ -2,9 +2,12 @@ package com.muse.notes.journal.repository;
 
 import com.muse.notes.journal.entity.JournalEntry;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -31,10 +34,45 @@ public interface JournalEntryRepository extends JpaRepository<JournalEntry, Long
     @org.springframework.data.jpa.repository.Query(value = "SELECT * FROM journal_entries WHERE user_id = :userId AND embedding IS NOT NULL AND deleted_at IS NULL ORDER BY embedding <=> cast(:embedding as vector) LIMIT :limit", nativeQuery = true)
     List<JournalEntry> searchByEmbedding(Long userId, String embedding, int limit);
 
+    // Exact ranking over one user's date range: a user has at most a few
+    // thousand entries, and ANN post-filtering drops hits for narrow ranges
+    @Query(value = "WITH candidates AS MATERIALIZED (SELECT * FROM journal_entries WHERE user_id = :userId "
+            + "AND entry_date BETWEEN :fromDate AND :toDate AND embedding IS NOT NULL AND deleted_at IS NULL) "
+            + "SELECT * FROM candidates ORDER BY embedding <=> CAST(:embedding AS vector) LIMIT :limit", nativeQuery = true)
+    List<JournalEntry> searchByEmbeddingInRange(@Param("userId") Long userId, @Param("embedding") String embedding,
+            @Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate, @Param("limit") int limit);
+
     // Find entries needing embedding
     List<JournalEntry> findByUserIdAndEmbeddingIsNullAndDeletedAtIsNull(Long userId);
 
+    // updated_at comes back as text so the embedding write can compare it exactly
+    String EMBEDDING_SOURCE_SELECT = "SELECT id, title, highlights, challenges, intentions, "
+            + "content_json AS \"contentJson\", CAST(updated_at AS varchar) AS \"version\" FROM journal_entries ";
+
+    @Query(value = EMBEDDING_SOURCE_SELECT + "WHERE id IN (:ids) AND deleted_at IS NULL", nativeQuery = true)
+    List<EmbeddingSourceView> findEmbeddingSourcesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(value = EMBEDDING_SOURCE_SELECT + "WHERE id > :afterId AND embedding IS NULL AND deleted_at IS NULL "
+            + "ORDER BY id LIMIT :limit", nativeQuery = true)
+    List<EmbeddingSourceView> findUnembeddedAfter(@Param("afterId") long afterId, @Param("limit") int limit);
+
     // For insight date range (needed by JournalInsightService)
     @org.springframework.data.jpa.repository.Query("SELECT e FROM JournalEntry e WHERE e.userId = :userId AND e.entryDate BETWEEN :startDate AND :endDate")
     List<JournalEntry> findByUserIdAndEntryDateBetween(Long userId, LocalDate startDate, LocalDate endDate);
+
+    interface EmbeddingSourceView {
+        Long getId();
+
+        String getTitle();
+
+        String getHighlights();
+
+        String getChallenges();
+
+        String getIntentions();
+
+        String getContentJson();
+
+        String getVersion();
+    }
 }
@@ -0,0 +1,33 @@
+package com.muse.notes.journal.repository;
+
+import com.muse.notes.journal.entity.JournalSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+public interface JournalSummaryRepository extends JpaRepository<JournalSummary, Long> {
+
+    List<JournalSummary> findByUserIdAndKindAndPeriodStartGreaterThanEqualAndPeriodEndLessThanEqual(Long userId,
+            String kind, LocalDate from, LocalDate to);
+
+    Optional<JournalSummary> findByUserIdAndKindAndPeriodStartAndPeriodEnd(Long userId, String kind,
+            LocalDate periodStart, LocalDate periodEnd);
+
+    // Concurrent requests for the same period both compute; the last one wins
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO journal_summaries (user_id, kind, period_start, period_end, fingerprint, entry_count, "
+            + "word_count, summary, created_at) VALUES (:userId, :kind, :periodStart, :periodEnd, :fingerprint, "
+            + ":entryCount, :wordCount, :summary, now()) ON CONFLICT (user_id, kind, period_start, period_end) "
+            + "DO UPDATE SET fingerprint = EXCLUDED.fingerprint, entry_count = EXCLUDED.entry_count, "
+            + "word_count = EXCLUDED.word_count, summary = EXCLUDED.summary, created_at = now()", nativeQuery = true)
+    int upsert(@Param("userId") Long userId, @Param("kind") String kind, @Param("periodStart") LocalDate periodStart,
+            @Param("periodEnd") LocalDate periodEnd, @Param("fingerprint") String fingerprint,
+            @Param("entryCount") int entryCount, @Param("wordCount") int wordCount, @Param("summary") String summary);
+}
@@ -0,0 +1,90 @@
+package com.muse.notes.journal.service;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.muse.notes.journal.repository.JournalEntryRepository;
+import com.muse.notes.journal.repository.JournalEntryRepository.EmbeddingSourceView;
+import com.muse.notes.service.BackfillCheckpoints;
+import com.muse.notes.service.EmbeddingService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Embeds journal entries that have no embedding yet: entries written before
+ * embeddings existed, and saves whose embedding call failed.
+ *
+ * Walks entries in id order and records the last id in backfill_checkpoints
+ * after every batch, so a restart resumes where it stopped. A lease on the
+ * checkpoint row keeps other instances out, and a rate limiter caps texts
+ * embedded per second to stay inside the API quota alongside live traffic.
+ * When a pass reaches the end it starts over from the beginning on the next
+ * run; passes with nothing to do cost one indexed query.
+ */
+@Service
+@Slf4j
+public class JournalEmbeddingBackfill {
+
+    private static final String NAME = "journal_entry_embeddings";
+
+    private final JournalEntryRepository entryRepo;
+    private final JournalEmbeddingService embeddingService;
+    private final BackfillCheckpoints checkpoints;
+    private final RateLimiter rateLimiter;
+    private final int batchSize;
+    private final int leaseSeconds;
+    private final boolean enabled;
+
+    public JournalEmbeddingBackfill(JournalEntryRepository entryRepo,
+            JournalEmbeddingService embeddingService,
+            BackfillCheckpoints checkpoints,
+            @Value("${journal.embedding.backfill.enabled:true}") boolean enabled,
+            @Value("${journal.embedding.backfill.batch-size:50}") int batchSize,
+            @Value("${journal.embedding.backfill.texts-per-second:20}") double textsPerSecond,
+            @Value("${journal.embedding.backfill.lease-seconds:300}") int leaseSeconds) {
+        this.entryRepo = entryRepo;
+        this.embeddingService = embeddingService;
+        this.checkpoints = checkpoints;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, Math.min(batchSize, EmbeddingService.MAX_BATCH_SIZE));
+        this.rateLimiter = RateLimiter.create(Math.max(0.1, textsPerSecond));
+        this.leaseSeconds = Math.max(30, leaseSeconds);
+    }
+
+    @Scheduled(initialDelayString = "${journal.embedding.backfill.initial-delay-ms:60000}",
+            fixedDelayString = "${journal.embedding.backfill.interval-ms:600000}")
+    public void run() {
+        if (!enabled)
+            return;
+        if (!checkpoints.claim(NAME, leaseSeconds))
+            return; // another instance holds the lease
+
+        long lastId = checkpoints.lastId(NAME);
+        long started = System.nanoTime();
+        int embedded = 0;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                List<EmbeddingSourceView> batch = entryRepo.findUnembeddedAfter(lastId, batchSize);
+                if (batch.isEmpty()) {
+                    checkpoints.finish(NAME);
+                    if (embedded > 0) {
+                        log.info("Journal embedding backfill pass done: {} entries in {} ms", embedded,
+                                (System.nanoTime() - started) / 1_000_000);
+                    }
+                    return;
+                }
+                rateLimiter.acquire(batch.size());
+                int stored = embeddingService.embedAndStore(batch);
+                embedded += stored;
+                lastId = batch.get(batch.size() - 1).getId();
+                checkpoints.advance(NAME, lastId, stored, leaseSeconds);
+            }
+        } catch (Exception e) {
+            // The checkpoint holds the last finished batch; the next run resumes after it
+            log.warn("Journal embedding backfill stopped after id {}: {}", lastId, e.getMessage());
+        }
+        checkpoints.release(NAME);
+    }
+}
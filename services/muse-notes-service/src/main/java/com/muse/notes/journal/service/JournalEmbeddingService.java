@@ -0,0 +1,137 @@
+package com.muse.notes.journal.service;
+
+import com.muse.notes.journal.repository.JournalEntryRepository;
+import com.muse.notes.journal.repository.JournalEntryRepository.EmbeddingSourceView;
+import com.muse.notes.journal.util.JournalText;
+import com.muse.notes.service.EmbeddingService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps journal entry embeddings current. Saved entries are queued and
+ * embedded a batch at a time with one batchEmbedContents call, so a burst of
+ * autosaves costs one API request instead of one per save.
+ */
+@Service
+@Slf4j
+public class JournalEmbeddingService {
+
+    // Roughly the model's 2048-token input limit
+    private static final int MAX_TEXT_CHARS = 8000;
+
+    private static final Duration EMBED_TIMEOUT = Duration.ofSeconds(30);
+
+    // Skips the write if the entry changed after its text was read; the newer save is queued too
+    private static final String UPDATE_EMBEDDING_SQL = "UPDATE journal_entries SET embedding = CAST(? AS vector) "
+            + "WHERE id = ? AND updated_at = CAST(? AS timestamp)";
+
+    private final JournalEntryRepository entryRepo;
+    private final EmbeddingService embeddingService;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Set<Long> pending = new LinkedHashSet<>();
+
+    public JournalEmbeddingService(JournalEntryRepository entryRepo, EmbeddingService embeddingService,
+            JdbcTemplate jdbcTemplate) {
+        this.entryRepo = entryRepo;
+        this.embeddingService = embeddingService;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Queues an entry for embedding once the current transaction commits.
+     * Callers clear the stored embedding on save, so an entry lost from the
+     * queue is picked up by the backfill.
+     */
+    public void enqueue(Long entryId) {
+        if (entryId == null)
+            return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(entryId);
+                }
+            });
+        } else {
+            add(entryId);
+        }
+    }
+
+    private void add(Long entryId) {
+        synchronized (pending) {
+            pending.add(entryId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${journal.embedding.flush-interval-ms:2000}")
+    public void flush() {
+        List<Long> ids = new ArrayList<>();
+        synchronized (pending) {
+            Iterator<Long> it = pending.iterator();
+            while (it.hasNext() && ids.size() < EmbeddingService.MAX_BATCH_SIZE) {
+                ids.add(it.next());
+                it.remove();
+            }
+        }
+        if (ids.isEmpty())
+            return;
+        try {
+            embedAndStore(entryRepo.findEmbeddingSourcesByIdIn(ids));
+        } catch (Exception e) {
+            // Embeddings stay null; the backfill retries them
+            log.warn("Embedding {} journal entries failed: {}", ids.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Embeds the given entries in batch and writes the vectors in one JDBC
+     * batch. Returns how many rows were updated.
+     */
+    int embedAndStore(List<EmbeddingSourceView> entries) {
+        // Entries without text stay unembedded rather than getting a zero vector
+        List<EmbeddingSourceView> embeddable = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        for (EmbeddingSourceView entry : entries) {
+            String text = embeddingText(entry);
+            if (!text.isBlank()) {
+                embeddable.add(entry);
+                texts.add(text);
+            }
+        }
+        if (texts.isEmpty())
+            return 0;
+        List<float[]> embeddings = embeddingService.getEmbeddings(texts).block(EMBED_TIMEOUT);
+        if (embeddings == null)
+            return 0;
+
+        List<Object[]> rows = new ArrayList<>(embeddable.size());
+        for (int i = 0; i < embeddable.size(); i++) {
+            EmbeddingSourceView entry = embeddable.get(i);
+            rows.add(new Object[] { Arrays.toString(embeddings.get(i)), entry.getId(), entry.getVersion() });
+        }
+        int updated = 0;
+        for (int count : jdbcTemplate.batchUpdate(UPDATE_EMBEDDING_SQL, rows)) {
+            updated += Math.max(count, 0);
+        }
+        return updated;
+    }
+
+    private static String embeddingText(EmbeddingSourceView entry) {
+        String text = JournalText.of(entry.getTitle(), entry.getHighlights(), entry.getChallenges(),
+                entry.getIntentions(), entry.getContentJson());
+        return text.length() > MAX_TEXT_CHARS ? text.substring(0, MAX_TEXT_CHARS) : text;
+    }
+}
@@ -1,75 +1,338 @@
 package com.muse.notes.journal.service;
 
 import com.muse.notes.journal.entity.JournalEntry;
+import com.muse.notes.journal.entity.JournalSummary;
 import com.muse.notes.journal.repository.JournalEntryRepository;
+import com.muse.notes.journal.repository.JournalSummaryRepository;
+import com.muse.notes.journal.util.JournalText;
 import com.muse.notes.service.GeminiService;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+/**
+ * Journal insights computed map-reduce style. Each calendar week in the range
+ * is summarized once and cached in journal_summaries; the range insight is
+ * reduced from those weekly summaries (and cached too). A cached summary is
+ * reused while the fingerprint of its entries (count + latest update) is
+ * unchanged, so editing one entry recomputes one week plus the reduce.
+ *
+ * A year costs at most 52 week summaries the first time and a single reduce
+ * call afterwards. Ranges longer than MAX_REDUCE_INPUTS weeks are condensed in
+ * parallel groups before the final reduce.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class JournalInsightService {
 
+        private static final int MAX_REDUCE_INPUTS = 60;
+        private static final int REDUCE_GROUP_SIZE = 26;
+
+        // Weeks with less text than this are passed through instead of summarized
+        private static final int SUMMARIZE_MIN_CHARS = 600;
+        private static final int MAX_WEEK_PROMPT_CHARS = 24_000;
+
+        private static final String NOT_ENOUGH_CONTENT = "Not enough content to analyze.";
+
+        // One row per calendar week (Monday start) in the range, clipped to the range
+        private static final String WEEK_STATS_SQL = "SELECT "
+                        + "GREATEST(CAST(date_trunc('week', CAST(entry_date AS timestamp)) AS date), CAST(? AS date)) AS period_start, "
+                        + "LEAST(CAST(date_trunc('week', CAST(entry_date AS timestamp)) AS date) + 6, CAST(? AS date)) AS period_end, "
+                        + "COUNT(*) AS entry_count, CAST(MAX(updated_at) AS varchar) AS last_update "
+                        + "FROM journal_entries WHERE user_id = ? AND entry_date BETWEEN ? AND ? AND deleted_at IS NULL "
+                        + "GROUP BY date_trunc('week', CAST(entry_date AS timestamp)) ORDER BY 1";
+
         private final JournalEntryRepository journalEntryRepository;
+        private final JournalSummaryRepository summaryRepository;
         private final GeminiService geminiService;
+        private final JdbcTemplate jdbcTemplate;
+        private final int concurrency;
+
+        public JournalInsightService(JournalEntryRepository journalEntryRepository,
+                        JournalSummaryRepository summaryRepository,
+                        GeminiService geminiService,
+                        JdbcTemplate jdbcTemplate,
+                        @Value("${journal.insights.concurrency:4}") int concurrency) {
+                this.journalEntryRepository = journalEntryRepository;
+                this.summaryRepository = summaryRepository;
+                this.geminiService = geminiService;
+                this.jdbcTemplate = jdbcTemplate;
+                this.concurrency = Math.max(1, concurrency);
+        }
+
+        private record Week(LocalDate start, LocalDate end, int entryCount, String fingerprint,
+                        JournalSummary cached) {
+        }
+
+        private record WeekResult(LocalDate start, LocalDate end, int entryCount, int wordCount, String summary,
+                        boolean cached) {
+        }
+
+        private record Plan(List<Week> weeks, String fingerprint, JournalSummary cachedRange) {
+        }
+
+        public Mono<Map<String, Object>> getInsights(Long userId, LocalDate startDate, LocalDate endDate) {
+                return streamInsights(userId, startDate, endDate)
+                                .filter(event -> "insight".equals(event.get("type")))
+                                .next()
+                                .map(event -> {
+                                        Map<String, Object> body = new LinkedHashMap<>(event);
+                                        body.remove("type");
+                                        return body;
+                                });
+        }
+
+        /**
+         * Emits a "week" event per week in date order (cached weeks at once,
+         * the rest as they are summarized), then one "insight" event for the
+         * whole range.
+         */
+        public Flux<Map<String, Object>> streamInsights(Long userId, LocalDate startDate, LocalDate endDate) {
+                return Mono.fromCallable(() -> plan(userId, startDate, endDate))
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .flatMapMany(plan -> {
+                                        if (plan.weeks().isEmpty()) {
+                                                return Flux.just(insight(startDate, endDate, 0, 0, NOT_ENOUGH_CONTENT,
+                                                                null));
+                                        }
+                                        Flux<WeekResult> weeks = Flux.fromIterable(plan.weeks())
+                                                        .flatMapSequential(week -> week.cached() != null
+                                                                        ? Mono.just(fromCache(week))
+                                                                        : summarizeWeek(userId, week), concurrency)
+                                                        .cache();
+                                        return Flux.concat(
+                                                        weeks.map(this::weekEvent),
+                                                        weeks.collectList().flatMap(
+                                                                        results -> rangeInsight(userId, startDate,
+                                                                                        endDate, plan, results)));
+                                })
+                                .onErrorResume(e -> {
+                                        log.error("Failed to generate journal insights", e);
+                                        return Flux.just(insight(startDate, endDate, 0, 0,
+                                                        "AI analysis temporarily unavailable.", e.getMessage()));
+                                });
+        }
+
+        // ==================== Map: weeks ====================
+
+        private Plan plan(Long userId, LocalDate startDate, LocalDate endDate) {
+                List<Week> stats = jdbcTemplate.query(WEEK_STATS_SQL, (rs, i) -> new Week(
+                                rs.getObject("period_start", LocalDate.class),
+                                rs.getObject("period_end", LocalDate.class),
+                                rs.getInt("entry_count"),
+                                rs.getInt("entry_count") + "@" + rs.getString("last_update"),
+                                null),
+                                startDate, endDate, userId, startDate, endDate);
+
+                Map<String, JournalSummary> cached = summaryRepository
+                                .findByUserIdAndKindAndPeriodStartGreaterThanEqualAndPeriodEndLessThanEqual(userId,
+                                                JournalSummary.KIND_WEEK, startDate, endDate)
+                                .stream()
+                                .collect(Collectors.toMap(s -> s.getPeriodStart() + "/" + s.getPeriodEnd(),
+                                                Function.identity(), (a, b) -> a));
+
+                List<Week> weeks = new ArrayList<>(stats.size());
+                StringBuilder rangeKey = new StringBuilder();
+                for (Week week : stats) {
+                        JournalSummary hit = cached.get(week.start() + "/" + week.end());
+                        boolean fresh = hit != null && hit.getFingerprint().equals(week.fingerprint());
+                        weeks.add(new Week(week.start(), week.end(), week.entryCount(), week.fingerprint(),
+                                        fresh ? hit : null));
+                        rangeKey.append(week.start()).append('/').append(week.fingerprint()).append(';');
+                }
+                String fingerprint = sha256(rangeKey.toString());
+                JournalSummary cachedRange = summaryRepository
+                                .findByUserIdAndKindAndPeriodStartAndPeriodEnd(userId, JournalSummary.KIND_RANGE,
+                                                startDate, endDate)
+                                .filter(s -> s.getFingerprint().equals(fingerprint))
+                                .orElse(null);
+                return new Plan(weeks, fingerprint, cachedRange);
+        }
+
+        private WeekResult fromCache(Week week) {
+                JournalSummary s = week.cached();
+                return new WeekResult(week.start(), week.end(), s.getEntryCount(), s.getWordCount(), s.getSummary(),
+                                true);
+        }
+
+        private Mono<WeekResult> summarizeWeek(Long userId, Week week) {
+                return Mono.fromCallable(() -> journalEntryRepository
+                                .findByUserIdAndEntryDateBetweenAndDeletedAtIsNull(userId, week.start(), week.end()))
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .flatMap(entries -> {
+                                        StringBuilder text = new StringBuilder();
+                                        entries.stream()
+                                                        .sorted((a, b) -> a.getEntryDate().compareTo(b.getEntryDate()))
+                                                        .forEach(entry -> appendEntry(text, entry));
+                                        int wordCount = countWords(text);
+                                        Mono<String> summary = text.length() < SUMMARIZE_MIN_CHARS
+                                                        ? Mono.just(text.toString().trim())
+                                                        : geminiService.generateContent(weekPrompt(week, text));
+                                        return summary.publishOn(Schedulers.boundedElastic()).map(s -> {
+                                                summaryRepository.upsert(userId, JournalSummary.KIND_WEEK,
+                                                                week.start(), week.end(), week.fingerprint(),
+                                                                entries.size(), wordCount, s);
+                                                return new WeekResult(week.start(), week.end(), entries.size(),
+                                                                wordCount, s, false);
+                                        });
+                                });
+        }
+
+        private static void appendEntry(StringBuilder sb, JournalEntry entry) {
+                String text = JournalText.of(entry.getTitle(), entry.getHighlights(), entry.getChallenges(),
+                                entry.getIntentions(), entry.getContentJson());
+                if (text.isBlank())
+                        return;
+                sb.append(entry.getEntryDate()).append(":\n").append(text).append("\n\n");
+        }
 
-        public Map<String, Object> getInsights(Long userId, LocalDate startDate, LocalDate endDate) {
-                List<JournalEntry> entries = journalEntryRepository.findByUserIdAndEntryDateBetween(userId, startDate,
-                                endDate);
-
-                String allContent = entries.stream()
-                                .map(entry -> String.join(" ", entry.getHighlights(), entry.getChallenges(),
-                                                entry.getIntentions()))
-                                .collect(Collectors.joining("\n\n"));
-
-                if (allContent.length() < 50) {
-                        return Map.of(
-                                        "period", Map.of("start", startDate, "end", endDate),
-                                        "totalEntries", entries.size(),
-                                        "analysis", Map.of(
-                                                        "summary", "Not enough content to analyze.",
-                                                        "commonThemes", List.of(),
-                                                        "wordCount", 0));
+        private static String weekPrompt(Week week, StringBuilder entries) {
+                String text = entries.length() > MAX_WEEK_PROMPT_CHARS
+                                ? entries.substring(0, MAX_WEEK_PROMPT_CHARS)
+                                : entries.toString();
+                return """
+                                Summarize this week of journal entries (%s to %s) in 4-6 sentences.
+                                Cover the main events, recurring thoughts, mood and any challenges.
+                                Write in the second person and keep concrete details.
+
+                                Journal entries:
+                                """.formatted(week.start(), week.end()) + text;
+        }
+
+        // ==================== Reduce: range ====================
+
+        private Mono<Map<String, Object>> rangeInsight(Long userId, LocalDate startDate, LocalDate endDate,
+                        Plan plan, List<WeekResult> weeks) {
+                int totalEntries = weeks.stream().mapToInt(WeekResult::entryCount).sum();
+                int wordCount = weeks.stream().mapToInt(WeekResult::wordCount).sum();
+                if (wordCount < 10) {
+                        return Mono.just(insight(startDate, endDate, totalEntries, wordCount, NOT_ENOUGH_CONTENT,
+                                        null));
+                }
+                if (plan.cachedRange() != null) {
+                        return Mono.just(insight(startDate, endDate, totalEntries, wordCount,
+                                        plan.cachedRange().getSummary(), null));
+                }
+                return reduce(weeks)
+                                .publishOn(Schedulers.boundedElastic())
+                                .map(summary -> {
+                                        summaryRepository.upsert(userId, JournalSummary.KIND_RANGE, startDate,
+                                                        endDate, plan.fingerprint(), totalEntries, wordCount,
+                                                        summary);
+                                        return insight(startDate, endDate, totalEntries, wordCount, summary, null);
+                                });
+        }
+
+        private Mono<String> reduce(List<WeekResult> parts) {
+                if (parts.size() <= MAX_REDUCE_INPUTS) {
+                        return geminiService.generateContent(rangePrompt(parts));
+                }
+                // Very long ranges: condense consecutive groups in parallel, then reduce those
+                List<List<WeekResult>> groups = new ArrayList<>();
+                for (int i = 0; i < parts.size(); i += REDUCE_GROUP_SIZE) {
+                        groups.add(parts.subList(i, Math.min(parts.size(), i + REDUCE_GROUP_SIZE)));
+                }
+                return Flux.fromIterable(groups)
+                                .flatMapSequential(group -> geminiService.generateContent(groupPrompt(group))
+                                                .map(text -> new WeekResult(group.get(0).start(),
+                                                                group.get(group.size() - 1).end(),
+                                                                group.stream().mapToInt(WeekResult::entryCount).sum(),
+                                                                group.stream().mapToInt(WeekResult::wordCount).sum(),
+                                                                text, false)),
+                                                concurrency)
+                                .collectList()
+                                .flatMap(this::reduce);
+        }
+
+        private static String rangePrompt(List<WeekResult> parts) {
+                return """
+                                Analyze the following summaries of journal entries and provide:
+                                1. A brief 2-3 sentence summary of the overall themes
+                                2. Top 3-5 common themes or patterns
+                                3. Mood trends if detectable
+                                4. One actionable suggestion
+
+                                Summaries:
+                                """ + periods(parts);
+        }
+
+        private static String groupPrompt(List<WeekResult> parts) {
+                return """
+                                Condense these weekly journal summaries into one summary of 6-8 sentences.
+                                Keep recurring themes, notable events and how the mood changed over time.
+
+                                Weekly summaries:
+                                """ + periods(parts);
+        }
+
+        private static String periods(List<WeekResult> parts) {
+                StringBuilder sb = new StringBuilder();
+                for (WeekResult part : parts) {
+                        sb.append(part.start()).append(" to ").append(part.end()).append(":\n")
+                                        .append(part.summary()).append("\n\n");
+                }
+                return sb.toString();
+        }
+
+        // ==================== Events ====================
+
+        private Map<String, Object> weekEvent(WeekResult week) {
+                Map<String, Object> event = new LinkedHashMap<>();
+                event.put("type", "week");
+                event.put("start", week.start());
+                event.put("end", week.end());
+                event.put("entries", week.entryCount());
+                event.put("summary", week.summary());
+                event.put("cached", week.cached());
+                return event;
+        }
+
+        private static Map<String, Object> insight(LocalDate startDate, LocalDate endDate, int totalEntries,
+                        long wordCount, String summary, String error) {
+                Map<String, Object> analysis = new LinkedHashMap<>();
+                analysis.put("summary", summary);
+                analysis.put("wordCount", wordCount);
+                if (error != null) {
+                        analysis.put("error", error);
+                }
+                if (NOT_ENOUGH_CONTENT.equals(summary)) {
+                        analysis.put("commonThemes", List.of());
                 }
+                Map<String, Object> event = new LinkedHashMap<>();
+                event.put("type", "insight");
+                event.put("period", Map.of("start", startDate, "end", endDate));
+                event.put("totalEntries", totalEntries);
+                event.put("analysis", analysis);
+                return event;
+        }
+
+        private static int countWords(CharSequence text) {
+                String trimmed = text.toString().trim();
+                return trimmed.isEmpty() ? 0 : trimmed.split("\\s+").length;
+        }
 
+        private static String sha256(String value) {
                 try {
-                        String prompt = """
-                                        Analyze the following journal entries and provide:
-                                        1. A brief 2-3 sentence summary of the overall themes
-                                        2. Top 3-5 common themes or patterns
-                                        3. Mood trends if detectable
-                                        4. One actionable suggestion
-
-                                        Journal entries:
-                                        """ + allContent;
-
-                        String aiResponse = geminiService.generateContent(prompt).block();
-                        long wordCount = allContent.split("\\s+").length;
-
-                        return Map.of(
-                                        "period", Map.of("start", startDate, "end", endDate),
-                                        "totalEntries", entries.size(),
-                                        "analysis", Map.of(
-                                                        "summary", aiResponse,
-                                                        "wordCount", wordCount));
-
-                } catch (Exception e) {
-                        log.error("Failed to generate journal insights", e);
-                        long wordCount = allContent.split("\\s+").length;
-                        return Map.of(
-                                        "period", Map.of("start", startDate, "end", endDate),
-                                        "totalEntries", entries.size(),
-                                        "analysis", Map.of(
-                                                        "summary", "AI analysis temporarily unavailable.",
-                                                        "error", e.getMessage(),
-                                                        "wordCount", wordCount));
+                        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                                        .digest(value.getBytes(StandardCharsets.UTF_8)));
+                } catch (NoSuchAlgorithmException e) {
+                        throw new IllegalStateException(e);
                 }
         }
 }
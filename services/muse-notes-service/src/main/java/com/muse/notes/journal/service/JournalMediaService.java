@@ -2,26 +2,34 @@ package com.muse.notes.journal.service;
 
 import com.muse.notes.journal.entity.JournalAudio;
 import com.muse.notes.journal.repository.JournalAudioRepository;
-import com.muse.notes.service.GeminiService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.nio.file.*;
 import java.time.Instant;
+import java.util.UUID;
 
 @Service
 public class JournalMediaService {
     private final Logger log = LoggerFactory.getLogger(JournalMediaService.class);
     private final JournalAudioRepository audioRepo;
-    private final GeminiService geminiService;
+    private final JournalTranscriptionService transcriptionService;
     private final Path storageDir;
+    private final String publicBase; // base URL to serve uploaded files, e.g. https://example.com/uploads/audio
 
-    public JournalMediaService(JournalAudioRepository audioRepo, GeminiService geminiService) {
+    public JournalMediaService(JournalAudioRepository audioRepo,
+            JournalTranscriptionService transcriptionService,
+            @Value("${journal.audio.upload-dir:/tmp/journal-audio}") String uploadDir,
+            @Value("${journal.audio.public-base:/uploads/audio}") String publicBase) {
         this.audioRepo = audioRepo;
-        this.geminiService = geminiService;
-        this.storageDir = Paths.get(System.getProperty("java.io.tmpdir"), "muse_journal_audio");
+        this.transcriptionService = transcriptionService;
+        this.storageDir = Paths.get(uploadDir);
+        this.publicBase = publicBase;
         try {
             Files.createDirectories(storageDir);
         } catch (Exception e) {
@@ -29,28 +37,35 @@ public class JournalMediaService {
         }
     }
 
-    public JournalAudio saveAudioFile(Long journalId, String username, MultipartFile file) throws Exception {
-        String filename = System.currentTimeMillis() + "_" + file.getOriginalFilename();
+    /**
+     * Stores the upload on disk and queues transcription; returns as soon as
+     * the file is written. The transcript arrives later on the row and over
+     * WebSocket, tracked by {@link JournalAudio#getTranscriptionJobId()}.
+     */
+    public JournalAudio saveAudioFile(Long journalId, String username, String bearerToken,
+            MultipartFile file) throws IOException {
+        String ext = StringUtils.getFilenameExtension(file.getOriginalFilename());
+        String filename = "audio-" + journalId + "-" + UUID.randomUUID().toString().substring(0, 8)
+                + (ext != null ? ("." + ext) : ".webm");
         Path dest = storageDir.resolve(filename);
-        file.transferTo(dest.toFile());
+        file.transferTo(dest);
+
         JournalAudio ja = new JournalAudio();
         ja.setJournalId(journalId);
         ja.setUsername(username);
         ja.setFilename(filename);
         ja.setFilepath(dest.toString());
+        // Build public URL (you must configure static resource handler to serve
+        // uploadDir mapped to publicBase)
+        ja.setAudioUrl(publicBase.replaceAll("/$", "") + "/" + filename);
+        ja.setContentType(file.getContentType());
         ja.setDurationSeconds(null);
         ja.setCreatedAt(Instant.now());
-        audioRepo.save(ja);
+        ja.setTranscriptionJobId(UUID.randomUUID());
+        ja.setTranscriptionStatus(JournalTranscriptionService.STATUS_PENDING);
+        ja = audioRepo.save(ja);
 
-        try {
-            if (geminiService != null) {
-                String text = geminiService.transcribeAudio(file.getBytes(), file.getContentType(), null).block();
-                ja.setTranscription(text);
-                audioRepo.save(ja);
-            }
-        } catch (Exception e) {
-            log.warn("transcription failed", e);
-        }
+        transcriptionService.transcribe(ja, bearerToken);
         return ja;
     }
 }
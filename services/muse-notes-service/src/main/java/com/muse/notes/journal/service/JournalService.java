@@ -2,20 +2,26 @@ package com.muse.notes.journal.service;
 
 import com.muse.notes.journal.entity.*;
 import com.muse.notes.journal.repository.*;
+import com.muse.notes.service.EmbeddingService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.YearMonth;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
 @Service
+@Slf4j
 @Transactional
 @RequiredArgsConstructor
 public class JournalService {
@@ -30,6 +36,8 @@ public class JournalService {
     private final JournalTranscriptRepository journalTranscriptRepository;
     private final JournalReminderRepository journalReminderRepository;
     private final SharedJournalRepository sharedJournalRepository;
+    private final JournalEmbeddingService journalEmbeddingService;
+    private final EmbeddingService embeddingService;
 
     @Cacheable(value = "journal_entries", key = "#userId + '_' + #date")
     public Optional<JournalEntry> getJournalEntry(Long userId, LocalDate date) {
@@ -50,8 +58,11 @@ public class JournalService {
         entry.setHighlights(highlights);
         entry.setChallenges(challenges);
         entry.setIntentions(intentions);
+        entry.setEmbedding(null); // re-embedded after commit
 
-        return journalEntryRepository.save(entry);
+        JournalEntry saved = journalEntryRepository.save(entry);
+        journalEmbeddingService.enqueue(saved.getId());
+        return saved;
     }
 
     public Optional<Mood> getMood(Long userId, LocalDate date) {
@@ -188,25 +199,26 @@ public class JournalService {
     }
 
     /**
-     * Semantic search using AI embeddings
-     * Falls back to text search if embedding generation fails
+     * Semantic search using AI embeddings, optionally limited to entries
+     * dated between {@code from} and {@code to}. Falls back to text search if
+     * the query can't be embedded.
      */
-    public List<JournalEntry> semanticSearch(Long userId, String query, int limit) {
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // no connection held during the embedding call
+    public List<JournalEntry> semanticSearch(Long userId, String query, int limit, LocalDate from, LocalDate to) {
+        float[] queryEmbedding;
         try {
-            // Generate embedding for query (using EmbeddingService if available)
-            // For now, use text search as embeddings require EmbeddingService injection
-            // Full implementation would:
-            // float[] queryEmbedding = embeddingService.generateEmbedding(query);
-            // String embeddingString = Arrays.toString(queryEmbedding);
-            // return journalEntryRepository.searchByEmbedding(userId, embeddingString,
-            // limit);
-
-            // Log that we're using text search fallback
-            // Full semantic search requires EmbeddingService to be injected
-            return journalEntryRepository.search(userId, query);
+            queryEmbedding = embeddingService.getEmbedding(query).block(Duration.ofSeconds(10));
         } catch (Exception e) {
+            log.warn("Journal query embedding failed, using text search: {}", e.getMessage());
+            queryEmbedding = null;
+        }
+        if (queryEmbedding == null) {
             return journalEntryRepository.search(userId, query);
         }
+        return journalEntryRepository.searchByEmbeddingInRange(userId, Arrays.toString(queryEmbedding),
+                from != null ? from : LocalDate.of(1, 1, 1),
+                to != null ? to : LocalDate.of(9999, 12, 31),
+                limit);
     }
 
     // --- Publication & Review ---
@@ -0,0 +1,173 @@
+package com.muse.notes.journal.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.muse.notes.journal.entity.JournalAudio;
+import com.muse.notes.journal.repository.JournalAudioRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Background transcription of journal audio. The recording is handed to the
+ * AI service's voice transcription job, which cuts it into overlapping
+ * chunks, transcribes them in parallel and stitches the text; this service
+ * polls that job without holding a thread, mirrors its progress onto the
+ * row and pushes it to the owner on /user/topic/transcription.
+ *
+ * The AI service is called with the uploader's bearer token, so a job must
+ * finish within the token's remaining lifetime.
+ */
+@Service
+public class JournalTranscriptionService {
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    private static final String DESTINATION = "/topic/transcription";
+
+    private final Logger log = LoggerFactory.getLogger(JournalTranscriptionService.class);
+    private final JournalAudioRepository audioRepo;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final WebClient aiClient;
+    private final Duration pollInterval;
+    private final Duration timeout;
+
+    public JournalTranscriptionService(JournalAudioRepository audioRepo,
+            SimpMessagingTemplate messagingTemplate,
+            @Value("${journal.audio.transcription.ai-service-url:http://localhost:8088}") String aiServiceUrl,
+            @Value("${journal.audio.transcription.poll-ms:2000}") long pollMillis,
+            @Value("${journal.audio.transcription.timeout-minutes:25}") long timeoutMinutes) {
+        this.audioRepo = audioRepo;
+        this.messagingTemplate = messagingTemplate;
+        this.aiClient = WebClient.builder().baseUrl(aiServiceUrl).build();
+        this.pollInterval = Duration.ofMillis(Math.max(250, pollMillis));
+        this.timeout = Duration.ofMinutes(Math.max(1, timeoutMinutes));
+    }
+
+    /**
+     * Starts transcribing the stored recording and returns at once; the
+     * outcome lands on the row and on the owner's transcription topic.
+     */
+    public void transcribe(JournalAudio audio, String bearerToken) {
+        if (audio.getFilepath() == null)
+            return;
+        long started = System.nanoTime();
+        Long audioId = audio.getId();
+
+        startJob(audio, bearerToken)
+                .flatMap(jobId -> onWorker(() -> audioRepo.updateTranscriptionStatus(audioId, STATUS_RUNNING))
+                        .then(pollJob(audio, jobId, bearerToken)))
+                .timeout(timeout)
+                .flatMap(transcription -> onWorker(
+                        () -> audioRepo.completeTranscription(audioId, transcription, STATUS_COMPLETED))
+                        .thenReturn(transcription))
+                .subscribe(transcription -> {
+                    notify(audio, "TRANSCRIPTION_COMPLETED", Map.of("transcription", transcription));
+                    log.info("Transcribed journal audio {} in {} ms", audioId,
+                            (System.nanoTime() - started) / 1_000_000);
+                }, error -> {
+                    log.warn("Transcription failed for journal audio {}", audioId, error);
+                    // Only the status column is written, so concurrent edits to the row survive
+                    onWorker(() -> audioRepo.updateTranscriptionStatus(audioId, STATUS_FAILED))
+                            .subscribe(updated -> notify(audio, "TRANSCRIPTION_FAILED", Map.of()),
+                                    e -> log.warn("Could not mark journal audio {} failed", audioId, e));
+                });
+    }
+
+    private Mono<String> startJob(JournalAudio audio, String bearerToken) {
+        MultipartBodyBuilder body = new MultipartBodyBuilder();
+        body.part("audio", new FileSystemResource(audio.getFilepath()))
+                .contentType(MediaType.parseMediaType(
+                        audio.getContentType() != null ? audio.getContentType() : "audio/webm"));
+        return aiClient.post()
+                .uri("/api/voice/transcribe")
+                .headers(headers -> authorize(headers, bearerToken))
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(body.build()))
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .map(response -> {
+                    String jobId = response.path("jobId").asText(null);
+                    if (jobId == null)
+                        throw new IllegalStateException("AI service returned no transcription job");
+                    return jobId;
+                });
+    }
+
+    // Emits the transcription once the AI job completes; errors if it fails
+    private Mono<String> pollJob(JournalAudio audio, String jobId, String bearerToken) {
+        int[] lastCompleted = { -1 };
+        return Flux.interval(pollInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> aiClient.get()
+                        .uri("/api/voice/transcribe/{jobId}", jobId)
+                        .headers(headers -> authorize(headers, bearerToken))
+                        .retrieve()
+                        .bodyToMono(JsonNode.class))
+                .<String>concatMap(status -> {
+                    JsonNode result = status.path("result");
+                    switch (status.path("status").asText()) {
+                        case STATUS_COMPLETED:
+                            return Mono.just(result.path("transcription").asText(""));
+                        case STATUS_FAILED:
+                            return Mono.error(new IllegalStateException(
+                                    "AI transcription job failed: " + result.path("error").asText("")));
+                        default:
+                            if (!result.has("totalChunks") || result.path("completedChunks").asInt() == lastCompleted[0])
+                                return Mono.empty();
+                            int completed = result.path("completedChunks").asInt();
+                            int total = result.path("totalChunks").asInt();
+                            lastCompleted[0] = completed;
+                            return onWorker(() -> audioRepo.updateChunkProgress(audio.getId(), completed, total))
+                                    .doOnNext(updated -> notify(audio, "TRANSCRIPTION_PROGRESS",
+                                            Map.of("completed", completed, "total", total)))
+                                    .then(Mono.empty());
+                    }
+                })
+                .next();
+    }
+
+    // The AI service takes the job owner from the forwarded token
+    private static void authorize(HttpHeaders headers, String bearerToken) {
+        if (bearerToken != null)
+            headers.setBearerAuth(bearerToken);
+    }
+
+    // Repository calls block, so they run on boundedElastic instead of the WebClient event loop
+    private static Mono<Integer> onWorker(Callable<Integer> update) {
+        return Mono.fromCallable(update).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private void notify(JournalAudio audio, String type, Map<String, Object> extra) {
+        if (audio.getUsername() == null)
+            return;
+        Map<String, Object> payload = new HashMap<>(extra);
+        payload.put("type", type);
+        payload.put("jobId", audio.getTranscriptionJobId());
+        payload.put("audioId", audio.getId());
+        payload.put("journalId", audio.getJournalId());
+        try {
+            messagingTemplate.convertAndSendToUser(audio.getUsername(), DESTINATION, payload);
+        } catch (Exception e) {
+            log.debug("Could not push transcription progress for audio {}: {}", audio.getId(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.muse.notes.journal.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.muse.notes.util.TiptapMarkdown;
+
+/**
+ * Plain text of a journal entry for embeddings and insight prompts: the
+ * title, the three daily prompts and the rich-text body.
+ */
+public class JournalText {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static String of(String title, String highlights, String challenges, String intentions,
+            String contentJson) {
+        StringBuilder sb = new StringBuilder();
+        append(sb, title);
+        append(sb, highlights);
+        append(sb, challenges);
+        append(sb, intentions);
+        if (contentJson != null && !contentJson.isBlank()) {
+            try {
+                append(sb, TiptapMarkdown.toMarkdown(MAPPER.readTree(contentJson)));
+            } catch (Exception e) {
+                append(sb, contentJson);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void append(StringBuilder sb, String part) {
+        if (part == null || part.isBlank())
+            return;
+        if (sb.length() > 0)
+            sb.append("\n\n");
+        sb.append(part.trim());
+    }
+}
@@ -0,0 +1,27 @@
+package com.muse.notes.repository;
+
+import com.muse.notes.entity.AttachmentBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface AttachmentBlobRepository extends JpaRepository<AttachmentBlob, String> {
+
+    // Registers a blob or adds a reference to an existing one
+    @Modifying
+    @Query(value = "INSERT INTO attachment_blobs (sha256, size, ref_count, created_at) VALUES (:sha256, :size, 1, now()) "
+            + "ON CONFLICT (sha256) DO UPDATE SET ref_count = attachment_blobs.ref_count + 1", nativeQuery = true)
+    int acquire(@Param("sha256") String sha256, @Param("size") long size);
+
+    @Modifying
+    @Query(value = "UPDATE attachment_blobs SET ref_count = ref_count - 1 WHERE sha256 = :sha256", nativeQuery = true)
+    int release(@Param("sha256") String sha256);
+
+    // Row lock held until commit, so a concurrent acquire waits for the payload delete
+    @Modifying
+    @Query(value = "DELETE FROM attachment_blobs WHERE sha256 = :sha256 AND ref_count <= 0", nativeQuery = true)
+    int deleteIfUnreferenced(@Param("sha256") String sha256);
+}
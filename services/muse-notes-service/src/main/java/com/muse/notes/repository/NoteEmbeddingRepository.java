@@ -0,0 +1,80 @@
+package com.muse.notes.repository;
+
+import com.muse.notes.entity.NoteEmbedding;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface NoteEmbeddingRepository extends JpaRepository<NoteEmbedding, Long> {
+
+       String CHUNK_HIT_COLUMNS = "c.id AS id, c.note_id AS noteId, n.title AS noteTitle, c.chunk_index AS chunkIndex, "
+                     + "c.start_offset AS startOffset, c.end_offset AS endOffset, c.content AS content, ";
+
+       // Nearest chunks by cosine distance. For users with few chunks the planner
+       // prefers the user_id index and an exact sort over the HNSW scan.
+       @Query(value = "SELECT " + CHUNK_HIT_COLUMNS
+                     + "CAST(1 - (c.embedding <=> CAST(:embedding AS vector)) AS double precision) AS score "
+                     + "FROM note_chunks c JOIN notes n ON n.id = c.note_id AND n.deleted_at IS NULL "
+                     + "WHERE c.user_id = :userId AND c.embedding IS NOT NULL "
+                     + "ORDER BY c.embedding <=> CAST(:embedding AS vector) LIMIT :limit", nativeQuery = true)
+       List<ChunkHit> findNearestChunks(@Param("userId") Long userId, @Param("embedding") String embedding,
+                     @Param("limit") int limit);
+
+       // Okapi BM25 (k1 = 1.2, b = 0.75) over the user's chunks. Query terms are
+       // the stemmed lexemes of the question, OR-ed so a chunk needs only one of
+       // them; document frequencies come from the GIN index, one probe per term.
+       @Query(value = "WITH terms AS (SELECT DISTINCT lexeme FROM unnest(to_tsvector('english', :question))), "
+                     + "q AS (SELECT to_tsquery('simple', string_agg(quote_literal(lexeme), ' | ')) AS tsq FROM terms), "
+                     + "stats AS (SELECT COUNT(*) AS n, COALESCE(AVG(token_count), 1) AS avgdl "
+                     + "FROM note_chunks WHERE user_id = :userId), "
+                     + "df AS (SELECT t.lexeme, (SELECT COUNT(*) FROM note_chunks d WHERE d.user_id = :userId "
+                     + "AND d.content_tsv @@ to_tsquery('simple', quote_literal(t.lexeme))) AS df FROM terms t) "
+                     + "SELECT " + CHUNK_HIT_COLUMNS
+                     + "CAST(SUM(ln(1 + (s.n - df.df + 0.5) / (df.df + 0.5)) "
+                     + "* (array_length(tf.positions, 1) * 2.2) "
+                     + "/ (array_length(tf.positions, 1) + 0.3 + 0.9 * c.token_count / s.avgdl)) AS double precision) AS score "
+                     + "FROM note_chunks c JOIN notes n ON n.id = c.note_id AND n.deleted_at IS NULL "
+                     + "CROSS JOIN q CROSS JOIN stats s "
+                     + "CROSS JOIN LATERAL unnest(c.content_tsv) AS tf "
+                     + "JOIN df ON df.lexeme = tf.lexeme "
+                     + "WHERE c.user_id = :userId AND c.content_tsv @@ q.tsq "
+                     + "GROUP BY c.id, c.note_id, n.title, c.chunk_index, c.start_offset, c.end_offset, c.content "
+                     + "ORDER BY score DESC LIMIT :limit", nativeQuery = true)
+       List<ChunkHit> findBm25Chunks(@Param("userId") Long userId, @Param("question") String question,
+                     @Param("limit") int limit);
+
+       @Query(value = "SELECT note_id AS noteId, content_hash AS contentHash, CAST(embedding AS text) AS embedding "
+                     + "FROM note_chunks WHERE note_id IN (:noteIds) AND embedding IS NOT NULL", nativeQuery = true)
+       List<StoredChunk> findStoredChunksByNoteIdIn(@Param("noteIds") Collection<Long> noteIds);
+
+       interface ChunkHit {
+              Long getId();
+
+              Long getNoteId();
+
+              String getNoteTitle();
+
+              Integer getChunkIndex();
+
+              Integer getStartOffset();
+
+              Integer getEndOffset();
+
+              String getContent();
+
+              Double getScore();
+       }
+
+       interface StoredChunk {
+              Long getNoteId();
+
+              String getContentHash();
+
+              String getEmbedding();
+       }
+}
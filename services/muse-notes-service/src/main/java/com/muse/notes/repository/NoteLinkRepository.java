@@ -12,6 +12,14 @@ public interface NoteLinkRepository extends JpaRepository<NoteLink, NoteLink.Not
 
     List<NoteLink> findByLinkedNoteIdOrderByRelevanceScoreDesc(Long linkedNoteId);
 
+    List<NoteLink> findBySourceNoteIdIn(java.util.Collection<Long> sourceNoteIds);
+
+    // Notes that link to any of these by similarity (explicit links score 1.0)
+    @org.springframework.data.jpa.repository.Query("SELECT DISTINCT nl.sourceNoteId FROM NoteLink nl "
+            + "WHERE nl.linkedNoteId IN :noteIds AND nl.relevanceScore < 1.0")
+    List<Long> findSemanticSourceIdsLinkingTo(
+            @org.springframework.data.repository.query.Param("noteIds") java.util.Collection<Long> noteIds);
+
     void deleteBySourceNoteId(Long sourceNoteId);
 
     void deleteByLinkedNoteId(Long linkedNoteId);
@@ -21,7 +29,22 @@ public interface NoteLinkRepository extends JpaRepository<NoteLink, NoteLink.Not
     @org.springframework.data.jpa.repository.Query("SELECT nl FROM NoteLink nl JOIN Note n ON nl.sourceNoteId = n.id WHERE n.userId = :userId")
     List<NoteLink> findAllBySourceUser(@org.springframework.data.repository.query.Param("userId") Long userId);
 
+    // Edges between a user's live notes, without loading either entity
+    @org.springframework.data.jpa.repository.Query("SELECT nl.sourceNoteId AS sourceNoteId, nl.linkedNoteId AS linkedNoteId, "
+            + "nl.relevanceScore AS relevanceScore FROM NoteLink nl JOIN Note s ON nl.sourceNoteId = s.id "
+            + "JOIN Note t ON nl.linkedNoteId = t.id WHERE s.userId = :userId AND t.userId = :userId "
+            + "AND s.deletedAt IS NULL AND t.deletedAt IS NULL")
+    List<EdgeView> findLiveEdgesByUserId(@org.springframework.data.repository.query.Param("userId") Long userId);
+
     @org.springframework.data.jpa.repository.Query("SELECT nl FROM NoteLink nl JOIN Note n ON nl.sourceNoteId = n.id WHERE n.ownerUsername = :username")
     List<NoteLink> findAllBySourceUserUsername(
             @org.springframework.data.repository.query.Param("username") String username);
+
+    interface EdgeView {
+        Long getSourceNoteId();
+
+        Long getLinkedNoteId();
+
+        Float getRelevanceScore();
+    }
 }
@@ -5,14 +5,23 @@ import com.muse.notes.entity.Section;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import jakarta.persistence.QueryHint;
+
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface NoteRepository extends JpaRepository<Note, Long> {
 
+       String LIST_VIEW_SELECT = "SELECT n.id AS id, n.title AS title, n.excerpt AS excerpt, n.updatedAt AS updatedAt, " +
+                     "n.tags AS tags, n.isPinned AS pinned, n.orderIndex AS orderIndex, n.deletedAt AS deletedAt FROM Note n ";
+
        List<Note> findBySectionOrderByOrderIndexAsc(Section section);
 
        Optional<Note> findByIdAndSection(Long id, Section section);
@@ -38,6 +47,13 @@ public interface NoteRepository extends JpaRepository<Note, Long> {
        @Query("SELECT COALESCE(MAX(n.orderIndex), 0) FROM Note n WHERE n.section.id = :sectionId")
        int findMaxOrderIndexBySectionId(@Param("sectionId") Long sectionId);
 
+       // Writes only the position, so a move does not rewrite the note's content
+       @Modifying
+       @Query(value = "UPDATE notes SET section_id = :sectionId, order_index = :rank "
+                     + "WHERE id = :id AND user_id = :userId", nativeQuery = true)
+       int updatePosition(@Param("id") Long id, @Param("userId") Long userId, @Param("sectionId") Long sectionId,
+                     @Param("rank") int rank);
+
        List<Note> findByUserIdAndIsPinnedTrueOrderByUpdatedAtDesc(Long userId);
 
        @Query("SELECT n FROM Note n JOIN NotePermission p ON n.id = p.note.id WHERE p.userId = :userId")
@@ -56,4 +72,193 @@ public interface NoteRepository extends JpaRepository<Note, Long> {
        List<Note> findByUserIdAndTag(@Param("userId") Long userId, @Param("tag") String tag);
 
        Optional<Note> findByUserIdAndTitleIgnoreCaseAndDeletedAtIsNull(Long userId, String title);
+
+       // Wiki-link resolution: lower(title) -> id for a batch of link keys
+       @Query("SELECT n.id AS id, LOWER(n.title) AS titleKey FROM Note n WHERE n.userId = :userId " +
+                     "AND n.deletedAt IS NULL AND LOWER(n.title) IN :titleKeys ORDER BY n.id ASC")
+       List<TitleKeyView> findIdsByUserIdAndTitleKeys(@Param("userId") Long userId,
+                     @Param("titleKeys") Collection<String> titleKeys);
+
+       // Lean node rows for the knowledge graph (no content / embedding)
+       @Query("SELECT n.id AS id, n.title AS title, s.title AS sectionTitle, n.isPinned AS pinned FROM Note n " +
+                     "LEFT JOIN n.section s WHERE n.userId = :userId AND n.deletedAt IS NULL ORDER BY n.id ASC")
+       List<GraphNodeView> findGraphNodesByUserId(@Param("userId") Long userId);
+
+       // ==================== Lean list projections (keyset by orderIndex, id) ====================
+
+       @Query(LIST_VIEW_SELECT + "WHERE n.userId = :userId AND n.deletedAt IS NULL " +
+                     "AND (n.orderIndex > :afterOrder OR (n.orderIndex = :afterOrder AND n.id > :afterId)) " +
+                     "ORDER BY n.orderIndex ASC, n.id ASC")
+       List<NoteListView> findListViewsByUserId(@Param("userId") Long userId, @Param("afterOrder") int afterOrder,
+                     @Param("afterId") long afterId, Pageable pageable);
+
+       @Query(LIST_VIEW_SELECT + "WHERE n.section.id = :sectionId AND n.userId = :userId AND n.deletedAt IS NULL " +
+                     "AND (n.orderIndex > :afterOrder OR (n.orderIndex = :afterOrder AND n.id > :afterId)) " +
+                     "ORDER BY n.orderIndex ASC, n.id ASC")
+       List<NoteListView> findListViewsBySectionId(@Param("sectionId") Long sectionId, @Param("userId") Long userId,
+                     @Param("afterOrder") int afterOrder, @Param("afterId") long afterId, Pageable pageable);
+
+       @Query(LIST_VIEW_SELECT + "WHERE n.userId = :userId AND n.deletedAt IS NULL AND array_contains(n.tags, :tag) " +
+                     "AND (n.orderIndex > :afterOrder OR (n.orderIndex = :afterOrder AND n.id > :afterId)) " +
+                     "ORDER BY n.orderIndex ASC, n.id ASC")
+       List<NoteListView> findListViewsByTag(@Param("userId") Long userId, @Param("tag") String tag,
+                     @Param("afterOrder") int afterOrder, @Param("afterId") long afterId, Pageable pageable);
+
+       @Query(LIST_VIEW_SELECT + "WHERE n.userId = :userId AND n.isPinned = true AND n.deletedAt IS NULL " +
+                     "ORDER BY n.updatedAt DESC")
+       List<NoteListView> findPinnedListViews(@Param("userId") Long userId);
+
+       @Query(LIST_VIEW_SELECT + "WHERE n.userId = :userId AND n.deletedAt IS NOT NULL ORDER BY n.deletedAt DESC")
+       List<NoteListView> findTrashListViews(@Param("userId") Long userId);
+
+       @Query("SELECT n.id AS id, n.content AS content FROM Note n WHERE n.id IN :ids")
+       List<ContentView> findContentByIdIn(@Param("ids") Collection<Long> ids);
+
+       // ==================== Notebook export / bulk indexing ====================
+
+       // Streamed with a server-side cursor; callers must hold a read-only transaction
+       @QueryHints(@QueryHint(name = org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE, value = "200"))
+       @Query("SELECT n.id AS id, s.id AS sectionId, n.title AS title, n.content AS content, n.tags AS tags, " +
+                     "n.isPinned AS pinned, n.orderIndex AS orderIndex, n.createdAt AS createdAt, n.updatedAt AS updatedAt " +
+                     "FROM Note n JOIN n.section s WHERE s.notebook.id = :notebookId AND n.userId = :userId " +
+                     "AND n.deletedAt IS NULL ORDER BY s.id ASC, n.orderIndex ASC, n.id ASC")
+       Stream<NoteExportView> streamExportViewsByNotebookId(@Param("notebookId") Long notebookId,
+                     @Param("userId") Long userId);
+
+       // Attachment ids referenced from note content, without loading the notes
+       @Query(value = "SELECT DISTINCT CAST(m[1] AS uuid) FROM notes n JOIN sections s ON s.id = n.section_id, " +
+                     "regexp_matches(n.content::text, '/api/notes/attachments/([0-9a-fA-F-]{36})', 'g') AS m " +
+                     "WHERE s.notebook_id = :notebookId AND n.user_id = :userId AND n.deleted_at IS NULL",
+                     nativeQuery = true)
+       List<java.util.UUID> findAttachmentIdsByNotebookId(@Param("notebookId") Long notebookId,
+                     @Param("userId") Long userId);
+
+       @Query("SELECT n.id AS id, n.content AS content FROM Note n WHERE n.section.notebook.id = :notebookId " +
+                     "AND n.userId = :userId AND n.deletedAt IS NULL AND n.id > :afterId ORDER BY n.id ASC")
+       List<ContentView> findContentViewsByNotebookId(@Param("notebookId") Long notebookId,
+                     @Param("userId") Long userId, @Param("afterId") long afterId, Pageable pageable);
+
+       // ==================== Chunk indexing ====================
+
+       @Query("SELECT n.id AS id, n.userId AS userId, n.title AS title, n.content AS content FROM Note n " +
+                     "WHERE n.id IN :ids AND n.deletedAt IS NULL")
+       List<ChunkSourceView> findChunkSourcesByIdIn(@Param("ids") Collection<Long> ids);
+
+       // Live notes without any embedded chunk (never indexed, or the embedding
+       // call failed and only the text was stored), in id order for the backfill
+       @Query("SELECT n.id AS id, n.userId AS userId, n.title AS title, n.content AS content FROM Note n " +
+                     "WHERE n.id > :afterId AND n.deletedAt IS NULL " +
+                     "AND NOT EXISTS (SELECT 1 FROM NoteEmbedding e WHERE e.noteId = n.id AND e.embedding IS NOT NULL) " +
+                     "ORDER BY n.id ASC")
+       List<ChunkSourceView> findUnchunkedAfter(@Param("afterId") long afterId, Pageable pageable);
+
+       // ==================== Analysis pipeline ====================
+
+       @Query(value = "SELECT id, user_id AS userId, title, CAST(content AS text) AS contentJson, " +
+                     "CAST(embedding AS text) AS embedding, embedding_hash AS embeddingHash, " +
+                     "CAST(updated_at AS varchar) AS version FROM notes WHERE id IN (:ids) AND deleted_at IS NULL",
+                     nativeQuery = true)
+       List<AnalysisSourceView> findAnalysisSourcesByIdIn(@Param("ids") Collection<Long> ids);
+
+       // Ordered by L2 distance so the ivfflat index applies; similarity is cosine
+       @Query(value = "SELECT id, title, CAST(1 - (embedding <=> CAST(:embedding AS vector)) AS double precision) " +
+                     "AS similarity FROM notes WHERE user_id = :userId AND id <> :noteId AND deleted_at IS NULL " +
+                     "AND embedding IS NOT NULL ORDER BY embedding <-> CAST(:embedding AS vector) LIMIT :limit",
+                     nativeQuery = true)
+       List<NeighborView> findNearestNeighbors(@Param("userId") Long userId, @Param("noteId") Long noteId,
+                     @Param("embedding") String embedding, @Param("limit") int limit);
+
+       interface NoteListView {
+              Long getId();
+
+              String getTitle();
+
+              String getExcerpt();
+
+              java.time.Instant getUpdatedAt();
+
+              String[] getTags();
+
+              Boolean getPinned();
+
+              Integer getOrderIndex();
+
+              java.time.Instant getDeletedAt();
+       }
+
+       interface NoteExportView {
+              Long getId();
+
+              Long getSectionId();
+
+              String getTitle();
+
+              com.fasterxml.jackson.databind.JsonNode getContent();
+
+              String[] getTags();
+
+              Boolean getPinned();
+
+              Integer getOrderIndex();
+
+              java.time.Instant getCreatedAt();
+
+              java.time.Instant getUpdatedAt();
+       }
+
+       interface ContentView {
+              Long getId();
+
+              com.fasterxml.jackson.databind.JsonNode getContent();
+       }
+
+       interface ChunkSourceView {
+              Long getId();
+
+              Long getUserId();
+
+              String getTitle();
+
+              com.fasterxml.jackson.databind.JsonNode getContent();
+       }
+
+       interface AnalysisSourceView {
+              Long getId();
+
+              Long getUserId();
+
+              String getTitle();
+
+              String getContentJson();
+
+              String getEmbedding();
+
+              String getEmbeddingHash();
+
+              String getVersion();
+       }
+
+       interface NeighborView {
+              Long getId();
+
+              String getTitle();
+
+              Double getSimilarity();
+       }
+
+       interface TitleKeyView {
+              Long getId();
+
+              String getTitleKey();
+       }
+
+       interface GraphNodeView {
+              Long getId();
+
+              String getTitle();
+
+              String getSectionTitle();
+
+              Boolean getPinned();
+       }
 }
@@ -0,0 +1,77 @@
+package com.muse.notes.repository;
+
+import com.muse.notes.entity.NoteWikiLink;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface NoteWikiLinkRepository extends JpaRepository<NoteWikiLink, NoteWikiLink.NoteWikiLinkId> {
+
+    List<NoteWikiLink> findBySourceNoteId(Long sourceNoteId);
+
+    List<NoteWikiLink> findByUserIdAndTargetKey(Long userId, String targetKey);
+
+    void deleteBySourceNoteId(Long sourceNoteId);
+
+    void deleteBySourceNoteIdAndTargetKeyIn(Long sourceNoteId, Collection<String> targetKeys);
+
+    // Links whose target title matches no live note (single anti-join)
+    @Query(value = "SELECT wl.source_note_id AS sourceNoteId, s.title AS sourceNoteTitle, wl.target_title AS targetTitle "
+            + "FROM note_wiki_links wl JOIN notes s ON s.id = wl.source_note_id AND s.deleted_at IS NULL "
+            + "WHERE wl.user_id = :userId AND NOT EXISTS (SELECT 1 FROM notes t WHERE t.user_id = wl.user_id "
+            + "AND lower(t.title) = wl.target_key AND t.deleted_at IS NULL) "
+            + "ORDER BY s.order_index, wl.target_title", nativeQuery = true)
+    List<BrokenWikiLink> findBrokenLinksByUserId(@Param("userId") Long userId);
+
+    // Whole wiki-link graph of a user; targetNoteId is null for unresolved links
+    @Query(value = "SELECT wl.source_note_id AS sourceNoteId, t.id AS targetNoteId, wl.target_title AS targetTitle "
+            + "FROM note_wiki_links wl JOIN notes s ON s.id = wl.source_note_id AND s.deleted_at IS NULL "
+            + "LEFT JOIN notes t ON t.user_id = wl.user_id AND lower(t.title) = wl.target_key AND t.deleted_at IS NULL "
+            + "WHERE wl.user_id = :userId", nativeQuery = true)
+    List<WikiLinkEdge> findWikiGraphByUserId(@Param("userId") Long userId);
+
+    // Resolved targets of the given notes' links; duplicate titles resolve to the oldest note
+    @Query(value = "SELECT DISTINCT ON (wl.source_note_id, wl.target_key) wl.source_note_id AS sourceNoteId, "
+            + "t.id AS targetNoteId, wl.target_title AS targetTitle "
+            + "FROM note_wiki_links wl JOIN notes t ON t.user_id = wl.user_id AND lower(t.title) = wl.target_key "
+            + "AND t.deleted_at IS NULL "
+            + "WHERE wl.source_note_id IN (:sourceIds) AND t.id <> wl.source_note_id "
+            + "ORDER BY wl.source_note_id, wl.target_key, t.id", nativeQuery = true)
+    List<WikiLinkEdge> findResolvedBySourceNoteIdIn(@Param("sourceIds") Collection<Long> sourceIds);
+
+    // Set-based resolution after a bulk import: links from or to notes of the
+    // notebook, each key resolved to the oldest live note with that title
+    @Modifying
+    @Query(value = "INSERT INTO note_links (source_note_id, linked_note_id, relevance_score) "
+            + "SELECT DISTINCT ON (wl.source_note_id, wl.target_key) wl.source_note_id, t.id, 1.0 "
+            + "FROM note_wiki_links wl JOIN notes t ON t.user_id = wl.user_id AND lower(t.title) = wl.target_key "
+            + "AND t.deleted_at IS NULL "
+            + "WHERE wl.user_id = :userId AND t.id <> wl.source_note_id AND (wl.source_note_id IN "
+            + "(SELECT n.id FROM notes n JOIN sections s ON s.id = n.section_id WHERE s.notebook_id = :notebookId) "
+            + "OR t.section_id IN (SELECT s.id FROM sections s WHERE s.notebook_id = :notebookId)) "
+            + "ORDER BY wl.source_note_id, wl.target_key, t.id "
+            + "ON CONFLICT (source_note_id, linked_note_id) DO NOTHING", nativeQuery = true)
+    int insertResolvedLinksForNotebook(@Param("notebookId") Long notebookId, @Param("userId") Long userId);
+
+    interface BrokenWikiLink {
+        Long getSourceNoteId();
+
+        String getSourceNoteTitle();
+
+        String getTargetTitle();
+    }
+
+    interface WikiLinkEdge {
+        Long getSourceNoteId();
+
+        Long getTargetNoteId();
+
+        String getTargetTitle();
+    }
+}
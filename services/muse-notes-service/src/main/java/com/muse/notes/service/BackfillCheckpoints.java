@@ -0,0 +1,58 @@
+package com.muse.notes.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Progress rows for resumable background backfills (backfill_checkpoints).
+ * A backfill claims its row with a lease before running, so only one
+ * instance works on it, and records the last finished id after every batch,
+ * so a restart resumes there.
+ */
+@Component
+public class BackfillCheckpoints {
+
+    private static final String CLAIM_SQL = "INSERT INTO backfill_checkpoints (name, lease_until, updated_at) "
+            + "VALUES (?, now() + make_interval(secs => ?), now()) "
+            + "ON CONFLICT (name) DO UPDATE SET lease_until = EXCLUDED.lease_until, updated_at = now() "
+            + "WHERE backfill_checkpoints.lease_until IS NULL OR backfill_checkpoints.lease_until < now()";
+
+    private static final String ADVANCE_SQL = "UPDATE backfill_checkpoints SET last_id = ?, processed = processed + ?, "
+            + "lease_until = now() + make_interval(secs => ?), updated_at = now() WHERE name = ?";
+
+    private static final String FINISH_SQL = "UPDATE backfill_checkpoints SET last_id = 0, completed_at = now(), "
+            + "lease_until = NULL, updated_at = now() WHERE name = ?";
+
+    private static final String RELEASE_SQL = "UPDATE backfill_checkpoints SET lease_until = NULL WHERE name = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BackfillCheckpoints(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /** False if another instance holds an unexpired lease. */
+    public boolean claim(String name, int leaseSeconds) {
+        return jdbcTemplate.update(CLAIM_SQL, name, leaseSeconds) > 0;
+    }
+
+    public long lastId(String name) {
+        Long lastId = jdbcTemplate.queryForObject(
+                "SELECT last_id FROM backfill_checkpoints WHERE name = ?", Long.class, name);
+        return lastId != null ? lastId : 0;
+    }
+
+    /** Records a finished batch and extends the lease. */
+    public void advance(String name, long lastId, int processed, int leaseSeconds) {
+        jdbcTemplate.update(ADVANCE_SQL, lastId, processed, leaseSeconds, name);
+    }
+
+    /** Ends a pass; the next run starts again from the first id. */
+    public void finish(String name) {
+        jdbcTemplate.update(FINISH_SQL, name);
+    }
+
+    public void release(String name) {
+        jdbcTemplate.update(RELEASE_SQL, name);
+    }
+}
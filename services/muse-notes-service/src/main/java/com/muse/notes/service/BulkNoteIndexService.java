@@ -0,0 +1,125 @@
+package com.muse.notes.service;
+
+import com.muse.notes.repository.NoteRepository;
+import com.muse.notes.repository.NoteWikiLinkRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Indexes notes that were written in bulk (notebook import).
+ *
+ * Does in a few batched passes what the single-note save path does per note:
+ * wiki-link rows, resolved note links, analysis (embeddings, semantic links,
+ * suggestions) and the chunk index. Versions are not produced for imported
+ * notes.
+ */
+@Service
+@Slf4j
+public class BulkNoteIndexService {
+
+    private static final int PAGE_SIZE = 200;
+
+    private static final String INSERT_WIKI_LINK_SQL = "INSERT INTO note_wiki_links "
+            + "(source_note_id, target_key, user_id, target_title) VALUES (?, ?, ?, ?) ON CONFLICT DO NOTHING";
+
+    private final NoteRepository noteRepo;
+    private final NoteWikiLinkRepository wikiLinkRepo;
+    private final NoteService noteService;
+    private final NoteAnalysisService noteAnalysisService;
+    private final NoteGraphService graphService;
+    private final NoteChunkIndexService chunkIndexService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public BulkNoteIndexService(NoteRepository noteRepo,
+            NoteWikiLinkRepository wikiLinkRepo,
+            NoteService noteService,
+            NoteAnalysisService noteAnalysisService,
+            NoteGraphService graphService,
+            NoteChunkIndexService chunkIndexService,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager) {
+        this.noteRepo = noteRepo;
+        this.wikiLinkRepo = wikiLinkRepo;
+        this.noteService = noteService;
+        this.noteAnalysisService = noteAnalysisService;
+        this.graphService = graphService;
+        this.chunkIndexService = chunkIndexService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Async
+    public void indexNotebookAsync(Long notebookId, Long userId) {
+        long started = System.nanoTime();
+        long afterId = 0;
+        int notes = 0;
+        int embedded = 0;
+        try {
+            while (true) {
+                List<NoteRepository.ContentView> page = noteRepo.findContentViewsByNotebookId(notebookId, userId,
+                        afterId, PageRequest.of(0, PAGE_SIZE));
+                if (page.isEmpty())
+                    break;
+
+                Map<Long, String> texts = new LinkedHashMap<>();
+                for (NoteRepository.ContentView view : page) {
+                    texts.put(view.getId(), noteService.extractTextFromNode(view.getContent()));
+                }
+                writeWikiLinks(userId, texts);
+                embedded += analyze(texts.keySet());
+                writeChunks(texts.keySet());
+
+                notes += page.size();
+                afterId = page.get(page.size() - 1).getId();
+            }
+
+            Integer links = transactionTemplate
+                    .execute(status -> wikiLinkRepo.insertResolvedLinksForNotebook(notebookId, userId));
+            graphService.invalidate(userId);
+            log.info("Indexed notebook {}: {} notes, {} embedded, {} links in {} ms", notebookId, notes, embedded,
+                    links, (System.nanoTime() - started) / 1_000_000);
+        } catch (Exception e) {
+            log.error("Bulk indexing failed for notebook {} after {} notes", notebookId, notes, e);
+        }
+    }
+
+    private void writeWikiLinks(Long userId, Map<Long, String> texts) {
+        List<Object[]> rows = new ArrayList<>();
+        texts.forEach((noteId, text) -> WikiLinkIndexService.parseWikiLinks(text)
+                .forEach((key, title) -> rows.add(new Object[] { noteId, key, userId, title })));
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_WIKI_LINK_SQL, rows);
+        }
+    }
+
+    // Notes whose analysis fails here are analyzed again on their next save
+    private int analyze(Collection<Long> noteIds) {
+        try {
+            return noteAnalysisService.analyze(new ArrayList<>(noteIds), false);
+        } catch (Exception e) {
+            log.debug("Analysis failed for {} imported notes: {}", noteIds.size(), e.getMessage());
+            return 0;
+        }
+    }
+
+    // Chunks left unembedded here are retried by the chunk backfill
+    private void writeChunks(Collection<Long> noteIds) {
+        try {
+            chunkIndexService.index(noteRepo.findChunkSourcesByIdIn(noteIds));
+        } catch (Exception e) {
+            log.debug("Chunk indexing failed for {} imported notes: {}", noteIds.size(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.muse.notes.service;
+
+import com.muse.notes.repository.AttachmentBlobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Base for content-addressed storage backends.
+ *
+ * Uploads are streamed to a temp file while hashing; the SHA-256 becomes the
+ * blob key, so identical payloads are stored once. attachment_blobs counts the
+ * references to each blob and the payload is deleted with the last one. Keys
+ * that are not SHA-256 hex are pre-existing per-upload files and are treated
+ * as having a single reference.
+ */
+public abstract class ContentAddressedStorageService implements StorageService {
+
+    private static final Pattern CONTENT_KEY = Pattern.compile("[0-9a-f]{64}");
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    protected final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final AttachmentBlobRepository blobRepo;
+    private final TransactionTemplate transactionTemplate;
+    // Rollback cleanup runs from afterCompletion, where only a new transaction is safe
+    private final TransactionTemplate newTransactionTemplate;
+    private final long maxUploadBytes;
+
+    protected ContentAddressedStorageService(AttachmentBlobRepository blobRepo,
+            PlatformTransactionManager transactionManager,
+            long maxUploadBytes) {
+        this.blobRepo = blobRepo;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxUploadBytes = maxUploadBytes;
+    }
+
+    public static boolean isContentKey(String key) {
+        return key != null && CONTENT_KEY.matcher(key).matches();
+    }
+
+    /** Creates an empty temp file to receive an upload before it is hashed. */
+    protected abstract Path createTempFile() throws IOException;
+
+    /**
+     * Makes the payload available under the key unless it already is. May move
+     * the temp file; runs inside the transaction that took the reference.
+     */
+    protected abstract void persist(String key, Path tempFile, long size) throws IOException;
+
+    protected abstract void deletePayload(String key) throws IOException;
+
+    @Override
+    public StoredBlob store(MultipartFile file) {
+        if (file.isEmpty()) {
+            throw new RuntimeException("Failed to store empty file.");
+        }
+        try (InputStream inputStream = file.getInputStream()) {
+            return store(inputStream, file.getOriginalFilename());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to store file.", e);
+        }
+    }
+
+    @Override
+    public StoredBlob store(InputStream inputStream, String originalFilename) {
+        Path temp = null;
+        try {
+            temp = createTempFile();
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            long size;
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                size = copyHashing(inputStream, out, digest);
+            }
+            String key = HexFormat.of().formatHex(digest.digest());
+
+            // Hashing happens before the transaction so a slow upload doesn't hold a connection.
+            // The reference is taken before the payload is written, so a concurrent release of
+            // the same blob either sees our reference or finishes deleting before we persist.
+            Path payload = temp;
+            transactionTemplate.executeWithoutResult(status -> {
+                blobRepo.acquire(key, size);
+                try {
+                    persist(key, payload, size);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return new StoredBlob(key, size);
+        } catch (IOException | UncheckedIOException e) {
+            throw new RuntimeException("Failed to store file.", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    log.warn("Could not delete upload temp file {}", temp);
+                }
+            }
+        }
+    }
+
+    private long copyHashing(InputStream in, OutputStream out, MessageDigest digest) throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            total += read;
+            if (total > maxUploadBytes) {
+                throw new MaxUploadSizeExceededException(maxUploadBytes);
+            }
+            digest.update(buffer, 0, read);
+            out.write(buffer, 0, read);
+        }
+        return total;
+    }
+
+    @Override
+    public void discardRolledBack(StoredBlob blob) {
+        // Take and drop a reference so the delete runs under the same row lock as release()
+        try {
+            newTransactionTemplate.executeWithoutResult(status -> {
+                blobRepo.acquire(blob.key(), blob.size());
+                blobRepo.release(blob.key());
+                if (blobRepo.deleteIfUnreferenced(blob.key()) > 0) {
+                    try {
+                        deletePayload(blob.key());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Failed to discard blob {}", blob.key(), e);
+        }
+    }
+
+    @Override
+    public void release(String key) {
+        try {
+            if (!isContentKey(key)) {
+                deletePayload(key);
+                return;
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                blobRepo.release(key);
+                if (blobRepo.deleteIfUnreferenced(key) > 0) {
+                    try {
+                        deletePayload(key);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Failed to delete blob {}", key, e);
+        }
+    }
+}
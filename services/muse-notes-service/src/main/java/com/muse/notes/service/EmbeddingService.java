@@ -6,21 +6,33 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 @Service
 @Slf4j
 public class EmbeddingService {
 
+    private static final String MODEL = "models/text-embedding-004";
+    private static final String EMBED_URL = "https://generativelanguage.googleapis.com/v1beta/" + MODEL
+            + ":embedContent?key={key}";
+    private static final String BATCH_EMBED_URL = "https://generativelanguage.googleapis.com/v1beta/" + MODEL
+            + ":batchEmbedContents?key={key}";
+
+    // batchEmbedContents accepts at most 100 requests per call
+    public static final int MAX_BATCH_SIZE = 100;
+
+    private static final int DIMENSIONS = 768;
+
     private final WebClient webClient;
     private final String geminiApiKey;
 
     public EmbeddingService(@Value("${gemini.embedding-key:${GEMINI_API_KEY:}}") String geminiApiKey) {
-        this.webClient = WebClient.builder()
-                .baseUrl("https://generativelanguage.googleapis.com/v1beta/models/text-embedding-004:embedContent")
-                .build();
+        this.webClient = WebClient.builder().build();
         this.geminiApiKey = geminiApiKey;
     }
 
@@ -31,14 +43,14 @@ public class EmbeddingService {
         }
 
         if (text == null || text.isBlank()) {
-            return Mono.just(new float[768]);
+            return Mono.just(new float[DIMENSIONS]);
         }
 
         Map<String, Object> content = Map.of("parts", new Object[] { Map.of("text", text) });
         Map<String, Object> req = Map.of("content", content);
 
         return webClient.post()
-                .uri(uriBuilder -> uriBuilder.queryParam("key", geminiApiKey).build())
+                .uri(EMBED_URL, geminiApiKey)
                 .contentType(MediaType.APPLICATION_JSON)
                 .bodyValue(req)
                 .retrieve()
@@ -65,6 +77,74 @@ public class EmbeddingService {
                 });
     }
 
+    /**
+     * Embeds many texts with one batchEmbedContents call per
+     * {@link #MAX_BATCH_SIZE} texts. Results are in input order; blank texts
+     * get a zero vector without being sent.
+     */
+    public Mono<List<float[]>> getEmbeddings(List<String> texts) {
+        if (geminiApiKey == null || geminiApiKey.isBlank()) {
+            return Mono.error(new IllegalStateException(
+                    "Google AI API Key is not configured. Please set GEMINI_API_KEY environment variable."));
+        }
+        List<List<String>> batches = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i += MAX_BATCH_SIZE) {
+            batches.add(texts.subList(i, Math.min(texts.size(), i + MAX_BATCH_SIZE)));
+        }
+        return Flux.fromIterable(batches)
+                .concatMap(this::embedBatch)
+                .flatMapIterable(batch -> batch)
+                .collectList();
+    }
+
+    private Mono<List<float[]>> embedBatch(List<String> texts) {
+        List<Map<String, Object>> requests = new ArrayList<>();
+        for (String text : texts) {
+            if (text != null && !text.isBlank()) {
+                requests.add(Map.of("model", MODEL,
+                        "content", Map.of("parts", new Object[] { Map.of("text", text) })));
+            }
+        }
+        if (requests.isEmpty()) {
+            return Mono.just(texts.stream().map(t -> new float[DIMENSIONS]).toList());
+        }
+
+        return webClient.post()
+                .uri(BATCH_EMBED_URL, geminiApiKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("requests", requests))
+                .retrieve()
+                .onStatus(status -> status.isError(), response -> response.bodyToMono(String.class)
+                        .flatMap(errorBody -> {
+                            log.error("Gemini Batch Embedding API Error: {} - {}", response.statusCode(), errorBody);
+                            return Mono.error(new RuntimeException(
+                                    "Gemini Embedding API Error: " + response.statusCode() + " - " + errorBody));
+                        }))
+                .bodyToMono(JsonNode.class)
+                .map(response -> {
+                    JsonNode embeddings = response.path("embeddings");
+                    if (!embeddings.isArray() || embeddings.size() != requests.size()) {
+                        throw new RuntimeException("Unexpected batch embedding response: " + embeddings.size()
+                                + " embeddings for " + requests.size() + " texts");
+                    }
+                    List<float[]> results = new ArrayList<>(texts.size());
+                    int next = 0;
+                    for (String text : texts) {
+                        if (text == null || text.isBlank()) {
+                            results.add(new float[DIMENSIONS]);
+                            continue;
+                        }
+                        JsonNode values = embeddings.get(next++).path("values");
+                        float[] embedding = new float[values.size()];
+                        for (int i = 0; i < values.size(); i++) {
+                            embedding[i] = (float) values.get(i).asDouble();
+                        }
+                        results.add(embedding);
+                    }
+                    return results;
+                });
+    }
+
     public static float cosineSimilarity(float[] vectorA, float[] vectorB) {
         if (vectorA == null || vectorB == null || vectorA.length != vectorB.length) {
             return 0;
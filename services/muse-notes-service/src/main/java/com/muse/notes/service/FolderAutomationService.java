@@ -24,6 +24,7 @@ public class FolderAutomationService {
         private final NotebookRepository notebookRepo;
         private final SectionNoteMappingRepository mappingRepo;
         private final SimpMessagingTemplate messagingTemplate;
+        private final NotebookTreeService treeService;
 
         /**
          * Handle the logic for "Direct-to-Folder" (D2F) note organization.
@@ -97,6 +98,8 @@ public class FolderAutomationService {
                 section.setCreatedAt(Instant.now());
                 section.setUpdatedAt(Instant.now());
                 section.setOrderIndex(0);
-                return sectionRepo.save(section);
+                Section saved = sectionRepo.save(section);
+                treeService.bump(notebook.getUserId());
+                return saved;
         }
 }
@@ -1,11 +1,16 @@
 package com.muse.notes.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.util.retry.Retry;
 
@@ -13,6 +18,7 @@ import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Unified LLM Service - Supports Groq (primary) and Gemini (fallback)
@@ -33,6 +39,12 @@ public class GeminiService {
     private static final String GEMINI_MODEL = "gemini-2.5-flash";
     private static final String GEMINI_URL = "https://generativelanguage.googleapis.com/v1beta/models/" + GEMINI_MODEL
             + ":generateContent";
+    private static final String GEMINI_STREAM_URL = "https://generativelanguage.googleapis.com/v1beta/models/"
+            + GEMINI_MODEL + ":streamGenerateContent";
+
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_TYPE = new ParameterizedTypeReference<>() {
+    };
+    private static final ObjectMapper MAPPER = new ObjectMapper();
 
     public GeminiService(
             @Value("${groq.api.key:${GROQ_API_KEY:}}") String groqApiKey,
@@ -68,6 +80,96 @@ public class GeminiService {
         return generateWithGemini(prompt);
     }
 
+    /**
+     * Streams the answer as text fragments as the model produces them.
+     * Falls back from Groq to Gemini only if Groq fails before sending any
+     * text, so a caller never sees the start of two different answers.
+     */
+    public Flux<String> streamContent(String prompt) {
+        if ("groq".equalsIgnoreCase(provider) && groqApiKey != null && !groqApiKey.isBlank()) {
+            AtomicBoolean started = new AtomicBoolean();
+            return streamWithGroq(prompt)
+                    .doOnNext(fragment -> started.set(true))
+                    .onErrorResume(e -> {
+                        if (started.get())
+                            return Flux.error(e);
+                        log.warn("Groq stream failed, falling back to Gemini: {}", e.getMessage());
+                        return streamWithGemini(prompt);
+                    });
+        }
+        return streamWithGemini(prompt);
+    }
+
+    private Flux<String> streamWithGroq(String prompt) {
+        Map<String, Object> request = Map.of(
+                "model", groqModel,
+                "messages", List.of(Map.of("role", "user", "content", prompt)),
+                "temperature", 0.3,
+                "max_tokens", 2048,
+                "stream", true);
+
+        return groqClient.post()
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .bodyValue(request)
+                .retrieve()
+                .onStatus(status -> status.value() == 429,
+                        response -> Mono.error(new RateLimitException("Rate limit exceeded")))
+                .onStatus(status -> status.isError() && status.value() != 429,
+                        response -> response.bodyToMono(String.class).flatMap(errorBody -> {
+                            log.error("Groq API Error: {} - {}", response.statusCode(), errorBody);
+                            return Mono.error(new RuntimeException("Groq API Error: " + errorBody));
+                        }))
+                .bodyToFlux(SSE_TYPE)
+                .mapNotNull(ServerSentEvent::data)
+                .takeWhile(data -> !"[DONE]".equals(data.trim()))
+                .mapNotNull(data -> readTree(data).path("choices").path(0).path("delta").path("content")
+                        .textValue())
+                .filter(fragment -> !fragment.isEmpty())
+                .retryWhen(Retry.backoff(3, Duration.ofSeconds(5))
+                        .filter(t -> t instanceof RateLimitException));
+    }
+
+    private Flux<String> streamWithGemini(String prompt) {
+        if (geminiApiKey == null || geminiApiKey.isBlank()) {
+            return Flux.error(new IllegalStateException("No AI API Key configured."));
+        }
+
+        Map<String, Object> content = Map.of("parts", List.of(Map.of("text", prompt)));
+        Map<String, Object> req = Map.of("contents", List.of(content));
+
+        return geminiClient.post()
+                .uri(GEMINI_STREAM_URL + "?alt=sse&key=" + geminiApiKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .bodyValue(req)
+                .retrieve()
+                .onStatus(status -> status.value() == 429,
+                        response -> Mono.error(new RateLimitException("Rate limit exceeded")))
+                .onStatus(status -> status.isError() && status.value() != 429,
+                        response -> response.bodyToMono(String.class).flatMap(errorBody -> {
+                            log.error("Gemini API Error: {} - {}", response.statusCode(), errorBody);
+                            return Mono.error(new RuntimeException("Gemini API Error: " + errorBody));
+                        }))
+                .bodyToFlux(SSE_TYPE)
+                .mapNotNull(ServerSentEvent::data)
+                .mapNotNull(data -> readTree(data).path("candidates").path(0).path("content").path("parts")
+                        .path(0).path("text").textValue())
+                .filter(fragment -> !fragment.isEmpty())
+                .retryWhen(Retry.backoff(3, Duration.ofSeconds(10))
+                        .filter(t -> t instanceof RateLimitException)
+                        .onRetryExhaustedThrow((spec, signal) -> new RuntimeException(
+                                "AI rate limit exceeded. Please try again in a minute.")));
+    }
+
+    private static JsonNode readTree(String json) {
+        try {
+            return MAPPER.readTree(json);
+        } catch (Exception e) {
+            return MissingNode.getInstance();
+        }
+    }
+
     public Mono<String> transcribeAudio(byte[] audioBytes, String mimeType, String language) {
         if (geminiApiKey == null || geminiApiKey.isBlank()) {
             return Mono.error(new IllegalStateException("No AI API Key configured."));
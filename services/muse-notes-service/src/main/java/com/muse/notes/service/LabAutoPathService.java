@@ -0,0 +1,105 @@
+package com.muse.notes.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.muse.notes.entity.Section;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves a lab auto-path (notebook title, section title) to ids. The
+ * lab_autopaths upsert takes a row lock on the path, so two saves racing on
+ * the same path create the notebook and section once; later saves that day
+ * are served from the cache without touching the database.
+ */
+@Service
+public class LabAutoPathService {
+
+    private static final String UPSERT_SQL = "INSERT INTO lab_autopaths (user_id, notebook_title, section_title) "
+            + "VALUES (?, ?, ?) ON CONFLICT (user_id, notebook_title, section_title) "
+            + "DO UPDATE SET updated_at = now() RETURNING notebook_id, section_id";
+
+    public record LabPath(Long notebookId, String notebookTitle, Long sectionId, String sectionTitle) {
+    }
+
+    // Paths are date-named sections, so entries are per user-day
+    private record Key(Long userId, String notebookTitle, String sectionTitle, LocalDate day) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NotebookService notebookService;
+    private final SectionService sectionService;
+    private final Cache<Key, LabPath> paths;
+
+    public LabAutoPathService(JdbcTemplate jdbcTemplate,
+            NotebookService notebookService,
+            SectionService sectionService,
+            @Value("${notes.labs.path-cache.max-entries:10000}") long maxEntries) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.notebookService = notebookService;
+        this.sectionService = sectionService;
+        this.paths = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(1, TimeUnit.DAYS)
+                .build();
+    }
+
+    @Transactional
+    public LabPath resolve(Long userId, String username, String notebookTitle, String sectionTitle) {
+        Key key = key(userId, notebookTitle, sectionTitle);
+        LabPath cached = paths.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        List<Long[]> rows = jdbcTemplate.query(UPSERT_SQL,
+                (rs, i) -> new Long[] { rs.getObject("notebook_id", Long.class),
+                        rs.getObject("section_id", Long.class) },
+                userId, notebookTitle, sectionTitle);
+        Long notebookId = rows.get(0)[0];
+        Long sectionId = rows.get(0)[1];
+        if (notebookId == null || sectionId == null) {
+            if (notebookId == null) {
+                notebookId = notebookService.findOrCreateByName(userId, username, notebookTitle).getId();
+            }
+            Section section = sectionService.findOrCreateByName(notebookId, userId, username, sectionTitle);
+            if (section == null) {
+                throw new IllegalStateException("Could not create section " + sectionTitle);
+            }
+            sectionId = section.getId();
+            jdbcTemplate.update("UPDATE lab_autopaths SET notebook_id = ?, section_id = ?, updated_at = now() "
+                    + "WHERE user_id = ? AND notebook_title = ? AND section_title = ?",
+                    notebookId, sectionId, userId, notebookTitle, sectionTitle);
+        }
+
+        LabPath path = new LabPath(notebookId, notebookTitle, sectionId, sectionTitle);
+        // Cache only once the ids are committed
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    paths.put(key, path);
+                }
+            });
+        }
+        return path;
+    }
+
+    /** Forgets a cached path whose section turned out to be gone. */
+    public void evict(Long userId, String notebookTitle, String sectionTitle) {
+        paths.invalidate(key(userId, notebookTitle, sectionTitle));
+    }
+
+    private static Key key(Long userId, String notebookTitle, String sectionTitle) {
+        return new Key(userId, notebookTitle, sectionTitle, LocalDate.now(ZoneOffset.UTC));
+    }
+}
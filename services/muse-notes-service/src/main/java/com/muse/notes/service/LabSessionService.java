@@ -0,0 +1,286 @@
+package com.muse.notes.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.muse.notes.dto.LabPersistentSaveRequest;
+import com.muse.notes.entity.Note;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Lab research sessions. While a session runs, each save appends a small
+ * JSON snapshot keyed by (session, seq), so a retried save is stored once.
+ * Finishing the session turns its latest snapshot into one note. That is
+ * the only point where the note pipeline (versioning, embeddings, links)
+ * runs, and finishing again returns the same note.
+ */
+@Service
+@Slf4j
+public class LabSessionService {
+
+    private static final DateTimeFormatter SECTION_DATE = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+
+    private static final int MAX_SESSION_ID_LENGTH = 100;
+
+    // Locks the session row until commit, so snapshot and finish calls of one session run one at a time
+    private static final String UPSERT_SESSION_SQL = "INSERT INTO lab_sessions (user_id, client_session_id) "
+            + "VALUES (?, ?) ON CONFLICT (user_id, client_session_id) DO UPDATE SET updated_at = now() "
+            + "RETURNING id, note_id, finished_at IS NOT NULL AS finished";
+
+    private static final String INSERT_SNAPSHOT_SQL = "INSERT INTO lab_snapshots (session_id, seq, payload) "
+            + "VALUES (?, COALESCE(CAST(? AS integer), "
+            + "(SELECT COALESCE(MAX(seq), 0) + 1 FROM lab_snapshots WHERE session_id = ?)), CAST(? AS jsonb)) "
+            + "ON CONFLICT (session_id, seq) DO NOTHING RETURNING seq";
+
+    public record SnapshotResult(String sessionId, Integer seq, boolean stored, boolean finished, Long noteId) {
+    }
+
+    private record SessionRow(long id, Long noteId, boolean finished) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NoteService noteService;
+    private final LabAutoPathService autoPaths;
+    private final ObjectMapper objectMapper;
+
+    public LabSessionService(JdbcTemplate jdbcTemplate,
+            NoteService noteService,
+            LabAutoPathService autoPaths,
+            ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.noteService = noteService;
+        this.autoPaths = autoPaths;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Appends a snapshot to the session, creating the session on first use.
+     * Without {@code seq} the snapshot takes the next number; with one, a
+     * repeat of the same seq is ignored. Finished sessions take no more
+     * snapshots.
+     */
+    @Transactional
+    public SnapshotResult appendSnapshot(Long userId, String clientSessionId, Integer seq,
+            LabPersistentSaveRequest request) {
+        validateSessionId(clientSessionId);
+        normalize(request);
+        SessionRow session = upsertSession(userId, clientSessionId);
+        if (session.finished()) {
+            return new SnapshotResult(clientSessionId, null, false, true, session.noteId());
+        }
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(request);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Snapshot is not serialisable: " + e.getOriginalMessage());
+        }
+        List<Integer> stored = jdbcTemplate.queryForList(INSERT_SNAPSHOT_SQL, Integer.class,
+                session.id(), seq, session.id(), payload);
+        return new SnapshotResult(clientSessionId, stored.isEmpty() ? seq : stored.get(0), !stored.isEmpty(), false,
+                null);
+    }
+
+    /**
+     * Turns the session's latest snapshot into a note, once. Empty when the
+     * session does not exist.
+     */
+    @Transactional
+    public Optional<Map<String, Object>> finish(Long userId, String username, String clientSessionId) {
+        List<SessionRow> sessions = jdbcTemplate.query(
+                "SELECT id, note_id, finished_at IS NOT NULL AS finished FROM lab_sessions "
+                        + "WHERE user_id = ? AND client_session_id = ? FOR UPDATE",
+                (rs, i) -> new SessionRow(rs.getLong("id"), rs.getObject("note_id", Long.class),
+                        rs.getBoolean("finished")),
+                userId, clientSessionId);
+        if (sessions.isEmpty()) {
+            return Optional.empty();
+        }
+        SessionRow session = sessions.get(0);
+        if (session.finished()) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("sessionId", clientSessionId);
+            response.put("noteId", session.noteId());
+            response.put("alreadyFinished", true);
+            return Optional.of(response);
+        }
+
+        List<String> latest = jdbcTemplate.queryForList(
+                "SELECT payload::text FROM lab_snapshots WHERE session_id = ? ORDER BY seq DESC LIMIT 1",
+                String.class, session.id());
+        if (latest.isEmpty()) {
+            throw new IllegalArgumentException("Lab session has no snapshots to save");
+        }
+        LabPersistentSaveRequest request;
+        try {
+            request = objectMapper.readValue(latest.get(0), LabPersistentSaveRequest.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored lab snapshot is unreadable", e);
+        }
+
+        LabPersistentSaveRequest.AutoPath autoPath = request.getAutoPath();
+        LabAutoPathService.LabPath path = autoPaths.resolve(userId, username, autoPath.getNotebook(),
+                autoPath.getSection());
+        Optional<Note> created = noteService.createInSection(path.sectionId(), userId, username,
+                autoPath.getTitle(), buildNoteContent(request));
+        if (created.isEmpty()) {
+            // Cached section was deleted since; resolve the path again
+            autoPaths.evict(userId, autoPath.getNotebook(), autoPath.getSection());
+            path = autoPaths.resolve(userId, username, autoPath.getNotebook(), autoPath.getSection());
+            created = noteService.createInSection(path.sectionId(), userId, username, autoPath.getTitle(),
+                    buildNoteContent(request));
+        }
+        Note note = created.orElseThrow(() -> new IllegalStateException("Failed to create note"));
+        // The note is managed in this transaction, so these are written on commit
+        note.setTags(new String[] { "lab-research", autoPath.getNotebook().toLowerCase().replace(" ", "-") });
+        note.setSummary(buildSummary(request));
+
+        jdbcTemplate.update("UPDATE lab_sessions SET note_id = ?, finished_at = now(), updated_at = now() "
+                + "WHERE id = ?", note.getId(), session.id());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("sessionId", clientSessionId);
+        response.put("noteId", note.getId());
+        response.put("notebookId", path.notebookId());
+        response.put("notebookName", path.notebookTitle());
+        response.put("sectionId", path.sectionId());
+        response.put("sectionName", path.sectionTitle());
+        response.put("path", path.notebookTitle() + " / " + path.sectionTitle() + " / " + autoPath.getTitle());
+        response.put("variablesCaptured", request.getVariables() != null ? request.getVariables().size() : 0);
+        return Optional.of(response);
+    }
+
+    /**
+     * One-shot save: snapshot and finish in one transaction. With a session
+     * id, repeating the call returns the note the first call created.
+     */
+    @Transactional
+    public Map<String, Object> saveAndFinish(Long userId, String username, LabPersistentSaveRequest request) {
+        String sessionId = request.getSessionId() != null && !request.getSessionId().isBlank()
+                ? request.getSessionId()
+                : UUID.randomUUID().toString();
+        appendSnapshot(userId, sessionId, null, request);
+        return finish(userId, username, sessionId)
+                .orElseThrow(() -> new IllegalStateException("Lab session disappeared"));
+    }
+
+    private SessionRow upsertSession(Long userId, String clientSessionId) {
+        return jdbcTemplate.queryForObject(UPSERT_SESSION_SQL,
+                (rs, i) -> new SessionRow(rs.getLong("id"), rs.getObject("note_id", Long.class),
+                        rs.getBoolean("finished")),
+                userId, clientSessionId);
+    }
+
+    private static void validateSessionId(String clientSessionId) {
+        if (clientSessionId == null || clientSessionId.isBlank() || clientSessionId.length() > MAX_SESSION_ID_LENGTH) {
+            throw new IllegalArgumentException("sessionId must be 1-" + MAX_SESSION_ID_LENGTH + " characters");
+        }
+    }
+
+    // Fills the path defaults when the snapshot is taken, so the date section is the session's day
+    private static void normalize(LabPersistentSaveRequest request) {
+        LabPersistentSaveRequest.AutoPath autoPath = request.getAutoPath() != null ? request.getAutoPath()
+                : new LabPersistentSaveRequest.AutoPath();
+        if (autoPath.getNotebook() == null || autoPath.getNotebook().isBlank()) {
+            autoPath.setNotebook(request.getSubject() != null ? request.getSubject() + " Lab" : "Research Lab");
+        }
+        if (autoPath.getSection() == null || autoPath.getSection().isBlank()) {
+            autoPath.setSection(LocalDate.now().format(SECTION_DATE));
+        }
+        if (autoPath.getTitle() == null || autoPath.getTitle().isBlank()) {
+            autoPath.setTitle("Research Session");
+        }
+        request.setAutoPath(autoPath);
+    }
+
+    // Variable snapshot kept as the note summary (Note has no metadata field)
+    private static String buildSummary(LabPersistentSaveRequest request) {
+        StringBuilder summaryBuilder = new StringBuilder();
+        summaryBuilder.append("Lab Research Session\n");
+        if (request.getEquation() != null) {
+            summaryBuilder.append("Equation: ").append(request.getEquation()).append("\n");
+        }
+        if (request.getSolution() != null) {
+            summaryBuilder.append("Solution: ").append(request.getSolution()).append("\n");
+        }
+        if (request.getVariables() != null && !request.getVariables().isEmpty()) {
+            summaryBuilder.append("Variables: ");
+            for (Map.Entry<String, Object> entry : request.getVariables().entrySet()) {
+                summaryBuilder.append(entry.getKey()).append("=").append(entry.getValue()).append(", ");
+            }
+            summaryBuilder.append("\n");
+        }
+        summaryBuilder.append("Source: ResearchLab");
+        return summaryBuilder.toString();
+    }
+
+    /**
+     * Build TipTap-compatible note content from lab data.
+     */
+    private ObjectNode buildNoteContent(LabPersistentSaveRequest request) {
+        ObjectNode doc = objectMapper.createObjectNode();
+        doc.put("type", "doc");
+
+        ArrayNode content = doc.putArray("content");
+        addHeading(content, 1, request.getAutoPath().getTitle());
+
+        if (request.getEquation() != null && !request.getEquation().isBlank()) {
+            addHeading(content, 2, "Equation");
+            addParagraph(content, "$$" + request.getEquation() + "$$");
+        }
+
+        if (request.getSolution() != null && !request.getSolution().isBlank()) {
+            addHeading(content, 2, "Solution");
+            addParagraph(content, request.getSolution());
+        }
+
+        if (request.getVariables() != null && !request.getVariables().isEmpty()) {
+            addHeading(content, 2, "Variables");
+            ObjectNode varList = content.addObject();
+            varList.put("type", "bulletList");
+            ArrayNode listContent = varList.putArray("content");
+            for (Map.Entry<String, Object> entry : request.getVariables().entrySet()) {
+                ObjectNode listItem = listContent.addObject();
+                listItem.put("type", "listItem");
+                addParagraph(listItem.putArray("content"), entry.getKey() + " = " + entry.getValue());
+            }
+        }
+
+        if (request.getResearchResults() != null && !request.getResearchResults().isBlank()) {
+            addHeading(content, 2, "Research Results");
+            addParagraph(content, request.getResearchResults());
+        }
+
+        return doc;
+    }
+
+    private static void addHeading(ArrayNode content, int level, String text) {
+        ObjectNode heading = content.addObject();
+        heading.put("type", "heading");
+        heading.putObject("attrs").put("level", level);
+        heading.putArray("content").addObject()
+                .put("type", "text")
+                .put("text", text);
+    }
+
+    private static void addParagraph(ArrayNode content, String text) {
+        ObjectNode paragraph = content.addObject();
+        paragraph.put("type", "paragraph");
+        paragraph.putArray("content").addObject()
+                .put("type", "text")
+                .put("text", text);
+    }
+}
@@ -1,103 +1,120 @@
 package com.muse.notes.service;
 
+import com.muse.notes.repository.AttachmentBlobRepository;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.stereotype.Service;
-import org.springframework.util.FileSystemUtils;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.MalformedURLException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.util.UUID;
-import java.util.stream.Stream;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
 
+/**
+ * Content-addressed blobs on local disk, sharded as {@code ab/cd/<sha256>}.
+ * Files from before content addressing stay flat under the root.
+ */
 @Service
-public class LocalStorageService implements StorageService {
+@ConditionalOnProperty(name = "storage.type", havingValue = "local", matchIfMissing = true)
+public class LocalStorageService extends ContentAddressedStorageService {
 
     private final Path rootLocation;
+    private final Path incomingLocation;
 
-    public LocalStorageService(@Value("${storage.location:upload-dir}") String storageLocation) {
-        this.rootLocation = Paths.get(storageLocation);
+    public LocalStorageService(@Value("${storage.location:upload-dir}") String storageLocation,
+            @Value("${storage.max-upload-bytes:524288000}") long maxUploadBytes,
+            AttachmentBlobRepository blobRepo,
+            PlatformTransactionManager transactionManager) {
+        super(blobRepo, transactionManager, maxUploadBytes);
+        this.rootLocation = Paths.get(storageLocation).toAbsolutePath().normalize();
+        this.incomingLocation = rootLocation.resolve(".incoming");
     }
 
     @Override
+    @PostConstruct
     public void init() {
         try {
             Files.createDirectories(rootLocation);
+            Files.createDirectories(incomingLocation);
         } catch (IOException e) {
             throw new RuntimeException("Could not initialize storage", e);
         }
     }
 
-    @Override
-    public String store(MultipartFile file) {
-        try {
-            if (file.isEmpty()) {
-                throw new RuntimeException("Failed to store empty file.");
-            }
-            String extension = getFileExtension(file.getOriginalFilename());
-            String newFilename = UUID.randomUUID().toString() + "." + extension;
-            Path destinationFile = this.rootLocation.resolve(Paths.get(newFilename)).normalize().toAbsolutePath();
-            if (!destinationFile.getParent().equals(this.rootLocation.toAbsolutePath())) {
-                // This is a security check
-                throw new RuntimeException("Cannot store file outside current directory.");
-            }
-            try (InputStream inputStream = file.getInputStream()) {
-                Files.copy(inputStream, destinationFile, StandardCopyOption.REPLACE_EXISTING);
-            }
-            return newFilename;
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to store file.", e);
+    private Path resolve(String key) {
+        Path file = isContentKey(key)
+                ? rootLocation.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key)
+                : rootLocation.resolve(key).normalize();
+        if (!file.startsWith(rootLocation)) {
+            // This is a security check
+            throw new RuntimeException("Cannot access file outside storage directory.");
         }
+        return file;
     }
 
     @Override
-    public Stream<Path> loadAll() {
+    protected Path createTempFile() throws IOException {
+        // Same filesystem as the blobs, so persisting is a rename
+        return Files.createTempFile(incomingLocation, "upload-", ".part");
+    }
+
+    @Override
+    protected void persist(String key, Path tempFile, long size) throws IOException {
+        Path target = resolve(key);
+        if (Files.exists(target) && Files.size(target) == size) {
+            return;
+        }
+        Files.createDirectories(target.getParent());
         try {
-            return Files.walk(this.rootLocation, 1)
-                    .filter(path -> !path.equals(this.rootLocation))
-                    .map(this.rootLocation::relativize);
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to read stored files", e);
+            Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
         }
     }
 
     @Override
-    public Path load(String filename) {
-        return rootLocation.resolve(filename);
+    protected void deletePayload(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
     }
 
     @Override
-    public Resource loadAsResource(String filename) {
-        try {
-            Path file = load(filename);
-            Resource resource = new UrlResource(file.toUri());
-            if (resource.exists() || resource.isReadable()) {
-                return resource;
-            } else {
-                throw new RuntimeException("Could not read file: " + filename);
-            }
-        } catch (MalformedURLException e) {
-            throw new RuntimeException("Could not read file: " + filename, e);
+    public Resource loadAsResource(String key) {
+        Path file = resolve(key);
+        if (!Files.isReadable(file)) {
+            throw new RuntimeException("Could not read file: " + key);
         }
+        return new FileSystemResource(file);
     }
 
     @Override
-    public void deleteAll() {
-        FileSystemUtils.deleteRecursively(rootLocation.toFile());
+    public Optional<Path> localFile(String key) {
+        Path file = resolve(key);
+        return Files.isReadable(file) ? Optional.of(file) : Optional.empty();
     }
 
-    private String getFileExtension(String filename) {
-        if (filename == null) {
-            return "";
+    @Override
+    public void transferTo(String key, long position, long count, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(resolve(key), StandardOpenOption.READ)) {
+            long offset = position;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = channel.transferTo(offset, remaining, target);
+                if (sent <= 0) {
+                    break;
+                }
+                offset += sent;
+                remaining -= sent;
+            }
         }
-        int dotIndex = filename.lastIndexOf('.');
-        return (dotIndex == -1) ? "" : filename.substring(dotIndex + 1);
     }
 }
@@ -1,106 +1,436 @@
 package com.muse.notes.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.muse.notes.entity.Note;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.muse.notes.entity.NoteLink;
-import com.muse.notes.entity.NoteSuggestion;
 import com.muse.notes.repository.NoteLinkRepository;
 import com.muse.notes.repository.NoteRepository;
-import com.muse.notes.repository.NoteSuggestionRepository;
-import org.springframework.scheduling.annotation.Async;
+import com.muse.notes.repository.NoteRepository.AnalysisSourceView;
+import com.muse.notes.repository.NoteRepository.NeighborView;
+import com.muse.notes.repository.NoteWikiLinkRepository;
+import com.muse.notes.util.NoteText;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
+/**
+ * Post-save analysis of notes: embedding, note links and suggestions, as one
+ * batched pipeline.
+ *
+ * Saved notes are queued and processed a batch at a time in four stages:
+ * load the batch, embed the notes whose text changed (one
+ * batchEmbedContents call; unchanged text keeps its stored vector), find
+ * each note's nearest neighbours with a vector top-k, and write all link
+ * and suggestion rows in one JDBC batch. Explicit links (TipTap note links
+ * and [[wiki links]]) score 1.0; similar notes above LINK_THRESHOLD are
+ * linked with their similarity, and very similar notes the user has not
+ * linked explicitly are suggested.
+ *
+ * A note's links depend on its neighbours' embeddings too. When a note is
+ * re-embedded, the notes around it are marked stale and a periodic refresh
+ * recomputes their links from stored vectors without calling the API.
+ *
+ * The queue is the analysis_pending_at column, set in the save's
+ * transaction. A flush claims due rows with SKIP LOCKED by pushing the value
+ * out by a lease, and clears it once the batch is written; a failed batch is
+ * retried shortly and a batch lost to a crash is due again when its lease
+ * runs out. A save during the analysis resets the value, so the note is
+ * analyzed again.
+ *
+ * Stage durations are recorded as the notes.analysis.stage timer.
+ */
 @Service
+@Slf4j
 public class NoteAnalysisService {
 
+    private static final int NOTES_PER_FLUSH = 50;
+    private static final int NEIGHBORS = 10;
+    private static final float LINK_THRESHOLD = 0.6f;
+    private static final float SUGGEST_THRESHOLD = 0.8f;
+
+    // Roughly the model's 2048-token input limit
+    private static final int MAX_TEXT_CHARS = 8000;
+
+    private static final Duration EMBED_TIMEOUT = Duration.ofSeconds(30);
+
+    // Skips the write if the note changed after its text was read; the newer save is queued too
+    private static final String UPDATE_EMBEDDING_SQL = "UPDATE notes SET embedding = CAST(? AS vector), "
+            + "embedding_hash = ? WHERE id = ? AND updated_at = CAST(? AS timestamp)";
+
+    private static final String INSERT_LINK_SQL = "INSERT INTO note_links (source_note_id, linked_note_id, "
+            + "relevance_score) VALUES (?, ?, ?) ON CONFLICT (source_note_id, linked_note_id) "
+            + "DO UPDATE SET relevance_score = EXCLUDED.relevance_score";
+
+    private static final String INSERT_SUGGESTION_SQL = "INSERT INTO note_suggestions (note_id, type, "
+            + "suggestion_content, created_at) VALUES (?, ?, ?, ?)";
+
+    private static final String MARK_PENDING_SQL = "UPDATE notes SET analysis_pending_at = now() WHERE id = ?";
+
+    private static final String CLAIM_PENDING_SQL = "UPDATE notes "
+            + "SET analysis_pending_at = now() + interval '5 minutes' WHERE id IN "
+            + "(SELECT id FROM notes WHERE analysis_pending_at <= now() AND deleted_at IS NULL "
+            + "ORDER BY analysis_pending_at LIMIT ? FOR UPDATE SKIP LOCKED) RETURNING id";
+
+    // Both leave a note alone once a newer save reset its lease to now()
+    private static final String RELEASE_PENDING_SQL = "UPDATE notes SET analysis_pending_at = NULL "
+            + "WHERE id = ? AND analysis_pending_at > now()";
+
+    private static final String RETRY_PENDING_SQL = "UPDATE notes "
+            + "SET analysis_pending_at = now() + interval '30 seconds' "
+            + "WHERE id = ? AND analysis_pending_at > now() + interval '30 seconds'";
+
+    private static final String MARK_STALE_SQL = "UPDATE notes SET links_stale_at = now() "
+            + "WHERE id = ? AND links_stale_at IS NULL AND deleted_at IS NULL";
+
+    private static final String CLAIM_STALE_SQL = "UPDATE notes SET links_stale_at = NULL WHERE id IN ("
+            + "SELECT id FROM notes WHERE links_stale_at IS NOT NULL AND deleted_at IS NULL "
+            + "ORDER BY links_stale_at LIMIT ? FOR UPDATE SKIP LOCKED) RETURNING id";
+
     private final NoteRepository repo;
     private final NoteLinkRepository linkRepo;
-    private final NoteSuggestionRepository suggestionRepo;
+    private final NoteWikiLinkRepository wikiLinkRepo;
     private final EmbeddingService embeddingService;
+    private final NoteGraphService graphService;
+    private final NoteCacheInvalidator cacheInvalidator;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final int staleBatchSize;
 
     public NoteAnalysisService(NoteRepository repo,
             NoteLinkRepository linkRepo,
-            NoteSuggestionRepository suggestionRepo,
-            EmbeddingService embeddingService) {
+            NoteWikiLinkRepository wikiLinkRepo,
+            EmbeddingService embeddingService,
+            NoteGraphService graphService,
+            NoteCacheInvalidator cacheInvalidator,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${notes.analysis.stale-batch-size:100}") int staleBatchSize) {
         this.repo = repo;
         this.linkRepo = linkRepo;
-        this.suggestionRepo = suggestionRepo;
+        this.wikiLinkRepo = wikiLinkRepo;
         this.embeddingService = embeddingService;
+        this.graphService = graphService;
+        this.cacheInvalidator = cacheInvalidator;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.staleBatchSize = Math.max(1, staleBatchSize);
+    }
+
+    /**
+     * Queues a note for analysis. Inside a transaction the mark commits or
+     * rolls back with the save.
+     */
+    public void enqueue(Long noteId) {
+        if (noteId == null)
+            return;
+        jdbcTemplate.update(MARK_PENDING_SQL, noteId);
     }
 
-    @Async
-    @Transactional
-    public void analyzeNoteContentAsync(Long noteId) {
-        // Fetch the note fresh to avoid detached entity issues
-        repo.findById(noteId).ifPresent(note -> {
-
-            // Clear previous suggestions for this note
-            suggestionRepo.deleteByNoteId(note.getId());
-
-            String textContent = extractTextFromNode(note.getContent());
-
-            // Example 1: Generate embeddings and suggest links
-            embeddingService.getEmbedding(textContent).subscribe(embedding -> {
-                // Save embedding to note
-                note.setEmbedding(embedding);
-                repo.save(note);
-
-                // Generate Suggestions (Similar notes not yet linked)
-                generateSuggestions(note, embedding);
-            });
-
-            // Example 2: Simple keyword-based suggestion (e.g., for tasks)
-            if (textContent.contains("TODO")) {
-                suggestionRepo.save(NoteSuggestion.builder()
-                        .note(note)
-                        .type("TASK_REMINDER")
-                        .suggestionContent("Found 'TODO' in your note. Consider adding a task.")
-                        .build());
+    @Scheduled(fixedDelayString = "${notes.analysis.flush-interval-ms:2000}")
+    public void flush() {
+        List<Long> ids;
+        try {
+            ids = jdbcTemplate.queryForList(CLAIM_PENDING_SQL, Long.class, NOTES_PER_FLUSH);
+        } catch (Exception e) {
+            log.warn("Claiming notes for analysis failed: {}", e.getMessage());
+            return;
+        }
+        if (ids.isEmpty())
+            return;
+        String sql = RELEASE_PENDING_SQL;
+        try {
+            analyze(ids, true);
+        } catch (Exception e) {
+            log.warn("Analysis of {} notes failed, retrying: {}", ids.size(), e.getMessage());
+            sql = RETRY_PENDING_SQL;
+        }
+        try {
+            jdbcTemplate.batchUpdate(sql, ids.stream().map(id -> new Object[] { id }).toList());
+        } catch (Exception e) {
+            // The lease runs out and the notes are claimed again
+            log.warn("Updating the analysis queue for {} notes failed: {}", ids.size(), e.getMessage());
+        }
+    }
+
+    /** Recomputes links and suggestions of notes whose neighbours changed. */
+    @Scheduled(initialDelayString = "${notes.analysis.stale-initial-delay-ms:60000}",
+            fixedDelayString = "${notes.analysis.stale-interval-ms:60000}")
+    public void refreshStale() {
+        try {
+            List<Long> ids = jdbcTemplate.queryForList(CLAIM_STALE_SQL, Long.class, staleBatchSize);
+            if (!ids.isEmpty()) {
+                analyze(ids, false);
             }
-        });
+        } catch (Exception e) {
+            log.warn("Refreshing stale note links failed: {}", e.getMessage());
+        }
     }
 
-    private void generateSuggestions(Note note, float[] embedding) {
-        String embeddingString = Arrays.toString(embedding);
-        List<Note> similarNotes = repo.searchByEmbedding(note.getUserId(), embeddingString, 10);
-
-        for (Note similar : similarNotes) {
-            if (!similar.getId().equals(note.getId())) {
-                float similarity = EmbeddingService.cosineSimilarity(embedding, similar.getEmbedding());
-
-                // Only suggest if very similar (> 0.8) and NOT already linked
-                if (similarity > 0.8 && linkRepo.findBySourceNoteIdOrderByRelevanceScoreDesc(note.getId()).stream()
-                        .noneMatch(nl -> nl.getLinkedNoteId().equals(similar.getId()))) {
-                    suggestionRepo.save(NoteSuggestion.builder()
-                            .note(note)
-                            .type("RELATED_NOTE")
-                            .suggestionContent("Consider linking to note: " + similar.getTitle())
-                            .build());
-                }
+    /**
+     * Runs the pipeline for the given notes and returns how many were
+     * embedded. With {@code markNeighbors}, notes near a re-embedded note are
+     * flagged for the stale refresh; the refresh itself passes false so it
+     * does not cascade.
+     */
+    int analyze(List<Long> noteIds, boolean markNeighbors) {
+        long started = System.nanoTime();
+        List<Analysis> batch = timed("load", () -> load(noteIds));
+        if (batch.isEmpty())
+            return 0;
+        int embedded = timed("embed", () -> embed(batch));
+        timed("candidates", () -> findCandidates(batch));
+        timed("write", () -> write(batch, markNeighbors));
+        log.debug("Analyzed {} notes ({} embedded) in {} ms", batch.size(), embedded,
+                (System.nanoTime() - started) / 1_000_000);
+        return embedded;
+    }
+
+    private List<Analysis> load(List<Long> noteIds) {
+        List<Analysis> batch = new ArrayList<>();
+        for (AnalysisSourceView view : repo.findAnalysisSourcesByIdIn(noteIds)) {
+            JsonNode content = parse(view.getContentJson());
+            String text = NoteText.of(content);
+            if (text.length() > MAX_TEXT_CHARS)
+                text = text.substring(0, MAX_TEXT_CHARS);
+            Analysis a = new Analysis(view, content, text);
+            a.embedding = parseVector(view.getEmbedding());
+            batch.add(a);
+        }
+        return batch;
+    }
+
+    // One batch call for every note whose text differs from what its vector was computed from
+    private int embed(List<Analysis> batch) {
+        List<Analysis> changed = new ArrayList<>();
+        for (Analysis a : batch) {
+            if (!a.text.isBlank() && (a.embedding == null || !a.hash.equals(a.source.getEmbeddingHash())))
+                changed.add(a);
+        }
+        if (changed.isEmpty())
+            return 0;
+        List<float[]> vectors;
+        try {
+            vectors = embeddingService.getEmbeddings(changed.stream().map(a -> a.text).toList())
+                    .block(EMBED_TIMEOUT);
+        } catch (Exception e) {
+            // Links are computed from the previous vectors; the next save retries
+            log.warn("Embedding {} notes failed: {}", changed.size(), e.getMessage());
+            return 0;
+        }
+        if (vectors == null)
+            return 0;
+
+        List<Object[]> rows = new ArrayList<>(changed.size());
+        for (int i = 0; i < changed.size(); i++) {
+            Analysis a = changed.get(i);
+            a.embedding = vectors.get(i);
+            a.reembedded = true;
+            rows.add(new Object[] { Arrays.toString(a.embedding), a.hash, a.source.getId(), a.source.getVersion() });
+        }
+        jdbcTemplate.batchUpdate(UPDATE_EMBEDDING_SQL, rows);
+        meterRegistry.counter("notes.analysis.embedded").increment(changed.size());
+        return changed.size();
+    }
+
+    private Void findCandidates(List<Analysis> batch) {
+        List<Long> ids = batch.stream().map(a -> a.source.getId()).toList();
+        Map<Long, Analysis> byId = new HashMap<>();
+        batch.forEach(a -> byId.put(a.source.getId(), a));
+
+        // Existing links and resolved wiki links for the whole batch, one query each
+        for (NoteLink link : linkRepo.findBySourceNoteIdIn(ids)) {
+            byId.get(link.getSourceNoteId()).previousTargets.add(link.getLinkedNoteId());
+        }
+        for (NoteWikiLinkRepository.WikiLinkEdge edge : wikiLinkRepo.findResolvedBySourceNoteIdIn(ids)) {
+            byId.get(edge.getSourceNoteId()).explicitTargets.add(edge.getTargetNoteId());
+        }
+
+        for (Analysis a : batch) {
+            a.explicitTargets.addAll(extractManualLinkIds(a.content));
+            a.explicitTargets.remove(a.source.getId());
+            if (a.embedding != null) {
+                a.neighbors = repo.findNearestNeighbors(a.source.getUserId(), a.source.getId(),
+                        Arrays.toString(a.embedding), NEIGHBORS);
             }
         }
+        return null;
     }
 
-    private String extractTextFromNode(JsonNode node) {
-        if (node == null) {
-            return "";
+    private Void write(List<Analysis> batch, boolean markNeighbors) {
+        List<Object[]> sources = new ArrayList<>();
+        List<Object[]> links = new ArrayList<>();
+        List<Object[]> suggestions = new ArrayList<>();
+        Set<Long> stale = new HashSet<>();
+        Timestamp now = Timestamp.from(Instant.now());
+
+        for (Analysis a : batch) {
+            Long id = a.source.getId();
+            sources.add(new Object[] { id });
+            for (Long target : a.explicitTargets) {
+                a.targets.put(target, 1.0f);
+            }
+            for (NeighborView neighbor : a.neighbors) {
+                float similarity = neighbor.getSimilarity().floatValue();
+                if (similarity > LINK_THRESHOLD)
+                    a.targets.putIfAbsent(neighbor.getId(), similarity);
+                if (similarity > SUGGEST_THRESHOLD && !a.explicitTargets.contains(neighbor.getId())) {
+                    suggestions.add(new Object[] { id, "RELATED_NOTE",
+                            "Consider linking to note: " + neighbor.getTitle(), now });
+                }
+                if (a.reembedded)
+                    stale.add(neighbor.getId());
+            }
+            a.targets.forEach((target, score) -> links.add(new Object[] { id, target, score }));
+            if (a.text.contains("TODO")) {
+                suggestions.add(new Object[] { id, "TASK_REMINDER",
+                        "Found 'TODO' in your note. Consider adding a task.", now });
+            }
         }
-        if (node.isTextual()) {
-            return node.asText();
+
+        if (markNeighbors) {
+            List<Long> reembedded = batch.stream().filter(a -> a.reembedded).map(a -> a.source.getId()).toList();
+            if (!reembedded.isEmpty()) {
+                stale.addAll(linkRepo.findSemanticSourceIdsLinkingTo(reembedded));
+            }
+            batch.forEach(a -> stale.remove(a.source.getId()));
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate("DELETE FROM note_links WHERE source_note_id = ?", sources);
+            jdbcTemplate.batchUpdate("DELETE FROM note_suggestions WHERE note_id = ?", sources);
+            if (!links.isEmpty())
+                jdbcTemplate.batchUpdate(INSERT_LINK_SQL, links);
+            if (!suggestions.isEmpty())
+                jdbcTemplate.batchUpdate(INSERT_SUGGESTION_SQL, suggestions);
+            if (markNeighbors && !stale.isEmpty())
+                jdbcTemplate.batchUpdate(MARK_STALE_SQL, stale.stream().map(s -> new Object[] { s }).toList());
+        });
+
+        for (Analysis a : batch) {
+            graphService.onLinksReplaced(a.source.getUserId(), a.source.getId(), a.targets);
+            Set<Long> touched = new HashSet<>(a.previousTargets);
+            touched.addAll(a.targets.keySet());
+            touched.add(a.source.getId());
+            cacheInvalidator.evictLinks(a.source.getUserId(), touched);
+        }
+        return null;
+    }
+
+    private <T> T timed(String stage, Supplier<T> step) {
+        return Timer.builder("notes.analysis.stage")
+                .description("Duration of one note analysis pipeline stage for a batch")
+                .tag("stage", stage)
+                .register(meterRegistry)
+                .record(step);
+    }
+
+    private JsonNode parse(String json) {
+        if (json == null)
+            return null;
+        try {
+            return objectMapper.readTree(json);
+        } catch (Exception e) {
+            return null;
         }
-        if (node.isObject() && node.has("text")) {
-            return node.get("text").asText();
+    }
+
+    private static float[] parseVector(String text) {
+        if (text == null || text.length() < 2)
+            return null;
+        String[] parts = text.substring(1, text.length() - 1).split(",");
+        float[] vector = new float[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            vector[i] = Float.parseFloat(parts[i].trim());
         }
-        StringBuilder sb = new StringBuilder();
-        if (node.has("content")) {
-            for (JsonNode child : node.get("content")) {
-                sb.append(extractTextFromNode(child)).append(" ");
+        return vector;
+    }
+
+    // TipTap note links: { type: "text", marks: [{ type: "link", attrs: { "data-note-id": ... } }] }
+    static Set<Long> extractManualLinkIds(JsonNode node) {
+        Set<Long> ids = new HashSet<>();
+        if (node == null || node.isNull())
+            return ids;
+
+        if (node.isObject()) {
+            if (node.has("marks") && node.get("marks").isArray()) {
+                for (JsonNode mark : node.get("marks")) {
+                    if (mark.has("type") && mark.get("type").asText().equals("link") && mark.has("attrs")) {
+                        JsonNode attrs = mark.get("attrs");
+                        if (attrs.has("data-note-id")) {
+                            ids.add(attrs.get("data-note-id").asLong());
+                        }
+                    }
+                }
+            }
+            if (node.has("content") && node.get("content").isArray()) {
+                for (JsonNode child : node.get("content")) {
+                    ids.addAll(extractManualLinkIds(child));
+                }
             }
+        } else if (node.isArray()) {
+            for (JsonNode child : node) {
+                ids.addAll(extractManualLinkIds(child));
+            }
+        }
+        return ids;
+    }
+
+    static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Working state of one note through the pipeline. */
+    private static final class Analysis {
+        final AnalysisSourceView source;
+        final JsonNode content;
+        final String text;
+        final String hash;
+        float[] embedding;
+        boolean reembedded;
+        List<NeighborView> neighbors = List.of();
+        final Set<Long> previousTargets = new HashSet<>();
+        final Set<Long> explicitTargets = new HashSet<>();
+        final Map<Long, Float> targets = new LinkedHashMap<>();
+
+        Analysis(AnalysisSourceView source, JsonNode content, String text) {
+            this.source = source;
+            this.content = content;
+            this.text = text;
+            this.hash = sha256(text);
         }
-        return sb.toString().trim();
     }
 }
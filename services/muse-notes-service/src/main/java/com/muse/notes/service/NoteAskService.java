@@ -0,0 +1,169 @@
+package com.muse.notes.service;
+
+import com.muse.notes.dto.AskQuestionResponse;
+import com.muse.notes.repository.NoteEmbeddingRepository;
+import com.muse.notes.repository.NoteEmbeddingRepository.ChunkHit;
+import com.muse.notes.util.ContextPacker;
+import com.muse.notes.util.ContextPacker.Passage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers questions from a user's own notes. Retrieval runs on chunks, not
+ * whole notes: the nearest chunks by embedding and the best chunks by BM25
+ * are fused by reciprocal rank, then packed into a token budget with
+ * overlapping neighbours merged. The model cites the numbered passages, and
+ * the same numbers come back as sources.
+ */
+@Service
+@Slf4j
+public class NoteAskService {
+
+    // Reciprocal rank fusion constant; 60 is the value from the original RRF paper
+    private static final int RRF_K = 60;
+
+    private static final int EXCERPT_LENGTH = 200;
+
+    private static final String NOT_FOUND_ANSWER = "I couldn't find the answer in your notes.";
+
+    private final NoteEmbeddingRepository chunkRepo;
+    private final EmbeddingService embeddingService;
+    private final GeminiService geminiService;
+    private final int candidates;
+    private final int contextTokens;
+    private final int maxPassages;
+
+    public NoteAskService(NoteEmbeddingRepository chunkRepo,
+            EmbeddingService embeddingService,
+            GeminiService geminiService,
+            @Value("${notes.ask.candidates:30}") int candidates,
+            @Value("${notes.ask.context-tokens:2000}") int contextTokens,
+            @Value("${notes.ask.max-passages:8}") int maxPassages) {
+        this.chunkRepo = chunkRepo;
+        this.embeddingService = embeddingService;
+        this.geminiService = geminiService;
+        this.candidates = Math.max(1, candidates);
+        this.contextTokens = Math.max(200, contextTokens);
+        this.maxPassages = Math.max(1, maxPassages);
+    }
+
+    public Mono<AskQuestionResponse> ask(Long userId, String question) {
+        return retrieve(userId, question).flatMap(passages -> {
+            List<AskQuestionResponse.SourceNote> sources = toSources(passages);
+            if (passages.isEmpty()) {
+                return Mono.just(AskQuestionResponse.builder().answer(NOT_FOUND_ANSWER).sources(sources).build());
+            }
+            return geminiService.generateContent(buildPrompt(question, passages))
+                    .map(answer -> AskQuestionResponse.builder().answer(answer).sources(sources).build());
+        });
+    }
+
+    /**
+     * Same answer as {@link #ask}, streamed: a "sources" event with the
+     * numbered passages, "token" events as the model writes, then "done".
+     * Failures end the stream with an "error" event.
+     */
+    public Flux<Map<String, Object>> streamAnswer(Long userId, String question) {
+        return retrieve(userId, question)
+                .flatMapMany(passages -> {
+                    Flux<Map<String, Object>> sources = Flux.just(event("sources", "sources", toSources(passages)));
+                    Flux<Map<String, Object>> tokens = passages.isEmpty()
+                            ? Flux.just(event("token", "text", NOT_FOUND_ANSWER))
+                            : geminiService.streamContent(buildPrompt(question, passages))
+                                    .map(fragment -> event("token", "text", fragment));
+                    return Flux.concat(sources, tokens, Flux.just(event("done", "passages", passages.size())));
+                })
+                .onErrorResume(e -> {
+                    log.warn("Streaming answer failed for user {}: {}", userId, e.getMessage());
+                    return Flux.just(event("error", "message", "Could not answer from your notes right now."));
+                });
+    }
+
+    /** Fused, packed passages for the question, best first. */
+    Mono<List<Passage>> retrieve(Long userId, String question) {
+        // A failed embedding call degrades to lexical retrieval instead of failing the question
+        Mono<List<ChunkHit>> nearest = embeddingService.getEmbedding(question)
+                .publishOn(Schedulers.boundedElastic())
+                .map(embedding -> chunkRepo.findNearestChunks(userId, Arrays.toString(embedding), candidates))
+                .onErrorResume(e -> {
+                    log.warn("Vector retrieval failed, using BM25 only: {}", e.getMessage());
+                    return Mono.just(List.of());
+                })
+                .defaultIfEmpty(List.of());
+        Mono<List<ChunkHit>> lexical = Mono.fromCallable(() -> chunkRepo.findBm25Chunks(userId, question, candidates))
+                .subscribeOn(Schedulers.boundedElastic());
+
+        return Mono.zip(nearest, lexical)
+                .map(hits -> ContextPacker.pack(fuse(hits.getT1(), hits.getT2()), contextTokens, maxPassages));
+    }
+
+    // Reciprocal rank fusion: score = sum over rankings of 1 / (k + rank)
+    private static List<ContextPacker.Candidate> fuse(List<ChunkHit> nearest, List<ChunkHit> lexical) {
+        Map<Long, ChunkHit> hits = new LinkedHashMap<>();
+        Map<Long, Double> scores = new HashMap<>();
+        for (List<ChunkHit> ranking : List.of(nearest, lexical)) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                ChunkHit hit = ranking.get(rank);
+                hits.putIfAbsent(hit.getId(), hit);
+                scores.merge(hit.getId(), 1.0 / (RRF_K + rank + 1), Double::sum);
+            }
+        }
+        return hits.values().stream()
+                .sorted(Comparator.comparingDouble((ChunkHit hit) -> scores.get(hit.getId())).reversed())
+                .map(hit -> new ContextPacker.Candidate(hit.getNoteId(), hit.getNoteTitle(), hit.getChunkIndex(),
+                        hit.getStartOffset(), hit.getEndOffset(), hit.getContent()))
+                .toList();
+    }
+
+    private static String buildPrompt(String question, List<Passage> passages) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("You are a helpful tutor. Answer the student's question using ONLY the numbered excerpts ")
+                .append("from their notes below. After each sentence that uses an excerpt, cite it by number ")
+                .append("in square brackets, like [1] or [2][3]. If the excerpts do not contain the answer, say '")
+                .append(NOT_FOUND_ANSWER).append("'\n\n");
+        for (int i = 0; i < passages.size(); i++) {
+            Passage passage = passages.get(i);
+            sb.append('[').append(i + 1).append("] Note: ").append(passage.title()).append('\n')
+                    .append(passage.content().trim()).append("\n\n");
+        }
+        sb.append("Question: ").append(question).append("\nAnswer:");
+        return sb.toString();
+    }
+
+    private static List<AskQuestionResponse.SourceNote> toSources(List<Passage> passages) {
+        List<AskQuestionResponse.SourceNote> sources = new ArrayList<>(passages.size());
+        for (int i = 0; i < passages.size(); i++) {
+            Passage passage = passages.get(i);
+            String text = passage.content().trim();
+            sources.add(AskQuestionResponse.SourceNote.builder()
+                    .citation(i + 1)
+                    .id(passage.noteId())
+                    .title(passage.title())
+                    .excerpt(text.length() > EXCERPT_LENGTH ? text.substring(0, EXCERPT_LENGTH) + "..." : text)
+                    .chunkIndex(passage.chunkIndex())
+                    .startOffset(passage.start())
+                    .endOffset(passage.end())
+                    .build());
+        }
+        return sources;
+    }
+
+    private static Map<String, Object> event(String type, String key, Object value) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("type", type);
+        event.put(key, value);
+        return event;
+    }
+}
@@ -0,0 +1,80 @@
+package com.muse.notes.service;
+
+import com.muse.notes.entity.NoteLink;
+import com.muse.notes.repository.NoteLinkRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tag-based eviction for the note caches. All note-scoped caches are keyed
+ * "noteId_userId", so evicting the tag (note id, user id) drops the note and
+ * its backlink / link entries together.
+ */
+@Service
+@Slf4j
+public class NoteCacheInvalidator {
+
+    static final List<String> NOTE_SCOPED_CACHES = List.of("notes", "note_backlinks", "note_links_all");
+    static final List<String> LINK_SCOPED_CACHES = List.of("note_backlinks", "note_links_all");
+
+    private final CacheManager cacheManager;
+    private final NoteLinkRepository linkRepo;
+
+    public NoteCacheInvalidator(CacheManager cacheManager, NoteLinkRepository linkRepo) {
+        this.cacheManager = cacheManager;
+        this.linkRepo = linkRepo;
+    }
+
+    /**
+     * Evicts every cache entry tagged with the note.
+     */
+    public void evictNote(Long noteId, Long userId) {
+        evict(NOTE_SCOPED_CACHES, noteId, userId);
+    }
+
+    /**
+     * Evicts link caches of the given notes (both endpoints of changed links).
+     */
+    public void evictLinks(Long userId, Collection<Long> noteIds) {
+        for (Long noteId : new HashSet<>(noteIds)) {
+            evict(LINK_SCOPED_CACHES, noteId, userId);
+        }
+    }
+
+    /**
+     * Evicts the note and the link caches of every note linked to or from it;
+     * used when its title changes or it disappears, since neighbors embed it.
+     */
+    public void evictNoteAndNeighbors(Long noteId, Long userId) {
+        evictNote(noteId, userId);
+        Set<Long> neighbors = new HashSet<>();
+        for (NoteLink link : linkRepo.findBySourceNoteIdOrderByRelevanceScoreDesc(noteId)) {
+            neighbors.add(link.getLinkedNoteId());
+        }
+        for (NoteLink link : linkRepo.findByLinkedNoteIdOrderByRelevanceScoreDesc(noteId)) {
+            neighbors.add(link.getSourceNoteId());
+        }
+        evictLinks(userId, neighbors);
+    }
+
+    private void evict(List<String> cacheNames, Long noteId, Long userId) {
+        String key = noteId + "_" + userId;
+        for (String cacheName : cacheNames) {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache == null)
+                continue;
+            try {
+                cache.evict(key);
+            } catch (Exception e) {
+                log.warn("Failed to evict {}::{}: {}", cacheName, key, e.getMessage());
+            }
+        }
+    }
+}
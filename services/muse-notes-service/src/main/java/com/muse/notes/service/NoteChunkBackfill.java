@@ -0,0 +1,84 @@
+package com.muse.notes.service;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.muse.notes.repository.NoteRepository;
+import com.muse.notes.repository.NoteRepository.ChunkSourceView;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Chunks and embeds notes that have no embedded chunks: notes written before
+ * the chunk index existed, and saves whose embedding call failed. Resumes
+ * from its checkpoint like the journal embedding backfill; the rate limiter
+ * counts notes, each of which embeds a handful of chunks.
+ */
+@Service
+@Slf4j
+public class NoteChunkBackfill {
+
+    private static final String NAME = "note_chunk_embeddings";
+
+    private final NoteRepository noteRepo;
+    private final NoteChunkIndexService chunkIndexService;
+    private final BackfillCheckpoints checkpoints;
+    private final RateLimiter rateLimiter;
+    private final int batchSize;
+    private final int leaseSeconds;
+    private final boolean enabled;
+
+    public NoteChunkBackfill(NoteRepository noteRepo,
+            NoteChunkIndexService chunkIndexService,
+            BackfillCheckpoints checkpoints,
+            @Value("${notes.ask.backfill.enabled:true}") boolean enabled,
+            @Value("${notes.ask.backfill.batch-size:20}") int batchSize,
+            @Value("${notes.ask.backfill.notes-per-second:5}") double notesPerSecond,
+            @Value("${notes.ask.backfill.lease-seconds:300}") int leaseSeconds) {
+        this.noteRepo = noteRepo;
+        this.chunkIndexService = chunkIndexService;
+        this.checkpoints = checkpoints;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.rateLimiter = RateLimiter.create(Math.max(0.1, notesPerSecond));
+        this.leaseSeconds = Math.max(30, leaseSeconds);
+    }
+
+    @Scheduled(initialDelayString = "${notes.ask.backfill.initial-delay-ms:90000}",
+            fixedDelayString = "${notes.ask.backfill.interval-ms:600000}")
+    public void run() {
+        if (!enabled)
+            return;
+        if (!checkpoints.claim(NAME, leaseSeconds))
+            return; // another instance holds the lease
+
+        long lastId = checkpoints.lastId(NAME);
+        long started = System.nanoTime();
+        int notes = 0;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                List<ChunkSourceView> batch = noteRepo.findUnchunkedAfter(lastId, PageRequest.of(0, batchSize));
+                if (batch.isEmpty()) {
+                    checkpoints.finish(NAME);
+                    if (notes > 0) {
+                        log.info("Note chunk backfill pass done: {} notes in {} ms", notes,
+                                (System.nanoTime() - started) / 1_000_000);
+                    }
+                    return;
+                }
+                rateLimiter.acquire(batch.size());
+                chunkIndexService.index(batch);
+                notes += batch.size();
+                lastId = batch.get(batch.size() - 1).getId();
+                checkpoints.advance(NAME, lastId, batch.size(), leaseSeconds);
+            }
+        } catch (Exception e) {
+            // The checkpoint holds the last finished batch; the next run resumes after it
+            log.warn("Note chunk backfill stopped after id {}: {}", lastId, e.getMessage());
+        }
+        checkpoints.release(NAME);
+    }
+}
@@ -0,0 +1,197 @@
+package com.muse.notes.service;
+
+import com.muse.notes.repository.NoteEmbeddingRepository;
+import com.muse.notes.repository.NoteEmbeddingRepository.StoredChunk;
+import com.muse.notes.repository.NoteRepository;
+import com.muse.notes.repository.NoteRepository.ChunkSourceView;
+import com.muse.notes.util.NoteChunker;
+import com.muse.notes.util.NoteText;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the chunk index behind "ask my notes" current. Saved notes are
+ * queued and re-chunked a few at a time; chunks whose text is unchanged keep
+ * their stored embedding, so an edit only embeds the chunks it touched, and
+ * the rest go out in batchEmbedContents calls.
+ */
+@Service
+@Slf4j
+public class NoteChunkIndexService {
+
+    private static final int NOTES_PER_FLUSH = 20;
+
+    private static final Duration EMBED_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final String INSERT_CHUNK_SQL = "INSERT INTO note_chunks (note_id, user_id, chunk_index, "
+            + "start_offset, end_offset, content, content_hash, token_count, embedding) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, CAST(? AS vector))";
+
+    private final NoteRepository noteRepo;
+    private final NoteEmbeddingRepository chunkRepo;
+    private final EmbeddingService embeddingService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkChars;
+    private final int overlapChars;
+
+    private final Set<Long> pending = new LinkedHashSet<>();
+
+    public NoteChunkIndexService(NoteRepository noteRepo,
+            NoteEmbeddingRepository chunkRepo,
+            EmbeddingService embeddingService,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${notes.ask.chunk-chars:1200}") int chunkChars,
+            @Value("${notes.ask.chunk-overlap-chars:200}") int overlapChars) {
+        this.noteRepo = noteRepo;
+        this.chunkRepo = chunkRepo;
+        this.embeddingService = embeddingService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkChars = Math.max(200, chunkChars);
+        this.overlapChars = Math.max(0, Math.min(overlapChars, this.chunkChars / 2));
+    }
+
+    /** Queues a note for re-chunking once the current transaction commits. */
+    public void enqueue(Long noteId) {
+        if (noteId == null)
+            return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(noteId);
+                }
+            });
+        } else {
+            add(noteId);
+        }
+    }
+
+    private void add(Long noteId) {
+        synchronized (pending) {
+            pending.add(noteId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${notes.ask.index-flush-interval-ms:3000}")
+    public void flush() {
+        List<Long> ids = new ArrayList<>();
+        synchronized (pending) {
+            Iterator<Long> it = pending.iterator();
+            while (it.hasNext() && ids.size() < NOTES_PER_FLUSH) {
+                ids.add(it.next());
+                it.remove();
+            }
+        }
+        if (ids.isEmpty())
+            return;
+        try {
+            index(noteRepo.findChunkSourcesByIdIn(ids));
+        } catch (Exception e) {
+            // Notes left without embedded chunks are picked up by the backfill
+            log.warn("Chunk indexing of {} notes failed: {}", ids.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Replaces the chunks of the given notes. Returns how many chunks were
+     * embedded (reused embeddings not counted). If the embedding call fails
+     * the chunks are stored without vectors, so lexical retrieval still
+     * works and the backfill embeds them later.
+     */
+    int index(List<ChunkSourceView> notes) {
+        if (notes.isEmpty())
+            return 0;
+        List<Long> noteIds = notes.stream().map(ChunkSourceView::getId).sorted().toList();
+
+        Map<String, String> storedEmbeddings = new HashMap<>();
+        for (StoredChunk stored : chunkRepo.findStoredChunksByNoteIdIn(noteIds)) {
+            storedEmbeddings.put(stored.getContentHash(), stored.getEmbedding());
+        }
+
+        List<Object[]> rows = new ArrayList<>();
+        List<Object[]> toEmbed = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        for (ChunkSourceView note : notes) {
+            String title = note.getTitle() != null ? note.getTitle().trim() : "";
+            for (NoteChunker.Chunk chunk : NoteChunker.chunk(NoteText.of(note.getContent()), chunkChars,
+                    overlapChars)) {
+                // The title goes into the embedded text so chunks keep the note's topic
+                String embeddingText = title.isEmpty() ? chunk.content() : title + "\n\n" + chunk.content();
+                String hash = sha256(embeddingText);
+                Object[] row = { note.getId(), note.getUserId(), chunk.index(), chunk.start(), chunk.end(),
+                        chunk.content(), hash, wordCount(chunk.content()), storedEmbeddings.get(hash) };
+                rows.add(row);
+                if (row[8] == null) {
+                    toEmbed.add(row);
+                    texts.add(embeddingText);
+                }
+            }
+        }
+
+        int embedded = 0;
+        try {
+            for (int from = 0; from < texts.size(); from += EmbeddingService.MAX_BATCH_SIZE) {
+                int to = Math.min(texts.size(), from + EmbeddingService.MAX_BATCH_SIZE);
+                List<float[]> vectors = embeddingService.getEmbeddings(texts.subList(from, to)).block(EMBED_TIMEOUT);
+                for (int i = from; vectors != null && i < to; i++) {
+                    toEmbed.get(i)[8] = Arrays.toString(vectors.get(i - from));
+                    embedded++;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Embedding {} note chunks failed, storing text only: {}", texts.size(), e.getMessage());
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // Row locks in id order keep a concurrent flush and backfill from
+            // interleaving their delete and insert for the same note
+            for (Long noteId : noteIds) {
+                jdbcTemplate.queryForList("SELECT id FROM notes WHERE id = ? FOR UPDATE", noteId);
+            }
+            jdbcTemplate.batchUpdate("DELETE FROM note_chunks WHERE note_id = ?",
+                    noteIds.stream().map(id -> new Object[] { id }).toList());
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_CHUNK_SQL, rows);
+            }
+        });
+        return embedded;
+    }
+
+    private static int wordCount(String text) {
+        String trimmed = text.trim();
+        return trimmed.isEmpty() ? 0 : trimmed.split("\\s+").length;
+    }
+
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.muse.notes.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.muse.notes.config.CacheInvalidationBus;
+import com.muse.notes.repository.NoteLinkRepository;
+import com.muse.notes.repository.NoteRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+/**
+ * Serves per-user knowledge graph snapshots for /api/notes/graph.
+ *
+ * Snapshots are built from two lean projection queries (no note content) and
+ * then kept current by applying link and note events in place. Events are
+ * applied once the writing transaction commits, so a rolled-back change never
+ * reaches the snapshot. Every change tells other replicas (via the cache
+ * invalidation bus) to drop their copy; the TTL is a fallback for lost
+ * messages. The ETag is derived from the snapshot's content (see
+ * NoteGraphSnapshot), so it matches across replicas and restarts.
+ *
+ * Every change is stamped with a sequence number. A build only caches its
+ * result if no change for the user was stamped after its database read, so
+ * an event applied while the build ran is not overwritten by the older build.
+ */
+@Service
+@Slf4j
+public class NoteGraphService {
+
+    static final String CACHE_NAME = "note_graph";
+
+    // Longer than any snapshot build takes; changes older than this cannot race a build
+    private static final long CHANGE_WINDOW_SECONDS = 300;
+
+    private final NoteRepository noteRepo;
+    private final NoteLinkRepository linkRepo;
+    private final CacheInvalidationBus invalidationBus;
+    private final Cache<Long, NoteGraphSnapshot> snapshots;
+    private final Duration snapshotTtl;
+    private final AtomicLong changeSeq = new AtomicLong();
+    // Stamp of the last change per user, and of the last change to every user
+    private final Cache<Long, Long> lastChange;
+    private volatile long lastChangeToAll;
+
+    public NoteGraphService(NoteRepository noteRepo,
+            NoteLinkRepository linkRepo,
+            CacheInvalidationBus invalidationBus,
+            @Value("${notes.graph.snapshot-ttl-seconds:600}") long snapshotTtlSeconds,
+            @Value("${notes.graph.max-users:5000}") long maxUsers) {
+        this.noteRepo = noteRepo;
+        this.linkRepo = linkRepo;
+        this.invalidationBus = invalidationBus;
+        this.snapshotTtl = Duration.ofSeconds(snapshotTtlSeconds);
+        this.snapshots = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterAccess(snapshotTtlSeconds, TimeUnit.SECONDS)
+                .build();
+        this.lastChange = Caffeine.newBuilder()
+                .expireAfterWrite(CHANGE_WINDOW_SECONDS, TimeUnit.SECONDS)
+                .build();
+        invalidationBus.subscribe(CACHE_NAME, this::invalidateLocal);
+    }
+
+    @Transactional(readOnly = true)
+    public NoteGraphSnapshot getSnapshot(Long userId) {
+        NoteGraphSnapshot snapshot = snapshots.getIfPresent(userId);
+        if (snapshot != null && snapshot.getBuiltAt().plus(snapshotTtl).isAfter(Instant.now())) {
+            return snapshot;
+        }
+        long stamp = changeSeq.get();
+        NoteGraphSnapshot built = build(userId);
+        snapshots.asMap().compute(userId, (id, current) -> changedSince(id, stamp) ? current : built);
+        return built;
+    }
+
+    // Runs inside compute on the user's entry, like stampChange, so the two cannot interleave
+    private boolean changedSince(Long userId, long stamp) {
+        Long changed = lastChange.getIfPresent(userId);
+        return lastChangeToAll > stamp || (changed != null && changed > stamp);
+    }
+
+    // Records a change for the user; called inside compute on the user's snapshot entry
+    private void stampChange(Long userId) {
+        lastChange.put(userId, changeSeq.incrementAndGet());
+    }
+
+    private NoteGraphSnapshot build(Long userId) {
+        long started = System.nanoTime();
+        List<NoteRepository.GraphNodeView> nodes = noteRepo.findGraphNodesByUserId(userId);
+        List<NoteLinkRepository.EdgeView> edges = linkRepo.findLiveEdgesByUserId(userId);
+
+        int n = nodes.size();
+        long[] ids = new long[n];
+        String[] titles = new String[n];
+        String[] sections = new String[n];
+        boolean[] pinned = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            NoteRepository.GraphNodeView node = nodes.get(i);
+            ids[i] = node.getId();
+            titles[i] = node.getTitle();
+            sections[i] = node.getSectionTitle();
+            pinned[i] = Boolean.TRUE.equals(node.getPinned());
+        }
+
+        int m = edges.size();
+        long[] sources = new long[m];
+        long[] targets = new long[m];
+        float[] weights = new float[m];
+        for (int e = 0; e < m; e++) {
+            NoteLinkRepository.EdgeView edge = edges.get(e);
+            sources[e] = edge.getSourceNoteId();
+            targets[e] = edge.getLinkedNoteId();
+            weights[e] = edge.getRelevanceScore() != null ? edge.getRelevanceScore() : 0f;
+        }
+
+        NoteGraphSnapshot snapshot = NoteGraphSnapshot.build(ids, titles, sections, pinned, sources, targets,
+                weights);
+        log.debug("Built graph snapshot for user {}: {} nodes, {} edges in {} ms", userId, n, m,
+                (System.nanoTime() - started) / 1_000_000);
+        return snapshot;
+    }
+
+    /**
+     * Applies a change to a cached snapshot. A mutation that cannot be applied
+     * in place (returns null) drops the snapshot so the next read rebuilds.
+     */
+    private void apply(Long userId, UnaryOperator<NoteGraphSnapshot> mutation) {
+        if (userId == null)
+            return;
+        afterCommit(() -> {
+            snapshots.asMap().compute(userId, (id, snapshot) -> {
+                stampChange(id);
+                return snapshot != null ? mutation.apply(snapshot) : null;
+            });
+            invalidationBus.publish(CACHE_NAME, userId);
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void invalidateLocal(String userId) {
+        if (CacheInvalidationBus.ALL_KEYS.equals(userId)) {
+            lastChangeToAll = changeSeq.incrementAndGet();
+            snapshots.invalidateAll();
+        } else {
+            drop(Long.valueOf(userId));
+        }
+    }
+
+    private void drop(Long userId) {
+        snapshots.asMap().compute(userId, (id, snapshot) -> {
+            stampChange(id);
+            return null;
+        });
+    }
+
+    // ==================== Events ====================
+
+    public void onNoteCreated(Long userId, Long noteId, String title, String section, boolean pinned) {
+        apply(userId, g -> g.withNodeAppended(noteId, title, section, pinned));
+    }
+
+    public void onNoteChanged(Long userId, Long noteId, String title, boolean pinned) {
+        apply(userId, g -> g.withNode(noteId, title, pinned));
+    }
+
+    public void onNoteRemoved(Long userId, Long noteId) {
+        apply(userId, g -> g.withoutNode(noteId));
+    }
+
+    public void onLinksReplaced(Long userId, Long sourceId, Map<Long, Float> targets) {
+        apply(userId, g -> g.withOutgoing(sourceId, targets));
+    }
+
+    public void onLinkAdded(Long userId, Long sourceId, Long targetId, float relevance) {
+        apply(userId, g -> g.withEdge(sourceId, targetId, relevance));
+    }
+
+    public void onLinkRemoved(Long userId, Long sourceId, Long targetId) {
+        apply(userId, g -> g.withoutEdge(sourceId, targetId));
+    }
+
+    public void invalidate(Long userId) {
+        if (userId != null) {
+            afterCommit(() -> {
+                drop(userId);
+                invalidationBus.publish(CACHE_NAME, userId);
+            });
+        }
+    }
+}
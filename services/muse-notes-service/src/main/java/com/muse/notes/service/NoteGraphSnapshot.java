@@ -0,0 +1,506 @@
+package com.muse.notes.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Immutable, compact knowledge graph of one user's notes.
+ *
+ * Nodes are kept in ascending id order so lookups are a binary search; edges
+ * are stored as per-node primitive index arrays (outgoing with weights, plus
+ * incoming for neighborhood walks). Mutations return a new snapshot that
+ * shares every row it did not touch.
+ *
+ * ETags are hashes of the content they describe, so every replica and every
+ * restart tags the same graph alike, and a 304 holds across them. Edges are
+ * hashed order-independently, as in-place updates and a rebuild may order a
+ * node's edges differently.
+ */
+public final class NoteGraphSnapshot {
+
+    /** Binary wire format marker ("NGR1"). */
+    public static final int BINARY_MAGIC = 0x4E475231;
+
+    private static final int[] NO_EDGES = new int[0];
+    private static final float[] NO_WEIGHTS = new float[0];
+
+    private final long[] ids;
+    private final String[] titles;
+    private final String[] sections;
+    private final boolean[] pinned;
+    private final boolean[] removed;
+    private final int[][] out;
+    private final float[][] outWeights;
+    private final int[][] in;
+    private final Instant builtAt;
+
+    private volatile String etag;
+    private volatile Map<String, Object> json;
+    private volatile byte[] binary;
+
+    private NoteGraphSnapshot(long[] ids, String[] titles, String[] sections, boolean[] pinned, boolean[] removed,
+            int[][] out, float[][] outWeights, int[][] in, Instant builtAt) {
+        this.ids = ids;
+        this.titles = titles;
+        this.sections = sections;
+        this.pinned = pinned;
+        this.removed = removed;
+        this.out = out;
+        this.outWeights = outWeights;
+        this.in = in;
+        this.builtAt = builtAt;
+    }
+
+    /**
+     * Builds a snapshot from node rows (ascending id order) and edge triples.
+     * Edges whose endpoints are not nodes are dropped.
+     */
+    static NoteGraphSnapshot build(long[] ids, String[] titles, String[] sections, boolean[] pinned,
+            long[] edgeSources, long[] edgeTargets, float[] edgeWeights) {
+        int n = ids.length;
+        int[] outDegree = new int[n];
+        int[] inDegree = new int[n];
+        int[] src = new int[edgeSources.length];
+        int[] dst = new int[edgeSources.length];
+        for (int e = 0; e < edgeSources.length; e++) {
+            src[e] = Arrays.binarySearch(ids, edgeSources[e]);
+            dst[e] = Arrays.binarySearch(ids, edgeTargets[e]);
+            if (src[e] >= 0 && dst[e] >= 0 && src[e] != dst[e]) {
+                outDegree[src[e]]++;
+                inDegree[dst[e]]++;
+            }
+        }
+
+        int[][] out = new int[n][];
+        float[][] outWeights = new float[n][];
+        int[][] in = new int[n][];
+        for (int i = 0; i < n; i++) {
+            out[i] = outDegree[i] == 0 ? NO_EDGES : new int[outDegree[i]];
+            outWeights[i] = outDegree[i] == 0 ? NO_WEIGHTS : new float[outDegree[i]];
+            in[i] = inDegree[i] == 0 ? NO_EDGES : new int[inDegree[i]];
+        }
+        int[] outFill = new int[n];
+        int[] inFill = new int[n];
+        for (int e = 0; e < src.length; e++) {
+            int s = src[e];
+            int t = dst[e];
+            if (s >= 0 && t >= 0 && s != t) {
+                out[s][outFill[s]] = t;
+                outWeights[s][outFill[s]++] = edgeWeights[e];
+                in[t][inFill[t]++] = s;
+            }
+        }
+        return new NoteGraphSnapshot(ids, titles, sections, pinned, new boolean[n], out, outWeights, in,
+                Instant.now());
+    }
+
+    /** Tag of the full graph, derived from its nodes and edges. */
+    public String getEtag() {
+        String cached = etag;
+        if (cached == null) {
+            boolean[] all = new boolean[ids.length];
+            Arrays.fill(all, true);
+            cached = "\"g" + contentHash(all) + "\"";
+            etag = cached;
+        }
+        return cached;
+    }
+
+    public Instant getBuiltAt() {
+        return builtAt;
+    }
+
+    public boolean containsNode(long id) {
+        return indexOf(id) >= 0;
+    }
+
+    private int indexOf(long id) {
+        int i = Arrays.binarySearch(ids, id);
+        return i >= 0 && !removed[i] ? i : -1;
+    }
+
+    // ==================== Mutations ====================
+
+    NoteGraphSnapshot withNode(long id, String title, boolean isPinned) {
+        int i = indexOf(id);
+        if (i < 0)
+            return null;
+        String[] newTitles = titles.clone();
+        boolean[] newPinned = pinned.clone();
+        newTitles[i] = title;
+        newPinned[i] = isPinned;
+        return new NoteGraphSnapshot(ids, newTitles, sections, newPinned, removed, out, outWeights, in, builtAt);
+    }
+
+    /**
+     * Appends a node. Note ids are increasing, so new notes land at the end;
+     * returns null when that does not hold and the caller has to rebuild.
+     */
+    NoteGraphSnapshot withNodeAppended(long id, String title, String section, boolean isPinned) {
+        int n = ids.length;
+        if (n > 0 && ids[n - 1] >= id)
+            return null;
+        long[] newIds = Arrays.copyOf(ids, n + 1);
+        String[] newTitles = Arrays.copyOf(titles, n + 1);
+        String[] newSections = Arrays.copyOf(sections, n + 1);
+        boolean[] newPinned = Arrays.copyOf(pinned, n + 1);
+        boolean[] newRemoved = Arrays.copyOf(removed, n + 1);
+        int[][] newOut = Arrays.copyOf(out, n + 1);
+        float[][] newOutWeights = Arrays.copyOf(outWeights, n + 1);
+        int[][] newIn = Arrays.copyOf(in, n + 1);
+        newIds[n] = id;
+        newTitles[n] = title;
+        newSections[n] = section;
+        newPinned[n] = isPinned;
+        newOut[n] = NO_EDGES;
+        newOutWeights[n] = NO_WEIGHTS;
+        newIn[n] = NO_EDGES;
+        return new NoteGraphSnapshot(newIds, newTitles, newSections, newPinned, newRemoved, newOut, newOutWeights,
+                newIn, builtAt);
+    }
+
+    NoteGraphSnapshot withoutNode(long id) {
+        int i = indexOf(id);
+        if (i < 0)
+            return this;
+        boolean[] newRemoved = removed.clone();
+        int[][] newOut = out.clone();
+        float[][] newOutWeights = outWeights.clone();
+        int[][] newIn = in.clone();
+        for (int t : out[i]) {
+            newIn[t] = removeValue(newIn[t], i);
+        }
+        for (int s : in[i]) {
+            int pos = indexOfValue(newOut[s], i);
+            if (pos >= 0) {
+                newOut[s] = removeAt(newOut[s], pos);
+                newOutWeights[s] = removeAt(newOutWeights[s], pos);
+            }
+        }
+        newRemoved[i] = true;
+        newOut[i] = NO_EDGES;
+        newOutWeights[i] = NO_WEIGHTS;
+        newIn[i] = NO_EDGES;
+        return new NoteGraphSnapshot(ids, titles, sections, pinned, newRemoved, newOut, newOutWeights, newIn,
+                builtAt);
+    }
+
+    /**
+     * Replaces all outgoing edges of a node (targets that are not nodes are
+     * ignored).
+     */
+    NoteGraphSnapshot withOutgoing(long sourceId, Map<Long, Float> targets) {
+        int s = indexOf(sourceId);
+        if (s < 0)
+            return null;
+        int[][] newOut = out.clone();
+        float[][] newOutWeights = outWeights.clone();
+        int[][] newIn = in.clone();
+        for (int t : out[s]) {
+            newIn[t] = removeValue(newIn[t], s);
+        }
+
+        int[] row = new int[targets.size()];
+        float[] weights = new float[targets.size()];
+        int k = 0;
+        for (Map.Entry<Long, Float> e : targets.entrySet()) {
+            int t = indexOf(e.getKey());
+            if (t >= 0 && t != s) {
+                row[k] = t;
+                weights[k++] = e.getValue() != null ? e.getValue() : 0f;
+                newIn[t] = appendValue(newIn[t], s);
+            }
+        }
+        newOut[s] = k == 0 ? NO_EDGES : Arrays.copyOf(row, k);
+        newOutWeights[s] = k == 0 ? NO_WEIGHTS : Arrays.copyOf(weights, k);
+        return new NoteGraphSnapshot(ids, titles, sections, pinned, removed, newOut, newOutWeights, newIn,
+                builtAt);
+    }
+
+    NoteGraphSnapshot withEdge(long sourceId, long targetId, float weight) {
+        int s = indexOf(sourceId);
+        int t = indexOf(targetId);
+        if (s < 0 || t < 0 || s == t)
+            return null;
+        int[][] newOut = out.clone();
+        float[][] newOutWeights = outWeights.clone();
+        int pos = indexOfValue(out[s], t);
+        if (pos >= 0) {
+            newOutWeights[s] = outWeights[s].clone();
+            newOutWeights[s][pos] = weight;
+            return new NoteGraphSnapshot(ids, titles, sections, pinned, removed, out, newOutWeights, in,
+                    builtAt);
+        }
+        int[][] newIn = in.clone();
+        newOut[s] = appendValue(out[s], t);
+        newOutWeights[s] = Arrays.copyOf(outWeights[s], outWeights[s].length + 1);
+        newOutWeights[s][newOutWeights[s].length - 1] = weight;
+        newIn[t] = appendValue(in[t], s);
+        return new NoteGraphSnapshot(ids, titles, sections, pinned, removed, newOut, newOutWeights, newIn,
+                builtAt);
+    }
+
+    NoteGraphSnapshot withoutEdge(long sourceId, long targetId) {
+        int s = indexOf(sourceId);
+        int t = indexOf(targetId);
+        if (s < 0 || t < 0)
+            return null;
+        int pos = indexOfValue(out[s], t);
+        if (pos < 0)
+            return this;
+        int[][] newOut = out.clone();
+        float[][] newOutWeights = outWeights.clone();
+        int[][] newIn = in.clone();
+        newOut[s] = removeAt(out[s], pos);
+        newOutWeights[s] = removeAt(outWeights[s], pos);
+        newIn[t] = removeValue(in[t], s);
+        return new NoteGraphSnapshot(ids, titles, sections, pinned, removed, newOut, newOutWeights, newIn,
+                builtAt);
+    }
+
+    // ==================== Views ====================
+
+    /**
+     * Full graph in the /api/notes/graph JSON shape (nodes + links).
+     */
+    public Map<String, Object> toJson() {
+        Map<String, Object> cached = json;
+        if (cached == null) {
+            boolean[] all = new boolean[ids.length];
+            Arrays.fill(all, true);
+            cached = toJson(all);
+            json = cached;
+        }
+        return cached;
+    }
+
+    /** A subgraph around one note, with a tag of its own content. */
+    public final class Neighborhood {
+
+        private final long center;
+        private final int depth;
+        private final boolean[] selected;
+        private final boolean truncated;
+
+        private Neighborhood(long center, int depth, boolean[] selected, boolean truncated) {
+            this.center = center;
+            this.depth = depth;
+            this.selected = selected;
+            this.truncated = truncated;
+        }
+
+        /**
+         * Changes only when the subgraph or its shape does, so edits elsewhere
+         * in the graph keep a client's copy valid.
+         */
+        public String getEtag() {
+            return "\"n" + Long.toHexString(center) + "-" + depth + (truncated ? "t" : "") + "-"
+                    + contentHash(selected) + "\"";
+        }
+
+        public Map<String, Object> toJson() {
+            Map<String, Object> graph = NoteGraphSnapshot.this.toJson(selected);
+            graph.put("center", center);
+            graph.put("depth", depth);
+            graph.put("truncated", truncated);
+            return graph;
+        }
+    }
+
+    /**
+     * Nodes within {@code depth} hops of a note (edges followed in both
+     * directions), capped at {@code maxNodes}. Returns null if the note is not in
+     * the graph.
+     */
+    public Neighborhood neighborhood(long noteId, int depth, int maxNodes) {
+        int start = indexOf(noteId);
+        if (start < 0)
+            return null;
+
+        boolean[] selected = new boolean[ids.length];
+        int[] queue = new int[Math.min(ids.length, Math.max(maxNodes, 1))];
+        int[] dist = new int[queue.length];
+        int head = 0;
+        int tail = 0;
+        queue[tail] = start;
+        dist[tail++] = 0;
+        selected[start] = true;
+
+        // Truncated only once a node within reach is left out because the queue is full
+        boolean truncated = false;
+        while (head < tail && !truncated) {
+            int node = queue[head];
+            int d = dist[head++];
+            if (d >= depth)
+                continue;
+            for (int[] adjacency : new int[][] { out[node], in[node] }) {
+                for (int next : adjacency) {
+                    if (selected[next])
+                        continue;
+                    if (tail == queue.length) {
+                        truncated = true;
+                        break;
+                    }
+                    selected[next] = true;
+                    queue[tail] = next;
+                    dist[tail++] = d + 1;
+                }
+            }
+        }
+
+        return new Neighborhood(noteId, depth, selected, truncated);
+    }
+
+    // Nodes in id order, edges as a sum of per-edge hashes; 128 bits as hex
+    private String contentHash(boolean[] selected) {
+        long nodes = 0x9E3779B97F4A7C15L;
+        long edges = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (removed[i] || !selected[i])
+                continue;
+            nodes = mix(nodes ^ ids[i]);
+            nodes = mix(nodes ^ (titles[i] != null ? titles[i].hashCode() : 0));
+            nodes = mix(nodes ^ (sections[i] != null ? sections[i].hashCode() : 0) ^ (pinned[i] ? 1L << 40 : 0));
+            int[] row = out[i];
+            for (int k = 0; k < row.length; k++) {
+                if (selected[row[k]]) {
+                    edges += mix(mix(ids[i]) ^ ids[row[k]] * 0xC2B2AE3D27D4EB4FL
+                            ^ ((long) Float.floatToIntBits(outWeights[i][k]) << 32));
+                }
+            }
+        }
+        return String.format("%016x%016x", nodes, edges);
+    }
+
+    // murmur3 64-bit finalizer
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private Map<String, Object> toJson(boolean[] selected) {
+        List<Map<String, Object>> nodes = new ArrayList<>();
+        List<Map<String, Object>> edges = new ArrayList<>();
+        for (int i = 0; i < ids.length; i++) {
+            if (removed[i] || !selected[i])
+                continue;
+            Map<String, Object> node = new HashMap<>();
+            node.put("id", ids[i]);
+            node.put("title", titles[i]);
+            node.put("section", sections[i] != null ? sections[i] : "Default");
+            node.put("isPinned", pinned[i]);
+            nodes.add(node);
+
+            int[] row = out[i];
+            for (int k = 0; k < row.length; k++) {
+                if (!selected[row[k]])
+                    continue;
+                Map<String, Object> edge = new HashMap<>();
+                edge.put("source", ids[i]);
+                edge.put("target", ids[row[k]]);
+                edge.put("relevance", outWeights[i][k]);
+                edges.add(edge);
+            }
+        }
+        Map<String, Object> graph = new HashMap<>();
+        graph.put("nodes", nodes);
+        graph.put("links", edges);
+        return graph;
+    }
+
+    /**
+     * Compact binary encoding (big-endian):
+     * magic:int, nodeCount:int, then per node id:long, pinned:byte, title:UTF,
+     * section:UTF; then edgeCount:int and per edge sourceIndex:int,
+     * targetIndex:int, relevance:float. Indices refer to node order.
+     */
+    public byte[] toBinary() {
+        byte[] cached = binary;
+        if (cached != null)
+            return cached;
+
+        int[] position = new int[ids.length];
+        int nodeCount = 0;
+        int edgeCount = 0;
+        for (int i = 0; i < ids.length; i++) {
+            position[i] = removed[i] ? -1 : nodeCount++;
+            edgeCount += out[i].length;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + nodeCount * 48 + edgeCount * 12);
+        try (DataOutputStream data = new DataOutputStream(bytes)) {
+            data.writeInt(BINARY_MAGIC);
+            data.writeInt(nodeCount);
+            for (int i = 0; i < ids.length; i++) {
+                if (removed[i])
+                    continue;
+                data.writeLong(ids[i]);
+                data.writeByte(pinned[i] ? 1 : 0);
+                data.writeUTF(titles[i] != null ? titles[i] : "");
+                data.writeUTF(sections[i] != null ? sections[i] : "Default");
+            }
+            data.writeInt(edgeCount);
+            for (int i = 0; i < ids.length; i++) {
+                for (int k = 0; k < out[i].length; k++) {
+                    data.writeInt(position[i]);
+                    data.writeInt(position[out[i][k]]);
+                    data.writeFloat(outWeights[i][k]);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        cached = bytes.toByteArray();
+        binary = cached;
+        return cached;
+    }
+
+    // ==================== Primitive array helpers ====================
+
+    private static int indexOfValue(int[] a, int v) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == v)
+                return i;
+        }
+        return -1;
+    }
+
+    private static int[] appendValue(int[] a, int v) {
+        if (indexOfValue(a, v) >= 0)
+            return a;
+        int[] r = Arrays.copyOf(a, a.length + 1);
+        r[a.length] = v;
+        return r;
+    }
+
+    private static int[] removeValue(int[] a, int v) {
+        int pos = indexOfValue(a, v);
+        return pos < 0 ? a : removeAt(a, pos);
+    }
+
+    private static int[] removeAt(int[] a, int pos) {
+        if (a.length == 1)
+            return NO_EDGES;
+        int[] r = new int[a.length - 1];
+        System.arraycopy(a, 0, r, 0, pos);
+        System.arraycopy(a, pos + 1, r, pos, a.length - pos - 1);
+        return r;
+    }
+
+    private static float[] removeAt(float[] a, int pos) {
+        if (a.length == 1)
+            return NO_WEIGHTS;
+        float[] r = new float[a.length - 1];
+        System.arraycopy(a, 0, r, 0, pos);
+        System.arraycopy(a, pos + 1, r, pos, a.length - pos - 1);
+        return r;
+    }
+}
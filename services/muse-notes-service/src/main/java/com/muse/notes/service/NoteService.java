@@ -3,26 +3,37 @@ package com.muse.notes.service;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.muse.notes.dto.NoteLinkDto;
+import com.muse.notes.dto.NoteListItemDTO;
+import com.muse.notes.dto.NoteListPageDTO;
 import com.muse.notes.entity.*;
 import com.muse.notes.repository.*;
+import com.muse.notes.util.KeysetCursor;
+import com.muse.notes.util.NoteText;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import reactor.core.publisher.Mono;
 
 import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
 import java.time.Instant;
 import java.util.*;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class NoteService {
 
+    private static final int EXCERPT_LENGTH = 300;
+
     private final NoteRepository repo;
     private final SectionRepository sectionRepo;
     private final NotebookRepository notebookRepo;
@@ -36,6 +47,13 @@ public class NoteService {
     private final ObjectMapper objectMapper;
     private final NoteAnalysisService noteAnalysisService;
     private final GeminiService geminiService;
+    private final WikiLinkIndexService wikiLinkIndex;
+    private final NoteGraphService graphService;
+    private final NoteCacheInvalidator cacheInvalidator;
+    private final NoteChunkIndexService chunkIndexService;
+    private final NotebookTreeService treeService;
+    private final OrderRankService ranks;
+    private final TransactionTemplate transactionTemplate;
 
     public NoteService(NoteRepository repo,
             SectionRepository sectionRepo,
@@ -49,7 +67,14 @@ public class NoteService {
             NoteSocketHandler noteSocketHandler,
             ObjectMapper objectMapper,
             GeminiService geminiService,
-            NoteAnalysisService noteAnalysisService) {
+            NoteAnalysisService noteAnalysisService,
+            WikiLinkIndexService wikiLinkIndex,
+            NoteGraphService graphService,
+            NoteCacheInvalidator cacheInvalidator,
+            NoteChunkIndexService chunkIndexService,
+            NotebookTreeService treeService,
+            OrderRankService ranks,
+            PlatformTransactionManager transactionManager) {
         this.repo = repo;
         this.sectionRepo = sectionRepo;
         this.notebookRepo = notebookRepo;
@@ -63,6 +88,13 @@ public class NoteService {
         this.objectMapper = objectMapper;
         this.geminiService = geminiService;
         this.noteAnalysisService = noteAnalysisService;
+        this.wikiLinkIndex = wikiLinkIndex;
+        this.graphService = graphService;
+        this.cacheInvalidator = cacheInvalidator;
+        this.chunkIndexService = chunkIndexService;
+        this.treeService = treeService;
+        this.ranks = ranks;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     private Section getOrCreateDefaultSection(Long userId, String username) {
@@ -73,7 +105,7 @@ public class NoteService {
                 .stream()
                 .findFirst()
                 .orElseGet(() -> {
-                    int nextOrderIndex = notebookRepo.findMaxOrderIndexByUserId(userId) + 1;
+                    int nextOrderIndex = OrderRankService.after(notebookRepo.findMaxOrderIndexByUserId(userId));
                     Notebook nb = new Notebook();
                     nb.setUserId(userId);
                     nb.setOwnerUsername(username);
@@ -89,7 +121,8 @@ public class NoteService {
         return sectionRepo
                 .findByNotebookAndTitle(notebook, defaultSectionTitle)
                 .orElseGet(() -> {
-                    int nextOrderIndex = sectionRepo.findMaxOrderIndexByNotebookId(notebook.getId()) + 1;
+                    int nextOrderIndex = OrderRankService
+                            .after(sectionRepo.findMaxOrderIndexByNotebookId(notebook.getId()));
                     Section s = new Section();
                     s.setNotebook(notebook);
                     s.setTitle(defaultSectionTitle);
@@ -100,18 +133,115 @@ public class NoteService {
                 });
     }
 
-    public List<Note> listNotes(Long userId) {
-        return repo.findByUserIdOrderByOrderIndexAsc(userId);
+    // ==================== Lean listings ====================
+
+    /**
+     * Lists a user's notes as lean rows. With a limit, pages are keyset-paginated
+     * by (orderIndex, id); without one, the whole list is returned.
+     */
+    @Transactional(readOnly = true)
+    public NoteListPageDTO listNotes(Long userId, String cursor, Integer limit, boolean withContent) {
+        return keysetPage(cursor, limit, withContent,
+                (afterOrder, afterId, page) -> repo.findListViewsByUserId(userId, afterOrder, afterId, page));
+    }
+
+    @Transactional(readOnly = true)
+    public NoteListPageDTO listNotesInSection(Long sectionId, Long userId, String cursor, Integer limit,
+            boolean withContent) {
+        return keysetPage(cursor, limit, withContent,
+                (afterOrder, afterId, page) -> repo.findListViewsBySectionId(sectionId, userId, afterOrder, afterId,
+                        page));
+    }
+
+    @Transactional(readOnly = true)
+    public NoteListPageDTO getNotesByTag(Long userId, String tag, String cursor, Integer limit,
+            boolean withContent) {
+        return keysetPage(cursor, limit, withContent,
+                (afterOrder, afterId, page) -> repo.findListViewsByTag(userId, tag, afterOrder, afterId, page));
     }
 
-    public List<Note> listNotesInSection(Long sectionId, Long userId) {
-        return repo.findBySectionIdAndUserIdOrderByOrderIndexAsc(sectionId, userId);
+    @Transactional(readOnly = true)
+    public List<NoteListItemDTO> getPinnedNotes(Long userId, boolean withContent) {
+        return toListItems(repo.findPinnedListViews(userId), withContent);
     }
 
+    @Transactional(readOnly = true)
+    public List<NoteListItemDTO> getTrash(Long userId) {
+        return toListItems(repo.findTrashListViews(userId), false);
+    }
+
+    @FunctionalInterface
+    private interface ListPageQuery {
+        List<NoteRepository.NoteListView> fetch(int afterOrder, long afterId, Pageable page);
+    }
+
+    private NoteListPageDTO keysetPage(String cursor, Integer limit, boolean withContent, ListPageQuery query) {
+        int afterOrder = Integer.MIN_VALUE;
+        long afterId = Long.MIN_VALUE;
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        if (after != null) {
+            try {
+                afterOrder = Integer.parseInt(after.sortKey());
+                afterId = after.id();
+            } catch (NumberFormatException e) {
+                log.debug("Ignoring malformed note list cursor {}", cursor);
+            }
+        }
+
+        // Fetch one extra row to know whether another page exists
+        Pageable page = limit == null ? Pageable.unpaged() : PageRequest.of(0, limit + 1);
+        List<NoteRepository.NoteListView> rows = query.fetch(afterOrder, afterId, page);
+
+        String nextCursor = null;
+        if (limit != null && rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            NoteRepository.NoteListView last = rows.get(limit - 1);
+            int lastOrder = last.getOrderIndex() != null ? last.getOrderIndex() : 0;
+            nextCursor = new KeysetCursor(String.valueOf(lastOrder), last.getId()).encode();
+        }
+        return NoteListPageDTO.builder()
+                .items(toListItems(rows, withContent))
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    private List<NoteListItemDTO> toListItems(List<NoteRepository.NoteListView> rows, boolean withContent) {
+        Map<Long, JsonNode> contents = Map.of();
+        if (withContent && !rows.isEmpty()) {
+            contents = new HashMap<>();
+            for (NoteRepository.ContentView view : repo.findContentByIdIn(
+                    rows.stream().map(NoteRepository.NoteListView::getId).collect(Collectors.toList()))) {
+                if (view.getContent() != null) {
+                    contents.put(view.getId(), view.getContent());
+                }
+            }
+        }
+        List<NoteListItemDTO> items = new ArrayList<>(rows.size());
+        for (NoteRepository.NoteListView row : rows) {
+            items.add(NoteListItemDTO.builder()
+                    .id(row.getId())
+                    .title(row.getTitle())
+                    .excerpt(row.getExcerpt())
+                    .updatedAt(row.getUpdatedAt())
+                    .tags(row.getTags())
+                    .isPinned(Boolean.TRUE.equals(row.getPinned()))
+                    .deletedAt(row.getDeletedAt())
+                    .content(contents.get(row.getId()))
+                    .build());
+        }
+        return items;
+    }
+
+    public String buildExcerpt(JsonNode content) {
+        String text = extractTextFromNode(content).replaceAll("\\s+", " ").trim();
+        return text.length() > EXCERPT_LENGTH ? text.substring(0, EXCERPT_LENGTH) : text;
+    }
+
+    @Transactional
     public Note createNote(Long userId, String username, String title, JsonNode content) {
         Instant now = Instant.now();
         Section defaultSection = getOrCreateDefaultSection(userId, username);
-        int nextOrderIndex = repo.findMaxOrderIndexBySectionId(defaultSection.getId()) + 1;
+        int nextOrderIndex = OrderRankService.after(repo.findMaxOrderIndexBySectionId(defaultSection.getId()));
 
         Note n = new Note();
         n.setUserId(userId);
@@ -119,35 +249,42 @@ public class NoteService {
         n.setSection(defaultSection);
         n.setTitle((title == null || title.isBlank()) ? "Untitled" : title);
         n.setContent(content);
+        n.setExcerpt(buildExcerpt(content));
         n.setCreatedAt(now);
         n.setUpdatedAt(now);
         n.setOrderIndex(nextOrderIndex);
 
         Note savedNote = repo.save(n);
-        updateNoteLinksAsync(savedNote);
-        noteAnalysisService.analyzeNoteContentAsync(savedNote.getId());
+        treeService.bump(userId);
+        graphService.onNoteCreated(userId, savedNote.getId(), savedNote.getTitle(), defaultSection.getTitle(), false);
+        indexAfterSave(savedNote);
+        wikiLinkIndex.attachIncomingLinks(savedNote);
         return savedNote;
     }
 
+    @Transactional
     public Optional<Note> createInSection(Long sectionId, Long userId, String username, String title,
             JsonNode content) {
         return sectionRepo.findByIdAndNotebookUserId(sectionId, userId)
                 .map(sec -> {
                     Instant now = Instant.now();
-                    int nextOrderIndex = repo.findMaxOrderIndexBySectionId(sectionId) + 1;
+                    int nextOrderIndex = OrderRankService.after(repo.findMaxOrderIndexBySectionId(sectionId));
                     Note n = new Note();
                     n.setUserId(userId);
                     n.setOwnerUsername(username);
                     n.setSection(sec);
                     n.setTitle((title == null || title.isBlank()) ? "Untitled" : title);
                     n.setContent(content);
+                    n.setExcerpt(buildExcerpt(content));
                     n.setCreatedAt(now);
                     n.setUpdatedAt(now);
                     n.setOrderIndex(nextOrderIndex);
 
                     Note savedNote = repo.save(n);
-                    updateNoteLinksAsync(savedNote);
-                    noteAnalysisService.analyzeNoteContentAsync(savedNote.getId());
+                    treeService.bump(userId);
+                    graphService.onNoteCreated(userId, savedNote.getId(), savedNote.getTitle(), sec.getTitle(), false);
+                    indexAfterSave(savedNote);
+                    wikiLinkIndex.attachIncomingLinks(savedNote);
                     return savedNote;
                 });
     }
@@ -188,6 +325,7 @@ public class NoteService {
             if (content != null) {
                 log.info("Setting new content, length={}", content.toString().length());
                 n.setContent(content);
+                n.setExcerpt(buildExcerpt(content));
             }
             n.setUpdatedAt(Instant.now());
 
@@ -196,7 +334,10 @@ public class NoteService {
             log.info("Note FLUSHED to DB: id={}, updatedAt={}", savedNote.getId(), savedNote.getUpdatedAt());
 
             if (titleChanged) {
-                propagateTitleChangeAsync(userId, oldTitle, title);
+                treeService.bump(userId);
+                cacheInvalidator.evictNoteAndNeighbors(savedNote.getId(), userId);
+                graphService.onNoteChanged(userId, savedNote.getId(), savedNote.getTitle(), savedNote.isPinned());
+                propagateTitleChangeAsync(savedNote, oldTitle);
             }
 
             return savedNote;
@@ -215,40 +356,93 @@ public class NoteService {
         return result;
     }
 
-    private void propagateTitleChangeAsync(Long userId, String oldTitle, String newTitle) {
-        CompletableFuture.runAsync(() -> {
+    /**
+     * Rewrites [[oldTitle]] links after a rename. Only the notes recorded in the
+     * wiki link index as linking to the old title are loaded. Runs once the
+     * rename commits, in its own transaction, and each rewritten note goes
+     * through the same indexing, analysis queue and cache eviction as a save.
+     */
+    private void propagateTitleChangeAsync(Note renamed, String oldTitle) {
+        Long userId = renamed.getUserId();
+        afterCommit(() -> CompletableFuture.runAsync(() -> {
             try {
-                // Regex to find [[oldTitle]] or [[oldTitle|Alias]]
-                String escapedOldTitle = java.util.regex.Pattern.quote(oldTitle);
-                String patternString = "\\[\\[" + escapedOldTitle + "(\\|.*?)?\\]\\]";
-                java.util.regex.Pattern pattern = java.util.regex.Pattern.compile(patternString);
-
-                List<Note> allNotes = repo.findByUserIdAndDeletedAtIsNullOrderByOrderIndexAsc(userId);
-                for (Note note : allNotes) {
-                    if (note.getContent() == null)
-                        continue;
-                    String contentString = note.getContent().toString();
-                    java.util.regex.Matcher matcher = pattern.matcher(contentString);
-
-                    if (matcher.find()) {
-                        StringBuilder sb = new StringBuilder();
-                        matcher.reset();
-                        while (matcher.find()) {
-                            String aliasPart = matcher.group(1);
-                            String replacement = "[[" + newTitle + (aliasPart != null ? aliasPart : "") + "]]";
-                            matcher.appendReplacement(sb, java.util.regex.Matcher.quoteReplacement(replacement));
-                        }
-                        matcher.appendTail(sb);
-
-                        note.setContent(objectMapper.readTree(sb.toString()));
-                        repo.save(note);
-                        log.info("Propagated title change with ALIAS support to note {}", note.getId());
-                    }
+                List<Long> rewritten = transactionTemplate
+                        .execute(status -> rewriteWikiLinks(renamed.getId(), userId, oldTitle));
+                // Evicted after the rewrite committed, so a concurrent read cannot re-cache the old text
+                if (rewritten != null) {
+                    rewritten.forEach(id -> cacheInvalidator.evictNote(id, userId));
                 }
+                cacheInvalidator.evictNoteAndNeighbors(renamed.getId(), userId);
             } catch (Exception e) {
                 log.warn("Failed to propagate title change for user {}", userId, e);
             }
-        });
+        }));
+    }
+
+    // Returns the ids of the notes whose content was rewritten
+    private List<Long> rewriteWikiLinks(Long renamedId, Long userId, String oldTitle) {
+        Note renamed = repo.findByIdAndUserId(renamedId, userId).orElse(null);
+        if (renamed == null || renamed.getDeletedAt() != null)
+            return List.of();
+        String newTitle = renamed.getTitle();
+
+        // Regex to find [[oldTitle]] or [[oldTitle|Alias]]
+        String escapedOldTitle = java.util.regex.Pattern.quote(oldTitle);
+        String patternString = "\\[\\[\\s*" + escapedOldTitle + "\\s*(\\|.*?)?\\]\\]";
+        java.util.regex.Pattern pattern = java.util.regex.Pattern.compile(patternString,
+                java.util.regex.Pattern.CASE_INSENSITIVE | java.util.regex.Pattern.UNICODE_CASE);
+
+        List<Long> rewritten = new ArrayList<>();
+        List<Long> sourceIds = wikiLinkIndex.findSourceIdsLinkingTo(userId, oldTitle);
+        for (Note note : repo.findAllById(sourceIds)) {
+            if (note.getContent() == null || note.getDeletedAt() != null)
+                continue;
+            String contentString = note.getContent().toString();
+            java.util.regex.Matcher matcher = pattern.matcher(contentString);
+
+            if (matcher.find()) {
+                StringBuilder sb = new StringBuilder();
+                matcher.reset();
+                while (matcher.find()) {
+                    String aliasPart = matcher.group(1);
+                    String replacement = "[[" + newTitle + (aliasPart != null ? aliasPart : "") + "]]";
+                    matcher.appendReplacement(sb, java.util.regex.Matcher.quoteReplacement(replacement));
+                }
+                matcher.appendTail(sb);
+
+                try {
+                    note.setContent(objectMapper.readTree(sb.toString()));
+                } catch (IOException e) {
+                    log.warn("Skipping link rewrite in note {}: {}", note.getId(), e.getMessage());
+                    continue;
+                }
+                note.setExcerpt(buildExcerpt(note.getContent()));
+                note.setUpdatedAt(Instant.now());
+                Note saved = repo.save(note);
+                // Same path as a save: wiki link index, analysis and chunk queues, broadcast
+                runPostSaveOperationsAsync(saved.getId());
+                rewritten.add(saved.getId());
+                log.info("Propagated title change with ALIAS support to note {}", note.getId());
+            }
+        }
+
+        // Links that were dangling on the new title now resolve
+        wikiLinkIndex.attachIncomingLinks(renamed);
+        graphService.invalidate(userId);
+        return rewritten;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
     }
 
     /**
@@ -259,11 +453,8 @@ public class NoteService {
     public void runPostSaveOperationsAsync(Long noteId) {
         try {
             repo.findById(noteId).ifPresent(note -> {
-                // Update embeddings and links (async, non-blocking)
-                updateNoteLinksAsync(note);
-
-                // Run AI analysis
-                noteAnalysisService.analyzeNoteContentAsync(noteId);
+                // Queue embedding, links, suggestions and chunks
+                indexAfterSave(note);
 
                 // Broadcast via WebSocket
                 try {
@@ -278,118 +469,34 @@ public class NoteService {
         }
     }
 
-    private void updateNoteLinksAsync(Note note) {
-        String noteText = extractTextFromNode(note.getContent());
-        embeddingService.getEmbedding(noteText).subscribe(
-                embedding -> {
-                    try {
-                        String embeddingString = Arrays.toString(embedding);
-                        List<Note> relatedNotes = repo.searchByEmbedding(note.getUserId(), embeddingString, 10);
-
-                        // Extract manual links from JSON content (TipTap structured links)
-                        Set<Long> manualLinkIds = extractManualLinkIds(note.getContent());
-
-                        // Extract Wiki Links [[Title]] from content
-                        Set<Long> wikiLinkIds = extractWikiLinkIds(note.getUserId(), noteText);
-                        manualLinkIds.addAll(wikiLinkIds);
-
-                        linkRepo.deleteBySourceNoteId(note.getId());
-
-                        // Add manual/wiki links first (high relevance)
-                        for (Long targetId : manualLinkIds) {
-                            if (!targetId.equals(note.getId())) {
-                                linkRepo.save(NoteLink.builder()
-                                        .sourceNoteId(note.getId())
-                                        .linkedNoteId(targetId)
-                                        .relevanceScore(1.0f)
-                                        .build());
-                            }
-                        }
-
-                        // Add semantic links (calculate actual relevance using cosine similarity)
-                        for (Note related : relatedNotes) {
-                            if (!related.getId().equals(note.getId()) && !manualLinkIds.contains(related.getId())) {
-                                float similarity = EmbeddingService.cosineSimilarity(embedding, related.getEmbedding());
-                                // Only add if similarity is above a threshold
-                                if (similarity > 0.6) {
-                                    NoteLink link = NoteLink.builder()
-                                            .sourceNoteId(note.getId())
-                                            .linkedNoteId(related.getId())
-                                            .relevanceScore(similarity)
-                                            .build();
-                                    linkRepo.save(link);
-                                }
-                            }
-                        }
-                    } catch (Exception e) {
-                        log.warn("Failed to update note links for note {}", note.getId(), e);
-                    }
-                },
-                error -> log.warn("Failed to get embedding for note {}", note.getId(), error));
-    }
-
-    private Set<Long> extractWikiLinkIds(Long userId, String text) {
-        Set<Long> ids = new HashSet<>();
-        if (text == null || text.isBlank())
-            return ids;
-
-        // Match [[Title]] or [[Title|Alias]]
-        java.util.regex.Pattern pattern = java.util.regex.Pattern.compile("\\[\\[(.*?)(?:\\|(.*?))?\\]\\]");
-        java.util.regex.Matcher matcher = pattern.matcher(text);
-
-        while (matcher.find()) {
-            String title = matcher.group(1).trim();
-            repo.findByUserIdAndTitleIgnoreCaseAndDeletedAtIsNull(userId, title)
-                    .ifPresent(n -> ids.add(n.getId()));
-        }
-        return ids;
-    }
-
-    private Set<Long> extractManualLinkIds(JsonNode node) {
-        Set<Long> ids = new HashSet<>();
-        if (node == null || node.isNull())
-            return ids;
-
-        if (node.isObject()) {
-            // Check for TipTap-style links: { type: "text", marks: [{ type: "link", attrs:
-            // {
-            // "data-note-id": ... } }] }
-            if (node.has("marks") && node.get("marks").isArray()) {
-                for (JsonNode mark : node.get("marks")) {
-                    if (mark.has("type") && mark.get("type").asText().equals("link") && mark.has("attrs")) {
-                        JsonNode attrs = mark.get("attrs");
-                        if (attrs.has("data-note-id")) {
-                            ids.add(attrs.get("data-note-id").asLong());
-                        }
-                    }
-                }
-            }
-            // Recurse into content
-            if (node.has("content") && node.get("content").isArray()) {
-                for (JsonNode child : node.get("content")) {
-                    ids.addAll(extractManualLinkIds(child));
-                }
-            }
-        } else if (node.isArray()) {
-            for (JsonNode child : node) {
-                ids.addAll(extractManualLinkIds(child));
-            }
-        }
-        return ids;
+    /**
+     * Wiki links are indexed right away so [[links]] resolve without waiting;
+     * embedding, semantic links, suggestions and the chunk index are queued
+     * and run in batches after commit.
+     */
+    private void indexAfterSave(Note note) {
+        wikiLinkIndex.syncNote(note, extractTextFromNode(note.getContent()));
+        noteAnalysisService.enqueue(note.getId());
+        chunkIndexService.enqueue(note.getId());
     }
 
+    @Transactional
     @CacheEvict(value = "notes", key = "#id + '_' + #userId")
     public boolean deleteNote(Long id, Long userId) {
         return repo.findByIdAndUserId(id, userId).map(n -> {
+            cacheInvalidator.evictNoteAndNeighbors(id, userId);
             // Clean up all related entities before deleting to prevent orphaned data
             linkRepo.deleteBySourceNoteId(id); // Links FROM this note
             linkRepo.deleteByLinkedNoteId(id); // Links TO this note (backlinks)
+            wikiLinkIndex.removeNote(id); // Wiki link index rows
             suggestionRepo.deleteByNoteId(id); // AI suggestions
             versionRepo.deleteByNoteId(id); // Version history
             calendarLinkRepo.deleteByNoteId(id); // Calendar associations
             permissionRepo.deleteByNoteId(id); // Share permissions
 
             repo.delete(n);
+            treeService.bump(userId);
+            graphService.onNoteRemoved(userId, id);
             log.info("Deleted note {} and cleaned up all related data (links, versions, permissions, calendar)", id);
             return true;
         }).orElse(false);
@@ -413,15 +520,16 @@ public class NoteService {
                 });
     }
 
-    public List<Note> getPinnedNotes(Long userId) {
-        return repo.findByUserIdAndIsPinnedTrueOrderByUpdatedAtDesc(userId);
-    }
-
+    @Transactional
     public Optional<Note> togglePin(Long id, Long userId) {
         return repo.findByIdAndUserId(id, userId).map(n -> {
             n.setPinned(!n.isPinned());
             n.setUpdatedAt(Instant.now());
-            return repo.save(n);
+            Note saved = repo.save(n);
+            treeService.bump(userId);
+            cacheInvalidator.evictNote(saved.getId(), userId);
+            graphService.onNoteChanged(userId, saved.getId(), saved.getTitle(), saved.isPinned());
+            return saved;
         });
     }
 
@@ -462,31 +570,51 @@ public class NoteService {
                 .orElse(List.of());
     }
 
+    @Transactional
     public Optional<Note> restoreNoteVersion(Long versionId, Long userId) {
         return versionRepo.findById(versionId)
                 .flatMap(version -> repo.findByIdAndUserId(version.getNote().getId(), userId)
                         .map(note -> {
                             note.setTitle(version.getTitle());
                             note.setContent(version.getContent());
+                            note.setExcerpt(buildExcerpt(version.getContent()));
                             note.setUpdatedAt(Instant.now());
-                            return repo.save(note);
+                            Note saved = repo.save(note);
+                            treeService.bump(userId);
+                            cacheInvalidator.evictNoteAndNeighbors(saved.getId(), userId);
+                            graphService.onNoteChanged(userId, saved.getId(), saved.getTitle(), saved.isPinned());
+                            indexAfterSave(saved);
+                            return saved;
                         }));
     }
 
     @Transactional
     public void updateNoteOrder(List<Long> noteIds, Long userId) {
-        List<Note> notes = repo.findAllById(noteIds);
-        Map<Long, Note> noteMap = notes.stream()
-                .collect(Collectors.toMap(Note::getId, Function.identity()));
-
-        for (int i = 0; i < noteIds.size(); i++) {
-            Long id = noteIds.get(i);
-            Note note = noteMap.get(id);
-            if (note != null && note.getUserId().equals(userId)) {
-                note.setOrderIndex(i);
+        ranks.reorder(OrderRankService.Kind.NOTES, noteIds, userId);
+        treeService.bump(userId);
+    }
+
+    /**
+     * Moves a note right after {@code afterId} (first when null), into
+     * {@code sectionId} when given. Only the note's own row is written.
+     */
+    @Transactional
+    public boolean moveNote(Long id, Long userId, Long sectionId, Long afterId) {
+        return repo.findByIdAndUserId(id, userId).map(note -> {
+            Long targetSectionId = note.getSection().getId();
+            if (sectionId != null && !sectionId.equals(targetSectionId)) {
+                targetSectionId = sectionRepo.findByIdAndNotebookUserId(sectionId, userId)
+                        .map(Section::getId)
+                        .orElseThrow(() -> new IllegalArgumentException("Section not found"));
             }
-        }
-        repo.saveAll(notes);
+            int rank = ranks.rankAfter(OrderRankService.Scope.notes(targetSectionId), id, afterId);
+            repo.updatePosition(id, userId, targetSectionId, rank);
+            treeService.bump(userId);
+            cacheInvalidator.evictNote(id, userId);
+            if (!targetSectionId.equals(note.getSection().getId()))
+                graphService.invalidate(userId);
+            return true;
+        }).orElse(false);
     }
 
     @Cacheable(value = "note_backlinks", key = "#noteId + '_' + #userId")
@@ -544,7 +672,10 @@ public class NoteService {
                                     .linkedNoteId(targetId)
                                     .relevanceScore(1.0f)
                                     .build();
-                            return linkRepo.save(link);
+                            NoteLink saved = linkRepo.save(link);
+                            graphService.onLinkAdded(userId, sourceId, targetId, 1.0f);
+                            cacheInvalidator.evictLinks(userId, List.of(sourceId, targetId));
+                            return saved;
                         }));
     }
 
@@ -552,6 +683,8 @@ public class NoteService {
     public boolean removeManualLink(Long sourceId, Long targetId, Long userId) {
         return repo.findByIdAndUserId(sourceId, userId).map(n -> {
             linkRepo.deleteBySourceNoteIdAndLinkedNoteId(sourceId, targetId);
+            graphService.onLinkRemoved(userId, sourceId, targetId);
+            cacheInvalidator.evictLinks(userId, List.of(sourceId, targetId));
             return true;
         }).orElse(false);
     }
@@ -579,64 +712,8 @@ public class NoteService {
                 });
     }
 
-    public Mono<com.muse.notes.dto.AskQuestionResponse> askNotes(Long userId, String question) {
-        return embeddingService.getEmbedding(question)
-                .flatMap(embedding -> {
-                    String embeddingString = Arrays.toString(embedding);
-                    // Search for top 5 relevant notes
-                    List<Note> relevantNotes = repo.searchByEmbedding(userId, embeddingString, 5);
-
-                    StringBuilder contextBuilder = new StringBuilder();
-                    contextBuilder.append(
-                            "You are a helpful tutor. Answer the student's question based ONLY on the following notes. If the answer is not in the notes, say 'I couldn't find the answer in your notes.'\n\n");
-
-                    List<com.muse.notes.dto.AskQuestionResponse.SourceNote> sources = new java.util.ArrayList<>();
-
-                    for (Note note : relevantNotes) {
-                        String noteText = extractTextFromNode(note.getContent());
-
-                        contextBuilder.append("--- Note: ").append(note.getTitle()).append(" ---\n");
-                        contextBuilder.append(noteText).append("\n\n");
-
-                        String excerpt = "";
-                        if (noteText != null && !noteText.isEmpty()) {
-                            excerpt = noteText.substring(0, Math.min(noteText.length(), 100)) + "...";
-                        }
-
-                        sources.add(com.muse.notes.dto.AskQuestionResponse.SourceNote.builder()
-                                .id(note.getId())
-                                .title(note.getTitle())
-                                .excerpt(excerpt)
-                                .build());
-                    }
-
-                    contextBuilder.append("Question: ").append(question).append("\nAnswer:");
-
-                    return geminiService.generateContent(contextBuilder.toString())
-                            .map(answer -> com.muse.notes.dto.AskQuestionResponse.builder()
-                                    .answer(answer)
-                                    .sources(sources)
-                                    .build());
-                });
-    }
-
     public String extractTextFromNode(JsonNode node) {
-        if (node == null) {
-            return "";
-        }
-        if (node.isTextual()) {
-            return node.asText();
-        }
-        if (node.isObject() && node.has("text")) {
-            return node.get("text").asText();
-        }
-        StringBuilder sb = new StringBuilder();
-        if (node.has("content")) {
-            for (JsonNode child : node.get("content")) {
-                sb.append(extractTextFromNode(child)).append(" ");
-            }
-        }
-        return sb.toString().trim();
+        return NoteText.of(node);
     }
 
     public List<NoteCalendarLink> getCalendarLinksForNote(Long noteId, Long userId) {
@@ -656,75 +733,36 @@ public class NoteService {
     }
 
     public List<Map<String, Object>> getBrokenLinks(Long userId) {
-        List<Note> notes = repo.findByUserIdAndDeletedAtIsNullOrderByOrderIndexAsc(userId);
-        List<Map<String, Object>> broken = new ArrayList<>();
-
-        for (Note note : notes) {
-            String text = extractTextFromNode(note.getContent());
-            java.util.regex.Pattern pattern = java.util.regex.Pattern.compile("\\[\\[(.*?)(?:\\|(.*?))?\\]\\]");
-            java.util.regex.Matcher matcher = pattern.matcher(text);
-
-            while (matcher.find()) {
-                String title = matcher.group(1).trim();
-                if (repo.findByUserIdAndTitleIgnoreCaseAndDeletedAtIsNull(userId, title).isEmpty()) {
-                    Map<String, Object> item = new HashMap<>();
-                    item.put("sourceNoteId", note.getId());
-                    item.put("sourceNoteTitle", note.getTitle());
-                    item.put("targetTitle", title);
-                    broken.add(item);
-                }
-            }
-        }
-        return broken;
+        return wikiLinkIndex.findBrokenLinks(userId).stream().map(link -> {
+            Map<String, Object> item = new HashMap<>();
+            item.put("sourceNoteId", link.getSourceNoteId());
+            item.put("sourceNoteTitle", link.getSourceNoteTitle());
+            item.put("targetTitle", link.getTargetTitle());
+            return item;
+        }).collect(Collectors.toList());
     }
 
     public boolean exists(Long id) {
         return repo.existsById(id);
     }
 
-    public Map<String, Object> getUserGraph(Long userId) {
-        List<Note> notes = repo.findByUserIdAndDeletedAtIsNullOrderByOrderIndexAsc(userId);
-        List<NoteLink> links = linkRepo.findAllBySourceUser(userId);
-
-        Set<Long> validNoteIds = notes.stream().map(Note::getId).collect(Collectors.toSet());
-
-        List<Map<String, Object>> nodes = notes.stream().map(n -> {
-            Map<String, Object> node = new HashMap<>();
-            node.put("id", n.getId());
-            node.put("title", n.getTitle());
-            node.put("section", n.getSection() != null ? n.getSection().getTitle() : "Default");
-            node.put("isPinned", n.isPinned());
-            return node;
-        }).collect(Collectors.toList());
-
-        List<Map<String, Object>> edges = links.stream()
-                .filter(l -> validNoteIds.contains(l.getSourceNoteId()) && validNoteIds.contains(l.getLinkedNoteId()))
-                .map(l -> {
-                    Map<String, Object> edge = new HashMap<>();
-                    edge.put("source", l.getSourceNoteId());
-                    edge.put("target", l.getLinkedNoteId());
-                    edge.put("relevance", l.getRelevanceScore());
-                    return edge;
-                }).collect(Collectors.toList());
-
-        Map<String, Object> graph = new HashMap<>();
-        graph.put("nodes", nodes);
-        graph.put("links", edges);
-        return graph;
-    }
-
     // ==================== Trash / Soft Delete ====================
 
+    @Transactional
     @CacheEvict(value = "notes", key = "#id + '_' + #userId")
     public boolean moveToTrash(Long id, Long userId) {
         return repo.findByIdAndUserId(id, userId).map(note -> {
+            cacheInvalidator.evictNoteAndNeighbors(id, userId);
             note.setDeletedAt(Instant.now());
             repo.save(note);
+            treeService.bump(userId);
+            graphService.onNoteRemoved(userId, id);
             log.info("Moved note {} to trash", id);
             return true;
         }).orElse(false);
     }
 
+    @Transactional
     @CacheEvict(value = "notes", key = "#id + '_' + #userId")
     public boolean restoreFromTrash(Long id, Long userId) {
         return repo.findByIdAndUserId(id, userId).map(note -> {
@@ -732,15 +770,14 @@ public class NoteService {
                 return false;
             note.setDeletedAt(null);
             repo.save(note);
+            treeService.bump(userId);
+            cacheInvalidator.evictNoteAndNeighbors(id, userId);
+            graphService.invalidate(userId);
             log.info("Restored note {} from trash", id);
             return true;
         }).orElse(false);
     }
 
-    public List<Note> getTrash(Long userId) {
-        return repo.findByUserIdAndDeletedAtIsNotNullOrderByDeletedAtDesc(userId);
-    }
-
     @Transactional
     public int emptyTrash(Long userId) {
         List<Note> trashed = repo.findByUserIdAndDeletedAtIsNotNullOrderByDeletedAtDesc(userId);
@@ -759,16 +796,15 @@ public class NoteService {
         return repo.findByIdAndUserId(id, userId).map(note -> {
             note.setTags(tags);
             note.setUpdatedAt(Instant.now());
-            return repo.save(note);
+            Note saved = repo.save(note);
+            cacheInvalidator.evictNote(id, userId);
+            return saved;
         });
     }
 
-    public List<Note> getNotesByTag(Long userId, String tag) {
-        return repo.findByUserIdAndTag(userId, tag);
-    }
-
     // ==================== Duplicate ====================
 
+    @Transactional
     public Optional<Note> duplicateNote(Long id, Long userId) {
         return repo.findByIdAndUserId(id, userId).map(original -> {
             Instant now = Instant.now();
@@ -782,9 +818,13 @@ public class NoteService {
             copy.setTags(original.getTags() != null ? original.getTags().clone() : null);
             copy.setCreatedAt(now);
             copy.setUpdatedAt(now);
-            copy.setOrderIndex(repo.findMaxOrderIndexBySectionId(original.getSection().getId()) + 1);
+            copy.setOrderIndex(
+                    OrderRankService.after(repo.findMaxOrderIndexBySectionId(original.getSection().getId())));
             copy.setPinned(false);
             Note saved = repo.save(copy);
+            treeService.bump(userId);
+            graphService.onNoteCreated(userId, saved.getId(), saved.getTitle(), saved.getSection().getTitle(), false);
+            indexAfterSave(saved);
             log.info("Duplicated note {} -> new note {}", id, saved.getId());
             return saved;
         });
@@ -8,18 +8,19 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
-import java.util.Map;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class NotebookService {
 
     private final NotebookRepository repo;
+    private final NotebookTreeService treeService;
+    private final OrderRankService ranks;
 
-    public NotebookService(NotebookRepository repo) {
+    public NotebookService(NotebookRepository repo, NotebookTreeService treeService, OrderRankService ranks) {
         this.repo = repo;
+        this.treeService = treeService;
+        this.ranks = ranks;
     }
 
     public List<Notebook> listNotebooks(Long userId) {
@@ -28,7 +29,7 @@ public class NotebookService {
 
     public Notebook createNotebook(Long userId, String username, String title, String color) {
         Instant now = Instant.now();
-        int nextOrderIndex = repo.findMaxOrderIndexByUserId(userId) + 1;
+        int nextOrderIndex = OrderRankService.after(repo.findMaxOrderIndexByUserId(userId));
 
         Notebook nb = new Notebook();
         nb.setUserId(userId);
@@ -38,7 +39,9 @@ public class NotebookService {
         nb.setCreatedAt(now);
         nb.setUpdatedAt(now);
         nb.setOrderIndex(nextOrderIndex);
-        return repo.save(nb);
+        Notebook saved = repo.save(nb);
+        treeService.bump(userId);
+        return saved;
     }
 
     public Optional<Notebook> updateNotebook(Long id, Long userId, String title, String color) {
@@ -50,6 +53,7 @@ public class NotebookService {
                 nb.setColor(color);
             }
             nb.setUpdatedAt(Instant.now());
+            treeService.bump(userId);
             return repo.save(nb);
         });
     }
@@ -57,24 +61,24 @@ public class NotebookService {
     public boolean deleteNotebook(Long id, Long userId) {
         return repo.findByIdAndUserId(id, userId).map(nb -> {
             repo.delete(nb);
+            treeService.bump(userId);
             return true;
         }).orElse(false);
     }
 
     @Transactional
     public void updateOrder(List<Long> notebookIds, Long userId) {
-        List<Notebook> notebooks = repo.findAllById(notebookIds);
-        Map<Long, Notebook> notebookMap = notebooks.stream()
-                .collect(Collectors.toMap(Notebook::getId, Function.identity()));
+        ranks.reorder(OrderRankService.Kind.NOTEBOOKS, notebookIds, userId);
+        treeService.bump(userId);
+    }
 
-        for (int i = 0; i < notebookIds.size(); i++) {
-            Long id = notebookIds.get(i);
-            Notebook notebook = notebookMap.get(id);
-            if (notebook != null && notebook.getUserId().equals(userId)) {
-                notebook.setOrderIndex(i);
-            }
-        }
-        repo.saveAll(notebooks);
+    // Move one notebook right after afterId (first if afterId is null)
+    public Optional<Notebook> moveNotebook(Long id, Long userId, Long afterId) {
+        return repo.findByIdAndUserId(id, userId).map(nb -> {
+            nb.setOrderIndex(ranks.rankAfter(OrderRankService.Scope.notebooks(userId), id, afterId));
+            treeService.bump(userId);
+            return repo.save(nb);
+        });
     }
 
     /**
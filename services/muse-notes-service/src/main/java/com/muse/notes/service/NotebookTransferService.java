@@ -0,0 +1,710 @@
+package com.muse.notes.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.muse.notes.dto.NotebookImportResultDTO;
+import com.muse.notes.entity.Attachment;
+import com.muse.notes.entity.Notebook;
+import com.muse.notes.entity.Section;
+import com.muse.notes.repository.AttachmentRepository;
+import com.muse.notes.repository.NoteRepository;
+import com.muse.notes.repository.NotebookRepository;
+import com.muse.notes.repository.SectionRepository;
+import com.muse.notes.util.TiptapMarkdown;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Bulk notebook import/export.
+ *
+ * Export streams a zip (attachments, notebook.json, Markdown copies) from a
+ * database cursor; import reads notebook.json token by token and writes notes
+ * in JDBC batches. Neither side materializes the whole notebook, and the
+ * per-note save pipeline (versions, embeddings, link extraction) is replaced
+ * by one {@link BulkNoteIndexService} run after the import commits.
+ */
+@Service
+@Slf4j
+public class NotebookTransferService {
+
+    public static final String FORMAT = "muse-notebook";
+    public static final int FORMAT_VERSION = 1;
+
+    private static final String MANIFEST_ENTRY = "notebook.json";
+    private static final String ATTACHMENT_DIR = "attachments/";
+    private static final String MARKDOWN_DIR = "markdown/";
+    private static final String ATTACHMENT_URL = "/api/notes/attachments/";
+    private static final String DEFAULT_SECTION = "Imported";
+    private static final int MAX_TITLE_LENGTH = 512;
+    // Markdown entries are read whole into memory
+    private static final long MAX_MARKDOWN_BYTES = 8L * 1024 * 1024;
+
+    private static final String INSERT_NOTE_SQL = "INSERT INTO notes (title, content, user_id, owner_username, "
+            + "section_id, excerpt, created_at, updated_at, order_index, is_pinned, tags) "
+            + "VALUES (?, CAST(? AS jsonb), ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final NotebookRepository notebookRepo;
+    private final SectionRepository sectionRepo;
+    private final NoteRepository noteRepo;
+    private final AttachmentRepository attachmentRepo;
+    private final NotebookService notebookService;
+    private final NoteService noteService;
+    private final StorageService storageService;
+    private final BulkNoteIndexService bulkIndexService;
+    private final NoteGraphService graphService;
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private final int maxEntries;
+    private final long maxEntryBytes;
+    private final long maxTotalBytes;
+
+    public NotebookTransferService(NotebookRepository notebookRepo,
+            SectionRepository sectionRepo,
+            NoteRepository noteRepo,
+            AttachmentRepository attachmentRepo,
+            NotebookService notebookService,
+            NoteService noteService,
+            StorageService storageService,
+            BulkNoteIndexService bulkIndexService,
+            NoteGraphService graphService,
+            ObjectMapper objectMapper,
+            JdbcTemplate jdbcTemplate,
+            @Value("${notes.import.batch-size:500}") int batchSize,
+            @Value("${notes.import.max-entries:20000}") int maxEntries,
+            @Value("${notes.import.max-entry-bytes:104857600}") long maxEntryBytes,
+            @Value("${notes.import.max-total-bytes:1073741824}") long maxTotalBytes) {
+        this.notebookRepo = notebookRepo;
+        this.sectionRepo = sectionRepo;
+        this.noteRepo = noteRepo;
+        this.attachmentRepo = attachmentRepo;
+        this.notebookService = notebookService;
+        this.noteService = noteService;
+        this.storageService = storageService;
+        this.bulkIndexService = bulkIndexService;
+        this.graphService = graphService;
+        this.objectMapper = objectMapper;
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxEntryBytes = Math.max(1, maxEntryBytes);
+        this.maxTotalBytes = Math.max(1, maxTotalBytes);
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<Notebook> findNotebook(Long notebookId, Long userId) {
+        return notebookRepo.findByIdAndUserId(notebookId, userId);
+    }
+
+    // ==================== Export ====================
+
+    /**
+     * Writes the notebook as a zip: attachments first (so an import can remap
+     * their ids before any note arrives), then notebook.json, then optionally
+     * one Markdown file per note.
+     */
+    @Transactional(readOnly = true)
+    public void exportNotebook(Long notebookId, Long userId, boolean includeMarkdown, OutputStream out)
+            throws IOException {
+        Notebook notebook = notebookRepo.findByIdAndUserId(notebookId, userId)
+                .orElseThrow(() -> new IllegalArgumentException("Notebook not found"));
+        List<Section> sections = sectionRepo.findByNotebookIdAndNotebookUserIdOrderByOrderIndexAsc(notebookId,
+                userId);
+        List<Attachment> attachments = attachmentRepo
+                .findAllById(noteRepo.findAttachmentIdsByNotebookId(notebookId, userId)).stream()
+                .filter(a -> a.getUserId() == null || a.getUserId().equals(userId))
+                .toList();
+
+        ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        List<Attachment> exported = new ArrayList<>();
+        for (Attachment attachment : attachments) {
+            if (writeAttachment(zip, attachment)) {
+                exported.add(attachment);
+            }
+        }
+
+        zip.putNextEntry(new ZipEntry(MANIFEST_ENTRY));
+        int notes = writeManifest(zip, notebook, userId, sections, exported);
+        zip.closeEntry();
+
+        if (includeMarkdown) {
+            writeMarkdown(zip, notebookId, userId, sections);
+        }
+        zip.finish();
+        log.info("Exported notebook {}: {} sections, {} notes, {} attachments", notebookId, sections.size(), notes,
+                exported.size());
+    }
+
+    private boolean writeAttachment(ZipOutputStream zip, Attachment attachment) throws IOException {
+        InputStream in;
+        try {
+            Resource resource = storageService.loadAsResource(attachment.getStorageFilename());
+            in = resource.getInputStream();
+        } catch (RuntimeException | IOException e) {
+            log.warn("Skipping unreadable attachment {} in export: {}", attachment.getId(), e.getMessage());
+            return false;
+        }
+        try (in) {
+            zip.putNextEntry(new ZipEntry(ATTACHMENT_DIR + attachment.getId() + "/"
+                    + safeFileName(attachment.getOriginalFilename())));
+            in.transferTo(zip);
+            zip.closeEntry();
+        }
+        return true;
+    }
+
+    private int writeManifest(OutputStream out, Notebook notebook, Long userId, List<Section> sections,
+            List<Attachment> attachments) throws IOException {
+        int notes = 0;
+        JsonGenerator gen = objectMapper.getFactory().createGenerator(out);
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        gen.writeStartObject();
+        gen.writeStringField("format", FORMAT);
+        gen.writeNumberField("version", FORMAT_VERSION);
+
+        gen.writeObjectFieldStart("notebook");
+        gen.writeStringField("title", notebook.getTitle());
+        gen.writeStringField("color", notebook.getColor());
+        gen.writeEndObject();
+
+        gen.writeArrayFieldStart("sections");
+        for (Section s : sections) {
+            gen.writeStartObject();
+            gen.writeNumberField("id", s.getId());
+            if (s.getParent() != null) {
+                gen.writeNumberField("parentId", s.getParent().getId());
+            }
+            gen.writeStringField("title", s.getTitle());
+            gen.writeNumberField("orderIndex", s.getOrderIndex() != null ? s.getOrderIndex() : 0);
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+
+        gen.writeArrayFieldStart("attachments");
+        for (Attachment a : attachments) {
+            gen.writeStartObject();
+            gen.writeStringField("id", a.getId().toString());
+            gen.writeStringField("filename", a.getOriginalFilename());
+            gen.writeStringField("contentType", a.getContentType());
+            gen.writeNumberField("size", a.getSize());
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+
+        gen.writeArrayFieldStart("notes");
+        try (Stream<NoteRepository.NoteExportView> rows = noteRepo.streamExportViewsByNotebookId(notebook.getId(),
+                userId)) {
+            Iterator<NoteRepository.NoteExportView> it = rows.iterator();
+            while (it.hasNext()) {
+                NoteRepository.NoteExportView note = it.next();
+                gen.writeStartObject();
+                gen.writeNumberField("id", note.getId());
+                gen.writeNumberField("sectionId", note.getSectionId());
+                gen.writeStringField("title", note.getTitle());
+                gen.writeFieldName("content");
+                if (note.getContent() != null) {
+                    gen.writeTree(note.getContent());
+                } else {
+                    gen.writeNull();
+                }
+                if (note.getTags() != null) {
+                    gen.writeArrayFieldStart("tags");
+                    for (String tag : note.getTags()) {
+                        gen.writeString(tag);
+                    }
+                    gen.writeEndArray();
+                }
+                gen.writeBooleanField("isPinned", Boolean.TRUE.equals(note.getPinned()));
+                gen.writeNumberField("orderIndex", note.getOrderIndex() != null ? note.getOrderIndex() : 0);
+                gen.writeStringField("createdAt", String.valueOf(note.getCreatedAt()));
+                gen.writeStringField("updatedAt", String.valueOf(note.getUpdatedAt()));
+                gen.writeEndObject();
+                notes++;
+            }
+        }
+        gen.writeEndArray();
+
+        gen.writeEndObject();
+        gen.flush();
+        return notes;
+    }
+
+    private void writeMarkdown(ZipOutputStream zip, Long notebookId, Long userId, List<Section> sections)
+            throws IOException {
+        Map<Long, String> sectionPaths = new HashMap<>();
+        for (Section s : sections) {
+            sectionPaths.put(s.getId(), sectionPath(s));
+        }
+        Set<String> usedNames = new HashSet<>();
+        try (Stream<NoteRepository.NoteExportView> rows = noteRepo.streamExportViewsByNotebookId(notebookId,
+                userId)) {
+            Iterator<NoteRepository.NoteExportView> it = rows.iterator();
+            while (it.hasNext()) {
+                NoteRepository.NoteExportView note = it.next();
+                String base = MARKDOWN_DIR + sectionPaths.getOrDefault(note.getSectionId(), DEFAULT_SECTION) + "/"
+                        + safeFileName(note.getTitle());
+                String name = base + ".md";
+                for (int i = 2; !usedNames.add(name); i++) {
+                    name = base + " (" + i + ").md";
+                }
+                zip.putNextEntry(new ZipEntry(name));
+                String markdown = "# " + note.getTitle() + "\n\n" + TiptapMarkdown.toMarkdown(note.getContent());
+                zip.write(markdown.getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+    }
+
+    private static String sectionPath(Section section) {
+        Deque<String> parts = new ArrayDeque<>();
+        for (Section s = section; s != null; s = s.getParent()) {
+            parts.addFirst(safeFileName(s.getTitle()));
+        }
+        return String.join("/", parts);
+    }
+
+    private static String safeFileName(String name) {
+        if (name == null || name.isBlank())
+            return "Untitled";
+        String safe = name.replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_").trim();
+        if (safe.length() > 120)
+            safe = safe.substring(0, 120);
+        return safe.isEmpty() || safe.chars().allMatch(c -> c == '.') ? "Untitled" : safe;
+    }
+
+    // ==================== Import ====================
+
+    /**
+     * Imports either an exported zip, a zip of Markdown files (folders become
+     * sections) or a bare notebook.json document, into a new notebook.
+     *
+     * Uncompressed sizes are bounded per entry and in total, and the number of
+     * zip entries is capped, so a small archive cannot expand without limit.
+     * Attachments stored before a failure are discarded when the import rolls
+     * back.
+     */
+    @Transactional
+    public NotebookImportResultDTO importNotebook(Long userId, String username, String title, boolean zipped,
+            InputStream body) throws IOException {
+        long started = System.nanoTime();
+        ImportSession session = new ImportSession(userId, username, title);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                bulkIndexService.indexNotebookAsync(session.notebook.getId(), userId);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    session.storedBlobs.forEach(storageService::discardRolledBack);
+                }
+            }
+        });
+        ImportBudget budget = new ImportBudget();
+
+        if (zipped) {
+            ZipInputStream zip = new ZipInputStream(body, StandardCharsets.UTF_8);
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                budget.countEntry();
+                String name = entry.getName();
+                if (entry.isDirectory() || name.contains("..")) {
+                    continue;
+                }
+                if (name.equals(MANIFEST_ENTRY)) {
+                    if (session.markdownNotes > 0) {
+                        throw new IllegalArgumentException("notebook.json must come before any Markdown files");
+                    }
+                    readManifest(session, budget.entry(zip, maxTotalBytes));
+                } else if (name.startsWith(ATTACHMENT_DIR)) {
+                    session.importAttachment(name, budget.entry(zip, maxEntryBytes));
+                } else if (!session.manifestRead && name.toLowerCase(Locale.ROOT).endsWith(".md")) {
+                    session.importMarkdown(name, budget.entry(zip, Math.min(maxEntryBytes, MAX_MARKDOWN_BYTES)));
+                }
+                zip.closeEntry();
+            }
+        } else {
+            readManifest(session, budget.entry(body, maxTotalBytes));
+        }
+        session.flush();
+
+        if (session.notebook == null) {
+            throw new IllegalArgumentException("Nothing to import");
+        }
+
+        // Deferred to commit by the graph service itself
+        graphService.invalidate(userId);
+
+        Long notebookId = session.notebook.getId();
+        long durationMs = (System.nanoTime() - started) / 1_000_000;
+        log.info("Imported notebook {} for user {}: {} sections, {} notes, {} attachments in {} ms", notebookId,
+                userId, session.sectionCount, session.noteCount, session.attachmentIds.size(), durationMs);
+        return NotebookImportResultDTO.builder()
+                .notebookId(notebookId)
+                .title(session.notebook.getTitle())
+                .sections(session.sectionCount)
+                .notes(session.noteCount)
+                .attachments(session.attachmentIds.size())
+                .durationMs(durationMs)
+                .build();
+    }
+
+    private void readManifest(ImportSession session, InputStream in) throws IOException {
+        try (JsonParser p = objectMapper.createParser(in)) {
+            p.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Expected a notebook JSON object");
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                switch (field) {
+                    case "format" -> {
+                        if (!FORMAT.equals(p.getText())) {
+                            throw new IllegalArgumentException("Unsupported format: " + p.getText());
+                        }
+                    }
+                    case "version" -> {
+                        if (p.getIntValue() > FORMAT_VERSION) {
+                            throw new IllegalArgumentException("Unsupported format version: " + p.getIntValue());
+                        }
+                    }
+                    case "notebook" -> session.startNotebook(p.readValueAsTree());
+                    case "sections" -> {
+                        expectArray(value, field);
+                        while (p.nextToken() == JsonToken.START_OBJECT) {
+                            session.addSection(p.readValueAsTree());
+                        }
+                        session.linkSections();
+                    }
+                    case "notes" -> {
+                        expectArray(value, field);
+                        while (p.nextToken() == JsonToken.START_OBJECT) {
+                            session.addNote(p.readValueAsTree());
+                        }
+                    }
+                    default -> p.skipChildren();
+                }
+            }
+        }
+        session.manifestRead = true;
+    }
+
+    private static void expectArray(JsonToken token, String field) {
+        if (token != JsonToken.START_ARRAY) {
+            throw new IllegalArgumentException("Expected '" + field + "' to be an array");
+        }
+    }
+
+    private static String truncateTitle(String title) {
+        if (title == null || title.isBlank())
+            return "Untitled";
+        String trimmed = title.trim();
+        return trimmed.length() > MAX_TITLE_LENGTH ? trimmed.substring(0, MAX_TITLE_LENGTH) : trimmed;
+    }
+
+    /**
+     * State of one import: the notebook, section id mapping, attachment id
+     * mapping and the pending note batch.
+     */
+    private final class ImportSession {
+
+        private final Long userId;
+        private final String username;
+        private final String requestedTitle;
+        private final Instant now = Instant.now();
+
+        private Notebook notebook;
+        private boolean manifestRead;
+        private int sectionCount;
+        private int noteCount;
+        private int markdownNotes;
+
+        private final Map<Long, Section> sectionsByExportId = new HashMap<>();
+        private final List<Map.Entry<Section, Long>> pendingParents = new ArrayList<>();
+        private final Map<String, Section> sectionsByPath = new HashMap<>();
+        private final Map<Long, Integer> nextOrderIndex = new HashMap<>();
+        private final Map<String, String> attachmentIds = new LinkedHashMap<>();
+        private final List<NoteRow> batch = new ArrayList<>();
+        private final List<StoredBlob> storedBlobs = new ArrayList<>();
+        private Section defaultSection;
+
+        ImportSession(Long userId, String username, String requestedTitle) {
+            this.userId = userId;
+            this.username = username;
+            this.requestedTitle = requestedTitle;
+        }
+
+        void startNotebook(JsonNode node) {
+            if (notebook != null)
+                return;
+            String title = requestedTitle != null && !requestedTitle.isBlank() ? requestedTitle
+                    : node.path("title").asText(null);
+            String color = node.hasNonNull("color") ? node.get("color").asText() : null;
+            notebook = notebookService.createNotebook(userId, username, title, color);
+        }
+
+        private Notebook notebook() {
+            if (notebook == null) {
+                notebook = notebookService.createNotebook(userId, username,
+                        requestedTitle != null && !requestedTitle.isBlank() ? requestedTitle : "Imported notebook",
+                        null);
+            }
+            return notebook;
+        }
+
+        private Section createSection(String title, Section parent, Integer orderIndex) {
+            Section section = new Section();
+            section.setNotebook(notebook());
+            section.setParent(parent);
+            section.setTitle(title == null || title.isBlank() ? "Untitled" : title);
+            section.setCreatedAt(now);
+            section.setUpdatedAt(now);
+            section.setOrderIndex(orderIndex != null ? orderIndex : (sectionCount + 1) * OrderRankService.STEP);
+            sectionCount++;
+            return sectionRepo.save(section);
+        }
+
+        void addSection(JsonNode node) {
+            Section section = createSection(node.path("title").asText(null), null,
+                    node.hasNonNull("orderIndex") ? node.get("orderIndex").asInt() : null);
+            if (node.hasNonNull("id")) {
+                sectionsByExportId.put(node.get("id").asLong(), section);
+            }
+            if (node.hasNonNull("parentId")) {
+                pendingParents.add(Map.entry(section, node.get("parentId").asLong()));
+            }
+        }
+
+        // Parents can appear after their children in the file, so nesting is applied once all sections exist
+        void linkSections() {
+            for (Map.Entry<Section, Long> pending : pendingParents) {
+                Section section = pending.getKey();
+                Section parent = sectionsByExportId.get(pending.getValue());
+                if (parent != null && parent != section) {
+                    section.setParent(parent);
+                    sectionRepo.save(section);
+                }
+            }
+            pendingParents.clear();
+        }
+
+        private Section defaultSection() {
+            if (defaultSection == null) {
+                defaultSection = createSection(DEFAULT_SECTION, null, null);
+            }
+            return defaultSection;
+        }
+
+        void importAttachment(String entryName, InputStream in) {
+            String[] parts = entryName.substring(ATTACHMENT_DIR.length()).split("/", 2);
+            if (parts.length < 2 || parts[1].isBlank())
+                return;
+            String filename = parts[1];
+            StoredBlob blob = storageService.store(in, filename);
+            storedBlobs.add(blob);
+            Attachment attachment = attachmentRepo.save(Attachment.builder()
+                    .userId(userId)
+                    .ownerUsername(username)
+                    .originalFilename(filename)
+                    .storageFilename(blob.key())
+                    .contentType(MediaTypeFactory.getMediaType(filename)
+                            .orElse(MediaType.APPLICATION_OCTET_STREAM).toString())
+                    .size(blob.size())
+                    .build());
+            attachmentIds.put(parts[0], attachment.getId().toString());
+        }
+
+        void importMarkdown(String entryName, InputStream in) throws IOException {
+            String path = entryName.startsWith(MARKDOWN_DIR) ? entryName.substring(MARKDOWN_DIR.length()) : entryName;
+            int slash = path.lastIndexOf('/');
+            Section section = slash < 0 ? defaultSection() : sectionForPath(path.substring(0, slash));
+            String fileName = path.substring(slash + 1);
+            String title = fileName.substring(0, fileName.length() - 3);
+
+            String markdown = new String(in.readAllBytes(), StandardCharsets.UTF_8); // bounded by ImportBudget
+            String heading = "# " + title;
+            if (markdown.startsWith(heading + "\n")) {
+                markdown = markdown.substring(heading.length() + 1);
+            }
+            JsonNode content = TiptapMarkdown.fromMarkdown(markdown);
+            queue(section, title, content, null, false, null, now, now);
+            markdownNotes++;
+        }
+
+        private Section sectionForPath(String path) {
+            Section section = sectionsByPath.get(path);
+            if (section == null) {
+                int slash = path.lastIndexOf('/');
+                Section parent = slash < 0 ? null : sectionForPath(path.substring(0, slash));
+                section = createSection(path.substring(slash + 1), parent, null);
+                sectionsByPath.put(path, section);
+            }
+            return section;
+        }
+
+        void addNote(JsonNode node) {
+            Section section = node.hasNonNull("sectionId")
+                    ? sectionsByExportId.get(node.get("sectionId").asLong())
+                    : null;
+            if (section == null) {
+                section = defaultSection();
+            }
+            String[] tags = null;
+            if (node.path("tags").isArray()) {
+                List<String> values = new ArrayList<>();
+                node.get("tags").forEach(t -> values.add(t.asText()));
+                tags = values.toArray(new String[0]);
+            }
+            Integer orderIndex = node.hasNonNull("orderIndex") ? node.get("orderIndex").asInt() : null;
+            queue(section, node.path("title").asText(null), node.get("content"), orderIndex,
+                    node.path("isPinned").asBoolean(false), tags,
+                    parseInstant(node.get("createdAt")), parseInstant(node.get("updatedAt")));
+        }
+
+        private Instant parseInstant(JsonNode value) {
+            if (value == null || !value.isTextual())
+                return now;
+            try {
+                return Instant.parse(value.asText());
+            } catch (RuntimeException e) {
+                return now;
+            }
+        }
+
+        private void queue(Section section, String title, JsonNode content, Integer orderIndex, boolean pinned,
+                String[] tags, Instant createdAt, Instant updatedAt) {
+            int order = orderIndex != null ? orderIndex
+                    : nextOrderIndex.merge(section.getId(), OrderRankService.STEP, Integer::sum);
+            String json = content != null && !content.isNull() ? content.toString() : null;
+            if (json != null && !attachmentIds.isEmpty() && json.contains(ATTACHMENT_URL)) {
+                for (Map.Entry<String, String> e : attachmentIds.entrySet()) {
+                    json = json.replace(ATTACHMENT_URL + e.getKey(), ATTACHMENT_URL + e.getValue());
+                }
+            }
+            batch.add(new NoteRow(truncateTitle(title), json, section.getId(), noteService.buildExcerpt(content),
+                    createdAt, updatedAt, order, pinned, tags));
+            noteCount++;
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (batch.isEmpty())
+                return;
+            jdbcTemplate.batchUpdate(INSERT_NOTE_SQL, batch, batch.size(), (ps, row) -> {
+                ps.setString(1, row.title());
+                ps.setString(2, row.content());
+                ps.setLong(3, userId);
+                ps.setString(4, username);
+                ps.setLong(5, row.sectionId());
+                ps.setString(6, row.excerpt());
+                ps.setObject(7, row.createdAt().atOffset(ZoneOffset.UTC));
+                ps.setObject(8, row.updatedAt().atOffset(ZoneOffset.UTC));
+                ps.setInt(9, row.orderIndex());
+                ps.setBoolean(10, row.pinned());
+                if (row.tags() != null) {
+                    ps.setArray(11, ps.getConnection().createArrayOf("text", row.tags()));
+                } else {
+                    ps.setNull(11, Types.ARRAY);
+                }
+            });
+            batch.clear();
+        }
+    }
+
+    /**
+     * Limits on what an import may expand to: the entry count and the total
+     * uncompressed bytes, plus a per-entry cap applied by each stream.
+     */
+    private final class ImportBudget {
+
+        private int entries;
+        private long totalBytes;
+
+        void countEntry() {
+            if (++entries > maxEntries) {
+                throw new IllegalArgumentException("Archive has more than " + maxEntries + " entries");
+            }
+        }
+
+        // Reads the current entry up to entryLimit bytes; closing it leaves the underlying stream open
+        InputStream entry(InputStream in, long entryLimit) {
+            return new FilterInputStream(in) {
+                private long entryBytes;
+
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) {
+                        count(1);
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int off, int len) throws IOException {
+                    int n = super.read(buffer, off, len);
+                    if (n > 0) {
+                        count(n);
+                    }
+                    return n;
+                }
+
+                @Override
+                public long skip(long n) throws IOException {
+                    long skipped = super.skip(n);
+                    count(skipped);
+                    return skipped;
+                }
+
+                @Override
+                public void close() {
+                }
+
+                private void count(long n) {
+                    entryBytes += n;
+                    totalBytes += n;
+                    if (entryBytes > entryLimit) {
+                        throw new IllegalArgumentException("Import entry exceeds " + entryLimit + " bytes");
+                    }
+                    if (totalBytes > maxTotalBytes) {
+                        throw new IllegalArgumentException("Import exceeds " + maxTotalBytes + " bytes");
+                    }
+                }
+            };
+        }
+    }
+
+    private record NoteRow(String title, String content, Long sectionId, String excerpt, Instant createdAt,
+            Instant updatedAt, int orderIndex, boolean pinned, String[] tags) {
+    }
+}
@@ -0,0 +1,142 @@
+package com.muse.notes.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.muse.notes.dto.NotebookTreeDTO;
+import com.muse.notes.dto.NotebookTreeDTO.NoteNode;
+import com.muse.notes.dto.NotebookTreeDTO.NotebookNode;
+import com.muse.notes.dto.NotebookTreeDTO.SectionNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the sidebar tree (notebooks, nested sections, note titles) from one
+ * recursive query, versioned per user.
+ *
+ * Every service method that changes the tree calls {@link #bump} in its own
+ * transaction, so the version moves if and only if the change commits. The
+ * version is read before the tree is built, so a cached tree is never older
+ * than the version it is served under. Built trees are kept per replica and
+ * reused while the stored version matches; since the version lives in the
+ * database, replicas need no invalidation messages.
+ */
+@Service
+public class NotebookTreeService {
+
+    private static final String BUMP_SQL = "INSERT INTO user_tree_versions (user_id, version, updated_at) "
+            + "VALUES (?, 1, now()) ON CONFLICT (user_id) DO UPDATE "
+            + "SET version = user_tree_versions.version + 1, updated_at = now()";
+
+    // Rows are notebooks (B), root sections (R, parent is the notebook),
+    // nested sections (S) and notes (N). Sections are walked from the roots
+    // so orphaned rows never show up; ordering by depth puts every parent
+    // before its children
+    private static final String TREE_SQL = "WITH RECURSIVE tree AS ("
+            + "SELECT s.id, s.notebook_id, s.parent_id, s.title, s.order_index, 0 AS depth "
+            + "FROM sections s JOIN notebooks nb ON nb.id = s.notebook_id "
+            + "WHERE nb.user_id = ? AND s.parent_id IS NULL "
+            + "UNION ALL "
+            + "SELECT c.id, c.notebook_id, c.parent_id, c.title, c.order_index, t.depth + 1 "
+            + "FROM sections c JOIN tree t ON c.parent_id = t.id) "
+            + "SELECT 'B' AS kind, nb.id, CAST(NULL AS bigint) AS parent_id, nb.title, nb.color, false AS pinned, "
+            + "-1 AS depth, nb.order_index FROM notebooks nb WHERE nb.user_id = ? "
+            + "UNION ALL "
+            + "SELECT CASE WHEN t.parent_id IS NULL THEN 'R' ELSE 'S' END, t.id, "
+            + "COALESCE(t.parent_id, t.notebook_id), t.title, NULL, false, t.depth, t.order_index FROM tree t "
+            + "UNION ALL "
+            + "SELECT 'N', n.id, n.section_id, n.title, NULL, n.is_pinned, t.depth + 1, n.order_index "
+            + "FROM notes n JOIN tree t ON t.id = n.section_id WHERE n.deleted_at IS NULL "
+            + "ORDER BY depth, order_index NULLS LAST, id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Cache<Long, NotebookTreeDTO> trees;
+
+    public NotebookTreeService(JdbcTemplate jdbcTemplate,
+            @Value("${notes.tree.max-users:5000}") long maxUsers,
+            @Value("${notes.tree.ttl-seconds:600}") long ttlSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.trees = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterAccess(ttlSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /** Marks the user's tree as changed; joins the caller's transaction. */
+    public void bump(Long userId) {
+        if (userId != null) {
+            jdbcTemplate.update(BUMP_SQL, userId);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public long version(Long userId) {
+        List<Long> version = jdbcTemplate.queryForList(
+                "SELECT version FROM user_tree_versions WHERE user_id = ?", Long.class, userId);
+        return version.isEmpty() ? 0 : version.get(0);
+    }
+
+    public static String etag(long version) {
+        return "\"tree-" + version + "\"";
+    }
+
+    /** The tree as of {@code version}, which the caller read first. */
+    @Transactional(readOnly = true)
+    public NotebookTreeDTO getTree(Long userId, long version) {
+        NotebookTreeDTO cached = trees.getIfPresent(userId);
+        if (cached != null && cached.getVersion() == version) {
+            return cached;
+        }
+        NotebookTreeDTO tree = build(userId, version);
+        trees.put(userId, tree);
+        return tree;
+    }
+
+    private NotebookTreeDTO build(Long userId, long version) {
+        List<NotebookNode> notebooks = new ArrayList<>();
+        Map<Long, NotebookNode> notebookById = new HashMap<>();
+        Map<Long, SectionNode> sectionById = new HashMap<>();
+
+        jdbcTemplate.query(TREE_SQL, rs -> {
+            String kind = rs.getString("kind");
+            long id = rs.getLong("id");
+            long parentId = rs.getLong("parent_id");
+            String title = rs.getString("title");
+            switch (kind) {
+                case "B" -> {
+                    NotebookNode notebook = new NotebookNode(id, title, rs.getString("color"));
+                    notebooks.add(notebook);
+                    notebookById.put(id, notebook);
+                }
+                case "R" -> {
+                    SectionNode section = new SectionNode(id, title);
+                    sectionById.put(id, section);
+                    NotebookNode notebook = notebookById.get(parentId);
+                    if (notebook != null)
+                        notebook.getSections().add(section);
+                }
+                case "S" -> {
+                    SectionNode section = new SectionNode(id, title);
+                    sectionById.put(id, section);
+                    SectionNode parent = sectionById.get(parentId);
+                    if (parent != null)
+                        parent.getSections().add(section);
+                }
+                default -> {
+                    SectionNode section = sectionById.get(parentId);
+                    if (section != null)
+                        section.getNotes().add(new NoteNode(id, title, rs.getBoolean("pinned")));
+                }
+            }
+        }, userId, userId);
+
+        return new NotebookTreeDTO(version, notebooks);
+    }
+}
@@ -0,0 +1,229 @@
+package com.muse.notes.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Sparse order ranks for notebooks, sections and notes. Siblings are ranked
+ * in steps of {@link #STEP}, so moving one item takes the midpoint between
+ * its new neighbours and writes only that row. When a gap runs low the list
+ * is queued for renumbering in the background; only a move into a gap that
+ * is already used up renumbers the list in place. Full reorders are written
+ * as one UPDATE ... FROM (VALUES ...) statement.
+ */
+@Service
+@Slf4j
+public class OrderRankService {
+
+    public static final int STEP = 1024;
+
+    // Gaps narrower than this get the list renumbered in the background
+    private static final int MIN_GAP = 8;
+
+    // Rows per reorder statement; two bind parameters each
+    private static final int REORDER_CHUNK = 1000;
+
+    private static final int REBALANCES_PER_FLUSH = 50;
+
+    public enum Kind {
+        NOTES("notes", "section_id = ?",
+                "UPDATE notes AS t SET order_index = v.rank FROM (VALUES %s) AS v(id, rank) "
+                        + "WHERE t.id = v.id AND t.user_id = ?"),
+        SECTIONS("sections", "notebook_id = ? AND parent_id IS NOT DISTINCT FROM CAST(? AS bigint)",
+                "UPDATE sections AS t SET order_index = v.rank FROM (VALUES %s) AS v(id, rank), notebooks nb "
+                        + "WHERE t.id = v.id AND nb.id = t.notebook_id AND nb.user_id = ?"),
+        NOTEBOOKS("notebooks", "user_id = ?",
+                "UPDATE notebooks AS t SET order_index = v.rank FROM (VALUES %s) AS v(id, rank) "
+                        + "WHERE t.id = v.id AND t.user_id = ?");
+
+        private final String table;
+        private final String siblings;
+        private final String reorderSql;
+
+        Kind(String table, String siblings, String reorderSql) {
+            this.table = table;
+            this.siblings = siblings;
+            this.reorderSql = reorderSql;
+        }
+    }
+
+    /**
+     * One ordered list: the notes of a section, the sections under one
+     * parent (or the root of a notebook), or a user's notebooks.
+     */
+    public record Scope(Kind kind, long ownerId, Long parentId) {
+
+        public static Scope notes(Long sectionId) {
+            return new Scope(Kind.NOTES, sectionId, null);
+        }
+
+        public static Scope sections(Long notebookId, Long parentId) {
+            return new Scope(Kind.SECTIONS, notebookId, parentId);
+        }
+
+        public static Scope notebooks(Long userId) {
+            return new Scope(Kind.NOTEBOOKS, userId, null);
+        }
+
+        private Object[] params(Object... extra) {
+            List<Object> params = new ArrayList<>();
+            params.add(ownerId);
+            if (kind == Kind.SECTIONS)
+                params.add(parentId);
+            Collections.addAll(params, extra);
+            return params.toArray();
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Set<Scope> pendingRebalance = new LinkedHashSet<>();
+
+    public OrderRankService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /** Rank for an item appended after the current last one. */
+    public static int after(int maxRank) {
+        return maxRank > Integer.MAX_VALUE - STEP ? Integer.MAX_VALUE : maxRank + STEP;
+    }
+
+    /**
+     * Rank that puts {@code itemId} right after {@code afterId} in the scope,
+     * or first when {@code afterId} is null. Joins the caller's transaction;
+     * the caller writes the rank to the item's row.
+     */
+    public int rankAfter(Scope scope, Long itemId, Long afterId) {
+        if (afterId != null && afterId.equals(itemId)) {
+            throw new IllegalArgumentException("An item cannot be placed after itself");
+        }
+        Integer rank = midpoint(scope, itemId, afterId);
+        if (rank == null) {
+            // Neighbours already sit on adjacent ranks: renumber now, then retry
+            rebalance(scope);
+            rank = midpoint(scope, itemId, afterId);
+        }
+        if (rank == null) {
+            throw new IllegalStateException("No rank left in " + scope.kind().table + " list " + scope.ownerId());
+        }
+        return rank;
+    }
+
+    private Integer midpoint(Scope scope, Long itemId, Long afterId) {
+        Kind kind = scope.kind();
+        Integer lower = null;
+        if (afterId != null) {
+            List<Integer> found = jdbcTemplate.queryForList("SELECT order_index FROM " + kind.table + " WHERE "
+                    + kind.siblings + " AND id = ?", Integer.class, scope.params(afterId));
+            if (found.isEmpty()) {
+                throw new IllegalArgumentException("Item to place after is not in the same list");
+            }
+            lower = found.get(0);
+        }
+        Integer upper = lower == null
+                ? jdbcTemplate.queryForObject("SELECT MIN(order_index) FROM " + kind.table + " WHERE "
+                        + kind.siblings + " AND id <> ?", Integer.class, scope.params(itemId))
+                : jdbcTemplate.queryForObject("SELECT MIN(order_index) FROM " + kind.table + " WHERE "
+                        + kind.siblings + " AND id <> ? AND order_index > ?", Integer.class,
+                        scope.params(itemId, lower));
+
+        long low = lower != null ? lower : 0;
+        if (upper == null) {
+            if (low > Integer.MAX_VALUE - STEP)
+                return null;
+            return (int) low + STEP;
+        }
+        if (upper - low < 2) {
+            return null;
+        }
+        int rank = (int) (low + (upper - low) / 2);
+        if (rank - low < MIN_GAP || upper - rank < MIN_GAP) {
+            scheduleRebalance(scope);
+        }
+        return rank;
+    }
+
+    /**
+     * Ranks the given ids 1..n steps apart, in list order, with one statement
+     * per chunk. Ids the user does not own are skipped.
+     */
+    public void reorder(Kind kind, List<Long> ids, Long userId) {
+        List<Long> distinct = ids.stream().distinct().toList();
+        for (int from = 0; from < distinct.size(); from += REORDER_CHUNK) {
+            List<Long> chunk = distinct.subList(from, Math.min(distinct.size(), from + REORDER_CHUNK));
+            String values = String.join(", ",
+                    Collections.nCopies(chunk.size(), "(CAST(? AS bigint), CAST(? AS integer))"));
+            List<Object> params = new ArrayList<>(chunk.size() * 2 + 1);
+            for (int i = 0; i < chunk.size(); i++) {
+                params.add(chunk.get(i));
+                params.add((from + i + 1) * STEP);
+            }
+            params.add(userId);
+            jdbcTemplate.update(String.format(kind.reorderSql, values), params.toArray());
+        }
+    }
+
+    /** Renumbers the scope to whole steps, keeping its current order. */
+    public void rebalance(Scope scope) {
+        Kind kind = scope.kind();
+        int updated = jdbcTemplate.update("UPDATE " + kind.table + " AS t SET order_index = r.rn * " + STEP
+                + " FROM (SELECT id, row_number() OVER (ORDER BY order_index, id) AS rn FROM " + kind.table
+                + " WHERE " + kind.siblings + ") r WHERE t.id = r.id AND t.order_index <> r.rn * " + STEP,
+                scope.params());
+        log.debug("Rebalanced {} list {}: {} rows renumbered", kind.table, scope.ownerId(), updated);
+    }
+
+    private void scheduleRebalance(Scope scope) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    addPending(scope);
+                }
+            });
+        } else {
+            addPending(scope);
+        }
+    }
+
+    private void addPending(Scope scope) {
+        synchronized (pendingRebalance) {
+            pendingRebalance.add(scope);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${notes.order.rebalance-interval-ms:30000}")
+    public void flushRebalances() {
+        List<Scope> scopes = new ArrayList<>();
+        synchronized (pendingRebalance) {
+            Iterator<Scope> it = pendingRebalance.iterator();
+            while (it.hasNext() && scopes.size() < REBALANCES_PER_FLUSH) {
+                scopes.add(it.next());
+                it.remove();
+            }
+        }
+        for (Scope scope : scopes) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> rebalance(scope));
+            } catch (Exception e) {
+                // The next tight move queues it again, or renumbers in place
+                log.warn("Rebalancing {} list {} failed: {}", scope.kind().table, scope.ownerId(), e.getMessage());
+            }
+        }
+    }
+}
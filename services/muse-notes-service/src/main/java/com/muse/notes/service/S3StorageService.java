@@ -0,0 +1,136 @@
+package com.muse.notes.service;
+
+import com.muse.notes.repository.AttachmentBlobRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Content-addressed blobs in an S3-compatible bucket (AWS S3, MinIO, R2).
+ * Objects are stored as {@code blobs/ab/<sha256>}; set storage.s3.endpoint and
+ * path-style access for MinIO.
+ */
+@Service
+@ConditionalOnProperty(name = "storage.type", havingValue = "s3")
+public class S3StorageService extends ContentAddressedStorageService {
+
+    private final S3Client s3;
+    private final String bucket;
+
+    public S3StorageService(@Value("${storage.s3.endpoint:}") String endpoint,
+            @Value("${storage.s3.region:us-east-1}") String region,
+            @Value("${storage.s3.bucket}") String bucket,
+            @Value("${storage.s3.access-key}") String accessKey,
+            @Value("${storage.s3.secret-key}") String secretKey,
+            @Value("${storage.s3.path-style:true}") boolean pathStyle,
+            @Value("${storage.max-upload-bytes:524288000}") long maxUploadBytes,
+            AttachmentBlobRepository blobRepo,
+            PlatformTransactionManager transactionManager) {
+        super(blobRepo, transactionManager, maxUploadBytes);
+        S3ClientBuilder builder = S3Client.builder()
+                .region(Region.of(region))
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)))
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(pathStyle).build());
+        if (endpoint != null && !endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        this.s3 = builder.build();
+        this.bucket = bucket;
+    }
+
+    @Override
+    @PostConstruct
+    public void init() {
+        try {
+            s3.headBucket(b -> b.bucket(bucket));
+        } catch (S3Exception e) {
+            if (e.statusCode() != 404) {
+                throw new RuntimeException("Could not initialize storage", e);
+            }
+            s3.createBucket(b -> b.bucket(bucket));
+            log.info("Created attachment bucket {}", bucket);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        s3.close();
+    }
+
+    private static String objectKey(String key) {
+        return isContentKey(key) ? "blobs/" + key.substring(0, 2) + "/" + key : key;
+    }
+
+    @Override
+    protected Path createTempFile() throws IOException {
+        return Files.createTempFile("muse-upload-", ".part");
+    }
+
+    @Override
+    protected void persist(String key, Path tempFile, long size) {
+        String objectKey = objectKey(key);
+        try {
+            s3.headObject(b -> b.bucket(bucket).key(objectKey));
+            return;
+        } catch (S3Exception e) {
+            if (e.statusCode() != 404) {
+                throw e;
+            }
+        }
+        s3.putObject(b -> b.bucket(bucket).key(objectKey).contentLength(size), RequestBody.fromFile(tempFile));
+    }
+
+    @Override
+    protected void deletePayload(String key) {
+        s3.deleteObject(b -> b.bucket(bucket).key(objectKey(key)));
+    }
+
+    @Override
+    public Resource loadAsResource(String key) {
+        try {
+            return new InputStreamResource(s3.getObject(b -> b.bucket(bucket).key(objectKey(key))));
+        } catch (S3Exception e) {
+            throw new RuntimeException("Could not read file: " + key, e);
+        }
+    }
+
+    @Override
+    public void transferTo(String key, long position, long count, WritableByteChannel target) throws IOException {
+        if (count <= 0) {
+            return;
+        }
+        String range = "bytes=" + position + "-" + (position + count - 1);
+        try (ResponseInputStream<GetObjectResponse> in = s3
+                .getObject(b -> b.bucket(bucket).key(objectKey(key)).range(range))) {
+            // Not closed: closing would close the response channel
+            OutputStream out = Channels.newOutputStream(target);
+            in.transferTo(out);
+            out.flush();
+        } catch (S3Exception e) {
+            throw new IOException("Could not read file: " + key, e);
+        }
+    }
+}
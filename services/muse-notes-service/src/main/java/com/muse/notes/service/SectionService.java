@@ -8,10 +8,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -19,10 +16,15 @@ public class SectionService {
 
     private final SectionRepository repo;
     private final NotebookRepository notebookRepo;
+    private final NotebookTreeService treeService;
+    private final OrderRankService ranks;
 
-    public SectionService(SectionRepository repo, NotebookRepository notebookRepo) {
+    public SectionService(SectionRepository repo, NotebookRepository notebookRepo,
+            NotebookTreeService treeService, OrderRankService ranks) {
         this.repo = repo;
         this.notebookRepo = notebookRepo;
+        this.treeService = treeService;
+        this.ranks = ranks;
     }
 
     // List all sections (flat, for backwards compatibility)
@@ -44,7 +46,7 @@ public class SectionService {
     public Optional<Section> createSection(Long notebookId, Long userId, String title) {
         return notebookRepo.findByIdAndUserId(notebookId, userId).map(notebook -> {
             Instant now = Instant.now();
-            int nextOrderIndex = repo.findMaxOrderIndexByNotebookId(notebookId) + 1;
+            int nextOrderIndex = OrderRankService.after(repo.findMaxOrderIndexByNotebookId(notebookId));
 
             Section section = new Section();
             section.setNotebook(notebook);
@@ -53,6 +55,7 @@ public class SectionService {
             section.setUpdatedAt(now);
             section.setOrderIndex(nextOrderIndex);
             section.setParent(null); // Root section
+            treeService.bump(userId);
             return repo.save(section);
         });
     }
@@ -61,7 +64,7 @@ public class SectionService {
     public Optional<Section> createSubSection(Long parentId, Long userId, String title) {
         return repo.findByIdAndNotebookUserId(parentId, userId).map(parent -> {
             Instant now = Instant.now();
-            int nextOrderIndex = repo.findMaxOrderIndexByParentId(parentId) + 1;
+            int nextOrderIndex = OrderRankService.after(repo.findMaxOrderIndexByParentId(parentId));
 
             Section section = new Section();
             section.setNotebook(parent.getNotebook()); // Same notebook as parent
@@ -70,29 +73,49 @@ public class SectionService {
             section.setUpdatedAt(now);
             section.setOrderIndex(nextOrderIndex);
             section.setParent(parent); // Nested under parent
+            treeService.bump(userId);
             return repo.save(section);
         });
     }
 
-    // Move a section to a new parent (or to root if parentId is null)
+    // Move a section to the end of a new parent (or of the root if parentId is null)
     public Optional<Section> moveSection(Long sectionId, Long newParentId, Long userId) {
+        return moveSection(sectionId, newParentId, userId, true, null);
+    }
+
+    // Move a section under a new parent, right after afterId (first if afterId is null)
+    public Optional<Section> moveSection(Long sectionId, Long newParentId, Long afterId, Long userId) {
+        return moveSection(sectionId, newParentId, userId, false, afterId);
+    }
+
+    private Optional<Section> moveSection(Long sectionId, Long newParentId, Long userId, boolean append,
+            Long afterId) {
         return repo.findByIdAndNotebookUserId(sectionId, userId).map(section -> {
+            Long notebookId = section.getNotebook().getId();
             if (newParentId == null) {
                 // Move to root
                 section.setParent(null);
-                section.setOrderIndex(repo.findMaxOrderIndexByNotebookId(section.getNotebook().getId()) + 1);
             } else {
                 // Move under new parent
-                return repo.findByIdAndNotebookUserId(newParentId, userId).map(newParent -> {
-                    // Prevent circular reference
-                    if (isDescendantOf(newParent, section)) {
-                        throw new IllegalArgumentException("Cannot move a section into its own descendant");
-                    }
-                    section.setParent(newParent);
-                    section.setOrderIndex(repo.findMaxOrderIndexByParentId(newParentId) + 1);
-                    return repo.save(section);
-                }).orElse(section);
+                Optional<Section> newParent = repo.findByIdAndNotebookUserId(newParentId, userId);
+                if (newParent.isEmpty()) {
+                    return section;
+                }
+                // Prevent circular reference
+                if (isDescendantOf(newParent.get(), section)) {
+                    throw new IllegalArgumentException("Cannot move a section into its own descendant");
+                }
+                section.setParent(newParent.get());
             }
+            if (append) {
+                section.setOrderIndex(OrderRankService.after(newParentId == null
+                        ? repo.findMaxOrderIndexByNotebookId(notebookId)
+                        : repo.findMaxOrderIndexByParentId(newParentId)));
+            } else {
+                OrderRankService.Scope siblings = OrderRankService.Scope.sections(notebookId, newParentId);
+                section.setOrderIndex(ranks.rankAfter(siblings, sectionId, afterId));
+            }
+            treeService.bump(userId);
             return repo.save(section);
         });
     }
@@ -111,24 +134,15 @@ public class SectionService {
 
     @Transactional
     public void updateOrder(List<Long> sectionIds, Long userId) {
-        List<Section> sections = repo.findAllById(sectionIds);
-        Map<Long, Section> sectionMap = sections.stream()
-                .collect(Collectors.toMap(Section::getId, Function.identity()));
-
-        for (int i = 0; i < sectionIds.size(); i++) {
-            Long id = sectionIds.get(i);
-            Section section = sectionMap.get(id);
-            if (section != null && section.getNotebook().getUserId().equals(userId)) {
-                section.setOrderIndex(i);
-            }
-        }
-        repo.saveAll(sections);
+        ranks.reorder(OrderRankService.Kind.SECTIONS, sectionIds, userId);
+        treeService.bump(userId);
     }
 
     // Delete a section and all its children
     public boolean deleteSection(Long sectionId, Long userId) {
         return repo.findByIdAndNotebookUserId(sectionId, userId).map(section -> {
             repo.delete(section); // Cascade will delete children
+            treeService.bump(userId);
             return true;
         }).orElse(false);
     }
@@ -3,21 +3,49 @@ package com.muse.notes.service;
 import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Path;
-import java.util.stream.Stream;
+import java.util.Optional;
 
 public interface StorageService {
 
     void init();
 
-    String store(MultipartFile file);
-
-    Stream<Path> loadAll();
-
-    Path load(String filename);
-
-    Resource loadAsResource(String filename);
-
-    void deleteAll();
-
+    StoredBlob store(MultipartFile file);
+
+    /**
+     * Stores a stream without buffering it in memory. The stream is read to the
+     * end but not closed.
+     */
+    StoredBlob store(InputStream inputStream, String originalFilename);
+
+    Resource loadAsResource(String key);
+
+    /**
+     * Copies {@code count} bytes starting at {@code position} to the target,
+     * zero-copy where the backend allows it.
+     */
+    void transferTo(String key, long position, long count, WritableByteChannel target) throws IOException;
+
+    /**
+     * The file behind a key when the backend keeps blobs on local disk, so the
+     * servlet container can send it with sendfile.
+     */
+    default Optional<Path> localFile(String key) {
+        return Optional.empty();
+    }
+
+    /**
+     * Drops one reference to a blob; the payload is deleted with the last one.
+     */
+    void release(String key);
+
+    /**
+     * Cleans up after a {@link #store} whose transaction rolled back: the
+     * reference is gone but the payload may have been written. The payload is
+     * deleted unless something else references it by now.
+     */
+    void discardRolledBack(StoredBlob blob);
 }
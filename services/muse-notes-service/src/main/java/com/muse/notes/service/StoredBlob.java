@@ -0,0 +1,8 @@
+package com.muse.notes.service;
+
+/**
+ * Result of storing an upload: the storage key (SHA-256 hex of the content)
+ * and the payload size in bytes.
+ */
+public record StoredBlob(String key, long size) {
+}
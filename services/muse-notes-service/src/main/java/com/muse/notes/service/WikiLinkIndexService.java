@@ -0,0 +1,188 @@
+package com.muse.notes.service;
+
+import com.muse.notes.entity.Note;
+import com.muse.notes.entity.NoteLink;
+import com.muse.notes.entity.NoteWikiLink;
+import com.muse.notes.repository.NoteLinkRepository;
+import com.muse.notes.repository.NoteRepository;
+import com.muse.notes.repository.NoteWikiLinkRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains the persisted [[wiki link]] index (note_wiki_links).
+ *
+ * Each save diffs the note's current links against its stored rows, so only
+ * added/removed links are written. Targets are resolved with one batched
+ * title lookup instead of one query per link.
+ */
+@Service
+@Slf4j
+@Transactional
+public class WikiLinkIndexService {
+
+    // Match [[Title]] or [[Title|Alias]]
+    static final Pattern WIKI_LINK_PATTERN = Pattern.compile("\\[\\[(.*?)(?:\\|(.*?))?\\]\\]");
+
+    private static final int MAX_TITLE_LENGTH = 512;
+
+    private final NoteWikiLinkRepository wikiLinkRepo;
+    private final NoteRepository noteRepo;
+    private final NoteLinkRepository linkRepo;
+    private final NoteGraphService graphService;
+    private final NoteCacheInvalidator cacheInvalidator;
+
+    public WikiLinkIndexService(NoteWikiLinkRepository wikiLinkRepo,
+            NoteRepository noteRepo,
+            NoteLinkRepository linkRepo,
+            NoteGraphService graphService,
+            NoteCacheInvalidator cacheInvalidator) {
+        this.wikiLinkRepo = wikiLinkRepo;
+        this.noteRepo = noteRepo;
+        this.linkRepo = linkRepo;
+        this.graphService = graphService;
+        this.cacheInvalidator = cacheInvalidator;
+    }
+
+    public static String titleKey(String title) {
+        String trimmed = title.trim();
+        if (trimmed.length() > MAX_TITLE_LENGTH) {
+            trimmed = trimmed.substring(0, MAX_TITLE_LENGTH);
+        }
+        return trimmed.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Parses wiki links from plain note text. Returns link key -> link text as
+     * first written, in order of appearance.
+     */
+    public static Map<String, String> parseWikiLinks(String text) {
+        Map<String, String> links = new LinkedHashMap<>();
+        if (text == null || text.isBlank())
+            return links;
+
+        Matcher matcher = WIKI_LINK_PATTERN.matcher(text);
+        while (matcher.find()) {
+            String title = matcher.group(1).trim();
+            if (title.isEmpty())
+                continue;
+            if (title.length() > MAX_TITLE_LENGTH) {
+                title = title.substring(0, MAX_TITLE_LENGTH);
+            }
+            links.putIfAbsent(titleKey(title), title);
+        }
+        return links;
+    }
+
+    /**
+     * Brings the index for a note in line with its current text and returns the
+     * ids of the notes its wiki links resolve to (excluding itself).
+     */
+    public Set<Long> syncNote(Note note, String text) {
+        Map<String, String> current = parseWikiLinks(text);
+        Map<String, NoteWikiLink> existing = wikiLinkRepo.findBySourceNoteId(note.getId()).stream()
+                .collect(Collectors.toMap(NoteWikiLink::getTargetKey, l -> l));
+
+        Set<String> removed = new HashSet<>(existing.keySet());
+        removed.removeAll(current.keySet());
+        if (!removed.isEmpty()) {
+            wikiLinkRepo.deleteBySourceNoteIdAndTargetKeyIn(note.getId(), removed);
+        }
+
+        List<NoteWikiLink> upserts = new ArrayList<>();
+        current.forEach((key, title) -> {
+            NoteWikiLink row = existing.get(key);
+            if (row == null) {
+                upserts.add(NoteWikiLink.builder()
+                        .sourceNoteId(note.getId())
+                        .targetKey(key)
+                        .userId(note.getUserId())
+                        .targetTitle(title)
+                        .build());
+            } else if (!title.equals(row.getTargetTitle())) {
+                row.setTargetTitle(title);
+                upserts.add(row);
+            }
+        });
+        if (!upserts.isEmpty()) {
+            wikiLinkRepo.saveAll(upserts);
+        }
+
+        if (!removed.isEmpty() || !upserts.isEmpty()) {
+            log.debug("Wiki link index for note {}: +{} -{}", note.getId(), upserts.size(), removed.size());
+        }
+
+        Set<Long> ids = new HashSet<>(resolve(note.getUserId(), current.keySet()).values());
+        ids.remove(note.getId());
+        return ids;
+    }
+
+    /**
+     * Resolves link keys to note ids in one query. Duplicate titles resolve to
+     * the oldest note.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Long> resolve(Long userId, Collection<String> keys) {
+        if (keys.isEmpty())
+            return Map.of();
+        Map<String, Long> resolved = new HashMap<>();
+        for (NoteRepository.TitleKeyView view : noteRepo.findIdsByUserIdAndTitleKeys(userId, keys)) {
+            resolved.putIfAbsent(view.getTitleKey(), view.getId());
+        }
+        return resolved;
+    }
+
+    /**
+     * Ids of the notes that contain a [[title]] link (case-insensitive).
+     */
+    @Transactional(readOnly = true)
+    public List<Long> findSourceIdsLinkingTo(Long userId, String title) {
+        return wikiLinkRepo.findByUserIdAndTargetKey(userId, titleKey(title)).stream()
+                .map(NoteWikiLink::getSourceNoteId)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Connects notes whose [[links]] were dangling until a note with this title
+     * existed (new note or rename).
+     */
+    public void attachIncomingLinks(Note target) {
+        List<NoteLink> links = findSourceIdsLinkingTo(target.getUserId(), target.getTitle()).stream()
+                .filter(sourceId -> !sourceId.equals(target.getId()))
+                .map(sourceId -> NoteLink.builder()
+                        .sourceNoteId(sourceId)
+                        .linkedNoteId(target.getId())
+                        .relevanceScore(1.0f)
+                        .build())
+                .collect(Collectors.toList());
+        if (!links.isEmpty()) {
+            linkRepo.saveAll(links);
+            links.forEach(l -> graphService.onLinkAdded(target.getUserId(), l.getSourceNoteId(), target.getId(), 1.0f));
+            List<Long> touched = new ArrayList<>();
+            touched.add(target.getId());
+            links.forEach(l -> touched.add(l.getSourceNoteId()));
+            cacheInvalidator.evictLinks(target.getUserId(), touched);
+            log.info("Resolved {} dangling wiki links to note {}", links.size(), target.getId());
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public List<NoteWikiLinkRepository.BrokenWikiLink> findBrokenLinks(Long userId) {
+        return wikiLinkRepo.findBrokenLinksByUserId(userId);
+    }
+
+    @Transactional(readOnly = true)
+    public List<NoteWikiLinkRepository.WikiLinkEdge> findGraph(Long userId) {
+        return wikiLinkRepo.findWikiGraphByUserId(userId);
+    }
+
+    public void removeNote(Long noteId) {
+        wikiLinkRepo.deleteBySourceNoteId(noteId);
+    }
+}
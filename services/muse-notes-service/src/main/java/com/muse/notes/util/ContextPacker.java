@@ -0,0 +1,124 @@
+package com.muse.notes.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Fills a prompt's context budget with retrieved chunks in rank order.
+ * Chunks of one note that overlap or touch are merged into a single
+ * passage, so the text two neighbouring chunks share is paid for once and
+ * the model reads a contiguous excerpt instead of two near-duplicates.
+ * Tokens are estimated at four characters each.
+ */
+public final class ContextPacker {
+
+    // Chunks start after skipped whitespace, so neighbours can be this far apart
+    private static final int ADJACENT_GAP = 2;
+
+    // Citation number, title and separators around each passage
+    private static final int PASSAGE_OVERHEAD_TOKENS = 8;
+
+    public record Candidate(long noteId, String title, int chunkIndex, int start, int end, String content) {
+    }
+
+    public record Passage(long noteId, String title, int chunkIndex, int start, int end, String content) {
+    }
+
+    private ContextPacker() {
+    }
+
+    public static List<Passage> pack(List<Candidate> ranked, int tokenBudget, int maxPassages) {
+        List<Candidate> passages = new ArrayList<>();
+        int used = 0;
+        for (Candidate c : ranked) {
+            Candidate host = null;
+            for (Candidate p : passages) {
+                if (p.noteId() == c.noteId() && touches(p, c)) {
+                    host = p;
+                    break;
+                }
+            }
+            if (host != null) {
+                if (c.start() >= host.start() && c.end() <= host.end())
+                    continue; // already in the context
+                Candidate merged = coalesce(merge(host, c), passages);
+                int cost = tokens(merged.content()) - tokens(host.content());
+                for (Candidate p : passages) {
+                    if (p != host && p.noteId() == merged.noteId() && touches(p, merged))
+                        cost -= tokens(p.content()) + PASSAGE_OVERHEAD_TOKENS;
+                }
+                if (used + cost > tokenBudget)
+                    continue;
+                replace(passages, host, merged);
+                used += cost;
+            } else {
+                int cost = tokens(c.content()) + PASSAGE_OVERHEAD_TOKENS + tokens(c.title());
+                if (passages.size() >= maxPassages || used + cost > tokenBudget)
+                    continue;
+                passages.add(c);
+                used += cost;
+            }
+        }
+        return passages.stream()
+                .map(p -> new Passage(p.noteId(), p.title(), p.chunkIndex(), p.start(), p.end(), p.content()))
+                .toList();
+    }
+
+    private static boolean touches(Candidate a, Candidate b) {
+        return b.start() <= a.end() + ADJACENT_GAP && b.end() + ADJACENT_GAP >= a.start();
+    }
+
+    // Union of two touching ranges of the same note's text
+    private static Candidate merge(Candidate a, Candidate b) {
+        if (b.start() < a.start()) {
+            Candidate t = a;
+            a = b;
+            b = t;
+        }
+        String content;
+        if (b.end() <= a.end()) {
+            content = a.content();
+        } else if (b.start() >= a.end()) {
+            content = a.content() + (b.start() > a.end() ? " " : "") + b.content();
+        } else {
+            content = a.content() + b.content().substring(a.end() - b.start());
+        }
+        return new Candidate(a.noteId(), a.title(), Math.min(a.chunkIndex(), b.chunkIndex()), a.start(),
+                Math.max(a.end(), b.end()), content);
+    }
+
+    // A grown passage can reach other passages of the same note; absorb them
+    private static Candidate coalesce(Candidate merged, List<Candidate> passages) {
+        Candidate result = merged;
+        boolean grown = true;
+        while (grown) {
+            grown = false;
+            for (Candidate p : passages) {
+                if (p.noteId() == result.noteId() && touches(p, result)
+                        && (p.start() < result.start() || p.end() > result.end())) {
+                    result = merge(result, p);
+                    grown = true;
+                }
+            }
+        }
+        return result;
+    }
+
+    // Puts the merged passage in the host's slot and drops passages it absorbed
+    private static void replace(List<Candidate> passages, Candidate host, Candidate merged) {
+        int slot = passages.indexOf(host);
+        passages.set(slot, merged);
+        Iterator<Candidate> it = passages.iterator();
+        while (it.hasNext()) {
+            Candidate p = it.next();
+            if (p != merged && p.noteId() == merged.noteId() && p.start() >= merged.start()
+                    && p.end() <= merged.end())
+                it.remove();
+        }
+    }
+
+    private static int tokens(String text) {
+        return text == null ? 0 : (text.length() + 3) / 4;
+    }
+}
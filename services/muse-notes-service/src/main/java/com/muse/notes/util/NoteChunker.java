@@ -0,0 +1,71 @@
+package com.muse.notes.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits note text into overlapping chunks for passage retrieval. Cuts are
+ * moved back to the nearest paragraph, sentence or word break in the second
+ * half of the window, and every chunk after the first starts on a word, so
+ * chunks never split a word and an idea cut at one boundary appears whole in
+ * the neighbouring chunk.
+ */
+public final class NoteChunker {
+
+    public record Chunk(int index, int start, int end, String content) {
+    }
+
+    private NoteChunker() {
+    }
+
+    /**
+     * @param maxChars     upper bound on a chunk's length
+     * @param overlapChars how much of the previous chunk the next one repeats
+     */
+    public static List<Chunk> chunk(String text, int maxChars, int overlapChars) {
+        List<Chunk> chunks = new ArrayList<>();
+        if (text == null || text.isBlank())
+            return chunks;
+        int length = text.length();
+        int start = skipWhitespace(text, 0);
+        while (start < length) {
+            int end = Math.min(length, start + maxChars);
+            if (end < length)
+                end = breakBefore(text, start + maxChars / 2, end);
+            chunks.add(new Chunk(chunks.size(), start, end, text.substring(start, end)));
+            if (end >= length)
+                break;
+            int next = Math.max(end - overlapChars, start + 1);
+            // Start the next chunk on a word boundary inside the overlap
+            while (next < end && !Character.isWhitespace(text.charAt(next - 1)))
+                next++;
+            start = skipWhitespace(text, next);
+        }
+        return chunks;
+    }
+
+    // Best cut in [from, to): after a paragraph, then a sentence, then any space
+    private static int breakBefore(String text, int from, int to) {
+        int sentence = -1;
+        int space = -1;
+        for (int i = to - 1; i >= from; i--) {
+            char c = text.charAt(i);
+            if (c == '\n')
+                return i + 1;
+            if (sentence < 0 && Character.isWhitespace(c) && i > 0 && ".!?".indexOf(text.charAt(i - 1)) >= 0)
+                sentence = i + 1;
+            if (space < 0 && Character.isWhitespace(c))
+                space = i + 1;
+        }
+        if (sentence > 0)
+            return sentence;
+        return space > 0 ? space : to;
+    }
+
+    private static int skipWhitespace(String text, int from) {
+        int i = from;
+        while (i < text.length() && Character.isWhitespace(text.charAt(i)))
+            i++;
+        return i;
+    }
+}
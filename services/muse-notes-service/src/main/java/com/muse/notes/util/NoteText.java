@@ -0,0 +1,33 @@
+package com.muse.notes.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Plain text of a TipTap note body: text nodes joined by single spaces.
+ * Used for embeddings, excerpts, chunking and link parsing, which all need
+ * the same character offsets.
+ */
+public final class NoteText {
+
+    private NoteText() {
+    }
+
+    public static String of(JsonNode node) {
+        if (node == null) {
+            return "";
+        }
+        if (node.isTextual()) {
+            return node.asText();
+        }
+        if (node.isObject() && node.has("text")) {
+            return node.get("text").asText();
+        }
+        StringBuilder sb = new StringBuilder();
+        if (node.has("content")) {
+            for (JsonNode child : node.get("content")) {
+                sb.append(of(child)).append(" ");
+            }
+        }
+        return sb.toString().trim();
+    }
+}
@@ -0,0 +1,240 @@
+package com.muse.notes.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Converts between TipTap documents and plain Markdown for notebook
+ * import/export. Covers the block and mark types the editor produces; anything
+ * else degrades to its text.
+ */
+public final class TiptapMarkdown {
+
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    private TiptapMarkdown() {
+    }
+
+    // ==================== TipTap -> Markdown ====================
+
+    public static String toMarkdown(JsonNode doc) {
+        StringBuilder sb = new StringBuilder();
+        if (doc != null) {
+            blocks(doc.path("content"), "", sb);
+        }
+        return sb.toString().stripTrailing() + "\n";
+    }
+
+    private static void blocks(JsonNode content, String indent, StringBuilder sb) {
+        for (JsonNode block : content) {
+            block(block, indent, sb);
+        }
+    }
+
+    private static void block(JsonNode node, String indent, StringBuilder sb) {
+        switch (node.path("type").asText()) {
+            case "heading" -> {
+                int level = Math.max(1, Math.min(6, node.path("attrs").path("level").asInt(1)));
+                sb.append(indent).append("#".repeat(level)).append(' ').append(inline(node)).append("\n\n");
+            }
+            case "bulletList", "taskList" -> list(node, indent, false, sb);
+            case "orderedList" -> list(node, indent, true, sb);
+            case "codeBlock" -> {
+                String lang = node.path("attrs").path("language").asText("");
+                sb.append(indent).append("```").append(lang).append('\n')
+                        .append(plain(node)).append('\n')
+                        .append(indent).append("```\n\n");
+            }
+            case "blockquote" -> {
+                StringBuilder inner = new StringBuilder();
+                blocks(node.path("content"), "", inner);
+                for (String line : inner.toString().stripTrailing().split("\n", -1)) {
+                    sb.append(indent).append("> ").append(line).append('\n');
+                }
+                sb.append('\n');
+            }
+            case "horizontalRule" -> sb.append(indent).append("---\n\n");
+            default -> {
+                String text = inline(node);
+                if (!text.isEmpty()) {
+                    sb.append(indent).append(text).append("\n\n");
+                }
+            }
+        }
+    }
+
+    private static void list(JsonNode list, String indent, boolean ordered, StringBuilder sb) {
+        int index = list.path("attrs").path("start").asInt(1);
+        for (JsonNode item : list.path("content")) {
+            String marker = ordered ? (index++) + ". " : "- ";
+            if (item.path("type").asText().equals("taskItem")) {
+                marker += item.path("attrs").path("checked").asBoolean() ? "[x] " : "[ ] ";
+            }
+            boolean first = true;
+            for (JsonNode child : item.path("content")) {
+                String type = child.path("type").asText();
+                if (type.endsWith("List")) {
+                    list(child, indent + "  ", type.equals("orderedList"), sb);
+                    sb.setLength(sb.length() - 1);
+                } else {
+                    sb.append(indent).append(first ? marker : "  ").append(inline(child)).append('\n');
+                }
+                first = false;
+            }
+        }
+        sb.append('\n');
+    }
+
+    private static String inline(JsonNode node) {
+        StringBuilder sb = new StringBuilder();
+        for (JsonNode child : node.path("content")) {
+            String type = child.path("type").asText();
+            if (type.equals("hardBreak")) {
+                sb.append("  \n");
+            } else if (type.equals("image")) {
+                sb.append("![").append(child.path("attrs").path("alt").asText(""))
+                        .append("](").append(child.path("attrs").path("src").asText("")).append(')');
+            } else if (child.has("text")) {
+                sb.append(marked(child.get("text").asText(), child.path("marks")));
+            } else {
+                sb.append(inline(child));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String marked(String text, JsonNode marks) {
+        String out = text;
+        for (JsonNode mark : marks) {
+            switch (mark.path("type").asText()) {
+                case "bold" -> out = "**" + out + "**";
+                case "italic" -> out = "*" + out + "*";
+                case "strike" -> out = "~~" + out + "~~";
+                case "code" -> out = "`" + out + "`";
+                case "link" -> out = "[" + out + "](" + mark.path("attrs").path("href").asText("") + ")";
+                default -> {
+                }
+            }
+        }
+        return out;
+    }
+
+    private static String plain(JsonNode node) {
+        if (node.has("text"))
+            return node.get("text").asText();
+        StringBuilder sb = new StringBuilder();
+        for (JsonNode child : node.path("content")) {
+            sb.append(plain(child));
+        }
+        return sb.toString();
+    }
+
+    // ==================== Markdown -> TipTap ====================
+
+    /**
+     * Line-based conversion: headings, bullet/ordered items, fenced code,
+     * quotes and paragraphs. Inline markup is kept as literal text so
+     * [[wiki links]] survive for indexing.
+     */
+    public static ObjectNode fromMarkdown(String markdown) {
+        ObjectNode doc = NODES.objectNode().put("type", "doc");
+        ArrayNode content = doc.putArray("content");
+        String[] lines = markdown.replace("\r\n", "\n").split("\n", -1);
+
+        StringBuilder paragraph = new StringBuilder();
+        ArrayNode currentList = null;
+        String currentListType = null;
+
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            String trimmed = line.trim();
+
+            if (trimmed.startsWith("```")) {
+                flushParagraph(content, paragraph);
+                currentList = null;
+                StringBuilder code = new StringBuilder();
+                while (++i < lines.length && !lines[i].trim().startsWith("```")) {
+                    if (code.length() > 0)
+                        code.append('\n');
+                    code.append(lines[i]);
+                }
+                ObjectNode block = content.addObject().put("type", "codeBlock");
+                block.putObject("attrs").put("language", trimmed.substring(3).trim());
+                addText(block, code.toString());
+                continue;
+            }
+
+            if (trimmed.isEmpty()) {
+                flushParagraph(content, paragraph);
+                currentList = null;
+                continue;
+            }
+
+            int level = 0;
+            while (level < trimmed.length() && level < 6 && trimmed.charAt(level) == '#')
+                level++;
+            if (level > 0 && level < trimmed.length() && trimmed.charAt(level) == ' ') {
+                flushParagraph(content, paragraph);
+                currentList = null;
+                ObjectNode heading = content.addObject().put("type", "heading");
+                heading.putObject("attrs").put("level", level);
+                addText(heading, trimmed.substring(level + 1).trim());
+                continue;
+            }
+
+            String listType = null;
+            String itemText = null;
+            if (trimmed.startsWith("- ") || trimmed.startsWith("* ") || trimmed.startsWith("+ ")) {
+                listType = "bulletList";
+                itemText = trimmed.substring(2);
+            } else {
+                int dot = trimmed.indexOf(". ");
+                if (dot > 0 && trimmed.substring(0, dot).chars().allMatch(Character::isDigit)) {
+                    listType = "orderedList";
+                    itemText = trimmed.substring(dot + 2);
+                }
+            }
+            if (listType != null) {
+                flushParagraph(content, paragraph);
+                if (currentList == null || !listType.equals(currentListType)) {
+                    currentList = content.addObject().put("type", listType).putArray("content");
+                    currentListType = listType;
+                }
+                ObjectNode item = currentList.addObject().put("type", "listItem");
+                addText(item.putArray("content").addObject().put("type", "paragraph"), itemText);
+                continue;
+            }
+
+            if (trimmed.startsWith(">")) {
+                flushParagraph(content, paragraph);
+                currentList = null;
+                ObjectNode quote = content.addObject().put("type", "blockquote");
+                addText(quote.putArray("content").addObject().put("type", "paragraph"),
+                        trimmed.substring(1).trim());
+                continue;
+            }
+
+            currentList = null;
+            if (paragraph.length() > 0)
+                paragraph.append(' ');
+            paragraph.append(trimmed);
+        }
+        flushParagraph(content, paragraph);
+        return doc;
+    }
+
+    private static void flushParagraph(ArrayNode content, StringBuilder paragraph) {
+        if (paragraph.length() == 0)
+            return;
+        addText(content.addObject().put("type", "paragraph"), paragraph.toString());
+        paragraph.setLength(0);
+    }
+
+    private static void addText(ObjectNode block, String text) {
+        if (text.isEmpty())
+            return;
+        block.putArray("content").addObject().put("type", "text").put("text", text);
+    }
+}
@@ -0,0 +1,29 @@
+-- V38__create_note_wiki_links_table.sql
+-- Persisted wiki-link index: one row per distinct [[Title]] a note links to.
+-- Resolution goes through the (user_id, lower(title)) index on notes, so renames
+-- and broken-link checks no longer need to scan every note's content.
+
+CREATE TABLE IF NOT EXISTS note_wiki_links (
+    source_note_id BIGINT NOT NULL,
+    target_key VARCHAR(512) NOT NULL,
+    user_id BIGINT NOT NULL,
+    target_title VARCHAR(512) NOT NULL,
+    PRIMARY KEY (source_note_id, target_key),
+    CONSTRAINT fk_note_wiki_links_source FOREIGN KEY (source_note_id) REFERENCES notes(id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_note_wiki_links_user_target ON note_wiki_links (user_id, target_key);
+
+-- title -> note id map per user (live notes only)
+CREATE INDEX IF NOT EXISTS idx_notes_user_lower_title ON notes (user_id, lower(title)) WHERE deleted_at IS NULL;
+
+-- Backfill from existing note content
+INSERT INTO note_wiki_links (source_note_id, target_key, user_id, target_title)
+SELECT DISTINCT ON (n.id, lower(left(btrim(m[1]), 512)))
+       n.id, lower(left(btrim(m[1]), 512)), n.user_id, left(btrim(m[1]), 512)
+FROM notes n
+CROSS JOIN LATERAL regexp_matches(n.content::text, '\[\[([^]|]*)(\|[^]]*)?\]\]', 'g') AS m
+WHERE n.user_id IS NOT NULL
+  AND n.content IS NOT NULL
+  AND btrim(m[1]) <> ''
+ON CONFLICT DO NOTHING;
@@ -0,0 +1,22 @@
+-- V39__add_note_list_indexes_and_excerpts.sql
+-- Supports lean note listings: keyset pagination on (order_index, id) and a
+-- stored plain-text excerpt so list endpoints never read the content JSONB.
+
+-- Keyset predicates on order_index never match NULL, so a note without one
+-- would never appear past the first page; V4 added the column as nullable.
+UPDATE notes SET order_index = 0 WHERE order_index IS NULL;
+ALTER TABLE notes ALTER COLUMN order_index SET DEFAULT 0;
+ALTER TABLE notes ALTER COLUMN order_index SET NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_notes_user_order_live ON notes (user_id, order_index, id) WHERE deleted_at IS NULL;
+CREATE INDEX IF NOT EXISTS idx_notes_section_order_live ON notes (section_id, order_index, id) WHERE deleted_at IS NULL;
+
+-- Backfill excerpts from TipTap text nodes (or plain string content)
+UPDATE notes
+SET excerpt = left(btrim(regexp_replace(
+        CASE jsonb_typeof(content)
+            WHEN 'string' THEN content #>> '{}'
+            ELSE (SELECT string_agg(t #>> '{}', ' ') FROM jsonb_path_query(content, 'strict $.**.text') AS t)
+        END, '\s+', ' ', 'g')), 300)
+WHERE excerpt IS NULL
+  AND content IS NOT NULL;
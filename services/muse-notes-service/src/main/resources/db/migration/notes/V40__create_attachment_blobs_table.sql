@@ -0,0 +1,12 @@
+-- V40__create_attachment_blobs_table.sql
+-- Content-addressed attachment storage: one row per distinct blob (SHA-256),
+-- reference-counted by the attachments that point at it.
+-- attachments.storage_filename holds the SHA-256 for new uploads; older rows
+-- keep their random file names and are served as before.
+
+CREATE TABLE IF NOT EXISTS attachment_blobs (
+    sha256 CHAR(64) PRIMARY KEY,
+    size BIGINT NOT NULL,
+    ref_count INTEGER NOT NULL DEFAULT 0,
+    created_at TIMESTAMP WITHOUT TIME ZONE NOT NULL DEFAULT now()
+);
@@ -0,0 +1,13 @@
+-- V41__add_journal_audio_transcription_jobs.sql
+-- Journal audio is transcribed in the background after upload; each upload
+-- carries a job id and chunk progress so clients can poll or follow along
+-- over WebSocket.
+
+ALTER TABLE journal_audio ADD COLUMN IF NOT EXISTS content_type VARCHAR(100);
+ALTER TABLE journal_audio ADD COLUMN IF NOT EXISTS transcription_job_id UUID;
+ALTER TABLE journal_audio ADD COLUMN IF NOT EXISTS transcription_status VARCHAR(20);
+ALTER TABLE journal_audio ADD COLUMN IF NOT EXISTS chunks_total INTEGER;
+ALTER TABLE journal_audio ADD COLUMN IF NOT EXISTS chunks_completed INTEGER;
+
+CREATE UNIQUE INDEX IF NOT EXISTS idx_journal_audio_transcription_job
+    ON journal_audio (transcription_job_id);
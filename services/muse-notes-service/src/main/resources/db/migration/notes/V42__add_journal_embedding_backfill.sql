@@ -0,0 +1,24 @@
+-- V42__add_journal_embedding_backfill.sql
+-- Journal entries are embedded after each save; a background backfill covers
+-- entries saved before that (or whose embedding call failed).
+
+-- Resumable background jobs record how far they got; the lease keeps a second
+-- instance from running the same backfill concurrently.
+CREATE TABLE IF NOT EXISTS backfill_checkpoints (
+    name VARCHAR(100) PRIMARY KEY,
+    last_id BIGINT NOT NULL DEFAULT 0,
+    processed BIGINT NOT NULL DEFAULT 0,
+    lease_until TIMESTAMP WITHOUT TIME ZONE,
+    completed_at TIMESTAMP WITHOUT TIME ZONE,
+    updated_at TIMESTAMP WITHOUT TIME ZONE NOT NULL DEFAULT now()
+);
+
+-- Backfill scan: only entries still waiting for an embedding
+CREATE INDEX IF NOT EXISTS idx_journal_entries_unembedded
+    ON journal_entries (id)
+    WHERE embedding IS NULL AND deleted_at IS NULL;
+
+-- Semantic search narrows to one user's date range before ranking by distance
+CREATE INDEX IF NOT EXISTS idx_journal_entries_embedded_user_date
+    ON journal_entries (user_id, entry_date)
+    WHERE embedding IS NOT NULL AND deleted_at IS NULL;
@@ -0,0 +1,19 @@
+-- V43__create_journal_summaries_table.sql
+-- Cached LLM summaries for journal insights. WEEK rows summarize one
+-- calendar week (clipped to the requested range at its edges); RANGE rows hold
+-- the reduced insight for a whole range. A row is reused while its
+-- fingerprint (entry count + latest update of the covered entries) matches.
+
+CREATE TABLE IF NOT EXISTS journal_summaries (
+    id BIGSERIAL PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    kind VARCHAR(10) NOT NULL,
+    period_start DATE NOT NULL,
+    period_end DATE NOT NULL,
+    fingerprint VARCHAR(128) NOT NULL,
+    entry_count INTEGER NOT NULL DEFAULT 0,
+    word_count INTEGER NOT NULL DEFAULT 0,
+    summary TEXT NOT NULL,
+    created_at TIMESTAMP WITHOUT TIME ZONE NOT NULL DEFAULT now(),
+    CONSTRAINT uq_journal_summaries_period UNIQUE (user_id, kind, period_start, period_end)
+);
@@ -0,0 +1,32 @@
+-- V44__create_note_chunks.sql
+-- "Ask my notes" retrieves passages rather than whole notes: each note's text
+-- is split into overlapping chunks, each with its own embedding and tsvector.
+-- No IF NOT EXISTS: the AI service owns a note_embeddings table in the same
+-- database, and a name collision here must fail rather than be skipped.
+
+CREATE TABLE note_chunks (
+    id BIGSERIAL PRIMARY KEY,
+    note_id BIGINT NOT NULL REFERENCES notes(id) ON DELETE CASCADE,
+    user_id BIGINT NOT NULL,
+    chunk_index INT NOT NULL,
+    -- Character range of the chunk in the note's extracted text
+    start_offset INT NOT NULL,
+    end_offset INT NOT NULL,
+    content TEXT NOT NULL,
+    -- Lets a re-index reuse the embedding of chunks whose text did not change
+    content_hash VARCHAR(64) NOT NULL,
+    -- Chunk length in words, the document length for BM25
+    token_count INT NOT NULL,
+    content_tsv TSVECTOR GENERATED ALWAYS AS (to_tsvector('english', content)) STORED,
+    embedding vector(768),
+    created_at TIMESTAMP WITHOUT TIME ZONE NOT NULL DEFAULT now(),
+    UNIQUE (note_id, chunk_index)
+);
+
+CREATE INDEX idx_note_chunks_user ON note_chunks (user_id);
+
+CREATE INDEX idx_note_chunks_tsv ON note_chunks USING GIN (content_tsv);
+
+-- HNSW needs no training data, so it is usable while the table is still filling
+CREATE INDEX idx_note_chunks_vector
+    ON note_chunks USING hnsw (embedding vector_cosine_ops);
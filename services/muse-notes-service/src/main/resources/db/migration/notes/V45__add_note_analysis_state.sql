@@ -0,0 +1,15 @@
+-- V45__add_note_analysis_state.sql
+-- Note analysis (embedding, semantic links, suggestions) runs as one batched
+-- background pipeline.
+
+-- SHA-256 of the text the stored embedding was computed from; a save whose
+-- text hashes the same is not re-embedded
+ALTER TABLE notes ADD COLUMN IF NOT EXISTS embedding_hash VARCHAR(64);
+
+-- Set when a neighbour's embedding changed, so this note's links and
+-- suggestions are recomputed by the periodic refresh
+ALTER TABLE notes ADD COLUMN IF NOT EXISTS links_stale_at TIMESTAMP WITHOUT TIME ZONE;
+
+CREATE INDEX IF NOT EXISTS idx_notes_links_stale
+    ON notes (links_stale_at)
+    WHERE links_stale_at IS NOT NULL AND deleted_at IS NULL;
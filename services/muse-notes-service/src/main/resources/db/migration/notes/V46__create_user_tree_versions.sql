@@ -0,0 +1,9 @@
+-- V46__create_user_tree_versions.sql
+-- One counter per user, bumped in the same transaction as any change to the
+-- notebook/section/note-title tree. The sidebar revalidates its cached tree
+-- against it with If-None-Match.
+CREATE TABLE IF NOT EXISTS user_tree_versions (
+    user_id BIGINT PRIMARY KEY,
+    version BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP WITHOUT TIME ZONE NOT NULL DEFAULT now()
+);
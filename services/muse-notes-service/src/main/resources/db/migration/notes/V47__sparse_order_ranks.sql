@@ -0,0 +1,18 @@
+-- Spreads order_index into sparse ranks (steps of 1024 within each list) so a
+-- single move can take the midpoint between its new neighbours and write only
+-- its own row. Ties are broken by id, matching how lists are read.
+
+UPDATE notes n SET order_index = r.rn * 1024
+FROM (SELECT id, row_number() OVER (PARTITION BY section_id ORDER BY order_index, id) AS rn FROM notes) r
+WHERE n.id = r.id;
+
+UPDATE sections s SET order_index = r.rn * 1024
+FROM (SELECT id, row_number() OVER (PARTITION BY notebook_id, parent_id ORDER BY order_index, id) AS rn
+      FROM sections) r
+WHERE s.id = r.id;
+
+UPDATE notebooks nb SET order_index = r.rn * 1024
+FROM (SELECT id, row_number() OVER (PARTITION BY user_id ORDER BY order_index, id) AS rn FROM notebooks) r
+WHERE nb.id = r.id;
+
+CREATE INDEX IF NOT EXISTS idx_sections_parent_order ON sections (notebook_id, parent_id, order_index);
@@ -0,0 +1,33 @@
+-- Calendar window queries use an interval index; recurring series are found by
+-- their first start and last end, then expanded in the service. Every write
+-- stamps the row with the user's next sync version, and deletes leave a
+-- tombstone, so clients can fetch only what changed since their last token.
+
+CREATE EXTENSION IF NOT EXISTS btree_gist;
+
+ALTER TABLE calendar_events
+    ADD COLUMN time_range tstzrange GENERATED ALWAYS AS (
+        CASE WHEN start_time IS NULL THEN NULL
+             ELSE tstzrange(start_time, GREATEST(COALESCE(end_time, start_time), start_time), '[]')
+        END) STORED,
+    ADD COLUMN recurrence_until TIMESTAMP WITH TIME ZONE,
+    ADD COLUMN change_seq BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN deleted_at TIMESTAMP WITH TIME ZONE;
+
+-- One-off events: overlap queries on (user, range)
+CREATE INDEX idx_calendar_events_user_range ON calendar_events USING gist (user_id, time_range)
+    WHERE recurrence_rule IS NULL AND deleted_at IS NULL;
+
+-- Recurring series: few per user, filtered on their bounds
+CREATE INDEX idx_calendar_events_user_series ON calendar_events (user_id, start_time)
+    WHERE recurrence_rule IS NOT NULL AND deleted_at IS NULL;
+
+CREATE INDEX idx_calendar_events_user_change ON calendar_events (user_id, change_seq);
+
+-- version: last change handed out; min_token: tokens below it predate purged tombstones
+CREATE TABLE calendar_sync_versions (
+    user_id VARCHAR(255) PRIMARY KEY,
+    version BIGINT NOT NULL DEFAULT 0,
+    min_token BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW()
+);
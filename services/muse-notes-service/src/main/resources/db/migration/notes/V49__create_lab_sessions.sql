@@ -0,0 +1,34 @@
+-- Lab saves: each client session appends lightweight snapshots and becomes a
+-- note once, when it is finished. lab_autopaths maps a user's lab path
+-- (notebook title, section title) to the notebook and section it resolved
+-- to; the upsert on its key serialises concurrent find-or-create.
+
+CREATE TABLE IF NOT EXISTS lab_autopaths (
+    user_id BIGINT NOT NULL,
+    notebook_title VARCHAR(255) NOT NULL,
+    section_title VARCHAR(255) NOT NULL,
+    notebook_id BIGINT REFERENCES notebooks(id) ON DELETE SET NULL,
+    section_id BIGINT REFERENCES sections(id) ON DELETE SET NULL,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (user_id, notebook_title, section_title)
+);
+
+CREATE TABLE IF NOT EXISTS lab_sessions (
+    id BIGSERIAL PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    client_session_id VARCHAR(100) NOT NULL,
+    note_id BIGINT REFERENCES notes(id) ON DELETE SET NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    finished_at TIMESTAMP WITH TIME ZONE,
+    CONSTRAINT uq_lab_sessions_client UNIQUE (user_id, client_session_id)
+);
+
+-- Append-only; a retried snapshot with the same seq is stored once
+CREATE TABLE IF NOT EXISTS lab_snapshots (
+    session_id BIGINT NOT NULL REFERENCES lab_sessions(id) ON DELETE CASCADE,
+    seq INTEGER NOT NULL,
+    payload JSONB NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (session_id, seq)
+);
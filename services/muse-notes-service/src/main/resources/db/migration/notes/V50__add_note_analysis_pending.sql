@@ -0,0 +1,12 @@
+-- V50__add_note_analysis_pending.sql
+-- The note analysis queue lives on the row, so queued notes survive a
+-- restart and a failed batch is retried.
+
+-- Set by a save in its own transaction. A flush claims due rows by moving the
+-- value forward by a lease and clears it when the analysis succeeds; a row
+-- whose lease ran out (crash mid-batch) is due again.
+ALTER TABLE notes ADD COLUMN IF NOT EXISTS analysis_pending_at TIMESTAMP WITHOUT TIME ZONE;
+
+CREATE INDEX IF NOT EXISTS idx_notes_analysis_pending
+    ON notes (analysis_pending_at)
+    WHERE analysis_pending_at IS NOT NULL AND deleted_at IS NULL;
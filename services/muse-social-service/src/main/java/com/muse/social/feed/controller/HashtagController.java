@@ -1,6 +1,7 @@
 package com.muse.social.feed.controller;
 
 import com.muse.social.feed.repository.UserInterestDNARepository;
+import com.muse.social.feed.service.TrendingService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -17,16 +18,24 @@ import java.util.Map;
 public class HashtagController {
 
     private final UserInterestDNARepository interestDNARepository;
+    private final TrendingService trendingService;
 
     /**
-     * GET /api/hashtags/trending - Get trending hashtags
+     * GET /api/hashtags/trending - Get trending hashtags. The count is the
+     * time-decayed engagement weight of the hashtag's posts.
      */
     @GetMapping("/trending")
     public ResponseEntity<List<Map<String, Object>>> getTrendingHashtags(
             @RequestParam(defaultValue = "20") int limit) {
 
-        // For now, return top hashtags by interest
-        // In production, would use TrendingHashtag table
+        List<Map<String, Object>> ranked = trendingService.topHashtags(limit).entrySet().stream()
+                .map(e -> Map.<String, Object>of("hashtag", e.getKey(), "count", Math.round(e.getValue())))
+                .toList();
+        if (!ranked.isEmpty()) {
+            return ResponseEntity.ok(ranked);
+        }
+
+        // Nothing has trended yet
         List<Map<String, Object>> trending = List.of(
                 Map.of("hashtag", "physics", "count", 1234),
                 Map.of("hashtag", "mathematics", "count", 1100),
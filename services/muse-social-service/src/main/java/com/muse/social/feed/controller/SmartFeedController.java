@@ -11,8 +11,10 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Main Feed Controller - NeuroFeed Algorithm
@@ -23,74 +25,79 @@ import java.util.Map;
 @Slf4j
 public class SmartFeedController {
 
-        private final NeuroFeedEngine neuroFeedEngine;
+        private final FeedSessionService feedSessionService;
         private final EngagementTracker engagementTracker;
         private final PostRepository postRepository;
         private final SavedPostRepository savedPostRepository;
         private final UserFollowRepository followRepository;
+        private final FeedCandidateService candidateService;
+        private final TimelineService timelineService;
+        private final TrendingService trendingService;
+        private final ReactionService reactionService;
+        private final PostCounterService counterService;
 
         /**
-         * GET /api/feed - Get personalized feed (NeuroFeed algorithm)
+         * GET /api/feed - Get personalized feed (NeuroFeed algorithm).
+         * The X-Next-Cursor response header holds the cursor for the next
+         * page; it is absent on the last page.
          */
         @GetMapping
         public ResponseEntity<List<FeedPostDTO>> getFeed(
                         @AuthenticationPrincipal Jwt jwt,
                         @RequestParam(defaultValue = "20") int limit,
-                        @RequestParam(defaultValue = "0") int offset) {
+                        @RequestParam(defaultValue = "0") int offset,
+                        @RequestParam(required = false) String cursor) {
 
                 String userId = getUserId(jwt);
-                List<Post> posts = neuroFeedEngine.generateFeed(userId, limit, offset);
+                FeedSessionService.FeedPage page = feedSessionService.page(userId, cursor, offset, limit);
 
-                List<FeedPostDTO> feed = posts.stream()
-                                .map(post -> enrichPost(post, userId))
-                                .toList();
+                List<FeedPostDTO> feed = enrichPosts(page.posts(), userId);
 
-                return ResponseEntity.ok(feed);
+                ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                if (page.nextCursor() != null) {
+                        response.header("X-Next-Cursor", page.nextCursor());
+                }
+                return response.body(feed);
         }
 
         /**
-         * GET /api/feed/trending - Get trending posts
+         * GET /api/feed/trending - Get trending posts, optionally within a
+         * hashtag or an institution
          */
         @GetMapping("/trending")
         public ResponseEntity<List<FeedPostDTO>> getTrending(
                         @AuthenticationPrincipal Jwt jwt,
-                        @RequestParam(defaultValue = "20") int limit) {
+                        @RequestParam(defaultValue = "20") int limit,
+                        @RequestParam(required = false) String hashtag,
+                        @RequestParam(required = false) String institution) {
 
                 String userId = getUserId(jwt);
-                List<Post> posts = postRepository.findAll().stream()
-                                .sorted((a, b) -> Double.compare(
-                                                b.getTrendingScore() != null ? b.getTrendingScore() : 0,
-                                                a.getTrendingScore() != null ? a.getTrendingScore() : 0))
-                                .limit(limit)
-                                .toList();
+                List<Long> ids = hashtag != null ? trendingService.topByHashtag(hashtag, limit)
+                                : institution != null ? trendingService.topByInstitution(institution, limit)
+                                                : candidateService.trending(limit);
+                List<Post> posts = candidateService.load(ids);
 
-                List<FeedPostDTO> feed = posts.stream()
-                                .map(post -> enrichPost(post, userId))
-                                .toList();
+                List<FeedPostDTO> feed = enrichPosts(posts, userId);
 
                 return ResponseEntity.ok(feed);
         }
 
         /**
-         * GET /api/feed/following - Posts from people you follow
+         * GET /api/feed/following - Posts from people you follow, newest first.
+         * Pass the last post id as ?before= for the next page.
          */
         @GetMapping("/following")
         public ResponseEntity<List<FeedPostDTO>> getFollowingFeed(
                         @AuthenticationPrincipal Jwt jwt,
-                        @RequestParam(defaultValue = "20") int limit) {
+                        @RequestParam(defaultValue = "20") int limit,
+                        @RequestParam(required = false) Long before) {
 
                 String userId = getUserId(jwt);
                 List<String> followingIds = followRepository.findFollowingIds(userId);
 
-                List<Post> posts = postRepository.findAll().stream()
-                                .filter(p -> followingIds.contains(String.valueOf(p.getUserId())))
-                                .sorted((a, b) -> b.getCreatedAt().compareTo(a.getCreatedAt()))
-                                .limit(limit)
-                                .toList();
+                List<Post> posts = candidateService.load(timelineService.page(userId, followingIds, before, limit));
 
-                List<FeedPostDTO> feed = posts.stream()
-                                .map(post -> enrichPost(post, userId))
-                                .toList();
+                List<FeedPostDTO> feed = enrichPosts(posts, userId);
 
                 return ResponseEntity.ok(feed);
         }
@@ -105,15 +112,9 @@ public class SmartFeedController {
                         @RequestParam(defaultValue = "20") int limit) {
 
                 String userId = getUserId(jwt);
-                List<Post> posts = postRepository.findAll().stream()
-                                .filter(p -> p.getHashtags() != null && p.getHashtags().contains(tag))
-                                .sorted((a, b) -> b.getCreatedAt().compareTo(a.getCreatedAt()))
-                                .limit(limit)
-                                .toList();
+                List<Post> posts = candidateService.load(candidateService.byHashtag(tag, limit));
 
-                List<FeedPostDTO> feed = posts.stream()
-                                .map(post -> enrichPost(post, userId))
-                                .toList();
+                List<FeedPostDTO> feed = enrichPosts(posts, userId);
 
                 return ResponseEntity.ok(feed);
         }
@@ -131,11 +132,8 @@ public class SmartFeedController {
                                 ? savedPostRepository.findByUserIdAndCollectionName(userId, collection)
                                 : savedPostRepository.findByUserId(userId);
 
-                List<FeedPostDTO> feed = saved.stream()
-                                .map(s -> postRepository.findById(s.getPostId()).orElse(null))
-                                .filter(p -> p != null)
-                                .map(post -> enrichPost(post, userId))
-                                .toList();
+                List<Post> posts = candidateService.load(saved.stream().map(SavedPost::getPostId).toList());
+                List<FeedPostDTO> feed = enrichPosts(posts, userId);
 
                 return ResponseEntity.ok(feed);
         }
@@ -166,13 +164,16 @@ public class SmartFeedController {
                                 .build();
 
                 post = postRepository.save(post);
+                candidateService.onPostCreated(post);
+                timelineService.onPostCreated(post);
                 log.info("Created post {} by user {}", post.getId(), userId);
 
                 return ResponseEntity.ok(FeedPostDTO.fromEntity(post));
         }
 
         /**
-         * POST /api/feed/posts/{id}/engage - Track engagement (invisible)
+         * POST /api/feed/posts/{id}/engage - Track engagement (invisible).
+         * Events are queued and applied within a second.
          */
         @PostMapping("/posts/{postId}/engage")
         public ResponseEntity<Map<String, String>> trackEngagement(
@@ -181,14 +182,14 @@ public class SmartFeedController {
                         @RequestBody EngagementRequest request) {
 
                 String userId = getUserId(jwt);
-                engagementTracker.trackEngagement(
+                boolean queued = engagementTracker.trackEngagement(
                                 userId,
                                 postId,
                                 request.getEventType(),
                                 request.getTimeSpentSeconds(),
                                 request.getScrollDepth());
 
-                return ResponseEntity.ok(Map.of("status", "tracked"));
+                return ResponseEntity.accepted().body(Map.of("status", queued ? "accepted" : "dropped"));
         }
 
         /**
@@ -200,13 +201,16 @@ public class SmartFeedController {
                         @PathVariable Long postId) {
 
                 String userId = getUserId(jwt);
-                engagementTracker.trackEngagement(userId, postId, EngagementEvent.EventType.LIKE, null, null);
-
                 return postRepository.findById(postId)
                                 .map(post -> {
+                                        Long reactingUser = parseUserId(userId);
+                                        if (reactingUser != null && reactionService.likePost(reactingUser, postId)) {
+                                                engagementTracker.trackEngagement(userId, postId,
+                                                                EngagementEvent.EventType.LIKE, null, null);
+                                        }
                                         java.util.HashMap<String, Object> result = new java.util.HashMap<>();
                                         result.put("liked", true);
-                                        result.put("likeCount", post.getLikeCount());
+                                        result.put("likeCount", counterService.current(post, PostCounterService.Counter.LIKES));
                                         return ResponseEntity.ok(result);
                                 })
                                 .orElse(ResponseEntity.notFound().build());
@@ -221,13 +225,16 @@ public class SmartFeedController {
                         @PathVariable Long postId) {
 
                 String userId = getUserId(jwt);
-                engagementTracker.trackEngagement(userId, postId, EngagementEvent.EventType.UNLIKE, null, null);
-
                 return postRepository.findById(postId)
                                 .map(post -> {
+                                        Long reactingUser = parseUserId(userId);
+                                        if (reactingUser != null && reactionService.unlikePost(reactingUser, postId)) {
+                                                engagementTracker.trackEngagement(userId, postId,
+                                                                EngagementEvent.EventType.UNLIKE, null, null);
+                                        }
                                         java.util.HashMap<String, Object> result = new java.util.HashMap<>();
                                         result.put("liked", false);
-                                        result.put("likeCount", post.getLikeCount());
+                                        result.put("likeCount", counterService.current(post, PostCounterService.Counter.LIKES));
                                         return ResponseEntity.ok(result);
                                 })
                                 .orElse(ResponseEntity.notFound().build());
@@ -251,6 +258,7 @@ public class SmartFeedController {
                                         .collectionName(collection)
                                         .build();
                         savedPostRepository.save(saved);
+                        counterService.increment(postId, PostCounterService.Counter.SAVES, 1);
                         engagementTracker.trackEngagement(userId, postId, EngagementEvent.EventType.SAVE, null, null);
                 }
 
@@ -266,8 +274,10 @@ public class SmartFeedController {
                         @PathVariable Long postId) {
 
                 String userId = getUserId(jwt);
-                savedPostRepository.deleteByUserIdAndPostId(userId, postId);
-                engagementTracker.trackEngagement(userId, postId, EngagementEvent.EventType.UNSAVE, null, null);
+                if (savedPostRepository.deleteByUserIdAndPostId(userId, postId) > 0) {
+                        counterService.increment(postId, PostCounterService.Counter.SAVES, -1);
+                        engagementTracker.trackEngagement(userId, postId, EngagementEvent.EventType.UNSAVE, null, null);
+                }
 
                 return ResponseEntity.ok(Map.of("saved", false));
         }
@@ -278,14 +288,29 @@ public class SmartFeedController {
                 return jwt != null ? jwt.getSubject() : "anonymous";
         }
 
-        private FeedPostDTO enrichPost(Post post, String userId) {
-                FeedPostDTO dto = FeedPostDTO.fromEntity(post);
-
-                // Add user-specific state
-                dto.setIsSaved(savedPostRepository.existsByUserIdAndPostId(userId, post.getId()));
-                dto.setIsFollowingAuthor(followRepository.existsByFollowerIdAndFollowingId(
-                                userId, String.valueOf(post.getUserId())));
+        // Reactions are keyed by numeric user id; null for anonymous users
+        private static Long parseUserId(String userId) {
+                try {
+                        return Long.parseLong(userId);
+                } catch (NumberFormatException e) {
+                        return null;
+                }
+        }
 
-                return dto;
+        // User-specific state for a whole page in two queries
+        private List<FeedPostDTO> enrichPosts(List<Post> posts, String userId) {
+                if (posts.isEmpty()) {
+                        return List.of();
+                }
+                Set<Long> saved = new HashSet<>(savedPostRepository.findSavedPostIds(
+                                userId, posts.stream().map(Post::getId).toList()));
+                Set<String> following = new HashSet<>(followRepository.findFollowingIds(userId));
+
+                return posts.stream().map(post -> {
+                        FeedPostDTO dto = FeedPostDTO.fromEntity(post);
+                        dto.setIsSaved(saved.contains(post.getId()));
+                        dto.setIsFollowingAuthor(following.contains(String.valueOf(post.getUserId())));
+                        return dto;
+                }).toList();
         }
 }
@@ -117,6 +117,10 @@ public class Post {
     @Column(columnDefinition = "TEXT")
     private String sourceUrl;
 
+    // SimHash of ingested title and description, for near-duplicate detection
+    @Column(name = "content_fingerprint")
+    private Long contentFingerprint;
+
     @ElementCollection(fetch = FetchType.EAGER)
     @CollectionTable(name = "post_media", joinColumns = @JoinColumn(name = "post_id"))
     @Column(name = "media_url")
@@ -46,6 +46,20 @@ public class RssFeedSource {
     @Column(name = "fetch_error_count")
     private int fetchErrorCount = 0;
 
+    // Validators of the last 200 response, sent back as a conditional GET
+    @Column(length = 500)
+    private String etag;
+
+    @Column(name = "last_modified", length = 100)
+    private String lastModified;
+
+    // Adaptive schedule: shorter while the feed keeps publishing, longer while it is quiet
+    @Column(name = "fetch_interval_minutes")
+    private Integer fetchIntervalMinutes;
+
+    @Column(name = "next_fetch_at")
+    private Instant nextFetchAt;
+
     @PrePersist
     void onCreate() {
         Instant now = Instant.now();
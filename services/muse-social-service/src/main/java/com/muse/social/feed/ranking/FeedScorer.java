@@ -0,0 +1,284 @@
+package com.muse.social.feed.ranking;
+
+import com.muse.social.feed.entity.Post;
+import com.muse.social.feed.entity.UserInterestDNA;
+import com.muse.social.feed.service.NeuroFeedEngine.SessionMode;
+
+import java.util.List;
+
+/**
+ * THE CORE FORMULA - NeuroFeed score over columnar candidate features:
+ *
+ * relevance * 0.30 + quality * 0.25 + levelMatch * 0.20 + freshness * 0.15 + cognitiveBonus * 0.10
+ *
+ * Level match, cognitive bonus and freshness are table lookups, relevance
+ * and level match share one pass over the post's hashtag ids, and top-k
+ * selection keeps a k-sized heap instead of sorting every candidate.
+ */
+public final class FeedScorer {
+
+    // Algorithm weights
+    private static final float RELEVANCE_WEIGHT = 0.30f;
+    private static final float QUALITY_WEIGHT = 0.25f;
+    private static final float LEVEL_MATCH_WEIGHT = 0.20f;
+    private static final float FRESHNESS_WEIGHT = 0.15f;
+    private static final float COGNITIVE_WEIGHT = 0.10f;
+
+    // Freshness decays ~0.95 after 1 hour, ~0.6 after 10 hours, ~0.13 after 40 hours; zero past the table
+    private static final int FRESHNESS_HOURS = 1024;
+    private static final float[] FRESHNESS = new float[FRESHNESS_HOURS];
+
+    // [LearningLevel][DifficultyLevel]
+    private static final float[][] LEVEL_MATCH = new float[UserInterestDNA.LearningLevel.values().length][Post.DifficultyLevel
+            .values().length];
+
+    // [SessionMode][ContentType]
+    private static final float[][] COGNITIVE = new float[SessionMode.values().length][Post.ContentType.values().length];
+
+    static {
+        for (int h = 0; h < FRESHNESS_HOURS; h++) {
+            FRESHNESS[h] = (float) Math.exp(-0.05 * h);
+        }
+        for (UserInterestDNA.LearningLevel level : UserInterestDNA.LearningLevel.values()) {
+            for (Post.DifficultyLevel difficulty : Post.DifficultyLevel.values()) {
+                LEVEL_MATCH[level.ordinal()][difficulty.ordinal()] = levelMatch(level.name(), difficulty.name());
+            }
+        }
+        for (SessionMode mode : SessionMode.values()) {
+            for (Post.ContentType type : Post.ContentType.values()) {
+                COGNITIVE[mode.ordinal()][type.ordinal()] = cognitiveBonus(mode, type);
+            }
+        }
+    }
+
+    private FeedScorer() {
+    }
+
+    /** Candidate features laid out as columns. */
+    public static final class Batch {
+        final int size;
+        final float[] quality;
+        final long[] created;
+        final int[][] tags;
+        final int[] difficulty;
+        final int[] contentType;
+
+        private Batch(int size) {
+            this.size = size;
+            this.quality = new float[size];
+            this.created = new long[size];
+            this.tags = new int[size][];
+            this.difficulty = new int[size];
+            this.contentType = new int[size];
+        }
+
+        public static Batch of(List<PostFeatures> features) {
+            Batch batch = new Batch(features.size());
+            for (int i = 0; i < batch.size; i++) {
+                PostFeatures f = features.get(i);
+                batch.quality[i] = f.quality();
+                batch.created[i] = f.createdEpochSecond();
+                batch.tags[i] = f.tagIds();
+                batch.difficulty[i] = f.difficulty();
+                batch.contentType[i] = f.contentType();
+            }
+            return batch;
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+
+    /** Scores every candidate in the batch. */
+    public static float[] score(Batch batch, UserDnaVector dna, SessionMode mode, long nowEpochSecond) {
+        float[] cognitive = COGNITIVE[mode.ordinal()];
+        float[] scores = new float[batch.size];
+        for (int i = 0; i < batch.size; i++) {
+            int[] tags = batch.tags[i];
+
+            // Relevance and the strongest matching interest in one pass
+            float relevance;
+            int best = -1;
+            if (tags.length == 0) {
+                relevance = 0.3f; // Baseline for posts without hashtags
+            } else {
+                float matched = 0f;
+                for (int tag : tags) {
+                    int rank = dna.rank(tag);
+                    if (rank >= 0) {
+                        matched += dna.weight[rank];
+                        if (best < 0 || rank < best) {
+                            best = rank;
+                        }
+                    }
+                }
+                relevance = dna.total > 0f ? Math.min(matched / dna.total, 1f) : 0.3f;
+            }
+
+            int difficulty = batch.difficulty[i];
+            float levelMatch = difficulty < 0 || best < 0 ? 0.5f : LEVEL_MATCH[dna.level[best]][difficulty];
+
+            long hours = (nowEpochSecond - batch.created[i]) / 3600;
+            float freshness = hours < 0 ? 1f : hours < FRESHNESS_HOURS ? FRESHNESS[(int) hours] : 0f;
+
+            int type = batch.contentType[i];
+            float cognitiveBonus = type < 0 ? 0.5f : cognitive[type];
+
+            scores[i] = relevance * RELEVANCE_WEIGHT
+                    + batch.quality[i] * QUALITY_WEIGHT
+                    + levelMatch * LEVEL_MATCH_WEIGHT
+                    + freshness * FRESHNESS_WEIGHT
+                    + cognitiveBonus * COGNITIVE_WEIGHT;
+        }
+        return scores;
+    }
+
+    /**
+     * Indices of the {@code k} highest scores, best first. Equal scores keep
+     * candidate order.
+     */
+    public static int[] topK(float[] scores, int k) {
+        int n = Math.min(k, scores.length);
+        if (n <= 0) {
+            return new int[0];
+        }
+        // Min-heap on (score, -index): the root is the weakest candidate kept so far
+        int[] heap = new int[n];
+        int size = 0;
+        for (int i = 0; i < scores.length; i++) {
+            if (size < n) {
+                heap[size] = i;
+                siftUp(heap, size++, scores);
+            } else if (weaker(heap[0], i, scores)) {
+                heap[0] = i;
+                siftDown(heap, size, scores);
+            }
+        }
+        int[] order = new int[size];
+        for (int out = size - 1; out >= 0; out--) {
+            order[out] = heap[0];
+            heap[0] = heap[--size];
+            siftDown(heap, size, scores);
+        }
+        return order;
+    }
+
+    // True when candidate a ranks below candidate b
+    private static boolean weaker(int a, int b, float[] scores) {
+        return scores[a] < scores[b] || (scores[a] == scores[b] && a > b);
+    }
+
+    private static void siftUp(int[] heap, int pos, float[] scores) {
+        int item = heap[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (!weaker(item, heap[parent], scores)) {
+                break;
+            }
+            heap[pos] = heap[parent];
+            pos = parent;
+        }
+        heap[pos] = item;
+    }
+
+    private static void siftDown(int[] heap, int size, float[] scores) {
+        if (size == 0) {
+            return;
+        }
+        int pos = 0;
+        int item = heap[0];
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && weaker(heap[child + 1], heap[child], scores)) {
+                child++;
+            }
+            if (!weaker(heap[child], item, scores)) {
+                break;
+            }
+            heap[pos] = heap[child];
+            pos = child;
+        }
+        heap[pos] = item;
+    }
+
+    // ==================== Lookup tables ====================
+
+    /**
+     * Level Match: Right difficulty for user's learning level
+     */
+    private static float levelMatch(String userLevel, String postDifficulty) {
+        // Perfect match
+        if (isLevelMatch(userLevel, postDifficulty))
+            return 1.0f;
+
+        // One level above (growth zone) - good
+        if (isOneLevelAbove(userLevel, postDifficulty))
+            return 0.8f;
+
+        // One level below (review) - okay
+        if (isOneLevelBelow(userLevel, postDifficulty))
+            return 0.6f;
+
+        // Too advanced or too basic
+        return 0.4f;
+    }
+
+    /**
+     * Cognitive Bonus: Balance content types for optimal learning
+     */
+    private static float cognitiveBonus(SessionMode mode, Post.ContentType type) {
+        return switch (mode) {
+            case BROWSING -> {
+                // Prefer quick, visual content
+                yield switch (type) {
+                    case INSIGHT -> 0.9f;
+                    case DISCUSSION -> 0.8f;
+                    case QUESTION -> 0.7f;
+                    case RESOURCE -> 0.5f;
+                    case ANNOUNCEMENT -> 0.6f;
+                };
+            }
+            case LEARNING -> {
+                // Prefer detailed, educational content
+                yield switch (type) {
+                    case RESOURCE -> 0.9f;
+                    case INSIGHT -> 0.8f;
+                    case QUESTION -> 0.7f;
+                    case DISCUSSION -> 0.6f;
+                    case ANNOUNCEMENT -> 0.5f;
+                };
+            }
+            case DEEP_FOCUS -> {
+                // Prefer challenging content
+                yield switch (type) {
+                    case QUESTION -> 0.9f;
+                    case RESOURCE -> 0.8f;
+                    case INSIGHT -> 0.7f;
+                    case DISCUSSION -> 0.5f;
+                    case ANNOUNCEMENT -> 0.4f;
+                };
+            }
+        };
+    }
+
+    private static boolean isLevelMatch(String userLevel, String postDifficulty) {
+        return userLevel.equalsIgnoreCase(postDifficulty) ||
+                (userLevel.equals("BEGINNER") && postDifficulty.equals("EASY")) ||
+                (userLevel.equals("INTERMEDIATE") && postDifficulty.equals("MEDIUM")) ||
+                (userLevel.equals("ADVANCED") && postDifficulty.equals("HARD"));
+    }
+
+    private static boolean isOneLevelAbove(String userLevel, String postDifficulty) {
+        return (userLevel.equals("BEGINNER") && postDifficulty.equals("MEDIUM")) ||
+                (userLevel.equals("INTERMEDIATE") && postDifficulty.equals("HARD"));
+    }
+
+    private static boolean isOneLevelBelow(String userLevel, String postDifficulty) {
+        return (userLevel.equals("INTERMEDIATE") && postDifficulty.equals("EASY")) ||
+                (userLevel.equals("ADVANCED") && postDifficulty.equals("MEDIUM"));
+    }
+}
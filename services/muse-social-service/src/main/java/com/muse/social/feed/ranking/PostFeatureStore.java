@@ -0,0 +1,170 @@
+package com.muse.social.feed.ranking;
+
+import com.muse.social.feed.entity.Post;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * Per-post ranking features, computed when a post is written and reused
+ * until the post changes (keyed by updatedAt). Hashtags are interned to
+ * dense int ids so scoring compares ints instead of strings.
+ *
+ * Only the newest posts are kept; features of older posts are recomputed
+ * when they show up as candidates. A hashtag keeps its id while a cached
+ * post carries it, so the id table shrinks with the cache.
+ */
+@Component
+public class PostFeatureStore {
+
+    // Ordered by post id so the oldest entries are evicted from the head
+    private final ConcurrentSkipListMap<Long, PostFeatures> features = new ConcurrentSkipListMap<>();
+    private final Map<String, Integer> tagIds = new ConcurrentHashMap<>();
+    // Guarded by this, like nextTagId and size
+    private final Map<Integer, TagRef> tagRefs = new HashMap<>();
+    private final int maxEntries;
+    private int nextTagId;
+    private int size;
+
+    public PostFeatureStore(@Value("${feed.ranking.feature-cache-size:50000}") int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /**
+     * Id of a hashtag: its dense id while a cached post carries it, otherwise
+     * a negative id derived from the tag itself (never -1). Looking up does
+     * not intern the tag.
+     */
+    public int tagId(String tag) {
+        Integer id = tagIds.get(tag);
+        return id != null ? id : untrackedId(tag);
+    }
+
+    /** Features of the posts, in the same order. */
+    public List<PostFeatures> features(List<Post> posts) {
+        List<PostFeatures> result = new ArrayList<>(posts.size());
+        for (Post post : posts) {
+            result.add(features(post));
+        }
+        return result;
+    }
+
+    public PostFeatures features(Post post) {
+        PostFeatures cached = post.getId() != null ? features.get(post.getId()) : null;
+        if (cached != null && Objects.equals(cached.version(), post.getUpdatedAt())) {
+            return cached;
+        }
+        return put(post);
+    }
+
+    /** Recomputes and stores the features of a written post. */
+    public PostFeatures put(Post post) {
+        Long id = post.getId();
+        if (id == null) {
+            return compute(post, this::tagId);
+        }
+        synchronized (this) {
+            if (size >= maxEntries && id < features.firstKey()) {
+                // Older than everything kept: it would be evicted right away
+                return compute(post, this::tagId);
+            }
+            PostFeatures computed = compute(post, this::intern);
+            retain(computed.tagIds());
+            PostFeatures previous = features.put(id, computed);
+            if (previous != null) {
+                release(previous.tagIds());
+            } else {
+                size++;
+            }
+            while (size > maxEntries) {
+                release(features.pollFirstEntry().getValue().tagIds());
+                size--;
+            }
+            return computed;
+        }
+    }
+
+    // Caller holds the lock
+    private int intern(String tag) {
+        Integer id = tagIds.get(tag);
+        if (id == null) {
+            id = nextTagId++;
+            tagRefs.put(id, new TagRef(tag));
+            tagIds.put(tag, id);
+        }
+        return id;
+    }
+
+    private void retain(int[] tags) {
+        for (int tag : tags) {
+            TagRef ref = tagRefs.get(tag);
+            if (ref != null) {
+                ref.refs++;
+            }
+        }
+    }
+
+    private void release(int[] tags) {
+        for (int tag : tags) {
+            TagRef ref = tagRefs.get(tag);
+            if (ref != null && --ref.refs == 0) {
+                tagRefs.remove(tag);
+                tagIds.remove(ref.name);
+            }
+        }
+    }
+
+    private static int untrackedId(String tag) {
+        return -2 - (tag.hashCode() & 0x3fffffff);
+    }
+
+    private PostFeatures compute(Post post, ToIntFunction<String> tagIdOf) {
+        int[] tags = new int[0];
+        if (post.getHashtags() != null && !post.getHashtags().isEmpty()) {
+            tags = post.getHashtags().stream()
+                    .filter(Objects::nonNull)
+                    .mapToInt(tagIdOf)
+                    .distinct()
+                    .toArray();
+            Arrays.sort(tags);
+        }
+
+        // Log-scaled engagement, same formula as the quality score kept by EngagementTracker
+        double engagement = Math.log10(
+                nz(post.getLikeCount()) + nz(post.getSaveCount()) * 2 + nz(post.getCommentCount()) * 3 + 1);
+        float quality = (float) Math.min(engagement / 5.0, 1.0);
+
+        Instant created = post.getCreatedAt() != null ? post.getCreatedAt() : Instant.now();
+        return new PostFeatures(
+                post.getId() != null ? post.getId() : 0L,
+                post.getUpdatedAt(),
+                quality,
+                created.getEpochSecond(),
+                tags,
+                post.getDifficultyLevel() != null ? post.getDifficultyLevel().ordinal() : -1,
+                post.getContentType() != null ? post.getContentType().ordinal() : -1);
+    }
+
+    private static int nz(Integer value) {
+        return value != null ? value : 0;
+    }
+
+    private static final class TagRef {
+        final String name;
+        int refs;
+
+        TagRef(String name) {
+            this.name = name;
+        }
+    }
+}
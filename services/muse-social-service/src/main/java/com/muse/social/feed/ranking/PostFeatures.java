@@ -0,0 +1,14 @@
+package com.muse.social.feed.ranking;
+
+import java.time.Instant;
+
+/**
+ * Ranking inputs of one post, computed once per post version.
+ *
+ * @param tagIds      distinct hashtag ids, sorted
+ * @param difficulty  DifficultyLevel ordinal, -1 when unclassified
+ * @param contentType ContentType ordinal, -1 when unclassified
+ */
+public record PostFeatures(long id, Instant version, float quality, long createdEpochSecond,
+        int[] tagIds, int difficulty, int contentType) {
+}
@@ -0,0 +1,221 @@
+package com.muse.social.feed.ranking;
+
+import com.muse.social.feed.entity.EngagementEvent;
+import com.muse.social.feed.service.NeuroFeedEngine.SessionMode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Online session model. The last few engagement events of each active user
+ * are kept in a fixed-size ring with running sums, so classifying the
+ * session is O(1) and needs no database read. Users are spread over shards
+ * with their own lock; each shard drops its least recently active user when
+ * full, and a sweep drops users who went idle.
+ *
+ * Sessions live on the instance that saw the events; a user whose requests
+ * move between instances starts over as BROWSING.
+ */
+@Component
+@Slf4j
+public class SessionModeDetector {
+
+    private static final int SHARDS = 16;
+    private static final int RING_SIZE = 32;
+
+    // Fewer events than this is not enough to tell a session apart from browsing
+    private static final int MIN_EVENTS = 3;
+
+    // Thresholds on the window averages
+    private static final double DEEP_FOCUS_DWELL_SECONDS = 90;
+    private static final double DEEP_FOCUS_SCROLL = 0.7;
+    private static final double DEEP_FOCUS_ANSWER_RATE = 0.25;
+    private static final double LEARNING_DWELL_SECONDS = 30;
+    private static final double LEARNING_SCROLL = 0.6;
+    private static final double LEARNING_DEEP_ACTION_RATE = 0.2;
+
+    /** Ring of a user's recent events with sums over the events it holds. */
+    static final class Session {
+        private final long[] at = new long[RING_SIZE];
+        private final int[] dwell = new int[RING_SIZE];
+        private final float[] scroll = new float[RING_SIZE];
+        private final byte[] kind = new byte[RING_SIZE];
+        private int head;
+        private int size;
+
+        private long dwellSum;
+        private int dwellCount;
+        private double scrollSum;
+        private int scrollCount;
+        private int answers;
+        private int deepActions;
+
+        private static final byte OTHER = 0;
+        private static final byte ANSWER = 1;
+        private static final byte DEEP_ACTION = 2;
+
+        void add(long now, EngagementEvent.EventType type, Integer timeSpentSeconds, Double scrollDepth) {
+            if (size == RING_SIZE) {
+                removeOldest();
+            }
+            int slot = (head + size) % RING_SIZE;
+            at[slot] = now;
+            dwell[slot] = timeSpentSeconds != null ? Math.max(0, timeSpentSeconds) : -1;
+            scroll[slot] = scrollDepth != null ? (float) Math.max(0, Math.min(1, scrollDepth)) : -1f;
+            kind[slot] = switch (type) {
+                case ANSWER_ATTEMPT, ANSWER_CORRECT -> ANSWER;
+                case SAVE, COMMENT, SHARE -> DEEP_ACTION;
+                default -> OTHER;
+            };
+            size++;
+            if (dwell[slot] >= 0) {
+                dwellSum += dwell[slot];
+                dwellCount++;
+            }
+            if (scroll[slot] >= 0) {
+                scrollSum += scroll[slot];
+                scrollCount++;
+            }
+            if (kind[slot] == ANSWER) {
+                answers++;
+            } else if (kind[slot] == DEEP_ACTION) {
+                deepActions++;
+            }
+        }
+
+        // Drops events older than the window; amortized O(1) since each event leaves once
+        void expire(long cutoff) {
+            while (size > 0 && at[head] < cutoff) {
+                removeOldest();
+            }
+        }
+
+        long lastActive() {
+            return size > 0 ? at[(head + size - 1) % RING_SIZE] : 0;
+        }
+
+        SessionMode classify() {
+            if (size < MIN_EVENTS) {
+                return SessionMode.BROWSING;
+            }
+            double avgDwell = dwellCount > 0 ? (double) dwellSum / dwellCount : 0;
+            double avgScroll = scrollCount > 0 ? scrollSum / scrollCount : 0;
+            double answerRate = (double) answers / size;
+            double deepActionRate = (double) deepActions / size;
+
+            if (answerRate >= DEEP_FOCUS_ANSWER_RATE
+                    || (avgDwell >= DEEP_FOCUS_DWELL_SECONDS && avgScroll >= DEEP_FOCUS_SCROLL)) {
+                return SessionMode.DEEP_FOCUS;
+            }
+            if (avgDwell >= LEARNING_DWELL_SECONDS || avgScroll >= LEARNING_SCROLL
+                    || deepActionRate >= LEARNING_DEEP_ACTION_RATE) {
+                return SessionMode.LEARNING;
+            }
+            return SessionMode.BROWSING;
+        }
+
+        private void removeOldest() {
+            int slot = head;
+            if (dwell[slot] >= 0) {
+                dwellSum -= dwell[slot];
+                dwellCount--;
+            }
+            if (scroll[slot] >= 0) {
+                scrollSum -= scroll[slot];
+                scrollCount--;
+            }
+            if (kind[slot] == ANSWER) {
+                answers--;
+            } else if (kind[slot] == DEEP_ACTION) {
+                deepActions--;
+            }
+            head = (head + 1) % RING_SIZE;
+            size--;
+        }
+    }
+
+    private final Map<String, Session>[] shards;
+    private final long windowMillis;
+    private final long idleMillis;
+
+    @SuppressWarnings("unchecked")
+    public SessionModeDetector(@Value("${feed.session-mode.window-minutes:20}") long windowMinutes,
+            @Value("${feed.session-mode.idle-minutes:30}") long idleMinutes,
+            @Value("${feed.session-mode.max-users:100000}") int maxUsers) {
+        this.windowMillis = Math.max(1, windowMinutes) * 60_000;
+        this.idleMillis = Math.max(1, idleMinutes) * 60_000;
+        int perShard = Math.max(1, maxUsers / SHARDS);
+        this.shards = new Map[SHARDS];
+        for (int i = 0; i < SHARDS; i++) {
+            // Access order, so the eldest entry is the least recently active user
+            shards[i] = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+                    return size() > perShard;
+                }
+            };
+        }
+    }
+
+    /** Adds an engagement event to the user's session. */
+    public void record(String userId, EngagementEvent.EventType type, Integer timeSpentSeconds, Double scrollDepth) {
+        if (userId == null || type == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Map<String, Session> shard = shardOf(userId);
+        synchronized (shard) {
+            Session session = shard.computeIfAbsent(userId, id -> new Session());
+            if (now - session.lastActive() > idleMillis) {
+                session.expire(Long.MAX_VALUE); // A new session after a break
+            }
+            session.add(now, type, timeSpentSeconds, scrollDepth);
+        }
+    }
+
+    /** The user's current session mode; BROWSING without recent events. */
+    public SessionMode mode(String userId) {
+        if (userId == null) {
+            return SessionMode.BROWSING;
+        }
+        long now = System.currentTimeMillis();
+        Map<String, Session> shard = shardOf(userId);
+        synchronized (shard) {
+            Session session = shard.get(userId);
+            if (session == null) {
+                return SessionMode.BROWSING;
+            }
+            session.expire(now - windowMillis);
+            return session.classify();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${feed.session-mode.sweep-ms:60000}")
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        int evicted = 0;
+        for (Map<String, Session> shard : shards) {
+            synchronized (shard) {
+                Iterator<Session> sessions = shard.values().iterator();
+                while (sessions.hasNext()) {
+                    if (sessions.next().lastActive() < cutoff) {
+                        sessions.remove();
+                        evicted++;
+                    }
+                }
+            }
+        }
+        if (evicted > 0) {
+            log.debug("Evicted {} idle feed sessions", evicted);
+        }
+    }
+
+    private Map<String, Session> shardOf(String userId) {
+        return shards[(userId.hashCode() & 0x7fffffff) % SHARDS];
+    }
+}
@@ -0,0 +1,89 @@
+package com.muse.social.feed.ranking;
+
+import com.muse.social.feed.entity.UserInterestDNA;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * A user's Interest DNA as a primitive hashtag-id map. Entries keep the
+ * order of the DNA list (strongest interest first) as their rank, so the
+ * first matching interest is the one with the lowest rank.
+ */
+public final class UserDnaVector {
+
+    private static final int EMPTY = -1;
+
+    private final int[] keys;
+    private final int[] ranks;
+    private final int mask;
+    private int size;
+
+    /** interestScore * momentum, by rank */
+    final float[] weight;
+
+    /** LearningLevel ordinal, by rank */
+    final int[] level;
+
+    /** Sum of interest scores, the relevance denominator */
+    final float total;
+
+    public UserDnaVector(List<UserInterestDNA> dna, ToIntFunction<String> tagIds) {
+        int capacity = Integer.highestOneBit(Math.max(2, dna.size() * 2 - 1)) << 1;
+        this.keys = new int[capacity];
+        this.ranks = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(keys, EMPTY);
+        this.weight = new float[dna.size()];
+        this.level = new int[dna.size()];
+
+        float sum = 0f;
+        for (UserInterestDNA interest : dna) {
+            double score = interest.getInterestScore() != null ? interest.getInterestScore() : 0.0;
+            double momentum = interest.getMomentum() != null ? interest.getMomentum() : 1.0;
+            sum += (float) score;
+            if (interest.getHashtag() != null && insert(tagIds.applyAsInt(interest.getHashtag()), size)) {
+                weight[size] = (float) (score * momentum);
+                level[size] = interest.getCurrentLevel() != null ? interest.getCurrentLevel().ordinal() : 0;
+                size++;
+            }
+        }
+        this.total = sum;
+    }
+
+    /** Rank of the interest in {@code tagId}, or -1. */
+    int rank(int tagId) {
+        int slot = mix(tagId) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == tagId) {
+                return ranks[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // False for a repeated hashtag; the first (stronger) entry wins
+    private boolean insert(int tagId, int rank) {
+        int slot = mix(tagId) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == tagId) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = tagId;
+        ranks[slot] = rank;
+        return true;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
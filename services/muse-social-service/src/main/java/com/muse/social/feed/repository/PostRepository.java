@@ -8,6 +8,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -16,6 +18,12 @@ public interface PostRepository extends JpaRepository<Post, Long> {
 
     boolean existsBySourceUrl(String sourceUrl);
 
+    @Query("SELECT p.sourceUrl FROM Post p WHERE p.sourceUrl IN :sourceUrls")
+    List<String> findExistingSourceUrls(@Param("sourceUrls") Collection<String> sourceUrls);
+
+    @Query("SELECT p.contentFingerprint FROM Post p WHERE p.contentFingerprint IS NOT NULL AND p.createdAt > :since")
+    List<Long> findFingerprintsSince(@Param("since") Instant since);
+
     Page<Post> findAllByOrderByCreatedAtDesc(Pageable pageable);
 
     List<Post> findTop20ByOrderByCreatedAtDesc();
@@ -26,4 +34,41 @@ public interface PostRepository extends JpaRepository<Post, Long> {
 
     @Query(value = "SELECT * FROM posts ORDER BY embedding <-> CAST(string_to_array(:embedding, ',') AS vector) LIMIT :limit", nativeQuery = true)
     List<Post> findNearestByEmbedding(@Param("embedding") String embedding, @Param("limit") int limit);
+
+    /** Candidate id with the score it is ranked by in its source. */
+    interface CandidateRow {
+        Long getId();
+
+        Double getScore();
+    }
+
+    @Query(value = "SELECT h.post_id AS id, EXTRACT(EPOCH FROM p.created_at) * 1000 AS score "
+            + "FROM post_hashtags h JOIN posts p ON p.id = h.post_id "
+            + "WHERE h.hashtag = :tag ORDER BY h.post_id DESC LIMIT :limit", nativeQuery = true)
+    List<CandidateRow> findRecentByHashtag(@Param("tag") String tag, @Param("limit") int limit);
+
+    @Query(value = "SELECT id, EXTRACT(EPOCH FROM created_at) * 1000 AS score FROM posts "
+            + "WHERE user_id = :userId ORDER BY created_at DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<CandidateRow> findRecentByAuthor(@Param("userId") Long userId, @Param("limit") int limit);
+
+    @Query(value = "SELECT id, COALESCE(trending_score, 0) + COALESCE(quality_score, 0) AS score FROM posts "
+            + "ORDER BY (COALESCE(trending_score, 0) + COALESCE(quality_score, 0)) DESC, id DESC LIMIT :limit",
+            nativeQuery = true)
+    List<CandidateRow> findTrending(@Param("limit") int limit);
+
+    @Query(value = "SELECT p.id FROM posts p ORDER BY p.quality_score DESC NULLS LAST, p.id DESC LIMIT :limit",
+            nativeQuery = true)
+    List<Long> findTopQualityIds(@Param("limit") int limit);
+
+    @Query(value = "SELECT p.id FROM posts p WHERE NOT EXISTS (SELECT 1 FROM post_hashtags h "
+            + "WHERE h.post_id = p.id AND h.hashtag IN (:hashtags)) "
+            + "ORDER BY p.quality_score DESC NULLS LAST, p.id DESC LIMIT :limit", nativeQuery = true)
+    List<Long> findTopQualityIdsExcluding(@Param("hashtags") Collection<String> hashtags, @Param("limit") int limit);
+
+    /** Newest post ids across the authors, at most {@code perAuthor} each, older than {@code beforeId}. */
+    @Query(value = "SELECT x.id FROM unnest(ARRAY[:authorIds]) AS a(user_id) CROSS JOIN LATERAL "
+            + "(SELECT p.id FROM posts p WHERE p.user_id = a.user_id AND p.id < :beforeId "
+            + "ORDER BY p.id DESC LIMIT :perAuthor) x ORDER BY x.id DESC LIMIT :limit", nativeQuery = true)
+    List<Long> findRecentIdsByAuthors(@Param("authorIds") Collection<Long> authorIds,
+            @Param("beforeId") long beforeId, @Param("perAuthor") int perAuthor, @Param("limit") int limit);
 }
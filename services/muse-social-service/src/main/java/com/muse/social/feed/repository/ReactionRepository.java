@@ -2,9 +2,14 @@ package com.muse.social.feed.repository;
 
 import com.muse.social.feed.entity.Reaction;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ReactionRepository extends JpaRepository<Reaction, Long> {
@@ -13,4 +18,25 @@ public interface ReactionRepository extends JpaRepository<Reaction, Long> {
     int countByTargetIdAndTargetType(Long targetId, String targetType);
 
     boolean existsByUserIdAndTargetIdAndTargetType(Long userId, Long targetId, String targetType);
+
+    Optional<Reaction> findByUserIdAndTargetIdAndTargetType(Long userId, Long targetId, String targetType);
+
+    /** Inserts the reaction unless the user already reacted to the target; returns the rows inserted. */
+    @Modifying
+    @Query(value = "INSERT INTO reactions (user_id, target_id, target_type, reaction_type) "
+            + "VALUES (:userId, :targetId, :targetType, :reactionType) "
+            + "ON CONFLICT (user_id, target_id, target_type) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("userId") Long userId, @Param("targetId") Long targetId,
+            @Param("targetType") String targetType, @Param("reactionType") String reactionType);
+
+    /** [targetId, count] for each target with reactions. */
+    @Query("SELECT r.targetId, COUNT(r) FROM Reaction r WHERE r.targetType = :targetType "
+            + "AND r.targetId IN :targetIds GROUP BY r.targetId")
+    List<Object[]> countByTargetIds(@Param("targetIds") Collection<Long> targetIds,
+            @Param("targetType") String targetType);
+
+    @Query("SELECT DISTINCT r.targetId FROM Reaction r WHERE r.userId = :userId AND r.targetType = :targetType "
+            + "AND r.targetId IN :targetIds")
+    List<Long> findReactedTargetIds(@Param("userId") Long userId, @Param("targetIds") Collection<Long> targetIds,
+            @Param("targetType") String targetType);
 }
@@ -2,8 +2,13 @@ package com.muse.social.feed.repository;
 
 import com.muse.social.feed.entity.RssFeedSource;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.List;
 
 @Repository
@@ -14,4 +19,42 @@ public interface RssFeedSourceRepository extends JpaRepository<RssFeedSource, Lo
     List<RssFeedSource> findByActiveTrueOrderByPriorityDesc();
 
     List<RssFeedSource> findByCategory(String category);
+
+    /**
+     * Claims the due sources for one ingest cycle by moving their next fetch
+     * to {@code leaseUntil}, so other replicas skip them until the cycle
+     * reschedules them or the lease runs out. Rows another claim holds are
+     * skipped, not waited for.
+     */
+    @Transactional
+    @Query(value = "UPDATE rss_feed_sources SET next_fetch_at = :leaseUntil WHERE id IN ("
+            + "SELECT id FROM rss_feed_sources WHERE is_active = true "
+            + "AND (next_fetch_at IS NULL OR next_fetch_at <= :now) FOR UPDATE SKIP LOCKED) "
+            + "RETURNING *", nativeQuery = true)
+    List<RssFeedSource> claimDue(@Param("now") Instant now, @Param("leaseUntil") Instant leaseUntil);
+
+    /** Claims every active source, due or not; see {@link #claimDue}. */
+    @Transactional
+    @Query(value = "UPDATE rss_feed_sources SET next_fetch_at = :leaseUntil WHERE id IN ("
+            + "SELECT id FROM rss_feed_sources WHERE is_active = true FOR UPDATE SKIP LOCKED) "
+            + "RETURNING *", nativeQuery = true)
+    List<RssFeedSource> claimActive(@Param("leaseUntil") Instant leaseUntil);
+
+    /**
+     * Stores a fetch's validators and schedule. Only these columns are
+     * written, so edits made to the source meanwhile (name, category,
+     * active) are kept.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE RssFeedSource s SET s.etag = :etag, s.lastModified = :lastModified, "
+            + "s.lastFetchedAt = :lastFetchedAt, s.fetchErrorCount = :fetchErrorCount, "
+            + "s.fetchIntervalMinutes = :fetchIntervalMinutes, s.nextFetchAt = :nextFetchAt WHERE s.id = :id")
+    int updateSchedule(@Param("id") Long id,
+            @Param("etag") String etag,
+            @Param("lastModified") String lastModified,
+            @Param("lastFetchedAt") Instant lastFetchedAt,
+            @Param("fetchErrorCount") int fetchErrorCount,
+            @Param("fetchIntervalMinutes") Integer fetchIntervalMinutes,
+            @Param("nextFetchAt") Instant nextFetchAt);
 }
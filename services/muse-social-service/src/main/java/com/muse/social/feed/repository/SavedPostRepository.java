@@ -6,7 +6,9 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -24,5 +26,9 @@ public interface SavedPostRepository extends JpaRepository<SavedPost, SavedPostI
     @Query("SELECT DISTINCT s.collectionName FROM SavedPost s WHERE s.userId = :userId")
     List<String> findCollectionsByUserId(@Param("userId") String userId);
 
-    void deleteByUserIdAndPostId(String userId, Long postId);
+    @Transactional
+    long deleteByUserIdAndPostId(String userId, Long postId);
+
+    @Query("SELECT s.postId FROM SavedPost s WHERE s.userId = :userId AND s.postId IN :postIds")
+    List<Long> findSavedPostIds(@Param("userId") String userId, @Param("postIds") Collection<Long> postIds);
 }
@@ -33,4 +33,8 @@ public interface UserFollowRepository extends JpaRepository<UserFollow, UserFoll
 
     @Query("SELECT f.followerId FROM UserFollow f WHERE f.followingId = :userId")
     List<String> findFollowerIds(@Param("userId") String userId);
+
+    @Query(value = "SELECT following_id FROM user_follows GROUP BY following_id HAVING COUNT(*) > :threshold",
+            nativeQuery = true)
+    List<String> findIdsWithMoreFollowersThan(@Param("threshold") long threshold);
 }
@@ -4,6 +4,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service
 @Slf4j
 public class AiContentService {
@@ -19,6 +21,20 @@ public class AiContentService {
         return String.format("%s\n\n%s", title, description);
     }
 
+    public record SummaryRequest(String title, String description) {
+    }
+
+    /**
+     * Summaries for a whole ingestion batch in one call, in request order.
+     * A null element means that item failed and the caller falls back to
+     * its own content.
+     */
+    public List<String> generateSummaries(List<SummaryRequest> requests) {
+        return requests.stream()
+                .map(request -> generateSummary(request.title(), request.description()))
+                .toList();
+    }
+
     public String generateImagePrompt(String title) {
         return "A realistic, high-quality news image representing: " + title;
     }
@@ -20,6 +20,7 @@ public class CommentService {
 
     private final CommentRepository commentRepository;
     private final PostRepository postRepository;
+    private final PostCounterService counterService;
     private final FeedWebSocketHandler feedWebSocketHandler; // Inject WebSocket handler
     private final ObjectMapper objectMapper; // Inject ObjectMapper
 
@@ -36,6 +37,7 @@ public class CommentService {
                             .content(content)
                             .build();
                     Comment savedComment = commentRepository.save(comment);
+                    counterService.increment(postId, PostCounterService.Counter.COMMENTS, 1);
                     // Broadcast new comment
                     try {
                         feedWebSocketHandler.broadcastToAll(objectMapper.writeValueAsString(Map.of("type", "new_comment", "comment", savedComment)));
@@ -51,6 +53,7 @@ public class CommentService {
                 .filter(comment -> comment.getUserId().equals(userId))
                 .map(comment -> {
                     commentRepository.delete(comment);
+                    counterService.increment(comment.getPost().getId(), PostCounterService.Counter.COMMENTS, -1);
                     // Broadcast deleted comment
                     try {
                         feedWebSocketHandler.broadcastToAll(objectMapper.writeValueAsString(Map.of("type", "delete_comment", "commentId", commentId)));
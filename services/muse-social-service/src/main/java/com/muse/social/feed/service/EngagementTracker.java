@@ -1,25 +1,106 @@
 package com.muse.social.feed.service;
 
 import com.muse.social.feed.entity.*;
+import com.muse.social.feed.ranking.SessionModeDetector;
 import com.muse.social.feed.repository.*;
-import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PreDestroy;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Tracks user engagement and updates Interest DNA
+ * Tracks user engagement and updates Interest DNA.
+ *
+ * Events are appended to a bounded in-memory ring buffer and acknowledged
+ * immediately. A flush every second drains the buffer, folds the events per
+ * (user, hashtag) and writes them in one transaction: a batch insert of the
+ * raw events and one batched upsert of Interest DNA. Views and shares go to
+ * PostCounterService. Events beyond the buffer capacity are dropped and
+ * counted.
+ *
+ * Inputs are checked before they are queued and hashtags are cut to the
+ * column width. If a batch still hits a bad row, it is retried in halves
+ * so only the offending events are lost. Every dropped event is counted in
+ * feed.engagement.dropped, tagged with the reason.
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class EngagementTracker {
 
-    private final EngagementEventRepository eventRepository;
-    private final UserInterestDNARepository interestDNARepository;
+    private static final String INSERT_EVENT = "INSERT INTO engagement_events "
+            + "(user_id, post_id, event_type, time_spent_seconds, scroll_depth, interaction_depth, created_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    // Replays the per-event decay as one multiply-add; levels step at most once per flush, as before
+    private static final String UPSERT_INTEREST = "INSERT INTO user_interest_dna "
+            + "(user_id, hashtag, interest_score, learning_velocity, momentum, total_views, total_likes, "
+            + "total_saves, total_time_seconds, correct_answers, current_level, first_interaction, last_interaction) "
+            + "VALUES (?, ?, LEAST(?, 100), 0, 1.0, ?, ?, ?, 0, ?, "
+            + "CASE WHEN ? >= 20 THEN 'INTERMEDIATE' ELSE 'BEGINNER' END, ?, ?) "
+            + "ON CONFLICT (user_id, hashtag) DO UPDATE SET "
+            + "interest_score = LEAST(COALESCE(user_interest_dna.interest_score, 0) * ? + ?, 100), "
+            + "total_views = COALESCE(user_interest_dna.total_views, 0) + EXCLUDED.total_views, "
+            + "total_likes = COALESCE(user_interest_dna.total_likes, 0) + EXCLUDED.total_likes, "
+            + "total_saves = COALESCE(user_interest_dna.total_saves, 0) + EXCLUDED.total_saves, "
+            + "correct_answers = COALESCE(user_interest_dna.correct_answers, 0) + EXCLUDED.correct_answers, "
+            + "current_level = CASE "
+            + "WHEN COALESCE(user_interest_dna.correct_answers, 0) + EXCLUDED.correct_answers >= 50 "
+            + "AND user_interest_dna.current_level = 'INTERMEDIATE' THEN 'ADVANCED' "
+            + "WHEN COALESCE(user_interest_dna.correct_answers, 0) + EXCLUDED.correct_answers >= 20 "
+            + "AND user_interest_dna.current_level = 'BEGINNER' THEN 'INTERMEDIATE' "
+            + "ELSE user_interest_dna.current_level END, "
+            + "last_interaction = EXCLUDED.last_interaction";
+
+    // Column widths of engagement_events.user_id and user_interest_dna.hashtag
+    private static final int MAX_USER_ID_LENGTH = 255;
+    private static final int MAX_HASHTAG_LENGTH = 100;
+    private static final int MAX_TIME_SPENT_SECONDS = 24 * 3600;
+
+    private record Engagement(String userId, Long postId, EngagementEvent.EventType eventType,
+            Integer timeSpentSeconds, Double scrollDepth, Instant createdAt) {
+    }
+
+    private record InterestKey(String userId, String hashtag) {
+    }
+
+    // What a run of events changes: interest rows and post counters
+    private record Folded(Map<InterestKey, InterestDelta> interests, Map<Long, Long> views,
+            Map<Long, Long> shares) {
+    }
+
+    // Interest changes of one (user, hashtag) over a flush
+    private static final class InterestDelta {
+        double decay = 1.0;
+        double added;
+        int views;
+        int likes;
+        int saves;
+        int correctAnswers;
+        Instant lastInteraction;
+    }
+
     private final PostRepository postRepository;
+    private final PostCounterService counterService;
+    private final SessionModeDetector sessionModeDetector;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final BlockingQueue<Engagement> buffer;
+    private final int batchSize;
+    private final AtomicLong dropped = new AtomicLong();
 
     // Points for different actions
     private static final double VIEW_POINTS = 1.0;
@@ -32,38 +113,192 @@ public class EngagementTracker {
     // Decay factor for old interests
     private static final double INTEREST_DECAY = 0.98;
 
+    public EngagementTracker(PostRepository postRepository,
+            PostCounterService counterService,
+            SessionModeDetector sessionModeDetector,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${feed.engagement.buffer-size:65536}") int bufferSize,
+            @Value("${feed.engagement.batch-size:5000}") int batchSize) {
+        this.postRepository = postRepository;
+        this.counterService = counterService;
+        this.sessionModeDetector = sessionModeDetector;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.buffer = new ArrayBlockingQueue<>(Math.max(1, bufferSize));
+        this.batchSize = Math.max(1, batchSize);
+    }
+
     /**
-     * Track user engagement with a post
+     * Track user engagement with a post. Returns false when the event is
+     * invalid or the buffer is full, and the event was dropped.
      */
-    @Transactional
-    public void trackEngagement(String userId, Long postId, EngagementEvent.EventType eventType,
+    public boolean trackEngagement(String userId, Long postId, EngagementEvent.EventType eventType,
             Integer timeSpentSeconds, Double scrollDepth) {
-        // 1. Save raw engagement event
-        EngagementEvent event = EngagementEvent.builder()
-                .userId(userId)
-                .postId(postId)
-                .eventType(eventType)
-                .timeSpentSeconds(timeSpentSeconds != null ? timeSpentSeconds : 0)
-                .scrollDepth(scrollDepth != null ? scrollDepth : 0.0)
-                .interactionDepth(getInteractionDepth(eventType))
-                .build();
-        eventRepository.save(event);
-        log.debug("Tracked {} event for user {} on post {}", eventType, userId, postId);
-
-        // 2. Get post for hashtag extraction
-        postRepository.findById(postId).ifPresent(post -> {
-            // 3. Calculate Attention Depth Score
-            double adsScore = calculateADS(timeSpentSeconds, scrollDepth, eventType, post);
-
-            // 4. Update user interests for each hashtag
+        if (postId == null || eventType == null || userId == null || userId.isBlank()
+                || userId.length() > MAX_USER_ID_LENGTH) {
+            countDropped("invalid", 1);
+            return false;
+        }
+        Integer timeSpent = timeSpentSeconds != null
+                ? Math.max(0, Math.min(timeSpentSeconds, MAX_TIME_SPENT_SECONDS))
+                : null;
+        Double scroll = scrollDepth != null && !scrollDepth.isNaN()
+                ? Math.max(0.0, Math.min(scrollDepth, 1.0))
+                : null;
+        sessionModeDetector.record(userId, eventType, timeSpent, scroll);
+        boolean queued = buffer.offer(new Engagement(userId, postId, eventType, timeSpent, scroll, Instant.now()));
+        if (!queued) {
+            dropped.incrementAndGet();
+            countDropped("buffer_full", 1);
+        }
+        return queued;
+    }
+
+    // ==================== Flush ====================
+
+    @Scheduled(fixedDelayString = "${feed.engagement.flush-ms:1000}")
+    public void flush() {
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            log.warn("Engagement buffer full, dropped {} events", lost);
+        }
+        List<Engagement> batch = new ArrayList<>(Math.min(batchSize, buffer.size()));
+        while (buffer.drainTo(batch, batchSize) > 0) {
+            try {
+                apply(batch);
+            } catch (Exception e) {
+                log.error("Applying {} engagement events failed: {}", batch.size(), e.getMessage());
+                countDropped("write_failed", batch.size());
+            }
+            batch.clear();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private synchronized void apply(List<Engagement> batch) {
+        Set<Long> postIds = new HashSet<>();
+        batch.forEach(e -> postIds.add(e.postId()));
+        Map<Long, Post> posts = new HashMap<>();
+        for (Post post : postRepository.findAllById(postIds)) {
+            posts.put(post.getId(), post);
+        }
+        write(batch, posts);
+    }
+
+    /**
+     * Writes the events in one transaction. A bad row fails the whole
+     * statement, so on a data error each half is written on its own until the
+     * offending events are isolated and dropped. Folding a half separately
+     * gives the same scores, as the halves are applied in order.
+     */
+    private void write(List<Engagement> events, Map<Long, Post> posts) {
+        Folded folded = fold(events, posts);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                insertEvents(events);
+                upsertInterests(folded.interests());
+            });
+        } catch (DataIntegrityViolationException e) {
+            if (events.size() == 1) {
+                log.warn("Dropping engagement event of user {} on post {}: {}",
+                        events.get(0).userId(), events.get(0).postId(), e.getMessage());
+                countDropped("rejected", 1);
+                return;
+            }
+            int middle = events.size() / 2;
+            write(events.subList(0, middle), posts);
+            write(events.subList(middle, events.size()), posts);
+            return;
+        }
+        counterService.incrementAll(PostCounterService.Counter.VIEWS, folded.views());
+        counterService.incrementAll(PostCounterService.Counter.SHARES, folded.shares());
+        log.debug("Applied {} engagement events: {} interests, {} posts viewed",
+                events.size(), folded.interests().size(), folded.views().size());
+    }
+
+    private Folded fold(List<Engagement> batch, Map<Long, Post> posts) {
+        // Sorted so concurrent flushes lock rows in the same order
+        Map<InterestKey, InterestDelta> interests = new TreeMap<>(
+                Comparator.comparing(InterestKey::userId).thenComparing(InterestKey::hashtag));
+        Map<Long, Long> views = new HashMap<>();
+        Map<Long, Long> shares = new HashMap<>();
+        for (Engagement event : batch) {
+            Post post = posts.get(event.postId());
+            if (post == null) {
+                continue;
+            }
+            double adsScore = calculateADS(event.timeSpentSeconds(), event.scrollDepth(), event.eventType(), post);
             if (post.getHashtags() != null) {
-                for (String hashtag : post.getHashtags()) {
-                    updateInterestDNA(userId, hashtag, eventType, adsScore);
+                for (String hashtag : hashtags(post)) {
+                    addInterest(interests.computeIfAbsent(new InterestKey(event.userId(), hashtag),
+                            key -> new InterestDelta()), event, adsScore);
                 }
             }
+            // Likes, saves and comments are counted where their rows are written
+            switch (event.eventType()) {
+                case VIEW -> views.merge(event.postId(), 1L, Long::sum);
+                case SHARE -> shares.merge(event.postId(), 1L, Long::sum);
+                default -> {
+                }
+            }
+        }
+        return new Folded(interests, views, shares);
+    }
 
-            // 5. Update post counters
-            updatePostCounters(post, eventType);
+    // Distinct non-blank hashtags, cut to the column width
+    private static Set<String> hashtags(Post post) {
+        Set<String> tags = new LinkedHashSet<>();
+        for (String hashtag : post.getHashtags()) {
+            if (hashtag != null && !hashtag.isBlank()) {
+                tags.add(hashtag.length() > MAX_HASHTAG_LENGTH ? hashtag.substring(0, MAX_HASHTAG_LENGTH) : hashtag);
+            }
+        }
+        return tags;
+    }
+
+    private void countDropped(String reason, long count) {
+        meterRegistry.counter("feed.engagement.dropped", "reason", reason).increment(count);
+    }
+
+    private void insertEvents(List<Engagement> batch) {
+        jdbcTemplate.batchUpdate(INSERT_EVENT, batch, batch.size(), (ps, event) -> {
+            ps.setString(1, event.userId());
+            ps.setLong(2, event.postId());
+            ps.setString(3, event.eventType().name());
+            ps.setInt(4, event.timeSpentSeconds() != null ? event.timeSpentSeconds() : 0);
+            ps.setDouble(5, event.scrollDepth() != null ? event.scrollDepth() : 0.0);
+            ps.setInt(6, getInteractionDepth(event.eventType()));
+            ps.setTimestamp(7, Timestamp.from(event.createdAt()));
+        });
+    }
+
+    private void upsertInterests(Map<InterestKey, InterestDelta> interests) {
+        if (interests.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<InterestKey, InterestDelta>> rows = new ArrayList<>(interests.entrySet());
+        jdbcTemplate.batchUpdate(UPSERT_INTEREST, rows, rows.size(), (ps, row) -> {
+            InterestDelta delta = row.getValue();
+            Timestamp last = Timestamp.from(delta.lastInteraction);
+            ps.setString(1, row.getKey().userId());
+            ps.setString(2, row.getKey().hashtag());
+            ps.setDouble(3, delta.added);
+            ps.setInt(4, delta.views);
+            ps.setInt(5, delta.likes);
+            ps.setInt(6, delta.saves);
+            ps.setInt(7, delta.correctAnswers);
+            ps.setInt(8, delta.correctAnswers);
+            ps.setTimestamp(9, last);
+            ps.setTimestamp(10, last);
+            ps.setDouble(11, delta.decay);
+            ps.setDouble(12, delta.added);
         });
     }
 
@@ -94,15 +329,12 @@ public class EngagementTracker {
     }
 
     /**
-     * Update user's Interest DNA for a hashtag
+     * Folds one event into the (user, hashtag) delta. Each event decays the
+     * score before adding its points, as when they were applied one by one.
      */
-    private void updateInterestDNA(String userId, String hashtag,
-            EngagementEvent.EventType eventType, double adsScore) {
-        UserInterestDNA dna = interestDNARepository.findByUserIdAndHashtag(userId, hashtag)
-                .orElseGet(() -> createNewInterestDNA(userId, hashtag));
-
+    private void addInterest(InterestDelta delta, Engagement event, double adsScore) {
         // Calculate points based on action type
-        double basePoints = switch (eventType) {
+        double basePoints = switch (event.eventType()) {
             case VIEW -> VIEW_POINTS;
             case LIKE -> LIKE_POINTS;
             case COMMENT -> COMMENT_POINTS;
@@ -117,87 +349,24 @@ public class EngagementTracker {
         // Apply ADS multiplier
         double points = basePoints * (0.5 + adsScore); // 0.5-1.5x multiplier
 
-        // Apply decay and add new points (max 100)
-        double decayedScore = dna.getInterestScore() * INTEREST_DECAY;
-        dna.setInterestScore(Math.min(decayedScore + points, 100.0));
+        // Apply decay and add new points; the cap of 100 is applied on write
+        delta.decay *= INTEREST_DECAY;
+        delta.added = delta.added * INTEREST_DECAY + points;
 
         // Update engagement counts
-        switch (eventType) {
-            case VIEW -> dna.setTotalViews(dna.getTotalViews() + 1);
-            case LIKE -> dna.setTotalLikes(dna.getTotalLikes() + 1);
-            case SAVE -> dna.setTotalSaves(dna.getTotalSaves() + 1);
-            case ANSWER_CORRECT -> dna.setCorrectAnswers(dna.getCorrectAnswers() + 1);
-            default -> {
-            }
-        }
-
-        // Update learning level based on correct answers
-        updateLearningLevel(dna);
-
-        // Update timestamps
-        dna.setLastInteraction(Instant.now());
-
-        interestDNARepository.save(dna);
-        log.debug("Updated InterestDNA for user {} hashtag {}: score={}",
-                userId, hashtag, dna.getInterestScore());
-    }
-
-    /**
-     * Update post engagement counters
-     */
-    private void updatePostCounters(Post post, EngagementEvent.EventType eventType) {
-        switch (eventType) {
-            case VIEW -> post.setViewCount(post.getViewCount() + 1);
-            case LIKE -> post.setLikeCount(post.getLikeCount() + 1);
-            case UNLIKE -> post.setLikeCount(Math.max(0, post.getLikeCount() - 1));
-            case COMMENT -> post.setCommentCount(post.getCommentCount() + 1);
-            case SAVE -> post.setSaveCount(post.getSaveCount() + 1);
-            case UNSAVE -> post.setSaveCount(Math.max(0, post.getSaveCount() - 1));
-            case SHARE -> post.setShareCount(post.getShareCount() + 1);
+        switch (event.eventType()) {
+            case VIEW -> delta.views++;
+            case LIKE -> delta.likes++;
+            case SAVE -> delta.saves++;
+            case ANSWER_CORRECT -> delta.correctAnswers++;
             default -> {
             }
         }
-
-        // Recalculate quality score
-        double engagement = Math.log10(
-                post.getLikeCount() +
-                        post.getSaveCount() * 2 +
-                        post.getCommentCount() * 3 +
-                        1);
-        post.setQualityScore(Math.min(engagement / 5.0, 1.0));
-
-        postRepository.save(post);
-    }
-
-    /**
-     * Update learning level based on performance
-     */
-    private void updateLearningLevel(UserInterestDNA dna) {
-        int correctAnswers = dna.getCorrectAnswers();
-
-        if (correctAnswers >= 50 && dna.getCurrentLevel() == UserInterestDNA.LearningLevel.INTERMEDIATE) {
-            dna.setCurrentLevel(UserInterestDNA.LearningLevel.ADVANCED);
-        } else if (correctAnswers >= 20 && dna.getCurrentLevel() == UserInterestDNA.LearningLevel.BEGINNER) {
-            dna.setCurrentLevel(UserInterestDNA.LearningLevel.INTERMEDIATE);
+        if (delta.lastInteraction == null || event.createdAt().isAfter(delta.lastInteraction)) {
+            delta.lastInteraction = event.createdAt();
         }
     }
 
-    private UserInterestDNA createNewInterestDNA(String userId, String hashtag) {
-        return UserInterestDNA.builder()
-                .userId(userId)
-                .hashtag(hashtag)
-                .interestScore(0.0)
-                .learningVelocity(0.0)
-                .momentum(1.0)
-                .totalViews(0)
-                .totalLikes(0)
-                .totalSaves(0)
-                .totalTimeSeconds(0)
-                .correctAnswers(0)
-                .currentLevel(UserInterestDNA.LearningLevel.BEGINNER)
-                .build();
-    }
-
     private int getInteractionDepth(EngagementEvent.EventType eventType) {
         return switch (eventType) {
             case VIEW -> 0;
@@ -0,0 +1,361 @@
+package com.muse.social.feed.service;
+
+import com.muse.social.feed.entity.Post;
+import com.muse.social.feed.ranking.PostFeatureStore;
+import com.muse.social.feed.repository.PostRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Candidate generation for the feed. Each source is a capped Redis sorted
+ * set of post ids: newest posts per hashtag and newest posts per author.
+ * Reading a source is one ZREVRANGE of its top N. The trending rank comes
+ * from TrendingService.
+ *
+ * Sets are updated when posts are written. A set that is missing (cold
+ * start, expiry) is rebuilt from the indexed queries in PostRepository, and
+ * those queries also serve reads while Redis is unavailable.
+ *
+ * A rebuild is staged under a temporary key and renamed into place. Posts
+ * written while a set is missing are parked in a short-lived pending set
+ * that the rename merges in, so a post committed after the Postgres read
+ * is not lost until the next rebuild. A source with no posts is stored as a
+ * set holding only a marker, so it is not rebuilt on every read.
+ */
+@Service
+@Slf4j
+public class FeedCandidateService {
+
+    private static final String TAG_KEY = "feed:candidates:tag:";
+    private static final String AUTHOR_KEY = "feed:candidates:author:";
+    private static final String PENDING_SUFFIX = ":pending";
+
+    // Member of a set whose source has no posts; scored lowest so trimming drops it first
+    private static final String EMPTY_MARKER = "-";
+
+    // Longer than any rebuild takes from its Postgres read to its rename
+    private static final long STAGING_SECONDS = 300;
+
+    // Writes only touch sets that were built, so a post never makes a partial set look complete;
+    // for a missing set the post is parked in its pending set for a rebuild to merge
+    private static final DefaultRedisScript<Long> ADD_IF_BUILT = new DefaultRedisScript<>(
+            "local added = 0\n"
+                    + "for i, key in ipairs(KEYS) do\n"
+                    + "  local target = key\n"
+                    + "  if redis.call('EXISTS', key) == 1 then\n"
+                    + "    added = added + 1\n"
+                    + "  else\n"
+                    + "    target = key .. '" + PENDING_SUFFIX + "'\n"
+                    + "  end\n"
+                    + "  redis.call('ZADD', target, ARGV[i + 2], ARGV[1])\n"
+                    + "  redis.call('ZREMRANGEBYRANK', target, 0, -(tonumber(ARGV[2]) + 1))\n"
+                    + "  if target ~= key then\n"
+                    + "    redis.call('EXPIRE', target, " + STAGING_SECONDS + ")\n"
+                    + "  end\n"
+                    + "end\n"
+                    + "return added",
+            Long.class);
+
+    // Moves a staged rebuild into place and merges the posts parked while it ran;
+    // a set built meanwhile by another reader wins and the staged copy is dropped
+    private static final DefaultRedisScript<Long> PUBLISH_REBUILD = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then\n"
+                    + "  redis.call('DEL', KEYS[2])\n"
+                    + "  return 0\n"
+                    + "end\n"
+                    + "if redis.call('EXISTS', KEYS[2]) == 0 then\n"
+                    + "  redis.call('ZADD', KEYS[2], '-inf', '" + EMPTY_MARKER + "')\n"
+                    + "end\n"
+                    + "redis.call('RENAME', KEYS[2], KEYS[1])\n"
+                    + "if redis.call('EXISTS', KEYS[3]) == 1 then\n"
+                    + "  redis.call('ZUNIONSTORE', KEYS[1], 2, KEYS[1], KEYS[3], 'AGGREGATE', 'MAX')\n"
+                    + "  redis.call('DEL', KEYS[3])\n"
+                    + "end\n"
+                    + "redis.call('ZREMRANGEBYRANK', KEYS[1], 0, -(tonumber(ARGV[1]) + 1))\n"
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[2])\n"
+                    + "return 1",
+            Long.class);
+
+    private record ScoredId(long id, double score) {
+    }
+
+    private record Source(String key, Supplier<List<PostRepository.CandidateRow>> rebuild) {
+    }
+
+    private final StringRedisTemplate redis;
+    private final PostRepository postRepository;
+    private final PostFeatureStore featureStore;
+    private final TrendingService trendingService;
+    private final int indexSize;
+    private final Duration rebuildAfter;
+
+    public FeedCandidateService(StringRedisTemplate redis,
+            PostRepository postRepository,
+            PostFeatureStore featureStore,
+            TrendingService trendingService,
+            @Value("${feed.candidates.index-size:1000}") int indexSize,
+            @Value("${feed.candidates.rebuild-hours:24}") long rebuildHours) {
+        this.redis = redis;
+        this.postRepository = postRepository;
+        this.featureStore = featureStore;
+        this.trendingService = trendingService;
+        this.indexSize = Math.max(1, indexSize);
+        this.rebuildAfter = Duration.ofHours(Math.max(1, rebuildHours));
+    }
+
+    // ==================== Sources ====================
+
+    /** Newest posts tagged {@code tag}. */
+    public List<Long> byHashtag(String tag, int limit) {
+        return byHashtags(List.of(tag), limit);
+    }
+
+    /** Newest posts carrying any of the hashtags. */
+    public List<Long> byHashtags(Collection<String> hashtags, int limit) {
+        List<Source> sources = new ArrayList<>();
+        for (String tag : new LinkedHashSet<>(hashtags)) {
+            sources.add(new Source(TAG_KEY + tag, () -> postRepository.findRecentByHashtag(tag, indexSize)));
+        }
+        return top(sources, limit);
+    }
+
+    /** Newest posts by any of the authors. */
+    public List<Long> byAuthors(Collection<String> authorIds, int limit) {
+        List<Source> sources = new ArrayList<>();
+        for (String authorId : new LinkedHashSet<>(authorIds)) {
+            Long userId = parseUserId(authorId);
+            if (userId != null) {
+                sources.add(new Source(AUTHOR_KEY + userId,
+                        () -> postRepository.findRecentByAuthor(userId, indexSize)));
+            }
+        }
+        return top(sources, limit);
+    }
+
+    /** Posts ranked by time-decayed engagement. */
+    public List<Long> trending(int limit) {
+        return trendingService.top(limit);
+    }
+
+    /** Best posts outside the given hashtags, read straight from the quality index. */
+    public List<Long> discovery(Collection<String> excludeHashtags, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        return excludeHashtags.isEmpty()
+                ? postRepository.findTopQualityIds(limit)
+                : postRepository.findTopQualityIdsExcluding(excludeHashtags, limit);
+    }
+
+    /** Loads posts in the order of {@code ids}, skipping ids that no longer exist. */
+    public List<Post> load(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Post> byId = new HashMap<>();
+        for (Post post : postRepository.findAllById(ids)) {
+            byId.put(post.getId(), post);
+        }
+        List<Post> posts = new ArrayList<>(byId.size());
+        for (Long id : ids) {
+            Post post = byId.get(id);
+            if (post != null) {
+                posts.add(post);
+            }
+        }
+        return posts;
+    }
+
+    // ==================== Write path ====================
+
+    /**
+     * Adds a new post to its hashtag, author and trending sets, and computes
+     * its ranking features, once the transaction commits.
+     */
+    public void onPostCreated(Post post) {
+        afterCommit(() -> {
+            featureStore.put(post);
+            index(post);
+            trendingService.onPostCreated(post);
+        });
+    }
+
+    /** Refreshes a post's features after its counters changed. */
+    public void onEngagement(Post post) {
+        afterCommit(() -> featureStore.put(post));
+    }
+
+    public void onPostDeleted(Post post) {
+        afterCommit(() -> {
+            try {
+                String member = String.valueOf(post.getId());
+                for (String key : keysOf(post)) {
+                    redis.opsForZSet().remove(key, member);
+                    redis.opsForZSet().remove(key + PENDING_SUFFIX, member);
+                }
+            } catch (Exception e) {
+                log.debug("Could not remove post {} from candidate sets: {}", post.getId(), e.getMessage());
+            }
+            trendingService.onPostDeleted(post);
+        });
+    }
+
+    private void index(Post post) {
+        List<String> keys = new ArrayList<>(keysOf(post));
+        double created = post.getCreatedAt() != null ? post.getCreatedAt().toEpochMilli()
+                : System.currentTimeMillis();
+        addIfBuilt(keys, post.getId(), Collections.nCopies(keys.size(), created));
+    }
+
+    private void addIfBuilt(List<String> keys, Long postId, List<Double> scores) {
+        if (postId == null) {
+            return;
+        }
+        Object[] args = new Object[scores.size() + 2];
+        args[0] = String.valueOf(postId);
+        args[1] = String.valueOf(indexSize);
+        for (int i = 0; i < scores.size(); i++) {
+            args[i + 2] = String.valueOf(scores.get(i));
+        }
+        try {
+            redis.execute(ADD_IF_BUILT, keys, args);
+        } catch (Exception e) {
+            // The set is rebuilt from Postgres when it expires
+            log.debug("Could not index post {} in candidate sets: {}", postId, e.getMessage());
+        }
+    }
+
+    private static List<String> keysOf(Post post) {
+        List<String> keys = new ArrayList<>();
+        if (post.getHashtags() != null) {
+            for (String tag : new LinkedHashSet<>(post.getHashtags())) {
+                keys.add(TAG_KEY + tag);
+            }
+        }
+        if (post.getUserId() != null) {
+            keys.add(AUTHOR_KEY + post.getUserId());
+        }
+        return keys;
+    }
+
+    // ==================== Reads ====================
+
+    /** Top {@code limit} ids across the sources, merged by score. */
+    @SuppressWarnings("unchecked")
+    private List<Long> top(List<Source> sources, int limit) {
+        if (sources.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        int count = Math.min(limit, indexSize);
+
+        List<Object> ranges;
+        try {
+            ranges = redis.executePipelined((RedisCallback<Object>) connection -> {
+                readRanges(connection, sources, count);
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Candidate sets unavailable, reading from Postgres: {}", e.getMessage());
+            ranges = null;
+        }
+
+        List<ScoredId> merged = new ArrayList<>();
+        for (int i = 0; i < sources.size(); i++) {
+            Object range = ranges != null ? ranges.get(i) : null;
+            if (range instanceof Set<?> tuples && !tuples.isEmpty()) {
+                for (ZSetOperations.TypedTuple<String> tuple : (Set<ZSetOperations.TypedTuple<String>>) tuples) {
+                    if (EMPTY_MARKER.equals(tuple.getValue())) {
+                        continue;
+                    }
+                    merged.add(new ScoredId(Long.parseLong(tuple.getValue()),
+                            tuple.getScore() != null ? tuple.getScore() : 0.0));
+                }
+            } else {
+                merged.addAll(rebuild(sources.get(i), ranges != null, count));
+            }
+        }
+
+        merged.sort(Comparator.comparingDouble(ScoredId::score).reversed()
+                .thenComparing(Comparator.comparingLong(ScoredId::id).reversed()));
+        LinkedHashSet<Long> ids = new LinkedHashSet<>();
+        for (ScoredId candidate : merged) {
+            ids.add(candidate.id());
+            if (ids.size() == limit) {
+                break;
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    private static void readRanges(RedisConnection connection, List<Source> sources, int count) {
+        for (Source source : sources) {
+            connection.zSetCommands().zRevRangeWithScores(
+                    source.key().getBytes(StandardCharsets.UTF_8), 0, count - 1);
+        }
+    }
+
+    // Reads the source from Postgres and, when Redis is up, stores it as the set
+    private List<ScoredId> rebuild(Source source, boolean store, int count) {
+        List<PostRepository.CandidateRow> rows = source.rebuild().get();
+        if (store) {
+            String staging = source.key() + ":rebuild:" + UUID.randomUUID();
+            try {
+                if (!rows.isEmpty()) {
+                    Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>();
+                    for (PostRepository.CandidateRow row : rows) {
+                        tuples.add(ZSetOperations.TypedTuple.of(String.valueOf(row.getId()), score(row)));
+                    }
+                    redis.opsForZSet().add(staging, tuples);
+                    redis.expire(staging, Duration.ofSeconds(STAGING_SECONDS));
+                }
+                redis.execute(PUBLISH_REBUILD, List.of(source.key(), staging, source.key() + PENDING_SUFFIX),
+                        String.valueOf(indexSize), String.valueOf(rebuildAfter.toSeconds()));
+            } catch (Exception e) {
+                log.debug("Could not store candidate set {}: {}", source.key(), e.getMessage());
+            }
+        }
+        List<ScoredId> top = new ArrayList<>(Math.min(rows.size(), count));
+        for (int i = 0; i < rows.size() && i < count; i++) {
+            top.add(new ScoredId(rows.get(i).getId(), score(rows.get(i))));
+        }
+        return top;
+    }
+
+    private static double score(PostRepository.CandidateRow row) {
+        return row.getScore() != null ? row.getScore() : 0.0;
+    }
+
+    private static Long parseUserId(String userId) {
+        try {
+            return Long.parseLong(userId);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.muse.social.feed.service;
+
+import com.muse.social.feed.entity.Post;
+import com.muse.social.feed.service.NeuroFeedEngine.RankedPost;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Ranked feed sessions. The first request ranks a few hundred posts once and
+ * keeps the ranked ids in Redis for a short while; later pages are read from
+ * that list by an opaque cursor, so a scroll costs one list read and one
+ * batched load, and items never shift between pages.
+ *
+ * A session list is never modified. Asking for the first page again while a
+ * session is live ranks only posts newer than the session, merges them into
+ * a copy under a new version and leaves older cursors on the old list until
+ * it expires.
+ */
+@Service
+@Slf4j
+public class FeedSessionService {
+
+    private static final String SESSION_KEY = "feed:session:";
+    private static final String VERSION_KEY = "feed:session-version:";
+
+    /** A page of the feed; nextCursor is null on the last page. */
+    public record FeedPage(List<Post> posts, String nextCursor) {
+    }
+
+    private record Head(long version, long highWater) {
+    }
+
+    private record Entry(long id, float score) {
+    }
+
+    private record Session(Head head, List<Entry> entries) {
+    }
+
+    private final StringRedisTemplate redis;
+    private final NeuroFeedEngine neuroFeedEngine;
+    private final FeedCandidateService candidateService;
+    private final int sessionSize;
+    private final Duration ttl;
+
+    public FeedSessionService(StringRedisTemplate redis,
+            NeuroFeedEngine neuroFeedEngine,
+            FeedCandidateService candidateService,
+            @Value("${feed.session.size:300}") int sessionSize,
+            @Value("${feed.session.ttl-seconds:600}") long ttlSeconds) {
+        this.redis = redis;
+        this.neuroFeedEngine = neuroFeedEngine;
+        this.candidateService = candidateService;
+        this.sessionSize = Math.max(1, sessionSize);
+        this.ttl = Duration.ofSeconds(Math.max(1, ttlSeconds));
+    }
+
+    /**
+     * A page of the user's ranked feed. With a cursor the page continues the
+     * session it came from; without one the session is built or refreshed and
+     * read from {@code offset}.
+     */
+    public FeedPage page(String userId, String cursor, int offset, int limit) {
+        if (limit <= 0) {
+            return new FeedPage(List.of(), null);
+        }
+        long[] position = decode(cursor);
+        try {
+            if (position != null) {
+                List<String> slice = range(userId, position[0], position[1], limit);
+                if (slice != null) {
+                    return hydrate(userId, position[0], (int) position[1], limit, slice);
+                }
+                // Session expired: continue at the same offset of a fresh one
+                offset = (int) position[1];
+            }
+            return first(userId, Math.max(0, offset), limit);
+        } catch (Exception e) {
+            log.warn("Feed session unavailable for user {}, ranking directly: {}", userId, e.getMessage());
+            int from = Math.max(0, position != null ? (int) position[1] : offset);
+            return new FeedPage(neuroFeedEngine.generateFeed(userId, limit, from), null);
+        }
+    }
+
+    private FeedPage first(String userId, int offset, int limit) {
+        Head head = readHead(userId);
+        if (head != null && offset > 0) {
+            List<String> slice = range(userId, head.version(), offset, limit);
+            if (slice != null) {
+                return hydrate(userId, head.version(), offset, limit, slice);
+            }
+        }
+
+        Session session;
+        Map<Long, Post> loaded = new HashMap<>();
+        if (head == null) {
+            List<RankedPost> ranked = neuroFeedEngine.rank(userId, sessionSize, 0L);
+            ranked.forEach(r -> loaded.put(r.post().getId(), r.post()));
+            session = store(userId, toEntries(ranked), 0L);
+        } else {
+            session = refresh(userId, head, loaded);
+        }
+        if (session == null) {
+            return new FeedPage(List.of(), null);
+        }
+
+        List<Entry> entries = session.entries();
+        int from = Math.min(offset, entries.size());
+        int to = Math.min(from + limit, entries.size());
+        List<Long> ids = entries.subList(from, to).stream().map(Entry::id).toList();
+
+        // Freshly ranked posts are already loaded; the rest take one batched load
+        List<Long> missing = ids.stream().filter(id -> !loaded.containsKey(id)).toList();
+        for (Post post : candidateService.load(missing)) {
+            loaded.put(post.getId(), post);
+        }
+        List<Post> posts = ids.stream().map(loaded::get).filter(Objects::nonNull).toList();
+        String next = to < entries.size() ? encode(session.head().version(), to) : null;
+        return new FeedPage(posts, next);
+    }
+
+    // Ranks only posts newer than the session and merges them in under a new version
+    private Session refresh(String userId, Head head, Map<Long, Post> loaded) {
+        List<String> current = redis.opsForList().range(listKey(userId, head.version()), 0, -1);
+        if (current == null || current.isEmpty()) {
+            List<RankedPost> ranked = neuroFeedEngine.rank(userId, sessionSize, 0L);
+            ranked.forEach(r -> loaded.put(r.post().getId(), r.post()));
+            return store(userId, toEntries(ranked), 0L);
+        }
+        List<Entry> old = current.stream().map(FeedSessionService::parse).toList();
+
+        List<RankedPost> fresh = neuroFeedEngine.rank(userId, sessionSize, head.highWater());
+        if (fresh.isEmpty()) {
+            return new Session(head, old);
+        }
+        fresh.forEach(r -> loaded.put(r.post().getId(), r.post()));
+
+        // Both lists are ranked best first; merge by score
+        List<Entry> added = toEntries(fresh);
+        Set<Long> addedIds = new HashSet<>();
+        added.forEach(e -> addedIds.add(e.id()));
+        List<Entry> merged = new ArrayList<>(Math.min(sessionSize, added.size() + old.size()));
+        int i = 0;
+        int j = 0;
+        while (merged.size() < sessionSize && (i < added.size() || j < old.size())) {
+            if (j < old.size() && addedIds.contains(old.get(j).id())) {
+                j++;
+            } else if (j >= old.size() || (i < added.size() && added.get(i).score() >= old.get(j).score())) {
+                merged.add(added.get(i++));
+            } else {
+                merged.add(old.get(j++));
+            }
+        }
+        return store(userId, merged, head.highWater());
+    }
+
+    private Session store(String userId, List<Entry> entries, long previousHighWater) {
+        long highWater = previousHighWater;
+        for (Entry entry : entries) {
+            highWater = Math.max(highWater, entry.id());
+        }
+        Head head = new Head(nextVersion(userId), highWater);
+        if (!entries.isEmpty()) {
+            String key = listKey(userId, head.version());
+            redis.opsForList().rightPushAll(key, entries.stream().map(e -> e.id() + ":" + e.score()).toList());
+            redis.expire(key, ttl);
+        }
+        redis.opsForValue().set(SESSION_KEY + userId, head.version() + ":" + head.highWater(), ttl);
+        return new Session(head, entries);
+    }
+
+    // INCR hands concurrent first pages distinct lists, where a clock value could repeat
+    private long nextVersion(String userId) {
+        String key = VERSION_KEY + userId;
+        Long version = redis.opsForValue().increment(key);
+        if (version == null) {
+            throw new IllegalStateException("No session version for user " + userId);
+        }
+        // Outlives every list made under it, so a number is not handed out again while its list exists
+        redis.expire(key, ttl.multipliedBy(2));
+        return version;
+    }
+
+    // Null when the session list is gone
+    private List<String> range(String userId, long version, long offset, int limit) {
+        String key = listKey(userId, version);
+        // One extra entry tells whether there is a next page
+        List<String> slice = redis.opsForList().range(key, offset, offset + limit);
+        if (slice == null || (slice.isEmpty() && !Boolean.TRUE.equals(redis.hasKey(key)))) {
+            return null;
+        }
+        return slice;
+    }
+
+    private FeedPage hydrate(String userId, long version, int offset, int limit, List<String> slice) {
+        boolean more = slice.size() > limit;
+        List<Long> ids = slice.subList(0, Math.min(limit, slice.size())).stream()
+                .map(entry -> parse(entry).id())
+                .toList();
+        List<Post> posts = candidateService.load(ids);
+        return new FeedPage(posts, more ? encode(version, offset + ids.size()) : null);
+    }
+
+    private Head readHead(String userId) {
+        String value = redis.opsForValue().get(SESSION_KEY + userId);
+        if (value == null) {
+            return null;
+        }
+        int sep = value.indexOf(':');
+        try {
+            return new Head(Long.parseLong(value.substring(0, sep)), Long.parseLong(value.substring(sep + 1)));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static List<Entry> toEntries(List<RankedPost> ranked) {
+        return ranked.stream().map(r -> new Entry(r.post().getId(), r.score())).toList();
+    }
+
+    private static Entry parse(String entry) {
+        int sep = entry.indexOf(':');
+        return new Entry(Long.parseLong(entry.substring(0, sep)), Float.parseFloat(entry.substring(sep + 1)));
+    }
+
+    private static String listKey(String userId, long version) {
+        return SESSION_KEY + userId + ":" + version;
+    }
+
+    private static String encode(long version, long offset) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((version + ":" + offset).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Null for a missing or unreadable cursor, which starts the feed over
+    private static long[] decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = value.indexOf(':');
+            long version = Long.parseLong(value.substring(0, sep));
+            long offset = Long.parseLong(value.substring(sep + 1));
+            return offset >= 0 ? new long[] { version, offset } : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
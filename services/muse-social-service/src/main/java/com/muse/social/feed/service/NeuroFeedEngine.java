@@ -1,13 +1,17 @@
 package com.muse.social.feed.service;
 
 import com.muse.social.feed.entity.*;
+import com.muse.social.feed.ranking.FeedScorer;
+import com.muse.social.feed.ranking.PostFeatureStore;
+import com.muse.social.feed.ranking.PostFeatures;
+import com.muse.social.feed.ranking.SessionModeDetector;
+import com.muse.social.feed.ranking.UserDnaVector;
 import com.muse.social.feed.repository.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -25,18 +29,13 @@ import java.util.stream.Collectors;
 @Slf4j
 public class NeuroFeedEngine {
 
-    private final PostRepository postRepository;
     private final UserInterestDNARepository interestDNARepository;
     private final UserFollowRepository followRepository;
     private final SavedPostRepository savedPostRepository;
-    private final EngagementEventRepository engagementEventRepository;
-
-    // Algorithm weights
-    private static final double RELEVANCE_WEIGHT = 0.30;
-    private static final double QUALITY_WEIGHT = 0.25;
-    private static final double LEVEL_MATCH_WEIGHT = 0.20;
-    private static final double FRESHNESS_WEIGHT = 0.15;
-    private static final double COGNITIVE_WEIGHT = 0.10;
+    private final FeedCandidateService candidateService;
+    private final TimelineService timelineService;
+    private final PostFeatureStore featureStore;
+    private final SessionModeDetector sessionModeDetector;
 
     // Feed composition percentages
     private static final double INTEREST_RATIO = 0.50;
@@ -48,7 +47,23 @@ public class NeuroFeedEngine {
      * Generate personalized feed for user
      */
     public List<Post> generateFeed(String userId, int limit, int offset) {
+        List<RankedPost> ranked = rank(userId, offset + limit, 0L);
+        List<Post> page = new ArrayList<>(Math.max(0, ranked.size() - offset));
+        for (int i = offset; i < ranked.size(); i++) {
+            page.add(ranked.get(i).post());
+        }
+        return page;
+    }
+
+    /**
+     * Top {@code size} posts for the user by NeuroFeed score. With
+     * {@code newerThan} above zero only posts with a higher id from the
+     * interest and following sources are considered, which is what an
+     * incremental refresh of a cached feed needs.
+     */
+    public List<RankedPost> rank(String userId, int size, long newerThan) {
         log.info("Generating NeuroFeed for user: {}", userId);
+        boolean incremental = newerThan > 0;
 
         // 1. Get user's Interest DNA
         List<UserInterestDNA> userDNA = interestDNARepository.findTopInterestsByUserId(userId);
@@ -56,246 +71,63 @@ public class NeuroFeedEngine {
                 .map(UserInterestDNA::getHashtag)
                 .collect(Collectors.toSet());
 
-        // 2. Detect session mode (could be enhanced with real session tracking)
-        SessionMode mode = detectSessionMode(userId);
+        // 2. Detect session mode from the user's recent engagement
+        SessionMode mode = sessionModeDetector.mode(userId);
 
         // 3. Calculate cognitive load balanced composition
-        int interestCount = (int) (limit * INTEREST_RATIO);
-        int trendingCount = (int) (limit * TRENDING_RATIO);
-        int followingCount = (int) (limit * FOLLOWING_RATIO);
-        int discoveryCount = limit - interestCount - trendingCount - followingCount;
+        int interestCount = (int) (size * INTEREST_RATIO);
+        int trendingCount = (int) (size * TRENDING_RATIO);
+        int followingCount = (int) (size * FOLLOWING_RATIO);
+        int discoveryCount = size - interestCount - trendingCount - followingCount;
 
-        // 4. Fetch posts from each source
-        List<Post> feed = new ArrayList<>();
+        // 4. Collect candidate ids from each source, then load them once
+        Set<Long> candidates = new LinkedHashSet<>();
 
         // Interest-based posts (50%)
         if (!preferredHashtags.isEmpty()) {
-            feed.addAll(fetchByHashtags(preferredHashtags, interestCount));
+            candidates.addAll(candidateService.byHashtags(preferredHashtags, interestCount));
         }
 
-        // Trending posts (25%)
-        feed.addAll(fetchTrendingPosts(trendingCount));
-
         // Following posts (15%)
         List<String> followingIds = followRepository.findFollowingIds(userId);
         if (!followingIds.isEmpty()) {
-            feed.addAll(fetchFromFollowing(followingIds, followingCount));
+            candidates.addAll(timelineService.page(userId, followingIds, null, followingCount));
         }
 
-        // Discovery posts (10%)
-        feed.addAll(fetchDiscoveryPosts(preferredHashtags, discoveryCount));
-
-        // 5. Rank by NeuroFeed score
-        List<ScoredPost> scoredPosts = feed.stream()
-                .distinct()
-                .map(post -> new ScoredPost(post, calculateNeuroScore(post, userDNA, mode)))
-                .sorted(Comparator.comparingDouble(ScoredPost::score).reversed())
-                .skip(offset)
-                .limit(limit)
-                .toList();
+        if (incremental) {
+            // Sources are newest first, so new posts are at their heads
+            candidates.removeIf(id -> id <= newerThan);
+        } else {
+            // Trending posts (25%)
+            candidates.addAll(candidateService.trending(trendingCount));
 
-        return scoredPosts.stream().map(ScoredPost::post).toList();
-    }
-
-    /**
-     * THE CORE FORMULA - Calculate NeuroFeed score
-     */
-    private double calculateNeuroScore(Post post, List<UserInterestDNA> userDNA, SessionMode mode) {
-        double relevance = calculateRelevance(post, userDNA);
-        double quality = calculateQuality(post);
-        double levelMatch = calculateLevelMatch(post, userDNA);
-        double freshness = calculateFreshness(post);
-        double cognitiveBonus = calculateCognitiveBonus(post, mode);
-
-        return (relevance * RELEVANCE_WEIGHT) +
-                (quality * QUALITY_WEIGHT) +
-                (levelMatch * LEVEL_MATCH_WEIGHT) +
-                (freshness * FRESHNESS_WEIGHT) +
-                (cognitiveBonus * COGNITIVE_WEIGHT);
-    }
-
-    /**
-     * Relevance: How well does post match user interests?
-     */
-    private double calculateRelevance(Post post, List<UserInterestDNA> userDNA) {
-        if (post.getHashtags() == null || post.getHashtags().isEmpty()) {
-            return 0.3; // Baseline for posts without hashtags
-        }
-
-        Set<String> postTags = new HashSet<>(post.getHashtags());
-        double totalScore = 0;
-        double maxPossible = 0;
-
-        for (UserInterestDNA interest : userDNA) {
-            maxPossible += interest.getInterestScore();
-            if (postTags.contains(interest.getHashtag())) {
-                // Apply momentum boost for trending interests
-                totalScore += interest.getInterestScore() * interest.getMomentum();
-            }
+            // Discovery posts (10%)
+            candidates.addAll(candidateService.discovery(preferredHashtags, discoveryCount));
         }
 
-        return maxPossible > 0 ? Math.min(totalScore / maxPossible, 1.0) : 0.3;
-    }
+        List<Post> feed = candidateService.load(candidates);
 
-    /**
-     * Quality: Engagement signals
-     */
-    private double calculateQuality(Post post) {
-        // Log-scaled engagement score
-        double engagement = Math.log10(
-                post.getLikeCount() +
-                        (post.getSaveCount() != null ? post.getSaveCount() * 2 : 0) +
-                        (post.getCommentCount() != null ? post.getCommentCount() * 3 : 0) +
-                        1);
-        return Math.min(engagement / 5.0, 1.0);
-    }
+        // 5. Rank by NeuroFeed score (see FeedScorer)
+        List<PostFeatures> features = featureStore.features(feed);
+        UserDnaVector dna = new UserDnaVector(userDNA, featureStore::tagId);
+        float[] scores = FeedScorer.score(FeedScorer.Batch.of(features), dna, mode, Instant.now().getEpochSecond());
+        int[] ranked = FeedScorer.topK(scores, size);
 
-    /**
-     * Level Match: Right difficulty for user's learning level
-     */
-    private double calculateLevelMatch(Post post, List<UserInterestDNA> userDNA) {
-        if (post.getDifficultyLevel() == null) {
-            return 0.5; // Neutral for unclassified posts
+        List<RankedPost> result = new ArrayList<>(ranked.length);
+        for (int i : ranked) {
+            result.add(new RankedPost(feed.get(i), scores[i]));
         }
-
-        // Find user's level in post's topics
-        for (UserInterestDNA interest : userDNA) {
-            if (post.getHashtags() != null && post.getHashtags().contains(interest.getHashtag())) {
-                String userLevel = interest.getCurrentLevel().name();
-                String postDifficulty = post.getDifficultyLevel().name();
-
-                // Perfect match
-                if (isLevelMatch(userLevel, postDifficulty))
-                    return 1.0;
-
-                // One level above (growth zone) - good
-                if (isOneLevelAbove(userLevel, postDifficulty))
-                    return 0.8;
-
-                // One level below (review) - okay
-                if (isOneLevelBelow(userLevel, postDifficulty))
-                    return 0.6;
-
-                // Too advanced or too basic
-                return 0.4;
-            }
-        }
-
-        return 0.5; // No match found
-    }
-
-    /**
-     * Freshness: Exponential decay based on age
-     */
-    private double calculateFreshness(Post post) {
-        long hoursOld = ChronoUnit.HOURS.between(post.getCreatedAt(), Instant.now());
-        // Decay factor: ~0.95 after 1 hour, ~0.6 after 10 hours, ~0.13 after 40 hours
-        return Math.exp(-0.05 * hoursOld);
-    }
-
-    /**
-     * Cognitive Bonus: Balance content types for optimal learning
-     */
-    private double calculateCognitiveBonus(Post post, SessionMode mode) {
-        if (post.getContentType() == null)
-            return 0.5;
-
-        return switch (mode) {
-            case BROWSING -> {
-                // Prefer quick, visual content
-                yield switch (post.getContentType()) {
-                    case INSIGHT -> 0.9;
-                    case DISCUSSION -> 0.8;
-                    case QUESTION -> 0.7;
-                    case RESOURCE -> 0.5;
-                    case ANNOUNCEMENT -> 0.6;
-                };
-            }
-            case LEARNING -> {
-                // Prefer detailed, educational content
-                yield switch (post.getContentType()) {
-                    case RESOURCE -> 0.9;
-                    case INSIGHT -> 0.8;
-                    case QUESTION -> 0.7;
-                    case DISCUSSION -> 0.6;
-                    case ANNOUNCEMENT -> 0.5;
-                };
-            }
-            case DEEP_FOCUS -> {
-                // Prefer challenging content
-                yield switch (post.getContentType()) {
-                    case QUESTION -> 0.9;
-                    case RESOURCE -> 0.8;
-                    case INSIGHT -> 0.7;
-                    case DISCUSSION -> 0.5;
-                    case ANNOUNCEMENT -> 0.4;
-                };
-            }
-        };
-    }
-
-    // ==================== Helper Methods ====================
-
-    private List<Post> fetchByHashtags(Set<String> hashtags, int limit) {
-        // This would be a custom query in PostRepository
-        return postRepository.findAll().stream()
-                .filter(p -> p.getHashtags() != null && !Collections.disjoint(p.getHashtags(), hashtags))
-                .limit(limit)
-                .toList();
-    }
-
-    private List<Post> fetchTrendingPosts(int limit) {
-        return postRepository.findAll().stream()
-                .sorted(Comparator.comparing(Post::getTrendingScore, Comparator.nullsLast(Comparator.reverseOrder())))
-                .limit(limit)
-                .toList();
-    }
-
-    private List<Post> fetchFromFollowing(List<String> followingIds, int limit) {
-        return postRepository.findAll().stream()
-                .filter(p -> followingIds.contains(String.valueOf(p.getUserId())))
-                .limit(limit)
-                .toList();
-    }
-
-    private List<Post> fetchDiscoveryPosts(Set<String> excludeHashtags, int limit) {
-        return postRepository.findAll().stream()
-                .filter(p -> p.getHashtags() == null || Collections.disjoint(p.getHashtags(), excludeHashtags))
-                .sorted(Comparator.comparing(Post::getQualityScore, Comparator.nullsLast(Comparator.reverseOrder())))
-                .limit(limit)
-                .toList();
-    }
-
-    private SessionMode detectSessionMode(String userId) {
-        // Simplified detection - could be enhanced with real session data
-        return SessionMode.BROWSING;
+        return result;
     }
 
-    private boolean isLevelMatch(String userLevel, String postDifficulty) {
-        return userLevel.equalsIgnoreCase(postDifficulty) ||
-                (userLevel.equals("BEGINNER") && postDifficulty.equals("EASY")) ||
-                (userLevel.equals("INTERMEDIATE") && postDifficulty.equals("MEDIUM")) ||
-                (userLevel.equals("ADVANCED") && postDifficulty.equals("HARD"));
-    }
-
-    private boolean isOneLevelAbove(String userLevel, String postDifficulty) {
-        return (userLevel.equals("BEGINNER") && postDifficulty.equals("MEDIUM")) ||
-                (userLevel.equals("INTERMEDIATE") && postDifficulty.equals("HARD"));
-    }
+    // ==================== Inner Types ====================
 
-    private boolean isOneLevelBelow(String userLevel, String postDifficulty) {
-        return (userLevel.equals("INTERMEDIATE") && postDifficulty.equals("EASY")) ||
-                (userLevel.equals("ADVANCED") && postDifficulty.equals("MEDIUM"));
+    public record RankedPost(Post post, float score) {
     }
 
-    // ==================== Inner Types ====================
-
     public enum SessionMode {
         BROWSING, // Quick scrolling
         LEARNING, // Focused study
         DEEP_FOCUS // Research mode
     }
-
-    private record ScoredPost(Post post, double score) {
-    }
 }
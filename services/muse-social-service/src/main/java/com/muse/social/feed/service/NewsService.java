@@ -1,167 +1,342 @@
 package com.muse.social.feed.service;
 
 import com.muse.social.feed.entity.Post;
+import com.muse.social.feed.entity.RssFeedSource;
 import com.muse.social.feed.repository.PostRepository;
+import com.muse.social.feed.repository.RssFeedSourceRepository;
 import com.rometools.rome.feed.synd.SyndEntry;
 import com.rometools.rome.feed.synd.SyndFeed;
 import com.rometools.rome.io.SyndFeedInput;
-import com.rometools.rome.io.XmlReader;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.boot.context.event.ApplicationReadyEvent;
-import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Scheduled;
-
 import org.jdom2.Element;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.io.StringReader;
 import java.net.URI;
-import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * RSS ingestion. Feeds are fetched in parallel on virtual threads with a cap
+ * on concurrent requests, each with a conditional GET against the validators
+ * of its last response. New entries are deduplicated by URL in one query and
+ * by SimHash of title and description against recent posts, summarized in
+ * one batch, then published. Every source keeps its own interval: shorter
+ * while it publishes new items, longer while it is quiet or failing.
+ *
+ * Sources are claimed with a lease before they are fetched, so replicas
+ * never fetch the same source in the same cycle, and only the schedule and
+ * validator columns are written back.
+ */
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class NewsService {
 
-    private final PostService postService;
-    private final AiContentService aiContentService;
-    private final PostRepository postRepository;
-    private final com.muse.social.feed.repository.RssFeedSourceRepository rssFeedSourceRepository;
+    private static final String USER_AGENT =
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/91.0.4472.124 Safari/537.36";
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    // Limit to 10 new posts per feed and run for variety
+    private static final int MAX_POSTS_PER_FEED = 10;
+    private static final int DEFAULT_INTERVAL_MINUTES = 240;
+    private static final int MAX_BACKOFF_SHIFT = 5;
+    private static final int URL_QUERY_CHUNK = 500;
 
     private static final List<String> BLOCKED_KEYWORDS = List.of(
             "murder", "kill", "death", "war", "crime", "assault", "drug", "sex",
             "terror", "bomb", "attack", "violence", "suicide", "rape", "abuse",
             "politics", "election", "scandal", "gossip", "celebrity");
 
-    public void fetchAndProcessNews() {
-        cleanupDuplicates();
-        log.info("Starting educational news fetch cycle...");
+    private enum Outcome {
+        UPDATED, NOT_MODIFIED, FAILED
+    }
 
-        // Fetch active RSS feeds from database, ordered by priority
-        List<com.muse.social.feed.entity.RssFeedSource> feedSources = rssFeedSourceRepository
-                .findByActiveTrueOrderByPriorityDesc();
+    private record FetchResult(RssFeedSource source, Outcome outcome, List<SyndEntry> entries,
+            String etag, String lastModified) {
 
-        if (feedSources.isEmpty()) {
-            log.warn("No active RSS feed sources found in database");
-            return;
+        static FetchResult failed(RssFeedSource source) {
+            return new FetchResult(source, Outcome.FAILED, List.of(), null, null);
         }
+    }
 
-        log.info("Found {} active RSS feed sources", feedSources.size());
-
-        // Shuffle feeds for variety
-        List<com.muse.social.feed.entity.RssFeedSource> shuffledFeeds = new ArrayList<>(feedSources);
-        java.util.Collections.shuffle(shuffledFeeds);
-
-        // Create HTTP client with redirect policy
-        try (java.net.http.HttpClient client = java.net.http.HttpClient.newBuilder()
-                .followRedirects(java.net.http.HttpClient.Redirect.NORMAL)
-                .build()) {
-            for (com.muse.social.feed.entity.RssFeedSource feedSource : shuffledFeeds) {
-                String feedUrl = feedSource.getUrl();
-                log.info("Fetching feed: {} ({})", feedSource.getName(), feedUrl);
-                try {
-                    java.net.http.HttpRequest request = java.net.http.HttpRequest.newBuilder()
-                            .uri(java.net.URI.create(feedUrl))
-                            .header("User-Agent",
-                                    "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/91.0.4472.124 Safari/537.36")
-                            .timeout(java.time.Duration.ofSeconds(10))
-                            .build();
-
-                    java.net.http.HttpResponse<String> response = client.send(request,
-                            java.net.http.HttpResponse.BodyHandlers.ofString());
-
-                    if (response.statusCode() != 200) {
-                        log.error("Failed to fetch feed {} ({}). Status: {}", feedSource.getName(), feedUrl,
-                                response.statusCode());
-                        // Track error
-                        feedSource.setFetchErrorCount(feedSource.getFetchErrorCount() + 1);
-                        rssFeedSourceRepository.save(feedSource);
-                        continue;
-                    }
-
-                    String body = response.body();
+    private record Candidate(RssFeedSource source, SyndEntry entry, String title, String link,
+            String description, long fingerprint) {
+    }
 
-                    if (body == null || body.isBlank()) {
-                        continue;
-                    }
+    private final PostService postService;
+    private final AiContentService aiContentService;
+    private final PostRepository postRepository;
+    private final RssFeedSourceRepository rssFeedSourceRepository;
+    private final int maxConcurrency;
+    private final int minIntervalMinutes;
+    private final int maxIntervalMinutes;
+    private final Duration dedupWindow;
+    private final Duration lease;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public NewsService(PostService postService,
+            AiContentService aiContentService,
+            PostRepository postRepository,
+            RssFeedSourceRepository rssFeedSourceRepository,
+            @Value("${news.ingest.max-concurrency:8}") int maxConcurrency,
+            @Value("${news.ingest.min-interval-minutes:30}") int minIntervalMinutes,
+            @Value("${news.ingest.max-interval-minutes:720}") int maxIntervalMinutes,
+            @Value("${news.ingest.dedup-window-days:7}") int dedupWindowDays,
+            @Value("${news.ingest.lease-minutes:30}") int leaseMinutes) {
+        this.postService = postService;
+        this.aiContentService = aiContentService;
+        this.postRepository = postRepository;
+        this.rssFeedSourceRepository = rssFeedSourceRepository;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.minIntervalMinutes = Math.max(1, minIntervalMinutes);
+        this.maxIntervalMinutes = Math.max(this.minIntervalMinutes, maxIntervalMinutes);
+        this.dedupWindow = Duration.ofDays(Math.max(1, dedupWindowDays));
+        this.lease = Duration.ofMinutes(Math.max(1, leaseMinutes));
+    }
 
-                    SyndFeedInput input = new SyndFeedInput();
-                    SyndFeed feed = input.build(new java.io.StringReader(body));
+    /** Fetches every active source now, whatever its schedule. */
+    public void fetchAndProcessNews() {
+        ingest(leaseUntil -> rssFeedSourceRepository.claimActive(leaseUntil));
+    }
 
-                    log.info("Feed {} ({}) fetched. Entries found: {}", feedSource.getName(), feedUrl,
-                            feed.getEntries().size());
+    /** Fetches the active sources whose next fetch is due. */
+    public void fetchDueSources() {
+        ingest(leaseUntil -> rssFeedSourceRepository.claimDue(Instant.now(), leaseUntil));
+    }
 
-                    int count = 0;
-                    for (SyndEntry entry : feed.getEntries()) {
-                        if (count >= 10) // Limit to 10 per feed for variety
-                            break;
+    // Claims only once this instance is free to run a cycle, so no source is leased and then left alone
+    private void ingest(Function<Instant, List<RssFeedSource>> claim) {
+        if (!running.compareAndSet(false, true)) {
+            log.info("News fetch cycle already running, skipping");
+            return;
+        }
+        try {
+            List<RssFeedSource> sources = new ArrayList<>(claim.apply(Instant.now().plus(lease)));
+            if (sources.isEmpty()) {
+                return;
+            }
+            sources.sort(Comparator.comparingInt(RssFeedSource::getPriority).reversed());
+            log.info("Starting educational news fetch cycle for {} sources...", sources.size());
+            List<FetchResult> results = fetchAll(sources);
+            Map<Long, Integer> created = publish(results);
+            Instant now = Instant.now();
+            for (FetchResult result : results) {
+                reschedule(result, created.getOrDefault(result.source().getId(), 0), now);
+            }
+            for (FetchResult result : results) {
+                RssFeedSource source = result.source();
+                rssFeedSourceRepository.updateSchedule(source.getId(), source.getEtag(), source.getLastModified(),
+                        source.getLastFetchedAt(), source.getFetchErrorCount(), source.getFetchIntervalMinutes(),
+                        source.getNextFetchAt());
+            }
+            log.info("News fetch cycle completed: {} posts created", created.values().stream()
+                    .mapToInt(Integer::intValue).sum());
+        } catch (Exception e) {
+            log.error("Critical error in news fetch cycle", e);
+        } finally {
+            running.set(false);
+        }
+    }
 
-                        if (processEntry(entry)) {
-                            count++;
-                        }
+    // ==================== Fetch ====================
+
+    private List<FetchResult> fetchAll(List<RssFeedSource> sources) throws InterruptedException {
+        Semaphore permits = new Semaphore(maxConcurrency);
+        List<FetchResult> results = new ArrayList<>(sources.size());
+        try (HttpClient client = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(TIMEOUT)
+                .build();
+                ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<FetchResult>> futures = new ArrayList<>(sources.size());
+            for (RssFeedSource source : sources) {
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return fetch(client, source);
+                    } finally {
+                        permits.release();
                     }
-
-                    // Update last fetched timestamp and reset error count on success
-                    feedSource.setLastFetchedAt(Instant.now());
-                    feedSource.setFetchErrorCount(0);
-                    rssFeedSourceRepository.save(feedSource);
-
-                } catch (Throwable e) {
-                    log.error("Error fetching feed: {} ({})", feedSource.getName(), feedUrl, e);
-                    // Track error
-                    feedSource.setFetchErrorCount(feedSource.getFetchErrorCount() + 1);
-                    rssFeedSourceRepository.save(feedSource);
+                }));
+            }
+            for (int i = 0; i < sources.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    log.error("Error fetching feed: {}", sources.get(i).getName(), e.getCause());
+                    results.add(FetchResult.failed(sources.get(i)));
                 }
             }
-        } catch (Throwable e) {
-            log.error("Critical error in news fetch cycle", e);
         }
-        log.info("News fetch cycle completed.");
+        return results;
     }
 
-    private boolean processEntry(SyndEntry entry) {
+    private FetchResult fetch(HttpClient client, RssFeedSource source) {
+        String feedUrl = source.getUrl();
         try {
-            String title = entry.getTitle();
-            String originalLink = entry.getLink();
-            String description = entry.getDescription() != null ? entry.getDescription().getValue() : "";
+            HttpRequest.Builder request = HttpRequest.newBuilder()
+                    .uri(URI.create(feedUrl))
+                    .header("User-Agent", USER_AGENT)
+                    .timeout(TIMEOUT);
+            if (source.getEtag() != null) {
+                request.header("If-None-Match", source.getEtag());
+            }
+            if (source.getLastModified() != null) {
+                request.header("If-Modified-Since", source.getLastModified());
+            }
+            HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
 
-            String link = normalizeUrl(originalLink);
+            if (response.statusCode() == 304) {
+                log.debug("Feed {} not modified", source.getName());
+                return new FetchResult(source, Outcome.NOT_MODIFIED, List.of(), null, null);
+            }
+            if (response.statusCode() != 200) {
+                log.error("Failed to fetch feed {} ({}). Status: {}", source.getName(), feedUrl,
+                        response.statusCode());
+                return FetchResult.failed(source);
+            }
 
-            // Deduplication check
-            if (link != null && postRepository.existsBySourceUrl(link)) {
-                log.info("Skipping existing post: {}", title);
-                return false;
+            String etag = response.headers().firstValue("ETag").orElse(null);
+            String lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+            String body = response.body();
+            if (body == null || body.isBlank()) {
+                return new FetchResult(source, Outcome.UPDATED, List.of(), etag, lastModified);
             }
+            SyndFeed feed = new SyndFeedInput().build(new StringReader(body));
+            log.info("Feed {} ({}) fetched. Entries found: {}", source.getName(), feedUrl, feed.getEntries().size());
+            return new FetchResult(source, Outcome.UPDATED, feed.getEntries(), etag, lastModified);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return FetchResult.failed(source);
+        } catch (Exception e) {
+            log.error("Error fetching feed: {} ({}): {}", source.getName(), feedUrl, e.getMessage());
+            return FetchResult.failed(source);
+        }
+    }
 
-            // Also check by title hash if link is missing or unreliable (optional, but good
-            // safety)
-            // For now, relying on link is safer as titles might change slightly.
+    // ==================== Dedup and publish ====================
 
-            if (!isSafeContent(title, description)) {
-                return false;
+    // Posts created per source id
+    private Map<Long, Integer> publish(List<FetchResult> results) {
+        List<Candidate> candidates = select(results);
+        Map<Long, Integer> created = new HashMap<>();
+        if (candidates.isEmpty()) {
+            return created;
+        }
+
+        List<AiContentService.SummaryRequest> requests = candidates.stream()
+                .map(c -> new AiContentService.SummaryRequest(c.title(), contentForAi(c)))
+                .toList();
+        List<String> summaries;
+        try {
+            summaries = aiContentService.generateSummaries(requests);
+        } catch (Exception e) {
+            log.error("AI Summary generation failed for {} entries: {}", requests.size(), e.getMessage());
+            summaries = List.of();
+        }
+
+        for (int i = 0; i < candidates.size(); i++) {
+            Candidate candidate = candidates.get(i);
+            String summary = i < summaries.size() ? summaries.get(i) : null;
+            if (summary == null || summary.isBlank()) {
+                summary = contentForAi(candidate); // Fallback to original content
             }
+            if (createPost(candidate, summary)) {
+                created.merge(candidate.source().getId(), 1, Integer::sum);
+            }
+        }
+        return created;
+    }
 
-            String contentForAi = (description != null && !description.isBlank()) ? description : title;
-            if (contentForAi == null || contentForAi.isBlank()) {
-                log.warn("Skipping entry with no content: {}", title);
-                return false;
+    // New, safe entries that are not a near copy of a recent post or of each other
+    private List<Candidate> select(List<FetchResult> results) {
+        List<Candidate> parsed = new ArrayList<>();
+        for (FetchResult result : results) {
+            for (SyndEntry entry : result.entries()) {
+                String title = entry.getTitle() != null ? entry.getTitle().trim() : "";
+                String description = entry.getDescription() != null && entry.getDescription().getValue() != null
+                        ? entry.getDescription().getValue()
+                        : "";
+                long fingerprint = SimHash.of(title + " " + description);
+                parsed.add(new Candidate(result.source(), entry, title, normalizeUrl(entry.getLink()),
+                        description, fingerprint));
             }
+        }
+        if (parsed.isEmpty()) {
+            return List.of();
+        }
 
-            String summary;
-            try {
-                summary = aiContentService.generateSummary(title, contentForAi);
-            } catch (Exception e) {
-                log.error("AI Summary generation failed for {}: {}", title, e.getMessage());
-                summary = contentForAi; // Fallback to original content
+        Set<String> seenLinks = existingSourceUrls(parsed);
+        SimHash.Index seenContent = new SimHash.Index();
+        for (Long fingerprint : postRepository.findFingerprintsSince(Instant.now().minus(dedupWindow))) {
+            seenContent.add(fingerprint);
+        }
+
+        List<Candidate> selected = new ArrayList<>();
+        Map<Long, Integer> perSource = new HashMap<>();
+        for (Candidate candidate : parsed) {
+            Long sourceId = candidate.source().getId();
+            if (perSource.getOrDefault(sourceId, 0) >= MAX_POSTS_PER_FEED) {
+                continue;
+            }
+            if (candidate.link() != null && !seenLinks.add(candidate.link())) {
+                log.debug("Skipping existing post: {}", candidate.title());
+                continue;
+            }
+            if (!isSafeContent(candidate.title(), candidate.description())) {
+                continue;
+            }
+            if (contentForAi(candidate).isBlank()) {
+                log.warn("Skipping entry with no content: {}", candidate.link());
+                continue;
+            }
+            if (seenContent.containsNear(candidate.fingerprint())) {
+                log.debug("Skipping near-duplicate post: {}", candidate.title());
+                continue;
             }
+            seenContent.add(candidate.fingerprint());
+            selected.add(candidate);
+            perSource.merge(sourceId, 1, Integer::sum);
+        }
+        return selected;
+    }
 
-            String imageUrl = extractImage(entry, description);
+    private Set<String> existingSourceUrls(List<Candidate> candidates) {
+        List<String> links = candidates.stream()
+                .map(Candidate::link)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        Set<String> existing = new HashSet<>();
+        for (int i = 0; i < links.size(); i += URL_QUERY_CHUNK) {
+            existing.addAll(postRepository.findExistingSourceUrls(
+                    links.subList(i, Math.min(i + URL_QUERY_CHUNK, links.size()))));
+        }
+        return existing;
+    }
+
+    private String contentForAi(Candidate candidate) {
+        return !candidate.description().isBlank() ? candidate.description() : candidate.title();
+    }
+
+    private boolean createPost(Candidate candidate, String summary) {
+        try {
+            String title = candidate.title();
+            String imageUrl = extractImage(candidate.entry(), candidate.description());
 
             // Determine media type based on whether we have an actual image
             Post.MediaType mediaType;
@@ -199,25 +374,54 @@ public class NewsService {
 
             // Create post with appropriate media type and URLs
             // Source URL is stored in the sourceUrl field, not in content
-            postService.createPost(1L, summary, tags, mediaUrls, mediaType, link);
+            postService.createPost(1L, summary, tags, mediaUrls, mediaType, candidate.link(),
+                    candidate.fingerprint());
             log.info("Created educational post: {} [Type: {}]", title, mediaType);
             return true;
 
         } catch (Exception e) {
-            log.error("Error processing entry: {}", entry.getTitle(), e);
+            log.error("Error processing entry: {}", candidate.title(), e);
             return false;
         }
     }
 
-    @Transactional
-    public void cleanupDuplicates() {
-        // Temporarily disabled - causing query errors
-        // try {
-        // postRepository.deleteDuplicatePosts();
-        // log.info("Cleaned up duplicate posts.");
-        // } catch (Exception e) {
-        // log.error("Failed to cleanup duplicates", e);
-        // }
+    // ==================== Scheduling ====================
+
+    private void reschedule(FetchResult result, int created, Instant now) {
+        RssFeedSource source = result.source();
+        int interval = source.getFetchIntervalMinutes() != null
+                ? source.getFetchIntervalMinutes()
+                : DEFAULT_INTERVAL_MINUTES;
+        long delayMinutes;
+        switch (result.outcome()) {
+            case UPDATED -> {
+                source.setEtag(result.etag());
+                source.setLastModified(result.lastModified());
+                source.setLastFetchedAt(now);
+                source.setFetchErrorCount(0);
+                interval = clampInterval(created > 0 ? interval / 2 : interval * 3 / 2);
+                delayMinutes = interval;
+            }
+            case NOT_MODIFIED -> {
+                source.setLastFetchedAt(now);
+                source.setFetchErrorCount(0);
+                interval = clampInterval(interval * 3 / 2);
+                delayMinutes = interval;
+            }
+            default -> {
+                // Exponential backoff on the unchanged interval
+                source.setFetchErrorCount(source.getFetchErrorCount() + 1);
+                interval = clampInterval(interval);
+                int shift = Math.min(source.getFetchErrorCount(), MAX_BACKOFF_SHIFT);
+                delayMinutes = Math.min((long) interval << shift, maxIntervalMinutes);
+            }
+        }
+        source.setFetchIntervalMinutes(interval);
+        source.setNextFetchAt(now.plus(Duration.ofMinutes(delayMinutes)));
+    }
+
+    private int clampInterval(int minutes) {
+        return Math.max(minIntervalMinutes, Math.min(maxIntervalMinutes, minutes));
     }
 
     private String normalizeUrl(String url) {
@@ -0,0 +1,371 @@
+package com.muse.social.feed.service;
+
+import com.muse.social.feed.entity.Post;
+import com.muse.social.feed.repository.PostRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Post engagement counters. Increments go to a Redis hash per post
+ * (HINCRBY) and mark the post dirty, so concurrent likes never contend on
+ * the post row. A flush every few seconds takes the pending deltas and
+ * applies them with one batched {@code SET x = x + delta} per post, which
+ * also recomputes the quality score, and feeds the positive deltas to the
+ * trending rank.
+ *
+ * Likes, comments and saves have tables of record; a nightly reconciliation
+ * recounts them and corrects any drift (lost deltas, failed flushes). Views
+ * and shares only exist as counters.
+ */
+@Service
+@Slf4j
+public class PostCounterService {
+
+    private static final String PENDING_KEY = "feed:counters:";
+    private static final String DIRTY_KEY = "feed:counters:dirty";
+    private static final String RECONCILE_LOCK_KEY = "feed:counters:reconcile-lock";
+
+    // Pops dirty posts and takes their pending deltas; a hash is read and removed in one step
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> DRAIN = new DefaultRedisScript<>(
+            "local ids = redis.call('SPOP', KEYS[1], tonumber(ARGV[1]))\n"
+                    + "local out = {}\n"
+                    + "for _, id in ipairs(ids) do\n"
+                    + "  local key = ARGV[2] .. id\n"
+                    + "  local fields = redis.call('HGETALL', key)\n"
+                    + "  if #fields > 0 then\n"
+                    + "    redis.call('DEL', key)\n"
+                    + "    out[#out + 1] = id\n"
+                    + "    out[#out + 1] = fields\n"
+                    + "  end\n"
+                    + "end\n"
+                    + "return out",
+            List.class);
+
+    private static final String APPLY_DELTAS = "UPDATE posts SET "
+            + "view_count = COALESCE(view_count, 0) + ?, "
+            + "like_count = GREATEST(COALESCE(like_count, 0) + ?, 0), "
+            + "comment_count = GREATEST(COALESCE(comment_count, 0) + ?, 0), "
+            + "save_count = GREATEST(COALESCE(save_count, 0) + ?, 0), "
+            + "share_count = COALESCE(share_count, 0) + ?, "
+            + "quality_score = LEAST(LOG(GREATEST(COALESCE(like_count, 0) + ?, 0) "
+            + "+ GREATEST(COALESCE(save_count, 0) + ?, 0) * 2 "
+            + "+ GREATEST(COALESCE(comment_count, 0) + ?, 0) * 3 + 1) / 5.0, 1.0), "
+            + "updated_at = NOW() "
+            + "WHERE id = ?";
+
+    private static final String RECOUNT = "SELECT p.id, "
+            + "COALESCE(p.like_count, 0), COALESCE(p.comment_count, 0), COALESCE(p.save_count, 0), "
+            + "(SELECT COUNT(*) FROM reactions r WHERE r.target_type = 'POST' AND r.target_id = p.id), "
+            + "(SELECT COUNT(*) FROM comments c WHERE c.post_id = p.id), "
+            + "(SELECT COUNT(*) FROM saved_posts s WHERE s.post_id = p.id) "
+            + "FROM posts p WHERE p.id > ? ORDER BY p.id LIMIT ?";
+
+    /** Post counters with the trending weight of one increment. */
+    public enum Counter {
+        VIEWS(1.0), LIKES(5.0), COMMENTS(10.0), SAVES(15.0), SHARES(20.0);
+
+        private final double trendingWeight;
+
+        Counter(double trendingWeight) {
+            this.trendingWeight = trendingWeight;
+        }
+    }
+
+    private final StringRedisTemplate redis;
+    private final PostRepository postRepository;
+    private final FeedCandidateService candidateService;
+    private final TrendingService trendingService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public PostCounterService(StringRedisTemplate redis,
+            PostRepository postRepository,
+            FeedCandidateService candidateService,
+            TrendingService trendingService,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${feed.counters.batch-size:1000}") int batchSize) {
+        this.redis = redis;
+        this.postRepository = postRepository;
+        this.candidateService = candidateService;
+        this.trendingService = trendingService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    // ==================== Increments ====================
+
+    /** Adds {@code delta} to a post counter once the current transaction commits. */
+    public void increment(Long postId, Counter counter, long delta) {
+        if (postId == null || delta == 0) {
+            return;
+        }
+        afterCommit(() -> incrementAll(counter, Map.of(postId, delta)));
+    }
+
+    /** Adds a delta per post to one counter, in one pipelined round trip. */
+    public void incrementAll(Counter counter, Map<Long, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        byte[] field = bytes(counter.name());
+        byte[] dirty = bytes(DIRTY_KEY);
+        try {
+            redis.executePipelined((RedisCallback<Object>) connection -> {
+                for (Map.Entry<Long, Long> delta : deltas.entrySet()) {
+                    // The increment goes first, so a flush never pops the post before its delta is there
+                    connection.hashCommands().hIncrBy(bytes(PENDING_KEY + delta.getKey()), field, delta.getValue());
+                    connection.setCommands().sAdd(dirty, bytes(String.valueOf(delta.getKey())));
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Counter buffer unavailable, writing {} {} deltas to Postgres: {}",
+                    deltas.size(), counter, e.getMessage());
+            Map<Long, long[]> direct = new HashMap<>();
+            deltas.forEach((postId, delta) -> direct.computeIfAbsent(postId, id -> new long[Counter.values().length])
+                    [counter.ordinal()] = delta);
+            try {
+                apply(direct);
+            } catch (Exception applyFailed) {
+                log.error("Dropping {} {} deltas: {}", deltas.size(), counter, applyFailed.getMessage());
+            }
+        }
+    }
+
+    /** The counter including deltas that are not flushed yet. */
+    public long current(Post post, Counter counter) {
+        Integer stored = switch (counter) {
+            case VIEWS -> post.getViewCount();
+            case LIKES -> post.getLikeCount();
+            case COMMENTS -> post.getCommentCount();
+            case SAVES -> post.getSaveCount();
+            case SHARES -> post.getShareCount();
+        };
+        long pending = 0;
+        try {
+            Object value = redis.opsForHash().get(PENDING_KEY + post.getId(), counter.name());
+            pending = value != null ? Long.parseLong(value.toString()) : 0;
+        } catch (Exception e) {
+            log.debug("Pending counters of post {} unavailable: {}", post.getId(), e.getMessage());
+        }
+        return Math.max(0, (stored != null ? stored : 0) + pending);
+    }
+
+    // ==================== Flush ====================
+
+    @Scheduled(fixedDelayString = "${feed.counters.flush-ms:2000}")
+    public synchronized void flush() {
+        while (true) {
+            Map<Long, long[]> batch;
+            try {
+                batch = drain();
+            } catch (Exception e) {
+                log.debug("Counter buffer unavailable: {}", e.getMessage());
+                return;
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> apply(batch));
+            } catch (Exception e) {
+                log.warn("Flushing counters of {} posts failed, keeping them for the next flush: {}",
+                        batch.size(), e.getMessage());
+                restore(batch);
+                return;
+            }
+            refresh(batch.keySet(), trendingWeights(batch));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, long[]> drain() {
+        List<Object> popped = redis.execute(DRAIN, List.of(DIRTY_KEY),
+                String.valueOf(batchSize), PENDING_KEY);
+        Map<Long, long[]> batch = new TreeMap<>(); // Row locks in id order
+        if (popped == null) {
+            return batch;
+        }
+        for (int i = 0; i + 1 < popped.size(); i += 2) {
+            long postId = Long.parseLong(popped.get(i).toString());
+            List<Object> fields = (List<Object>) popped.get(i + 1);
+            long[] deltas = new long[Counter.values().length];
+            for (int f = 0; f + 1 < fields.size(); f += 2) {
+                try {
+                    deltas[Counter.valueOf(fields.get(f).toString()).ordinal()] = Long.parseLong(fields.get(f + 1)
+                            .toString());
+                } catch (IllegalArgumentException e) {
+                    log.debug("Ignoring pending counter {} of post {}", fields.get(f), postId);
+                }
+            }
+            batch.put(postId, deltas);
+        }
+        return batch;
+    }
+
+    private void apply(Map<Long, long[]> batch) {
+        List<Map.Entry<Long, long[]>> rows = new ArrayList<>(batch.entrySet());
+        jdbcTemplate.batchUpdate(APPLY_DELTAS, rows, rows.size(), (ps, row) -> {
+            long[] d = row.getValue();
+            ps.setLong(1, d[Counter.VIEWS.ordinal()]);
+            ps.setLong(2, d[Counter.LIKES.ordinal()]);
+            ps.setLong(3, d[Counter.COMMENTS.ordinal()]);
+            ps.setLong(4, d[Counter.SAVES.ordinal()]);
+            ps.setLong(5, d[Counter.SHARES.ordinal()]);
+            ps.setLong(6, d[Counter.LIKES.ordinal()]);
+            ps.setLong(7, d[Counter.SAVES.ordinal()]);
+            ps.setLong(8, d[Counter.COMMENTS.ordinal()]);
+            ps.setLong(9, row.getKey());
+        });
+    }
+
+    // Puts the deltas of a failed flush back
+    private void restore(Map<Long, long[]> batch) {
+        for (Counter counter : Counter.values()) {
+            Map<Long, Long> deltas = new HashMap<>();
+            batch.forEach((postId, d) -> {
+                if (d[counter.ordinal()] != 0) {
+                    deltas.put(postId, d[counter.ordinal()]);
+                }
+            });
+            incrementAll(counter, deltas);
+        }
+    }
+
+    // Features and trending follow the committed counters
+    private void refresh(Collection<Long> postIds, Map<Long, Double> trendingWeights) {
+        try {
+            List<Post> posts = postRepository.findAllById(postIds);
+            for (Post post : posts) {
+                candidateService.onEngagement(post);
+            }
+            if (!trendingWeights.isEmpty()) {
+                trendingService.record(posts, trendingWeights);
+            }
+        } catch (Exception e) {
+            log.debug("Refreshing {} posts after a counter flush failed: {}", postIds.size(), e.getMessage());
+        }
+    }
+
+    // Positive engagement of a flush, weighted per counter
+    private static Map<Long, Double> trendingWeights(Map<Long, long[]> batch) {
+        Map<Long, Double> weights = new HashMap<>();
+        batch.forEach((postId, deltas) -> {
+            double weight = 0;
+            for (Counter counter : Counter.values()) {
+                weight += Math.max(0, deltas[counter.ordinal()]) * counter.trendingWeight;
+            }
+            if (weight > 0) {
+                weights.put(postId, weight);
+            }
+        });
+        return weights;
+    }
+
+    // ==================== Reconciliation ====================
+
+    /**
+     * Recounts likes, comments and saves from their tables and corrects
+     * posts that drifted. The correction is applied as a delta (truth minus
+     * the counter read alongside it), so a flush that lands between the
+     * recount and the update is kept rather than overwritten. Posts with
+     * unflushed deltas are left for the next run. One instance runs it at a
+     * time.
+     */
+    @Scheduled(cron = "${feed.counters.reconcile-cron:0 30 3 * * *}")
+    public void reconcile() {
+        try {
+            if (!Boolean.TRUE.equals(redis.opsForValue().setIfAbsent(RECONCILE_LOCK_KEY, "1", Duration.ofHours(1)))) {
+                return;
+            }
+        } catch (Exception e) {
+            log.debug("Reconcile lock unavailable, running anyway: {}", e.getMessage());
+        }
+        flush();
+
+        long after = 0;
+        int scanned = 0;
+        int corrected = 0;
+        try {
+            while (true) {
+                Map<Long, long[]> drifted = new TreeMap<>();
+                List<Long> ids = new ArrayList<>();
+                jdbcTemplate.query(RECOUNT, rs -> {
+                    long id = rs.getLong(1);
+                    ids.add(id);
+                    long[] deltas = new long[Counter.values().length];
+                    deltas[Counter.LIKES.ordinal()] = rs.getLong(5) - rs.getLong(2);
+                    deltas[Counter.COMMENTS.ordinal()] = rs.getLong(6) - rs.getLong(3);
+                    deltas[Counter.SAVES.ordinal()] = rs.getLong(7) - rs.getLong(4);
+                    if (Arrays.stream(deltas).anyMatch(d -> d != 0)) {
+                        drifted.put(id, deltas);
+                    }
+                }, after, batchSize);
+                if (ids.isEmpty()) {
+                    break;
+                }
+                scanned += ids.size();
+                after = ids.get(ids.size() - 1);
+
+                drifted.keySet().removeIf(this::isDirty);
+                if (!drifted.isEmpty()) {
+                    apply(drifted);
+                    corrected += drifted.size();
+                    refresh(drifted.keySet(), Map.of());
+                }
+            }
+            log.info("Reconciled post counters: {} posts scanned, {} corrected", scanned, corrected);
+        } catch (Exception e) {
+            log.error("Reconciling post counters failed after {} posts: {}", scanned, e.getMessage());
+        }
+    }
+
+    private boolean isDirty(long postId) {
+        try {
+            return Boolean.TRUE.equals(redis.opsForSet().isMember(DIRTY_KEY, String.valueOf(postId)));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
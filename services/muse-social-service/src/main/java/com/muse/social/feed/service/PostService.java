@@ -1,6 +1,5 @@
 package com.muse.social.feed.service;
 
-import com.muse.social.infrastructure.client.AuthServiceClient;
 import com.muse.social.feed.dto.PostResponse;
 import com.muse.social.feed.dto.UserDto;
 import com.muse.social.feed.entity.Post;
@@ -12,12 +11,16 @@ import com.muse.social.feed.repository.UserInterestRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.springframework.data.domain.PageRequest;
@@ -32,9 +35,11 @@ public class PostService {
     private final PostRepository postRepository;
     private final EmbeddingService embeddingService;
     private final UserInterestRepository userInterestRepository;
-    private final AuthServiceClient authServiceClient;
+    private final UserProfileCache userProfileCache;
     private final ReactionRepository reactionRepository;
     private final CommentRepository commentRepository;
+    private final FeedCandidateService candidateService;
+    private final TimelineService timelineService;
 
     public Mono<List<PostResponse>> getGlobalFeed(Long currentUserId) {
         return getGlobalFeed(currentUserId, 0, 20);
@@ -59,6 +64,11 @@ public class PostService {
 
     public Post createPost(Long userId, String content, List<String> tags, List<String> mediaUrls,
             Post.MediaType mediaType, String sourceUrl) {
+        return createPost(userId, content, tags, mediaUrls, mediaType, sourceUrl, null);
+    }
+
+    public Post createPost(Long userId, String content, List<String> tags, List<String> mediaUrls,
+            Post.MediaType mediaType, String sourceUrl, Long contentFingerprint) {
         Post post = Post.builder()
                 .userId(userId)
                 .content(content)
@@ -66,8 +76,11 @@ public class PostService {
                 .mediaUrls(mediaUrls)
                 .mediaType(mediaType)
                 .sourceUrl(sourceUrl)
+                .contentFingerprint(contentFingerprint)
                 .build();
         Post savedPost = postRepository.save(post);
+        candidateService.onPostCreated(savedPost);
+        timelineService.onPostCreated(savedPost);
         generateAndSaveEmbedding(savedPost);
         return savedPost;
     }
@@ -89,6 +102,8 @@ public class PostService {
                 .filter(post -> post.getUserId().equals(userId))
                 .map(post -> {
                     postRepository.delete(post);
+                    candidateService.onPostDeleted(post);
+                    timelineService.onPostDeleted(post);
                     return true;
                 })
                 .orElse(false);
@@ -134,18 +149,30 @@ public class PostService {
         return semanticSearch(query, limit, userId);
     }
 
+    /**
+     * Hydrates a page of posts with a constant number of lookups: one bulk
+     * author fetch (usually served by the profile cache) and one grouped
+     * query each for like counts, comment counts and the viewer's likes.
+     */
     private Mono<List<PostResponse>> enrichPosts(List<Post> posts, Long currentUserId) {
-        return Flux.fromIterable(posts)
-                .flatMap(post -> {
-                    Mono<UserDto> userMono = authServiceClient.getUserById(post.getUserId())
-                            .defaultIfEmpty(new UserDto()); // Handle missing user
-
-                    return userMono.map(user -> {
-                        int likes = reactionRepository.countByTargetIdAndTargetType(post.getId(), "POST");
-                        int comments = commentRepository.countByPostId(post.getId());
-                        boolean likedByMe = currentUserId != null && reactionRepository
-                                .existsByUserIdAndTargetIdAndTargetType(currentUserId, post.getId(), "POST");
-
+        if (posts.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        List<Long> postIds = posts.stream().map(Post::getId).toList();
+        Set<Long> authorIds = posts.stream()
+                .map(Post::getUserId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+
+        Mono<PageCounts> counts = Mono.fromCallable(() -> loadCounts(postIds, currentUserId))
+                .subscribeOn(Schedulers.boundedElastic());
+
+        return Mono.zip(userProfileCache.getAll(authorIds), counts)
+                .map(loaded -> {
+                    Map<Long, UserDto> users = loaded.getT1();
+                    PageCounts pageCounts = loaded.getT2();
+                    return posts.stream().map(post -> {
+                        UserDto user = users.getOrDefault(post.getUserId(), new UserDto());
                         return PostResponse.builder()
                                 .id(post.getId())
                                 .userId(post.getUserId())
@@ -157,12 +184,31 @@ public class PostService {
                                 .mediaType(post.getMediaType())
                                 .createdAt(post.getCreatedAt())
                                 .updatedAt(post.getUpdatedAt())
-                                .likeCount(likes)
-                                .commentCount(comments)
-                                .likedByMe(likedByMe)
+                                .likeCount(pageCounts.likes().getOrDefault(post.getId(), 0))
+                                .commentCount(pageCounts.comments().getOrDefault(post.getId(), 0))
+                                .likedByMe(pageCounts.likedByMe().contains(post.getId()))
                                 .build();
-                    }).subscribeOn(Schedulers.boundedElastic()); // Ensure DB calls in map don't block
-                })
-                .collectList();
+                    }).toList();
+                });
+    }
+
+    private PageCounts loadCounts(List<Long> postIds, Long currentUserId) {
+        Map<Long, Integer> likes = toCounts(reactionRepository.countByTargetIds(postIds, "POST"));
+        Map<Long, Integer> comments = toCounts(commentRepository.countByPostIds(postIds));
+        Set<Long> likedByMe = currentUserId != null
+                ? new HashSet<>(reactionRepository.findReactedTargetIds(currentUserId, postIds, "POST"))
+                : Set.of();
+        return new PageCounts(likes, comments, likedByMe);
+    }
+
+    private static Map<Long, Integer> toCounts(List<Object[]> rows) {
+        Map<Long, Integer> counts = new HashMap<>();
+        for (Object[] row : rows) {
+            counts.put(((Number) row[0]).longValue(), ((Number) row[1]).intValue());
+        }
+        return counts;
+    }
+
+    private record PageCounts(Map<Long, Integer> likes, Map<Long, Integer> comments, Set<Long> likedByMe) {
     }
 }
@@ -20,6 +20,7 @@ public class ReactionService {
 
     private final ReactionRepository reactionRepository;
     private final UserInterestRepository userInterestRepository;
+    private final PostCounterService counterService;
     private final FeedWebSocketHandler feedWebSocketHandler; // Inject WebSocket handler
     private final ObjectMapper objectMapper; // Inject ObjectMapper
 
@@ -34,17 +35,26 @@ public class ReactionService {
                 .targetType(targetType)
                 .reactionType(reactionType)
                 .build();
-        Reaction savedReaction = reactionRepository.save(reaction);
+        return afterInsert(reactionRepository.save(reaction));
+    }
+
+    private Reaction afterInsert(Reaction savedReaction) {
+        Long targetId = savedReaction.getTargetId();
+        String targetType = savedReaction.getTargetType();
+        if ("POST".equals(targetType)) {
+            counterService.increment(targetId, PostCounterService.Counter.LIKES, 1);
+        }
 
         // Track interest based on reaction
         if ("POST".equals(targetType)) {
-            userInterestRepository.findByUserIdAndInterestTypeAndInterestValue(userId, "REACTION_TYPE", reactionType)
+            userInterestRepository.findByUserIdAndInterestTypeAndInterestValue(savedReaction.getUserId(),
+                            "REACTION_TYPE", savedReaction.getReactionType())
                     .ifPresentOrElse(
                             interest -> { /* Update existing interest if needed */ },
                             () -> userInterestRepository.save(UserInterest.builder()
-                                    .userId(userId)
+                                    .userId(savedReaction.getUserId())
                                     .interestType("REACTION_TYPE")
-                                    .interestValue(reactionType)
+                                    .interestValue(savedReaction.getReactionType())
                                     .build())
                     );
         }
@@ -60,14 +70,44 @@ public class ReactionService {
     public void removeReaction(Long reactionId, Long userId) {
         reactionRepository.findById(reactionId)
                 .filter(reaction -> reaction.getUserId().equals(userId))
-                .ifPresent(reaction -> {
-                    reactionRepository.delete(reaction);
-                    // Broadcast deleted reaction
-                    try {
-                        feedWebSocketHandler.broadcastToAll(objectMapper.writeValueAsString(Map.of("type", "delete_reaction", "reactionId", reactionId)));
-                    } catch (IOException e) {
-                        // Log error
-                    }
-                });
+                .ifPresent(this::delete);
+    }
+
+    /**
+     * Likes a post once; false when the user already reacted to it. The
+     * unique (user, target, type) key decides between concurrent likes, so
+     * only the request whose row was inserted counts it.
+     */
+    public boolean likePost(Long userId, Long postId) {
+        if (reactionRepository.insertIfAbsent(userId, postId, "POST", "LIKE") == 0) {
+            return false;
+        }
+        reactionRepository.findByUserIdAndTargetIdAndTargetType(userId, postId, "POST")
+                .ifPresent(this::afterInsert);
+        return true;
+    }
+
+    /** Removes the user's reaction to a post; false when there was none. */
+    public boolean unlikePost(Long userId, Long postId) {
+        return reactionRepository.findByUserIdAndTargetIdAndTargetType(userId, postId, "POST")
+                .map(reaction -> {
+                    delete(reaction);
+                    return true;
+                })
+                .orElse(false);
+    }
+
+    private void delete(Reaction reaction) {
+        Long reactionId = reaction.getId();
+        reactionRepository.delete(reaction);
+        if ("POST".equals(reaction.getTargetType())) {
+            counterService.increment(reaction.getTargetId(), PostCounterService.Counter.LIKES, -1);
+        }
+        // Broadcast deleted reaction
+        try {
+            feedWebSocketHandler.broadcastToAll(objectMapper.writeValueAsString(Map.of("type", "delete_reaction", "reactionId", reactionId)));
+        } catch (IOException e) {
+            // Log error
+        }
     }
 }
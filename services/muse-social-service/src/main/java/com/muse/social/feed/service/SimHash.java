@@ -0,0 +1,108 @@
+package com.muse.social.feed.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 64-bit SimHash of a text's words. Texts that share most of their words get
+ * fingerprints a few bits apart, so a rewritten headline or a syndicated
+ * copy of a story is caught where comparing URLs is not enough.
+ */
+final class SimHash {
+
+    // Fingerprints this many bits apart or closer count as the same story
+    static final int MAX_DISTANCE = 3;
+
+    private static final Pattern TAGS = Pattern.compile("<[^>]*>");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private SimHash() {
+    }
+
+    static long of(String text) {
+        if (text == null || text.isBlank()) {
+            return 0L;
+        }
+        String plain = TAGS.matcher(text).replaceAll(" ").toLowerCase(Locale.ROOT);
+        int[] votes = new int[64];
+        for (String word : NON_WORD.split(plain)) {
+            if (word.length() < 2) {
+                continue;
+            }
+            long hash = hash(word);
+            for (int bit = 0; bit < 64; bit++) {
+                votes[bit] += ((hash >>> bit) & 1L) != 0 ? 1 : -1;
+            }
+        }
+        long fingerprint = 0L;
+        for (int bit = 0; bit < 64; bit++) {
+            if (votes[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    // FNV-1a, then the murmur3 finalizer so every output bit depends on every input byte
+    private static long hash(String word) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : word.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Near-duplicate lookup over many fingerprints. Two fingerprints within
+     * MAX_DISTANCE bits agree exactly on at least one of four 16-bit bands,
+     * so only fingerprints sharing a band are compared.
+     */
+    static final class Index {
+
+        private static final int BANDS = MAX_DISTANCE + 1;
+        private static final int BAND_BITS = 64 / BANDS;
+
+        private final Map<Integer, List<Long>> buckets = new HashMap<>();
+
+        boolean containsNear(long fingerprint) {
+            for (int band = 0; band < BANDS; band++) {
+                List<Long> bucket = buckets.get(key(band, fingerprint));
+                if (bucket == null) {
+                    continue;
+                }
+                for (long other : bucket) {
+                    if (distance(fingerprint, other) <= MAX_DISTANCE) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        void add(long fingerprint) {
+            for (int band = 0; band < BANDS; band++) {
+                buckets.computeIfAbsent(key(band, fingerprint), k -> new ArrayList<>()).add(fingerprint);
+            }
+        }
+
+        private static int key(int band, long fingerprint) {
+            int value = (int) ((fingerprint >>> (band * BAND_BITS)) & ((1L << BAND_BITS) - 1));
+            return (band << BAND_BITS) | value;
+        }
+    }
+}
@@ -25,6 +25,7 @@ public class SocialService {
     private final UserFollowRepository followRepository;
     private final FriendRequestRepository friendRequestRepository;
     private final FeedUserProfileRepository profileRepository;
+    private final TimelineService timelineService;
 
     // ==================== Follow ====================
 
@@ -43,6 +44,7 @@ public class SocialService {
 
             // Update profile counts
             updateFollowCounts(followerId, followingId, 1);
+            timelineService.onFollow(followerId, followingId);
             log.info("User {} now follows {}", followerId, followingId);
         }
     }
@@ -56,6 +58,7 @@ public class SocialService {
         if (followRepository.existsByFollowerIdAndFollowingId(followerId, followingId)) {
             followRepository.deleteByFollowerIdAndFollowingId(followerId, followingId);
             updateFollowCounts(followerId, followingId, -1);
+            timelineService.onUnfollow(followerId, followingId);
             log.info("User {} unfollowed {}", followerId, followingId);
         }
     }
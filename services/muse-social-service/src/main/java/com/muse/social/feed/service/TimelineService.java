@@ -0,0 +1,512 @@
+package com.muse.social.feed.service;
+
+import com.muse.social.feed.entity.Post;
+import com.muse.social.feed.repository.PostRepository;
+import com.muse.social.feed.repository.UserFollowRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Home timelines of followed authors. A new post is pushed into the capped
+ * timeline set of each follower (fan-out on write), so reading a page is one
+ * range query. Authors with more followers than the threshold, and the ones
+ * configured as pull authors (the news bot), are not fanned out; their posts
+ * are merged in at read time from the per-author index.
+ *
+ * Timelines are scored by post id, which follows creation order. Only
+ * timelines that exist are written to, so inactive users cost nothing; a
+ * missing timeline is rebuilt from Postgres on the next read and expires
+ * after a while so drift from missed writes heals. A rebuild opens a
+ * short-lived pending set before its Postgres read; pushes that arrive
+ * meanwhile land there and are merged in when the rebuild is stored.
+ *
+ * The pull author set lives in Redis so every replica fans out and reads
+ * the same way. An author who drops back under the threshold gets their
+ * recent posts pushed into their followers' timelines, and a deleted post
+ * is removed from every follower's timeline.
+ *
+ * Fan-out runs on a small pool with a bounded queue. When the queue is
+ * full the committing request thread runs the task itself, which slows
+ * writers down rather than dropping pushes; a single push costs at most
+ * follower-threshold / 500 script calls, since authors above the threshold
+ * are pulled instead.
+ */
+@Service
+@Slf4j
+public class TimelineService {
+
+    private static final String TIMELINE_KEY = "feed:timeline:";
+    private static final String PULL_AUTHORS_KEY = "feed:timeline-pull-authors";
+    private static final String PENDING_SUFFIX = ":pending";
+
+    // Member that opens a pending set; scored lowest and dropped when the rebuild is stored
+    private static final String PENDING_MARKER = "-";
+
+    // Longer than any rebuild takes from its Postgres read to storing the timeline
+    private static final long STAGING_SECONDS = 300;
+
+    // Followers per script call during fan-out
+    private static final int FANOUT_BATCH = 500;
+
+    // Posts taken from each followed author when a timeline is rebuilt
+    private static final int REBUILD_PER_AUTHOR = 50;
+
+    // ARGV[1] is the timeline size, the rest are post ids (scored by themselves). A timeline
+    // being rebuilt has a pending set instead, which the rebuild merges when it is stored
+    private static final DefaultRedisScript<Long> PUSH = new DefaultRedisScript<>(
+            "local pushed = 0\n"
+                    + "for _, key in ipairs(KEYS) do\n"
+                    + "  local target = nil\n"
+                    + "  if redis.call('EXISTS', key) == 1 then\n"
+                    + "    target = key\n"
+                    + "  elseif redis.call('EXISTS', key .. '" + PENDING_SUFFIX + "') == 1 then\n"
+                    + "    target = key .. '" + PENDING_SUFFIX + "'\n"
+                    + "  end\n"
+                    + "  if target then\n"
+                    + "    for i = 2, #ARGV do\n"
+                    + "      redis.call('ZADD', target, ARGV[i], ARGV[i])\n"
+                    + "    end\n"
+                    + "    redis.call('ZREMRANGEBYRANK', target, 0, -(tonumber(ARGV[1]) + 1))\n"
+                    + "    pushed = pushed + 1\n"
+                    + "  end\n"
+                    + "end\n"
+                    + "return pushed",
+            Long.class);
+
+    private static final DefaultRedisScript<Long> REMOVE = new DefaultRedisScript<>(
+            "local removed = 0\n"
+                    + "for _, key in ipairs(KEYS) do\n"
+                    + "  removed = removed + redis.call('ZREM', key, ARGV[1])\n"
+                    + "  redis.call('ZREM', key .. '" + PENDING_SUFFIX + "', ARGV[1])\n"
+                    + "end\n"
+                    + "return removed",
+            Long.class);
+
+    // Opens the pending set of a timeline about to be rebuilt
+    private static final DefaultRedisScript<Long> OPEN_PENDING = new DefaultRedisScript<>(
+            "redis.call('ZADD', KEYS[1], '-inf', '" + PENDING_MARKER + "')\n"
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[1])\n"
+                    + "return 1",
+            Long.class);
+
+    // Stores a staged rebuild merged with the posts pushed while it ran; a timeline
+    // stored meanwhile by another reader wins and the staged copy is dropped
+    private static final DefaultRedisScript<Long> PUBLISH_REBUILD = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then\n"
+                    + "  redis.call('DEL', KEYS[2])\n"
+                    + "  return 0\n"
+                    + "end\n"
+                    + "redis.call('ZUNIONSTORE', KEYS[1], 2, KEYS[2], KEYS[3], 'AGGREGATE', 'MAX')\n"
+                    + "redis.call('DEL', KEYS[2], KEYS[3])\n"
+                    + "redis.call('ZREM', KEYS[1], '" + PENDING_MARKER + "')\n"
+                    + "if redis.call('EXISTS', KEYS[1]) == 0 then\n"
+                    + "  return 0\n"
+                    + "end\n"
+                    + "redis.call('ZREMRANGEBYRANK', KEYS[1], 0, -(tonumber(ARGV[1]) + 1))\n"
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[2])\n"
+                    + "return 1",
+            Long.class);
+
+    // Replaces the pull author set with the staged one and returns the authors that left it
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> SWAP_PULL_AUTHORS = new DefaultRedisScript<>(
+            "local demoted = redis.call('SDIFF', KEYS[1], KEYS[2])\n"
+                    + "if redis.call('EXISTS', KEYS[2]) == 1 then\n"
+                    + "  redis.call('RENAME', KEYS[2], KEYS[1])\n"
+                    + "  redis.call('PERSIST', KEYS[1])\n"
+                    + "else\n"
+                    + "  redis.call('DEL', KEYS[1])\n"
+                    + "end\n"
+                    + "return demoted",
+            List.class);
+
+    private final StringRedisTemplate redis;
+    private final PostRepository postRepository;
+    private final UserFollowRepository followRepository;
+    private final int timelineSize;
+    private final long followerThreshold;
+    private final Set<String> configuredPullAuthors;
+    private final Duration rebuildAfter;
+    private final ExecutorService fanout;
+
+    @Autowired
+    public TimelineService(StringRedisTemplate redis,
+            PostRepository postRepository,
+            UserFollowRepository followRepository,
+            @Value("${feed.timeline.size:800}") int timelineSize,
+            @Value("${feed.timeline.follower-threshold:5000}") long followerThreshold,
+            @Value("${feed.timeline.pull-authors:1}") Set<String> configuredPullAuthors,
+            @Value("${feed.timeline.rebuild-hours:24}") long rebuildHours,
+            @Value("${feed.timeline.fanout-threads:2}") int fanoutThreads,
+            @Value("${feed.timeline.fanout-queue:10000}") int fanoutQueue) {
+        this(redis, postRepository, followRepository, timelineSize, followerThreshold, configuredPullAuthors,
+                rebuildHours, fanoutPool(fanoutThreads, fanoutQueue));
+    }
+
+    // The simulator passes an executor that runs fan-out inline so it can count every write
+    TimelineService(StringRedisTemplate redis,
+            PostRepository postRepository,
+            UserFollowRepository followRepository,
+            int timelineSize,
+            long followerThreshold,
+            Set<String> configuredPullAuthors,
+            long rebuildHours,
+            ExecutorService fanout) {
+        this.redis = redis;
+        this.postRepository = postRepository;
+        this.followRepository = followRepository;
+        this.timelineSize = Math.max(1, timelineSize);
+        this.followerThreshold = Math.max(1, followerThreshold);
+        this.configuredPullAuthors = Set.copyOf(configuredPullAuthors);
+        this.rebuildAfter = Duration.ofHours(Math.max(1, rebuildHours));
+        this.fanout = fanout;
+    }
+
+    // A full queue runs the task on the committing thread (see the class comment)
+    private static ExecutorService fanoutPool(int fanoutThreads, int fanoutQueue) {
+        int threads = Math.max(1, fanoutThreads);
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, fanoutQueue)), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        fanout.shutdown();
+    }
+
+    // ==================== Reads ====================
+
+    /**
+     * Newest post ids from the authors {@code userId} follows, older than
+     * {@code beforeId} when given. {@code followingIds} is the caller's copy
+     * of the user's follow list.
+     */
+    public List<Long> page(String userId, List<String> followingIds, Long beforeId, int limit) {
+        if (followingIds.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        long before = beforeId != null ? beforeId : Long.MAX_VALUE;
+
+        Set<String> pulled = new HashSet<>();
+        List<Long> pushedAuthors = new ArrayList<>();
+        Set<String> pullSet = pullAuthorsAmong(followingIds);
+        for (String authorId : followingIds) {
+            if (pullSet.contains(authorId)) {
+                pulled.add(authorId);
+            } else {
+                Long id = parseUserId(authorId);
+                if (id != null) {
+                    pushedAuthors.add(id);
+                }
+            }
+        }
+
+        TreeSet<Long> merged = new TreeSet<>(Comparator.reverseOrder());
+        merged.addAll(readTimeline(userId, pushedAuthors, before, limit));
+        if (!pulled.isEmpty()) {
+            List<Long> pulledIds = pulled.stream().map(TimelineService::parseUserId).filter(Objects::nonNull).toList();
+            if (!pulledIds.isEmpty()) {
+                merged.addAll(postRepository.findRecentIdsByAuthors(pulledIds, before, limit, limit));
+            }
+        }
+
+        List<Long> page = new ArrayList<>(Math.min(limit, merged.size()));
+        for (Long id : merged) {
+            page.add(id);
+            if (page.size() == limit) {
+                break;
+            }
+        }
+        return page;
+    }
+
+    private Set<String> pullAuthorsAmong(List<String> followingIds) {
+        Set<String> pull = new HashSet<>(configuredPullAuthors);
+        try {
+            Map<Object, Boolean> members = redis.opsForSet().isMember(PULL_AUTHORS_KEY, followingIds.toArray());
+            if (members != null) {
+                members.forEach((authorId, member) -> {
+                    if (Boolean.TRUE.equals(member)) {
+                        pull.add(String.valueOf(authorId));
+                    }
+                });
+            }
+        } catch (Exception e) {
+            log.debug("Pull authors unavailable, using the configured ones: {}", e.getMessage());
+        }
+        return pull;
+    }
+
+    private List<Long> readTimeline(String userId, List<Long> pushedAuthors, long before, int limit) {
+        if (pushedAuthors.isEmpty()) {
+            return List.of();
+        }
+        String key = TIMELINE_KEY + userId;
+        try {
+            if (Boolean.TRUE.equals(redis.hasKey(key))) {
+                Set<String> ids = redis.opsForZSet().reverseRangeByScore(key, Double.NEGATIVE_INFINITY,
+                        before - 1, 0, limit);
+                return ids == null ? List.of() : ids.stream().map(Long::valueOf).toList();
+            }
+        } catch (Exception e) {
+            log.warn("Timeline of user {} unavailable, reading from Postgres: {}", userId, e.getMessage());
+            return postRepository.findRecentIdsByAuthors(pushedAuthors, before, limit, limit);
+        }
+
+        String pending = key + PENDING_SUFFIX;
+        boolean store = true;
+        try {
+            redis.execute(OPEN_PENDING, List.of(pending), String.valueOf(STAGING_SECONDS));
+        } catch (Exception e) {
+            log.debug("Could not open pending timeline of user {}: {}", userId, e.getMessage());
+            store = false;
+        }
+        List<Long> rebuilt = postRepository.findRecentIdsByAuthors(pushedAuthors, Long.MAX_VALUE,
+                REBUILD_PER_AUTHOR, timelineSize);
+        if (store) {
+            String staging = key + ":rebuild:" + UUID.randomUUID();
+            try {
+                if (!rebuilt.isEmpty()) {
+                    Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>();
+                    for (Long id : rebuilt) {
+                        tuples.add(ZSetOperations.TypedTuple.of(String.valueOf(id), id.doubleValue()));
+                    }
+                    redis.opsForZSet().add(staging, tuples);
+                    redis.expire(staging, Duration.ofSeconds(STAGING_SECONDS));
+                }
+                redis.execute(PUBLISH_REBUILD, List.of(key, staging, pending),
+                        String.valueOf(timelineSize), String.valueOf(rebuildAfter.toSeconds()));
+            } catch (Exception e) {
+                log.debug("Could not store timeline of user {}: {}", userId, e.getMessage());
+            }
+        }
+        List<Long> page = new ArrayList<>();
+        for (Long id : rebuilt) {
+            if (id < before) {
+                page.add(id);
+                if (page.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return page;
+    }
+
+    // ==================== Write path ====================
+
+    /** Pushes a new post to the author's followers once the transaction commits. */
+    public void onPostCreated(Post post) {
+        if (post.getId() == null || post.getUserId() == null) {
+            return;
+        }
+        String authorId = String.valueOf(post.getUserId());
+        Long postId = post.getId();
+        afterCommit(() -> fanout.execute(() -> fanOut(authorId, postId)));
+    }
+
+    /** Backfills the followee's recent posts into the follower's timeline. */
+    public void onFollow(String followerId, String followingId) {
+        afterCommit(() -> fanout.execute(() -> backfill(followerId, followingId)));
+    }
+
+    /** Removes a deleted post from the author's followers' timelines once the transaction commits. */
+    public void onPostDeleted(Post post) {
+        if (post.getId() == null || post.getUserId() == null) {
+            return;
+        }
+        String authorId = String.valueOf(post.getUserId());
+        Long postId = post.getId();
+        afterCommit(() -> fanout.execute(() -> {
+            // Configured pull authors are never pushed, so no timeline holds their posts
+            if (configuredPullAuthors.contains(authorId)) {
+                return;
+            }
+            try {
+                int removed = toFollowers(followRepository.findFollowerIds(authorId), REMOVE,
+                        String.valueOf(postId));
+                log.debug("Removed deleted post {} from {} timelines", postId, removed);
+            } catch (Exception e) {
+                log.warn("Removing post {} from timelines failed: {}", postId, e.getMessage());
+            }
+        }));
+    }
+
+    /** Removes the followee's recent posts from the follower's timeline. */
+    public void onUnfollow(String followerId, String followingId) {
+        afterCommit(() -> fanout.execute(() -> {
+            Long authorId = parseUserId(followingId);
+            if (authorId == null) {
+                return;
+            }
+            try {
+                List<Long> ids = postRepository.findRecentIdsByAuthors(List.of(authorId), Long.MAX_VALUE,
+                        timelineSize, timelineSize);
+                if (!ids.isEmpty()) {
+                    redis.opsForZSet().remove(TIMELINE_KEY + followerId,
+                            ids.stream().map(String::valueOf).toArray());
+                }
+            } catch (Exception e) {
+                log.debug("Could not trim timeline of user {}: {}", followerId, e.getMessage());
+            }
+        }));
+    }
+
+    private void fanOut(String authorId, Long postId) {
+        try {
+            if (isPullAuthor(authorId)) {
+                return;
+            }
+            List<String> followers = followRepository.findFollowerIds(authorId);
+            int pushed = toFollowers(followers, PUSH, String.valueOf(timelineSize), String.valueOf(postId));
+            log.debug("Fanned out post {} to {} of {} followers", postId, pushed, followers.size());
+        } catch (Exception e) {
+            log.warn("Fan-out of post {} failed: {}", postId, e.getMessage());
+        }
+    }
+
+    // Runs the script over the followers' timeline keys in batches and sums its results
+    private int toFollowers(List<String> followers, DefaultRedisScript<Long> script, String... args) {
+        List<String> keys = new ArrayList<>(FANOUT_BATCH);
+        int total = 0;
+        for (String follower : followers) {
+            keys.add(TIMELINE_KEY + follower);
+            if (keys.size() == FANOUT_BATCH) {
+                total += run(script, keys, args);
+                keys.clear();
+            }
+        }
+        if (!keys.isEmpty()) {
+            total += run(script, keys, args);
+        }
+        return total;
+    }
+
+    private int run(DefaultRedisScript<Long> script, List<String> keys, String... args) {
+        Long result = redis.execute(script, keys, (Object[]) args);
+        return result != null ? result.intValue() : 0;
+    }
+
+    private String[] pushArgs(List<Long> ids) {
+        String[] args = new String[ids.size() + 1];
+        args[0] = String.valueOf(timelineSize);
+        for (int i = 0; i < ids.size(); i++) {
+            args[i + 1] = String.valueOf(ids.get(i));
+        }
+        return args;
+    }
+
+    private void backfill(String followerId, String followingId) {
+        Long authorId = parseUserId(followingId);
+        try {
+            if (authorId == null || isPullMember(followingId)) {
+                return;
+            }
+            List<Long> ids = postRepository.findRecentIdsByAuthors(List.of(authorId), Long.MAX_VALUE,
+                    REBUILD_PER_AUTHOR, REBUILD_PER_AUTHOR);
+            if (!ids.isEmpty()) {
+                run(PUSH, List.of(TIMELINE_KEY + followerId), pushArgs(ids));
+            }
+        } catch (Exception e) {
+            log.debug("Backfill of {} into timeline of user {} failed: {}", followingId, followerId, e.getMessage());
+        }
+    }
+
+    // An author crossing the threshold between refreshes is switched over on their next post
+    private boolean isPullAuthor(String authorId) {
+        if (isPullMember(authorId)) {
+            return true;
+        }
+        Long followers = followRepository.countFollowers(authorId);
+        if (followers != null && followers > followerThreshold) {
+            redis.opsForSet().add(PULL_AUTHORS_KEY, authorId);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean isPullMember(String authorId) {
+        return configuredPullAuthors.contains(authorId)
+                || Boolean.TRUE.equals(redis.opsForSet().isMember(PULL_AUTHORS_KEY, authorId));
+    }
+
+    /**
+     * Recomputes the pull authors from the follow graph. The replica whose
+     * swap removes an author from the set pushes that author's recent posts
+     * into their followers' timelines, which missed them while pulled.
+     */
+    @Scheduled(fixedDelayString = "${feed.timeline.pull-refresh-ms:300000}")
+    @SuppressWarnings("unchecked")
+    public void refreshPullAuthors() {
+        try {
+            Set<String> updated = new HashSet<>(configuredPullAuthors);
+            updated.addAll(followRepository.findIdsWithMoreFollowersThan(followerThreshold));
+            String staging = PULL_AUTHORS_KEY + ":staging:" + UUID.randomUUID();
+            if (!updated.isEmpty()) {
+                redis.opsForSet().add(staging, updated.toArray(new String[0]));
+                redis.expire(staging, Duration.ofMinutes(5));
+            }
+            List<Object> demoted = redis.execute(SWAP_PULL_AUTHORS, List.of(PULL_AUTHORS_KEY, staging));
+            if (demoted != null) {
+                for (Object authorId : demoted) {
+                    fanout.execute(() -> backfillFollowers(String.valueOf(authorId)));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Refreshing timeline pull authors failed: {}", e.getMessage());
+        }
+    }
+
+    private void backfillFollowers(String authorId) {
+        Long author = parseUserId(authorId);
+        if (author == null) {
+            return;
+        }
+        try {
+            List<Long> ids = postRepository.findRecentIdsByAuthors(List.of(author), Long.MAX_VALUE,
+                    REBUILD_PER_AUTHOR, REBUILD_PER_AUTHOR);
+            if (!ids.isEmpty()) {
+                int pushed = toFollowers(followRepository.findFollowerIds(authorId), PUSH, pushArgs(ids));
+                log.info("Author {} is pushed again; backfilled {} timelines", authorId, pushed);
+            }
+        } catch (Exception e) {
+            log.warn("Backfilling followers of author {} failed: {}", authorId, e.getMessage());
+        }
+    }
+
+    private static Long parseUserId(String userId) {
+        try {
+            return Long.parseLong(userId);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
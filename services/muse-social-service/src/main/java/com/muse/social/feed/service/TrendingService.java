@@ -0,0 +1,297 @@
+package com.muse.social.feed.service;
+
+import com.muse.social.feed.entity.FeedUserProfile;
+import com.muse.social.feed.entity.Post;
+import com.muse.social.feed.repository.FeedUserProfileRepository;
+import com.muse.social.feed.repository.PostRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Streaming trending rank. Each engagement adds w * e^(lambda * t) to the
+ * post's score, so older contributions fall behind newer ones at the chosen
+ * half-life without ever rewriting stored scores. Scores are kept as
+ * ln(sum) in Redis sorted sets and a contribution is merged with a log-add
+ * in a script; the top k is one ZREVRANGE.
+ *
+ * Besides the global set there is one set per hashtag and one per author
+ * institution, and a set of the hashtags themselves. Negative engagement
+ * (unlikes, unsaves) is not subtracted; a deleted post leaves every set and
+ * its score in a hashtag's set is log-subtracted from that hashtag.
+ */
+@Service
+@Slf4j
+public class TrendingService {
+
+    private static final String POSTS_KEY = "feed:trending:posts";
+    private static final String TAG_KEY = "feed:trending:tag:";
+    private static final String INSTITUTION_KEY = "feed:trending:institution:";
+    private static final String HASHTAGS_KEY = "feed:trending:hashtags";
+
+    // Time zero of the exponent; only differences between scores matter
+    private static final long EPOCH_SECOND = Instant.parse("2025-01-01T00:00:00Z").getEpochSecond();
+
+    // Weight of a new post, so it can trend before its first engagement
+    private static final double POST_WEIGHT = 1.0;
+
+    // For each KEYS[i]: member score = ln(e^score + e^ARGV[i + 3]), then trim to the top ARGV[1] and refresh the TTL
+    private static final DefaultRedisScript<Long> LOG_ADD = new DefaultRedisScript<>(
+            "local cap = tonumber(ARGV[1])\n"
+                    + "local ttl = tonumber(ARGV[2])\n"
+                    + "local member = ARGV[3]\n"
+                    + "for i, key in ipairs(KEYS) do\n"
+                    + "  local x = tonumber(ARGV[i + 3])\n"
+                    + "  local s = tonumber(redis.call('ZSCORE', key, member))\n"
+                    + "  if s then\n"
+                    + "    local hi = math.max(s, x)\n"
+                    + "    x = hi + math.log(1 + math.exp(-math.abs(s - x)))\n"
+                    + "  end\n"
+                    + "  redis.call('ZADD', key, x, member)\n"
+                    + "  redis.call('ZREMRANGEBYRANK', key, 0, -(cap + 1))\n"
+                    + "  redis.call('EXPIRE', key, ttl)\n"
+                    + "end\n"
+                    + "return #KEYS",
+            Long.class);
+
+    // Removes ARGV[1] from KEYS[2..ARGV[2]+1], the tag sets, taking its score there out of tag ARGV[i + 2]
+    // in KEYS[1] with ln(e^s - e^c), then from the remaining keys
+    private static final DefaultRedisScript<Long> REMOVE = new DefaultRedisScript<>(
+            "local member = ARGV[1]\n"
+                    + "local tags = tonumber(ARGV[2])\n"
+                    + "for i = 1, tags do\n"
+                    + "  local key = KEYS[i + 1]\n"
+                    + "  local c = tonumber(redis.call('ZSCORE', key, member))\n"
+                    + "  if c then\n"
+                    + "    redis.call('ZREM', key, member)\n"
+                    + "    local tag = ARGV[i + 2]\n"
+                    + "    local s = tonumber(redis.call('ZSCORE', KEYS[1], tag))\n"
+                    + "    if s then\n"
+                    + "      if c >= s - 1e-9 then\n"
+                    + "        redis.call('ZREM', KEYS[1], tag)\n"
+                    + "      else\n"
+                    + "        redis.call('ZADD', KEYS[1], s + math.log(1 - math.exp(c - s)), tag)\n"
+                    + "      end\n"
+                    + "    end\n"
+                    + "  end\n"
+                    + "end\n"
+                    + "for i = tags + 2, #KEYS do\n"
+                    + "  redis.call('ZREM', KEYS[i], member)\n"
+                    + "end\n"
+                    + "return #KEYS",
+            Long.class);
+
+    private final StringRedisTemplate redis;
+    private final PostRepository postRepository;
+    private final FeedUserProfileRepository profileRepository;
+    private final double lambda;
+    private final int setSize;
+    private final long ttlSeconds;
+
+    public TrendingService(StringRedisTemplate redis,
+            PostRepository postRepository,
+            FeedUserProfileRepository profileRepository,
+            @Value("${feed.trending.half-life-hours:6}") double halfLifeHours,
+            @Value("${feed.trending.set-size:2000}") int setSize) {
+        this.redis = redis;
+        this.postRepository = postRepository;
+        this.profileRepository = profileRepository;
+        double halfLife = Math.max(0.1, halfLifeHours) * 3600;
+        this.lambda = Math.log(2) / halfLife;
+        this.setSize = Math.max(1, setSize);
+        // A set untouched for ten half-lives has decayed below a thousandth
+        this.ttlSeconds = (long) (halfLife * 10);
+    }
+
+    // ==================== Reads ====================
+
+    /** Trending post ids, best first. */
+    public List<Long> top(int limit) {
+        List<Long> ids = range(POSTS_KEY, limit);
+        if (ids != null && ids.size() >= limit) {
+            return ids;
+        }
+        // Cold start or Redis down: topped up in the stored snapshot order
+        LinkedHashSet<Long> merged = new LinkedHashSet<>(ids != null ? ids : List.of());
+        for (PostRepository.CandidateRow row : postRepository.findTrending(limit)) {
+            if (merged.size() >= limit) {
+                break;
+            }
+            merged.add(row.getId());
+        }
+        return new ArrayList<>(merged);
+    }
+
+    /** Trending post ids within a hashtag. */
+    public List<Long> topByHashtag(String hashtag, int limit) {
+        List<Long> ids = range(TAG_KEY + hashtag, limit);
+        return ids != null ? ids : List.of();
+    }
+
+    /** Trending post ids by authors of an institution. */
+    public List<Long> topByInstitution(String institution, int limit) {
+        List<Long> ids = range(INSTITUTION_KEY + institution, limit);
+        return ids != null ? ids : List.of();
+    }
+
+    /** Trending hashtags with their current decayed score, best first. */
+    public LinkedHashMap<String, Double> topHashtags(int limit) {
+        LinkedHashMap<String, Double> hashtags = new LinkedHashMap<>();
+        if (limit <= 0) {
+            return hashtags;
+        }
+        try {
+            Set<ZSetOperations.TypedTuple<String>> tuples = redis.opsForZSet()
+                    .reverseRangeWithScores(HASHTAGS_KEY, 0, limit - 1);
+            double now = exponent(Instant.now().getEpochSecond());
+            if (tuples != null) {
+                for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                    double score = tuple.getScore() != null ? tuple.getScore() : Double.NEGATIVE_INFINITY;
+                    hashtags.put(tuple.getValue(), Math.exp(score - now));
+                }
+            }
+        } catch (Exception e) {
+            log.debug("Trending hashtags unavailable: {}", e.getMessage());
+        }
+        return hashtags;
+    }
+
+    // Null when the set is missing or unreadable
+    private List<Long> range(String key, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        try {
+            Set<String> members = redis.opsForZSet().reverseRange(key, 0, limit - 1);
+            if (members == null || members.isEmpty()) {
+                return null;
+            }
+            return members.stream().map(Long::parseLong).toList();
+        } catch (Exception e) {
+            log.warn("Trending set {} unavailable: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    // ==================== Write path ====================
+
+    /** Gives a new post its starting score. */
+    public void onPostCreated(Post post) {
+        if (post.getId() != null) {
+            record(List.of(post), Map.of(post.getId(), POST_WEIGHT));
+        }
+    }
+
+    /**
+     * Adds engagement weight by post id, e.g. the weighted counter deltas of
+     * one flush. Non-positive weights are ignored.
+     */
+    public void record(Collection<Post> posts, Map<Long, Double> weights) {
+        Map<String, String> institutions = institutionsOf(posts);
+        long now = Instant.now().getEpochSecond();
+        for (Post post : posts) {
+            Double weight = weights.get(post.getId());
+            if (weight == null || weight <= 0) {
+                continue;
+            }
+            String authorId = post.getUserId() != null ? String.valueOf(post.getUserId()) : null;
+            add(post, institutions.get(authorId), Math.log(weight) + exponent(now));
+        }
+    }
+
+    /**
+     * Removes a post from the global, hashtag and institution sets and takes
+     * its weight back out of its hashtags' scores. A post already trimmed
+     * from a hashtag set leaves that hashtag's score as it is.
+     */
+    public void onPostDeleted(Post post) {
+        if (post.getId() == null) {
+            return;
+        }
+        List<String> tags = post.getHashtags() != null ? new ArrayList<>(new LinkedHashSet<>(post.getHashtags()))
+                : List.of();
+        List<String> keys = new ArrayList<>();
+        keys.add(HASHTAGS_KEY);
+        for (String tag : tags) {
+            keys.add(TAG_KEY + tag);
+        }
+        keys.add(POSTS_KEY);
+        String authorId = post.getUserId() != null ? String.valueOf(post.getUserId()) : null;
+        String institution = institutionsOf(List.of(post)).get(authorId);
+        if (institution != null && !institution.isBlank()) {
+            keys.add(INSTITUTION_KEY + institution);
+        }
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(post.getId()));
+        args.add(String.valueOf(tags.size()));
+        args.addAll(tags);
+        try {
+            redis.execute(REMOVE, keys, args.toArray());
+        } catch (Exception e) {
+            log.debug("Could not remove post {} from trending sets: {}", post.getId(), e.getMessage());
+        }
+    }
+
+    private void add(Post post, String institution, double contribution) {
+        List<String> keys = new ArrayList<>();
+        keys.add(POSTS_KEY);
+        Set<String> tags = post.getHashtags() != null ? new LinkedHashSet<>(post.getHashtags()) : Set.of();
+        for (String tag : tags) {
+            keys.add(TAG_KEY + tag);
+        }
+        if (institution != null && !institution.isBlank()) {
+            keys.add(INSTITUTION_KEY + institution);
+        }
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(setSize));
+        args.add(String.valueOf(ttlSeconds));
+        args.add(String.valueOf(post.getId()));
+        for (int i = 0; i < keys.size(); i++) {
+            args.add(String.valueOf(contribution));
+        }
+        try {
+            redis.execute(LOG_ADD, keys, args.toArray());
+            // The hashtag set ranks tags, so each tag is its own member
+            for (String tag : tags) {
+                redis.execute(LOG_ADD, List.of(HASHTAGS_KEY),
+                        String.valueOf(setSize), String.valueOf(ttlSeconds), tag, String.valueOf(contribution));
+            }
+        } catch (Exception e) {
+            log.debug("Could not update trending sets of post {}: {}", post.getId(), e.getMessage());
+        }
+    }
+
+    // Author institutions in one query
+    private Map<String, String> institutionsOf(Collection<Post> posts) {
+        Set<String> authorIds = new HashSet<>();
+        for (Post post : posts) {
+            if (post.getUserId() != null) {
+                authorIds.add(String.valueOf(post.getUserId()));
+            }
+        }
+        Map<String, String> institutions = new HashMap<>();
+        if (authorIds.isEmpty()) {
+            return institutions;
+        }
+        try {
+            for (FeedUserProfile profile : profileRepository.findAllById(authorIds)) {
+                if (profile.getInstitution() != null) {
+                    institutions.put(profile.getUserId(), profile.getInstitution());
+                }
+            }
+        } catch (Exception e) {
+            log.debug("Author institutions unavailable: {}", e.getMessage());
+        }
+        return institutions;
+    }
+
+    private double exponent(long epochSecond) {
+        return lambda * (epochSecond - EPOCH_SECOND);
+    }
+}
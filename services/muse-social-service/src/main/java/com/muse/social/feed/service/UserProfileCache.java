@@ -0,0 +1,114 @@
+package com.muse.social.feed.service;
+
+import com.muse.social.feed.dto.UserDto;
+import com.muse.social.infrastructure.client.AuthServiceClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local cache of author profiles for post hydration. Misses are fetched from
+ * the auth service in bulk, so a page of posts costs at most one call per
+ * BATCH_SIZE unknown authors. Users the auth service does not know are
+ * cached as empty profiles; failed calls are not cached.
+ */
+@Component
+@Slf4j
+public class UserProfileCache {
+
+    private static final int BATCH_SIZE = 100;
+
+    private record Cached(UserDto user, long expiresAt) {
+    }
+
+    private final AuthServiceClient authServiceClient;
+    private final Map<Long, Cached> profiles = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final int maxEntries;
+
+    public UserProfileCache(AuthServiceClient authServiceClient,
+            @Value("${feed.user-cache.ttl-seconds:300}") long ttlSeconds,
+            @Value("${feed.user-cache.max-entries:20000}") int maxEntries) {
+        this.authServiceClient = authServiceClient;
+        this.ttlMillis = Math.max(1, ttlSeconds) * 1000;
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /** Profiles of the users; every requested id is in the map, unknown users as empty profiles. */
+    public Mono<Map<Long, UserDto>> getAll(Collection<Long> userIds) {
+        long now = System.currentTimeMillis();
+        Map<Long, UserDto> found = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(userIds)) {
+            Cached cached = profiles.get(id);
+            if (cached != null && cached.expiresAt() > now) {
+                found.put(id, cached.user());
+            } else {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) {
+            return Mono.just(found);
+        }
+
+        List<List<Long>> batches = new ArrayList<>();
+        for (int i = 0; i < missing.size(); i += BATCH_SIZE) {
+            batches.add(missing.subList(i, Math.min(i + BATCH_SIZE, missing.size())));
+        }
+        return Flux.fromIterable(batches)
+                .flatMap(batch -> authServiceClient.getUsersByIds(batch)
+                        .map(users -> {
+                            store(batch, users);
+                            return users;
+                        })
+                        .defaultIfEmpty(List.of()))
+                .collectList()
+                .map(results -> {
+                    for (List<UserDto> users : results) {
+                        for (UserDto user : users) {
+                            if (user.getId() != null) {
+                                found.put(user.getId(), user);
+                            }
+                        }
+                    }
+                    for (Long id : missing) {
+                        found.putIfAbsent(id, new UserDto());
+                    }
+                    return found;
+                });
+    }
+
+    private void store(List<Long> requested, List<UserDto> users) {
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        if (profiles.size() + requested.size() > maxEntries) {
+            evict();
+        }
+        Set<Long> returned = new HashSet<>();
+        for (UserDto user : users) {
+            if (user.getId() != null) {
+                profiles.put(user.getId(), new Cached(user, expiresAt));
+                returned.add(user.getId());
+            }
+        }
+        for (Long id : requested) {
+            if (!returned.contains(id)) {
+                profiles.put(id, new Cached(new UserDto(), expiresAt));
+            }
+        }
+    }
+
+    // Drops expired profiles, then the rest if that was not enough
+    private void evict() {
+        long now = System.currentTimeMillis();
+        profiles.values().removeIf(cached -> cached.expiresAt() <= now);
+        if (profiles.size() > maxEntries / 2) {
+            log.debug("User profile cache full, clearing {} entries", profiles.size());
+            profiles.clear();
+        }
+    }
+}
@@ -11,7 +11,10 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 
 import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * Auth Service Client with Resilience4j protection.
@@ -129,6 +132,34 @@ public class AuthServiceClient {
         return reactor.core.publisher.Mono.empty();
     }
 
+    /**
+     * Get several users in one call (Reactive). Users the auth service does
+     * not know are missing from the list; on failure the Mono is empty.
+     */
+    @CircuitBreaker(name = "authService", fallbackMethod = "getUsersByIdsFallback")
+    @Retry(name = "authService")
+    public reactor.core.publisher.Mono<List<UserDto>> getUsersByIds(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return reactor.core.publisher.Mono.just(List.of());
+        }
+        String ids = userIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        return webClient.get()
+                .uri(uri -> uri.path("/api/users/batch").queryParam("ids", ids).build())
+                .retrieve()
+                .bodyToFlux(UserDto.class)
+                .collectList()
+                .timeout(timeout)
+                .onErrorResume(e -> {
+                    log.debug("Batch fetch failed for {} users: {}", userIds.size(), e.getMessage());
+                    return reactor.core.publisher.Mono.empty();
+                });
+    }
+
+    @SuppressWarnings("unused")
+    private reactor.core.publisher.Mono<List<UserDto>> getUsersByIdsFallback(Collection<Long> userIds, Throwable t) {
+        return reactor.core.publisher.Mono.empty();
+    }
+
     /**
      * Check if user exists.
      */
@@ -15,17 +15,10 @@ public class NewsScheduler {
 
     private final NewsService newsService;
 
-    // Run every 4 hours
-    @Scheduled(fixedRate = 14400000)
+    // Sources keep their own adaptive schedules; this only picks up the ones that are due
+    @Scheduled(initialDelay = 60000, fixedDelayString = "${news.ingest.poll-ms:60000}")
     public void fetchNews() {
-        log.info("Scheduled task: Fetching news...");
-        newsService.fetchAndProcessNews();
-    }
-
-    // Run on startup (after 1 minute)
-    @Scheduled(initialDelay = 60000, fixedRate = Long.MAX_VALUE)
-    public void fetchNewsOnStartup() {
-        log.info("Startup task: Fetching news...");
-        newsService.fetchAndProcessNews();
+        log.debug("Scheduled task: Fetching due news sources...");
+        newsService.fetchDueSources();
     }
 }
@@ -0,0 +1,16 @@
+-- V18__add_feed_candidate_indexes.sql
+-- Indexes behind the feed candidate sources, so each one reads its top-N
+-- from an index instead of scanning posts
+
+-- Newest posts per hashtag (post ids are assigned in creation order)
+CREATE INDEX IF NOT EXISTS idx_post_hashtags_tag_post ON post_hashtags(hashtag, post_id DESC);
+
+-- Newest posts per author
+CREATE INDEX IF NOT EXISTS idx_posts_user_created ON posts(user_id, created_at DESC, id DESC);
+
+-- Trending rank
+CREATE INDEX IF NOT EXISTS idx_posts_engagement_rank
+    ON posts ((COALESCE(trending_score, 0) + COALESCE(quality_score, 0)) DESC, id DESC);
+
+-- Discovery walks posts by quality
+CREATE INDEX IF NOT EXISTS idx_posts_quality ON posts(quality_score DESC NULLS LAST, id DESC);
@@ -0,0 +1,4 @@
+-- V19__add_timeline_author_index.sql
+-- Home timelines page posts of pulled authors by id, newest first
+
+CREATE INDEX IF NOT EXISTS idx_posts_user_id_desc ON posts(user_id, id DESC);
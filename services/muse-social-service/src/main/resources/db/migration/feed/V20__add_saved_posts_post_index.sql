@@ -0,0 +1,4 @@
+-- V20__add_saved_posts_post_index.sql
+-- Counter reconciliation recounts saves per post; the primary key leads with user_id
+
+CREATE INDEX IF NOT EXISTS idx_saved_posts_post ON saved_posts(post_id);
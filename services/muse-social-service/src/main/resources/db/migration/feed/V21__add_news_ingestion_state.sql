@@ -0,0 +1,16 @@
+-- V21__add_news_ingestion_state.sql
+-- Conditional GET validators and adaptive schedules per RSS source, and
+-- content fingerprints for near-duplicate detection of ingested posts
+
+ALTER TABLE rss_feed_sources ADD COLUMN IF NOT EXISTS etag VARCHAR(500);
+ALTER TABLE rss_feed_sources ADD COLUMN IF NOT EXISTS last_modified VARCHAR(100);
+ALTER TABLE rss_feed_sources ADD COLUMN IF NOT EXISTS fetch_interval_minutes INT DEFAULT 240;
+ALTER TABLE rss_feed_sources ADD COLUMN IF NOT EXISTS next_fetch_at TIMESTAMP;
+
+CREATE INDEX IF NOT EXISTS idx_rss_next_fetch ON rss_feed_sources(next_fetch_at) WHERE is_active;
+
+ALTER TABLE posts ADD COLUMN IF NOT EXISTS content_fingerprint BIGINT;
+
+-- Hash index: source URLs are only compared for equality and can exceed btree row limits
+CREATE INDEX IF NOT EXISTS idx_posts_source_url ON posts USING hash (source_url);
+CREATE INDEX IF NOT EXISTS idx_posts_fingerprint_created ON posts(created_at) WHERE content_fingerprint IS NOT NULL;
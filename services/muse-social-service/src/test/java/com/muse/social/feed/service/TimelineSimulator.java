@@ -0,0 +1,562 @@
+package com.muse.social.feed.service;
+
+import com.muse.social.feed.entity.Post;
+import com.muse.social.feed.repository.PostRepository;
+import com.muse.social.feed.repository.UserFollowRepository;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write amplification against read cost of the hybrid timeline, measured on
+ * the real TimelineService. Builds a follow graph with Zipf-distributed
+ * author popularity plus a news bot followed by everyone, then for each
+ * follower threshold replays posts through onPostCreated interleaved with
+ * page reads, and reports timeline writes per post against the cost of a
+ * page (Redis calls, Postgres queries and time spent in the service).
+ *
+ * Redis and Postgres are in-memory fakes: the Redis fake implements the
+ * commands and scripts TimelineService issues and counts them, and the
+ * repository fakes answer the follow and post queries from the generated
+ * graph. Fan-out runs inline so every write is counted. Read times are the
+ * service's own work; network round trips show up as call counts. Lives
+ * with the tests so it is run from the IDE or the test classpath and never
+ * ships.
+ *
+ * Usage: TimelineSimulator [users] [followsPerUser] [posts] [reads]
+ */
+public class TimelineSimulator {
+
+    private static final int TIMELINE_SIZE = 200;
+    private static final int PAGE = 20;
+    private static final long NEWS_BOT = 0;
+    private static final double ZIPF_EXPONENT = 1.1;
+    private static final double NEWS_BOT_POST_SHARE = 0.1;
+    // Posts already in Postgres before the replay starts, as a share of the replayed ones
+    private static final double HISTORY_SHARE = 0.5;
+
+    public record Result(long threshold, int pullAuthors, double writesPerPost, double redisCallsPerRead,
+            double queriesPerRead, double rebuildsPerRead, double readMicrosAvg, double readMicrosP99) {
+    }
+
+    public static void main(String[] args) {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int follows = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int posts = args.length > 2 ? Integer.parseInt(args[2]) : 50_000;
+        int reads = args.length > 3 ? Integer.parseInt(args[3]) : 20_000;
+        if (users < 2 || follows < 1 || posts < 1 || reads < 1) {
+            throw new IllegalArgumentException("users must be at least 2, the other arguments positive");
+        }
+
+        TimelineSimulator simulator = new TimelineSimulator(users, follows, 42L);
+        // Warm-up so the service code is compiled before anything is timed
+        simulator.run(1_000, Math.max(1, posts / 10), Math.max(1, reads / 10));
+
+        System.out.printf("%d users, %d follows each, %d posts, %d reads%n", users, follows, posts, reads);
+        System.out.printf("%10s %8s %12s %12s %12s %12s %12s %12s%n", "threshold", "pulled",
+                "writes/post", "redis/read", "sql/read", "rebuild/read", "read avg us", "read p99 us");
+        for (long threshold : new long[] { Long.MAX_VALUE, 10_000, 1_000, 100, 1 }) {
+            Result r = simulator.run(threshold, posts, reads);
+            System.out.printf("%10s %8d %12.1f %12.2f %12.2f %12.3f %12.2f %12.2f%n",
+                    threshold == Long.MAX_VALUE ? "none" : String.valueOf(r.threshold()), r.pullAuthors(),
+                    r.writesPerPost(), r.redisCallsPerRead(), r.queriesPerRead(), r.rebuildsPerRead(),
+                    r.readMicrosAvg(), r.readMicrosP99());
+        }
+    }
+
+    private final int users;
+    private final long seed;
+    private final double[] cumulative;
+    private final List<List<String>> following;
+    private final List<List<String>> followers;
+
+    public TimelineSimulator(int users, int followsPerUser, long seed) {
+        this.users = users;
+        this.seed = seed;
+        this.cumulative = zipf(users);
+        Random random = new Random(seed);
+
+        following = new ArrayList<>(users);
+        followers = new ArrayList<>(users);
+        for (int a = 0; a < users; a++) {
+            followers.add(new ArrayList<>());
+        }
+        for (int u = 0; u < users; u++) {
+            Set<Integer> out = new LinkedHashSet<>();
+            if (u != NEWS_BOT) {
+                out.add((int) NEWS_BOT);
+            }
+            int wanted = Math.min(followsPerUser, users - 1);
+            while (out.size() < wanted) {
+                int author = sample(random.nextDouble());
+                if (author != u) {
+                    out.add(author);
+                }
+            }
+            List<String> ids = new ArrayList<>(out.size());
+            for (int author : out) {
+                ids.add(String.valueOf(author));
+                followers.get(author).add(String.valueOf(u));
+            }
+            following.add(ids);
+        }
+    }
+
+    /** Replays {@code posts} posts interleaved with {@code reads} page reads at the given threshold. */
+    public Result run(long threshold, int posts, int reads) {
+        Random random = new Random(seed + 1);
+        FakeRedis redis = new FakeRedis();
+        FakePostgres postgres = new FakePostgres();
+        TimelineService service = new TimelineService(redis, postgres.posts(), postgres.follows(),
+                TIMELINE_SIZE, threshold, Set.of(String.valueOf(NEWS_BOT)), 24, new InlineExecutor());
+
+        for (int i = 0; i < posts * HISTORY_SHARE; i++) {
+            postgres.insert(author(random));
+        }
+        service.refreshPullAuthors();
+        int pullAuthors = redis.sets.getOrDefault("feed:timeline-pull-authors", Set.of()).size();
+
+        long writes = 0;
+        long redisCalls = 0;
+        long queries = 0;
+        long rebuilds = 0;
+        long[] times = new long[reads];
+        int written = 0;
+        int read = 0;
+        long checksum = 0;
+        while (written < posts || read < reads) {
+            // Interleave so reads see timelines in every state: missing, rebuilt, pushed to
+            boolean post = read == reads || (written < posts && random.nextInt(posts + reads) < posts);
+            if (post) {
+                long before = redis.timelineWrites;
+                service.onPostCreated(postgres.insert(author(random)));
+                writes += redis.timelineWrites - before;
+                written++;
+            } else {
+                String user = String.valueOf(random.nextInt(users));
+                long callsBefore = redis.calls;
+                long queriesBefore = postgres.queries;
+                boolean cold = !redis.zsets.containsKey("feed:timeline:" + user);
+                long start = System.nanoTime();
+                List<Long> page = service.page(user, following.get(Integer.parseInt(user)), null, PAGE);
+                times[read++] = System.nanoTime() - start;
+                redisCalls += redis.calls - callsBefore;
+                queries += postgres.queries - queriesBefore;
+                rebuilds += cold ? 1 : 0;
+                checksum += page.size();
+            }
+        }
+        if (checksum < 0) {
+            System.out.println(checksum);
+        }
+
+        Arrays.sort(times);
+        double avg = Arrays.stream(times).average().orElse(0) / 1_000.0;
+        double p99 = times[(int) Math.min(times.length - 1, times.length * 0.99)] / 1_000.0;
+        return new Result(threshold, pullAuthors, (double) writes / posts, (double) redisCalls / reads,
+                (double) queries / reads, (double) rebuilds / reads, avg, p99);
+    }
+
+    private long author(Random random) {
+        return random.nextDouble() < NEWS_BOT_POST_SHARE ? NEWS_BOT : sample(random.nextDouble());
+    }
+
+    private static double[] zipf(int n) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1.0 / Math.pow(i + 1, ZIPF_EXPONENT);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    private int sample(double u) {
+        int i = Arrays.binarySearch(cumulative, u);
+        return Math.min(cumulative.length - 1, i >= 0 ? i : -i - 1);
+    }
+
+    // ==================== Postgres ====================
+
+    /** Posts by author and the follow graph, behind the two repository interfaces. */
+    private final class FakePostgres {
+
+        private final Map<Long, List<Long>> byAuthor = new HashMap<>();
+        private long nextId = 1;
+        long queries;
+
+        Post insert(long author) {
+            Post post = Post.builder().id(nextId++).userId(author).build();
+            byAuthor.computeIfAbsent(author, a -> new ArrayList<>()).add(post.getId());
+            return post;
+        }
+
+        @SuppressWarnings("unchecked")
+        PostRepository posts() {
+            return repository(PostRepository.class, (proxy, method, args) -> switch (method.getName()) {
+                case "findRecentIdsByAuthors" -> recentIds((Collection<Long>) args[0], (long) args[1],
+                        (int) args[2], (int) args[3]);
+                default -> objectMethod(proxy, method.getName(), args);
+            });
+        }
+
+        UserFollowRepository follows() {
+            return repository(UserFollowRepository.class, (proxy, method, args) -> switch (method.getName()) {
+                case "findFollowerIds" -> {
+                    queries++;
+                    yield followers.get(Integer.parseInt((String) args[0]));
+                }
+                case "countFollowers" -> {
+                    queries++;
+                    yield (long) followers.get(Integer.parseInt((String) args[0])).size();
+                }
+                case "findIdsWithMoreFollowersThan" -> {
+                    queries++;
+                    List<String> ids = new ArrayList<>();
+                    for (int a = 0; a < users; a++) {
+                        if (followers.get(a).size() > (long) args[0]) {
+                            ids.add(String.valueOf(a));
+                        }
+                    }
+                    yield ids;
+                }
+                default -> objectMethod(proxy, method.getName(), args);
+            });
+        }
+
+        private List<Long> recentIds(Collection<Long> authors, long before, int perAuthor, int limit) {
+            queries++;
+            List<Long> ids = new ArrayList<>();
+            for (Long author : authors) {
+                List<Long> own = byAuthor.getOrDefault(author, List.of());
+                int taken = 0;
+                for (int i = own.size() - 1; i >= 0 && taken < perAuthor; i--) {
+                    if (own.get(i) < before) {
+                        ids.add(own.get(i));
+                        taken++;
+                    }
+                }
+            }
+            ids.sort(Comparator.reverseOrder());
+            return ids.size() > limit ? new ArrayList<>(ids.subList(0, limit)) : ids;
+        }
+    }
+
+    // ==================== Redis ====================
+
+    /**
+     * The sorted sets, sets and scripts TimelineService uses, kept in maps.
+     * Every call counts as one round trip; every member added to a timeline
+     * or to a pending set counts as one timeline write.
+     */
+    private static final class FakeRedis extends StringRedisTemplate {
+
+        private static final String TIMELINE_KEY = "feed:timeline:";
+
+        final Map<String, ZSet> zsets = new HashMap<>();
+        final Map<String, Set<String>> sets = new HashMap<>();
+        long calls;
+        long timelineWrites;
+
+        @Override
+        public Boolean hasKey(String key) {
+            calls++;
+            return exists(key);
+        }
+
+        @Override
+        public Boolean expire(String key, long timeout, TimeUnit unit) {
+            calls++;
+            return exists(key);
+        }
+
+        @Override
+        public Boolean expire(String key, Duration timeout) {
+            return expire(key, timeout.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ZSetOperations<String, String> opsForZSet() {
+            return (ZSetOperations<String, String>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] { ZSetOperations.class }, (proxy, method, args) -> {
+                        calls++;
+                        return switch (method.getName()) {
+                            case "add" -> {
+                                ZSet set = zsets.computeIfAbsent((String) args[0], k -> new ZSet());
+                                long added = 0;
+                                for (ZSetOperations.TypedTuple<String> tuple
+                                        : (Set<ZSetOperations.TypedTuple<String>>) args[1]) {
+                                    added += set.add(tuple.getValue(), tuple.getScore()) ? 1 : 0;
+                                }
+                                yield added;
+                            }
+                            case "reverseRangeByScore" -> {
+                                ZSet set = zsets.get((String) args[0]);
+                                yield set == null ? Set.of() : set.reverseRangeByScore((double) args[1],
+                                        (double) args[2], (long) args[3], (long) args[4]);
+                            }
+                            case "remove" -> {
+                                long removed = 0;
+                                for (Object member : (Object[]) args[1]) {
+                                    removed += zrem((String) args[0], String.valueOf(member));
+                                }
+                                yield removed;
+                            }
+                            default -> objectMethod(proxy, method.getName(), args);
+                        };
+                    });
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public SetOperations<String, String> opsForSet() {
+            return (SetOperations<String, String>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] { SetOperations.class }, (proxy, method, args) -> {
+                        calls++;
+                        Set<String> set = args != null && args.length > 0 ? sets.get((String) args[0]) : null;
+                        return switch (method.getName()) {
+                            case "add" -> {
+                                Set<String> target = sets.computeIfAbsent((String) args[0], k -> new HashSet<>());
+                                long added = 0;
+                                for (Object member : (Object[]) args[1]) {
+                                    added += target.add(String.valueOf(member)) ? 1 : 0;
+                                }
+                                yield added;
+                            }
+                            case "isMember" -> {
+                                if (!args[1].getClass().isArray()) {
+                                    yield set != null && set.contains(String.valueOf(args[1]));
+                                }
+                                Map<Object, Boolean> members = new LinkedHashMap<>();
+                                for (Object member : (Object[]) args[1]) {
+                                    members.put(member, set != null && set.contains(String.valueOf(member)));
+                                }
+                                yield members;
+                            }
+                            default -> objectMethod(proxy, method.getName(), args);
+                        };
+                    });
+        }
+
+        /** Runs the TimelineService script the text identifies, as its Lua would. */
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+            calls++;
+            String lua = script.getScriptAsString();
+            if (lua.contains("local pushed")) {
+                return (T) push(keys, args);
+            }
+            if (lua.contains("local removed")) {
+                long removed = 0;
+                for (String key : keys) {
+                    removed += zrem(key, (String) args[0]);
+                    zrem(key + ":pending", (String) args[0]);
+                }
+                return (T) Long.valueOf(removed);
+            }
+            if (lua.contains("SDIFF")) {
+                return (T) swapPullAuthors(keys.get(0), keys.get(1));
+            }
+            if (lua.contains("ZUNIONSTORE")) {
+                return (T) publishRebuild(keys.get(0), keys.get(1), keys.get(2),
+                        Integer.parseInt((String) args[0]));
+            }
+            if (lua.contains("'-inf'")) {
+                zsets.computeIfAbsent(keys.get(0), k -> new ZSet()).add("-", Double.NEGATIVE_INFINITY);
+                return (T) Long.valueOf(1);
+            }
+            throw new UnsupportedOperationException("Script not simulated: " + lua);
+        }
+
+        private Long push(List<String> keys, Object[] args) {
+            int size = Integer.parseInt((String) args[0]);
+            long pushed = 0;
+            for (String key : keys) {
+                ZSet target = zsets.containsKey(key) ? zsets.get(key) : zsets.get(key + ":pending");
+                if (target == null) {
+                    continue;
+                }
+                for (int i = 1; i < args.length; i++) {
+                    String id = (String) args[i];
+                    target.add(id, Double.parseDouble(id));
+                    if (key.startsWith(TIMELINE_KEY)) {
+                        timelineWrites++;
+                    }
+                }
+                target.keepNewest(size);
+                pushed++;
+            }
+            return pushed;
+        }
+
+        private List<Object> swapPullAuthors(String key, String staging) {
+            Set<String> current = sets.getOrDefault(key, Set.of());
+            Set<String> staged = sets.remove(staging);
+            List<Object> demoted = new ArrayList<>();
+            for (String member : current) {
+                if (staged == null || !staged.contains(member)) {
+                    demoted.add(member);
+                }
+            }
+            if (staged != null) {
+                sets.put(key, staged);
+            } else {
+                sets.remove(key);
+            }
+            return demoted;
+        }
+
+        private Long publishRebuild(String key, String staging, String pending, int size) {
+            if (zsets.containsKey(key)) {
+                zsets.remove(staging);
+                return 0L;
+            }
+            ZSet merged = new ZSet();
+            for (String source : List.of(staging, pending)) {
+                ZSet set = zsets.remove(source);
+                if (set != null) {
+                    set.scores.forEach((member, score) -> merged.add(member, Math.max(score,
+                            merged.scores.getOrDefault(member, Double.NEGATIVE_INFINITY))));
+                }
+            }
+            merged.remove("-");
+            if (merged.scores.isEmpty()) {
+                return 0L;
+            }
+            merged.keepNewest(size);
+            zsets.put(key, merged);
+            return 1L;
+        }
+
+        private long zrem(String key, String member) {
+            ZSet set = zsets.get(key);
+            if (set == null || !set.remove(member)) {
+                return 0;
+            }
+            if (set.scores.isEmpty()) {
+                zsets.remove(key);
+            }
+            return 1;
+        }
+
+        private boolean exists(String key) {
+            return zsets.containsKey(key) || sets.containsKey(key);
+        }
+    }
+
+    /** A Redis sorted set: members ordered by score, then by member. */
+    private static final class ZSet {
+
+        final Map<String, Double> scores = new HashMap<>();
+        private final TreeSet<String> order = new TreeSet<>(
+                Comparator.<String>comparingDouble(scores::get).thenComparing(Comparator.naturalOrder()));
+
+        boolean add(String member, double score) {
+            boolean added = !scores.containsKey(member);
+            if (!added) {
+                order.remove(member);
+            }
+            scores.put(member, score);
+            order.add(member);
+            return added;
+        }
+
+        boolean remove(String member) {
+            if (!scores.containsKey(member)) {
+                return false;
+            }
+            order.remove(member);
+            scores.remove(member);
+            return true;
+        }
+
+        void keepNewest(int size) {
+            while (order.size() > size) {
+                scores.remove(order.pollFirst());
+            }
+        }
+
+        Set<String> reverseRangeByScore(double min, double max, long offset, long count) {
+            Set<String> range = new LinkedHashSet<>();
+            long skipped = 0;
+            for (String member : order.descendingSet()) {
+                double score = scores.get(member);
+                if (score > max) {
+                    continue;
+                }
+                if (score < min || range.size() == count) {
+                    break;
+                }
+                if (skipped++ >= offset) {
+                    range.add(member);
+                }
+            }
+            return range;
+        }
+    }
+
+    // ==================== Plumbing ====================
+
+    /** Runs fan-out on the posting thread so its writes are counted before the next step. */
+    private static final class InlineExecutor extends AbstractExecutorService {
+
+        private boolean shutdown;
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return List.of();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+
+    private static <R> R repository(Class<R> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler));
+    }
+
+    private static Object objectMethod(Object proxy, String name, Object[] args) {
+        return switch (name) {
+            case "toString" -> "simulated";
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            default -> throw new UnsupportedOperationException(name + " is not simulated");
+        };
+    }
+}
@@ -0,0 +1,84 @@
+package com.muse.social.feed.simulation;
+
+import com.muse.social.feed.entity.UserInterestDNA;
+import com.muse.social.feed.ranking.FeedScorer;
+import com.muse.social.feed.ranking.PostFeatures;
+import com.muse.social.feed.ranking.UserDnaVector;
+import com.muse.social.feed.service.NeuroFeedEngine.SessionMode;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Standalone timing of the NeuroFeed ranking stage: scores a synthetic
+ * candidate batch against a user DNA and selects the top k, after a warm-up
+ * so the loop is compiled. Reports per-call latency. Lives with the tests
+ * so it is run from the IDE or the test classpath and never ships.
+ *
+ * Usage: ScoringBenchmark [candidates] [k] [iterations]
+ */
+public class ScoringBenchmark {
+
+    private static final int VOCABULARY = 2_000;
+    private static final int DNA_SIZE = 50;
+    private static final int MAX_TAGS = 5;
+    private static final int WARMUP = 2_000;
+
+    public static void main(String[] args) {
+        int candidates = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int k = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 2_000;
+        if (candidates < 1 || k < 1 || iterations < 1) {
+            throw new IllegalArgumentException("candidates, k and iterations must be positive");
+        }
+
+        Random random = new Random(7);
+        long now = Instant.now().getEpochSecond();
+        List<PostFeatures> features = new ArrayList<>(candidates);
+        for (int i = 0; i < candidates; i++) {
+            int[] tags = random.ints(1 + random.nextInt(MAX_TAGS), 0, VOCABULARY).distinct().sorted().toArray();
+            features.add(new PostFeatures(i, null, random.nextFloat(), now - random.nextInt(72 * 3600), tags,
+                    random.nextInt(5), random.nextInt(5)));
+        }
+
+        List<UserInterestDNA> dna = new ArrayList<>(DNA_SIZE);
+        for (int i = 0; i < DNA_SIZE; i++) {
+            dna.add(UserInterestDNA.builder()
+                    .hashtag("tag" + random.nextInt(VOCABULARY))
+                    .interestScore(100.0 * (DNA_SIZE - i) / DNA_SIZE)
+                    .momentum(0.5 + random.nextDouble())
+                    .currentLevel(UserInterestDNA.LearningLevel.values()[random.nextInt(3)])
+                    .build());
+        }
+        UserDnaVector vector = new UserDnaVector(dna, tag -> Integer.parseInt(tag.substring(3)));
+        FeedScorer.Batch batch = FeedScorer.Batch.of(features);
+
+        long sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += run(batch, vector, now, k);
+        }
+        long[] times = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            sink += run(batch, vector, now, k);
+            times[i] = System.nanoTime() - start;
+        }
+
+        Arrays.sort(times);
+        System.out.printf("%d candidates, top %d, %d iterations%n", candidates, k, iterations);
+        System.out.printf("avg %.1f us, p50 %.1f us, p99 %.1f us (checksum %d)%n",
+                Arrays.stream(times).average().orElse(0) / 1_000.0,
+                times[iterations / 2] / 1_000.0,
+                times[(int) Math.min(iterations - 1, iterations * 0.99)] / 1_000.0,
+                sink);
+    }
+
+    private static int run(FeedScorer.Batch batch, UserDnaVector vector, long now, int k) {
+        float[] scores = FeedScorer.score(batch, vector, SessionMode.LEARNING, now);
+        int[] top = FeedScorer.topK(scores, k);
+        return top.length > 0 ? top[0] : -1;
+    }
+}